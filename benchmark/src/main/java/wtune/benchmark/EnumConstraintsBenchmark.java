@@ -0,0 +1,45 @@
+package wtune.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import wtune.superopt.constraint.ConstraintSupport;
+import wtune.superopt.fragment.Fragment;
+import wtune.superopt.substitution.Substitution;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Constraint enumeration on fixed template pairs, from trivial to ones with 4+ operators. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EnumConstraintsBenchmark {
+  @Param({
+    "Proj*<a0 s0>(Input<t0>)|Proj<a1 s1>(Input<t1>)",
+    "Proj*<a2 s0>(InnerJoin<a0 a1>(Input<t0>,Input<t1>))|Proj*<a3 s1>(Input<t2>)",
+    "Filter<p0 a0>(InnerJoin<k0 k1>(Input<t0>,Input<t1>))"
+        + "|Filter<p1 a1>(InnerJoin<k2 k3>(Input<t2>,Input<t3>))",
+    "Proj*<a4 s1>(InnerJoin<a2 a3>(Proj<a1 s0>(Filter<p0 a0>(Input<t0>)),Input<t1>))"
+        + "|Proj*<a8 s2>(Filter<p1 a7>(InnerJoin<a5 a6>(Input<t2>,Input<t3>)))",
+  })
+  private String pair;
+
+  @Param("240000")
+  private long timeout;
+
+  private Fragment source, target;
+
+  @Setup
+  public void setup() {
+    final String[] fields = pair.split("\\|");
+    source = Fragment.parse(fields[0], null);
+    target = Fragment.parse(fields[1], null);
+  }
+
+  @Benchmark
+  public List<Substitution> enumConstraints() {
+    return ConstraintSupport.enumConstraints(source, target, timeout);
+  }
+}
@@ -0,0 +1,21 @@
+package wtune.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import wtune.superopt.fragment.Fragment;
+import wtune.superopt.fragment.FragmentSupport;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Enumeration of all the templates under the default operator set and size limit. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EnumFragmentsBenchmark {
+  @Benchmark
+  public List<Fragment> enumFragments() {
+    return FragmentSupport.enumFragments();
+  }
+}
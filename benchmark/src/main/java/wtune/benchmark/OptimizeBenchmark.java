@@ -0,0 +1,57 @@
+package wtune.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanSupport;
+import wtune.sql.schema.Schema;
+import wtune.stmt.Statement;
+import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static wtune.sql.support.action.NormalizationSupport.normalizeAst;
+
+/** Rewriting of statements in wtune_data/wtune.db with the prepared rules. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OptimizeBenchmark {
+  @Param({"broadleaf-199", "broadleaf-201", "diaspora-202", "diaspora-224", "shopizer-39"})
+  private String stmt;
+
+  @Param("5000")
+  private long timeout;
+
+  private SubstitutionBank bank;
+  private PlanContext plan;
+
+  @Setup
+  public void setup() throws IOException {
+    bank = SubstitutionSupport.loadBank(Paths.get("wtune_data", "prepared", "rules.txt"));
+
+    final String[] fields = stmt.split("-");
+    final Statement statement = Statement.findOne(fields[0], Integer.parseInt(fields[1]));
+    final SqlNode ast = statement.ast();
+    final Schema schema = statement.app().schema("base", true);
+    ast.context().setSchema(schema);
+    normalizeAst(ast);
+    plan = PlanSupport.assemblePlan(ast, schema);
+  }
+
+  @Benchmark
+  public Set<PlanContext> optimize() {
+    // The optimizer keeps the memo of a run, thus a fresh one each time. The plan is copied in it.
+    final Optimizer optimizer = Optimizer.mk(bank);
+    optimizer.setTimeout(timeout);
+    return optimizer.optimize(plan);
+  }
+}
@@ -0,0 +1,43 @@
+package wtune.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import wtune.sql.SqlSupport;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.parser.ParseCache;
+import wtune.stmt.Statement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of statements in wtune_data/wtune.db. With `cached`, the statement is parsed once and
+ * the AST is decoded from {@link ParseCache} afterwards; otherwise it is parsed every time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParseSqlBenchmark {
+  @Param({"broadleaf-199", "broadleaf-201", "diaspora-202", "diaspora-224", "shopizer-39"})
+  private String stmt;
+
+  @Param({"false", "true"})
+  private boolean cached;
+
+  private String dbType, sql;
+
+  @Setup
+  public void setup() {
+    final String[] fields = stmt.split("-");
+    final Statement statement = Statement.findOne(fields[0], Integer.parseInt(fields[1]));
+    dbType = statement.app().dbType();
+    sql = statement.rawSql();
+    ParseCache.install(ParseCache.mk(cached ? 1024 : 0));
+  }
+
+  @Benchmark
+  public SqlNode parseSql() {
+    return SqlSupport.parseSql(dbType, sql);
+  }
+}
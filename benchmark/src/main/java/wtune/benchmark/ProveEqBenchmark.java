@@ -0,0 +1,44 @@
+package wtune.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.substitution.Substitution;
+import wtune.superopt.uexpr.UExprSupport;
+import wtune.superopt.uexpr.UExprTranslationResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** U-expression translation and the verifier, on rules of wtune_data/rules/rules.test.txt. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProveEqBenchmark {
+  @Param({"0", "15", "30", "45"})
+  private int ruleIndex;
+
+  private Substitution rule;
+
+  @Setup
+  public void setup() throws IOException {
+    final List<String> lines =
+        Files.readAllLines(Paths.get("wtune_data", "rules", "rules.test.txt"));
+    rule = Substitution.parse(lines.get(ruleIndex));
+  }
+
+  @Benchmark
+  public UExprTranslationResult translateToUExpr() {
+    return UExprSupport.translateToUExpr(rule);
+  }
+
+  @Benchmark
+  public int translateAndProveEq() {
+    return LogicSupport.proveEq(UExprSupport.translateToUExpr(rule));
+  }
+}
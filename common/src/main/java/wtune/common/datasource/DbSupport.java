@@ -16,6 +16,8 @@ public interface DbSupport {
     config.setJdbcUrl(dbProps.getProperty("jdbcUrl"));
     config.setUsername(dbProps.getProperty("username"));
     config.setPassword(dbProps.getProperty("password"));
+    final String poolSize = dbProps.getProperty("maximumPoolSize");
+    if (poolSize != null) config.setMaximumPoolSize(Integer.parseInt(poolSize));
     return new HikariDataSource(config);
   }
 
@@ -50,7 +52,11 @@ public interface DbSupport {
   private static Properties mysqlProps(String db) {
     final Properties props = new Properties();
     props.setProperty("dbType", MySQL);
-    props.setProperty("jdbcUrl", "jdbc:mysql://127.0.0.1:3306/" + db + "?rewriteBatchedStatements=true");
+    props.setProperty(
+        "jdbcUrl",
+        "jdbc:mysql://127.0.0.1:3306/"
+            + db
+            + "?rewriteBatchedStatements=true&allowLoadLocalInfile=true");
     props.setProperty("username", "root");
     props.setProperty("password", "admin");
     // The information here only serves for evaluation scripts of the system
@@ -5,19 +5,19 @@ import wtune.common.io.FileUtils;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 public class DbUtils {
-  private static Connection conn;
+  private static final int BUSY_TIMEOUT = 30000;
 
-  public static Connection connection() {
+  public static Connection newConnection() {
     try {
-      if (conn == null || conn.isClosed())
-        synchronized (DbUtils.class) {
-          Class.forName("org.sqlite.JDBC");
-          if (conn == null || conn.isClosed())
-            conn = DriverManager.getConnection("jdbc:sqlite://" + FileUtils.dbPath());
-        }
-
+      Class.forName("org.sqlite.JDBC");
+      final Connection conn = DriverManager.getConnection("jdbc:sqlite://" + FileUtils.dbPath());
+      // Wait for the lock held by another connection, rather than failing with SQLITE_BUSY.
+      try (final Statement stmt = conn.createStatement()) {
+        stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT);
+      }
       return conn;
 
     } catch (SQLException | ClassNotFoundException ex) {
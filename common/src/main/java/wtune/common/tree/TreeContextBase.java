@@ -54,8 +54,8 @@ public abstract class TreeContextBase<Kind, Nd extends TreeContextBase.NdBase<Ki
     detachNode(nodeId);
     nodes[nodeId] = null;
     if (nodeId == maxNodeId) --maxNodeId;
-    for (Nd node : nodes)
-      if (node != null && node.parentId() == nodeId) node.setParent(NO_SUCH_NODE);
+    for (int i = 0; i < nodes.length; ++i)
+      if (nodes[i] != null && nodes[i].parentId() == nodeId) ndForWrite(i).setParent(NO_SUCH_NODE);
   }
 
   @Override
@@ -78,6 +78,14 @@ public abstract class TreeContextBase<Kind, Nd extends TreeContextBase.NdBase<Ki
 
   protected abstract Nd mk(Kind kind);
 
+  /**
+   * Returns the node to be modified in place. Subclasses sharing nodes between contexts override
+   * this to copy a shared node first.
+   */
+  protected Nd ndForWrite(int nodeId) {
+    return nodes[nodeId];
+  }
+
   protected static <T> T[] ensureCapacity(T[] array, int requirement, int newCapacity) {
     if (array.length <= requirement)
       return Arrays.copyOf(array, newCapacity <= requirement ? (requirement + 1) : newCapacity);
@@ -41,9 +41,9 @@ public class UniformTreeContextBase<Kind>
     TreeSupport.checkNodePresent(this, childNodeId);
     TreeSupport.checkParentNotSet(this, childNodeId);
 
-    nodes[childNodeId].parentId = parentNodeId;
+    ndForWrite(childNodeId).parentId = parentNodeId;
 
-    final Nd<Kind> parent = nodes[parentNodeId];
+    final Nd<Kind> parent = ndForWrite(parentNodeId);
     parent.childrenIds = ensureCapacity(parent.childrenIds, childIndex, expectedFanOut);
 
     final int existing = parent.childrenIds[childIndex];
@@ -59,9 +59,9 @@ public class UniformTreeContextBase<Kind>
 
     TreeSupport.checkNodePresent(this, parentId);
 
-    nodes[nodeId].parentId = NO_SUCH_NODE;
+    ndForWrite(nodeId).parentId = NO_SUCH_NODE;
 
-    final int[] childrenIds = nodes[parentId].childrenIds;
+    final int[] childrenIds = ndForWrite(parentId).childrenIds;
     final int childIndex = linearFind(childrenIds, nodeId, 0);
     if (childIndex >= 0) childrenIds[childIndex] = NO_SUCH_NODE;
   }
@@ -70,11 +70,11 @@ public class UniformTreeContextBase<Kind>
   protected void relocate(int from, int to) {
     nodes[to] = nodes[from];
     nodes[from] = null;
-    for (Nd<Kind> node : nodes) {
-      if (node == null) continue;
-      if (node.parentId == from) node.parentId = to;
-      final int[] childrenIds = node.childrenIds;
-      for (int i = 0; i < childrenIds.length; i++) if (childrenIds[i] == from) childrenIds[i] = to;
+    for (int i = 0; i < nodes.length; i++) {
+      if (nodes[i] == null) continue;
+      if (nodes[i].parentId == from) ndForWrite(i).parentId = to;
+      final int childIndex = linearFind(nodes[i].childrenIds, from, 0);
+      if (childIndex >= 0) ndForWrite(i).childrenIds[childIndex] = to;
     }
   }
 
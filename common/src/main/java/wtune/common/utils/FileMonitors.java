@@ -0,0 +1,17 @@
+package wtune.common.utils;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-file monitors within this process. A file lock is held on behalf of the whole JVM, and
+ * locking a file already locked by another thread throws. Thus, threads take turns by the monitor.
+ */
+class FileMonitors {
+  private static final Map<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+  static Object of(Path path) {
+    return MONITORS.computeIfAbsent(path.toAbsolutePath().normalize(), ignored -> new Object());
+  }
+}
@@ -4,6 +4,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.function.Consumer;
@@ -38,12 +39,21 @@ public interface IOSupport {
   }
 
   static void printWithLock(Path path, Consumer<PrintWriter> writer) {
-    try (final var os = new FileOutputStream(path.toFile(), true);
-        final var out = new PrintWriter(os);
-        final var lock = os.getChannel().lock(); ) {
-      writer.accept(out);
-    } catch (IOException ioe) {
-      throw new UncheckedIOException(ioe);
+    synchronized (FileMonitors.of(path)) {
+      try (final var os = new FileOutputStream(path.toFile(), true);
+          final var out = new PrintWriter(os)) {
+        final FileLock lock = os.getChannel().lock();
+        try {
+          writer.accept(out);
+          // Flush before the lock is released.
+          out.flush();
+          if (out.checkError()) throw new IOException("failed to write " + path);
+        } finally {
+          lock.release();
+        }
+      } catch (IOException ioe) {
+        throw new UncheckedIOException(ioe);
+      }
     }
   }
 
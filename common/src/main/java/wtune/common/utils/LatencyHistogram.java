@@ -0,0 +1,155 @@
+package wtune.common.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative longs, e.g., latencies.
+ *
+ * <p>Buckets are log-linear as in HdrHistogram: values below 2^subBits have their own buckets, and
+ * each power-of-2 range above is split into 2^subBits buckets. Thus the relative error of a
+ * percentile is at most 2^-subBits, while the whole long range takes (64 - subBits) * 2^subBits
+ * buckets. By default subBits is 4, i.e., 960 buckets with an error of 1/16.
+ *
+ * <p>Histograms of the same precision can be merged, e.g., those recorded by different threads.
+ */
+public class LatencyHistogram {
+  private static final int DEFAULT_SUB_BITS = 4;
+
+  private final int subBits;
+  private final AtomicLongArray buckets;
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  public LatencyHistogram() {
+    this(DEFAULT_SUB_BITS);
+  }
+
+  public LatencyHistogram(int subBits) {
+    if (subBits < 1 || subBits > 16) throw new IllegalArgumentException("subBits: " + subBits);
+    this.subBits = subBits;
+    this.buckets = new AtomicLongArray(numBucketsOf(subBits));
+  }
+
+  public void record(long value) {
+    if (value < 0) value = 0;
+    buckets.incrementAndGet(bucketOf(subBits, value));
+    sum.add(value);
+    if (value > max.get()) max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * Records a value, e.g., the latency of a query expected to be issued every `expectedInterval`.
+   *
+   * <p>A value longer than the interval has delayed the queries that should have been issued
+   * meanwhile, which are thus missing from the record (the "coordinated omission"). They are
+   * recorded as value - interval, value - 2 * interval, ..., down to the interval. No correction is
+   * done if `expectedInterval` <= 0.
+   */
+  public void recordCorrected(long value, long expectedInterval) {
+    record(value);
+    if (expectedInterval <= 0) return;
+    for (long missing = value - expectedInterval;
+        missing >= expectedInterval;
+        missing -= expectedInterval) record(missing);
+  }
+
+  /** Adds the values of a snapshot of the same precision. */
+  public void merge(Snapshot snapshot) {
+    if (snapshot.subBits() != subBits) throw new IllegalArgumentException("precision mismatch");
+    final long[] counts = snapshot.buckets();
+    for (int i = 0; i < counts.length; ++i) if (counts[i] != 0) buckets.addAndGet(i, counts[i]);
+    sum.add(snapshot.sum());
+    if (snapshot.max() > max.get()) max.accumulateAndGet(snapshot.max(), Math::max);
+  }
+
+  public Snapshot snapshot() {
+    final long[] counts = new long[buckets.length()];
+    long count = 0;
+    for (int i = 0; i < counts.length; ++i) count += (counts[i] = buckets.get(i));
+    return new Snapshot(subBits, counts, count, sum.sum(), max.get());
+  }
+
+  static int numBucketsOf(int subBits) {
+    return (Long.SIZE - subBits) << subBits;
+  }
+
+  static int bucketOf(int subBits, long value) {
+    final int subCount = 1 << subBits;
+    if (value < subCount) return (int) value;
+    final int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - subBits;
+    return ((shift + 1) << subBits) + (int) ((value >>> shift) & (subCount - 1));
+  }
+
+  static long lowerBoundOf(int subBits, int bucket) {
+    final int subCount = 1 << subBits;
+    if (bucket < subCount) return bucket;
+    final int shift = (bucket >>> subBits) - 1;
+    return (long) (subCount + (bucket & (subCount - 1))) << shift;
+  }
+
+  static long upperBoundOf(int subBits, int bucket) {
+    if (bucket < (1 << subBits)) return bucket;
+    final int shift = (bucket >>> subBits) - 1;
+    return lowerBoundOf(subBits, bucket) + (1L << shift) - 1;
+  }
+
+  /** A point-in-time copy. Concurrent records may be partially reflected in it. */
+  public record Snapshot(int subBits, long[] buckets, long count, long sum, long max) {
+    public double mean() {
+      return count == 0 ? 0 : sum / (double) count;
+    }
+
+    /** Returns the highest value equivalent to the percentile, which is in [0, 1]. */
+    public long percentile(double percentile) {
+      if (percentile < 0.0 || percentile > 1.0) throw new IllegalArgumentException();
+      if (count == 0) return 0;
+
+      final long rank = Math.max(1, (long) Math.ceil(percentile * count));
+      long seen = 0;
+      for (int i = 0; i < buckets.length; ++i)
+        if ((seen += buckets[i]) >= rank) return Math.min(upperBoundOf(subBits, i), max);
+      return max;
+    }
+
+    /**
+     * Encodes the snapshot in one line: "subBits count sum max bucket:count,...", where only the
+     * non-empty buckets are listed.
+     */
+    public String encode() {
+      final StringBuilder builder = new StringBuilder();
+      builder.append(subBits).append(' ').append(count).append(' ');
+      builder.append(sum).append(' ').append(max).append(' ');
+      String sep = "";
+      for (int i = 0; i < buckets.length; ++i)
+        if (buckets[i] != 0) {
+          builder.append(sep).append(i).append(':').append(buckets[i]);
+          sep = ",";
+        }
+      return builder.toString();
+    }
+
+    /** Reverse of {@link #encode()}. */
+    public static Snapshot decode(String str) {
+      final String[] fields = str.trim().split(" ");
+      if (fields.length < 4) throw new IllegalArgumentException("malformed snapshot: " + str);
+
+      final int subBits = Integer.parseInt(fields[0]);
+      final long[] buckets = new long[numBucketsOf(subBits)];
+      if (fields.length > 4 && !fields[4].isEmpty())
+        for (String bucket : fields[4].split(",")) {
+          final int colon = bucket.indexOf(':');
+          buckets[Integer.parseInt(bucket.substring(0, colon))] =
+              Long.parseLong(bucket.substring(colon + 1));
+        }
+
+      return new Snapshot(
+          subBits,
+          buckets,
+          Long.parseLong(fields[1]),
+          Long.parseLong(fields[2]),
+          Long.parseLong(fields[3]));
+    }
+  }
+}
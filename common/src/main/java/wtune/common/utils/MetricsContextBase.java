@@ -1,16 +1,33 @@
 package wtune.common.utils;
 
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Thread-local metrics, folded into the global one when a thread finishes a unit of work.
+ *
+ * <p>Integral metrics are also published as counters of {@link MetricsRegistry#global()}, named
+ * after the context and the metric, so that they can be watched during the run.
+ */
 public abstract class MetricsContextBase<T extends Metrics<T>> implements MetricsContext<T> {
   private final String name;
   private final ThreadLocal<T> localMetrics;
-  private final AtomicReference<T> globalMetric;
+  private final T globalMetric;
+  private final List<LongAdder> counters;
 
   protected MetricsContextBase(String name) {
     this.name = name;
     this.localMetrics = ThreadLocal.withInitial(this::newMetric);
-    this.globalMetric = new AtomicReference<>(newMetric());
+    this.globalMetric = newMetric();
+    this.counters = new ArrayList<>();
+
+    final MetricsRegistry registry = MetricsRegistry.global();
+    for (Metric<?, ?> metric : globalMetric.metrics()) {
+      if (metric instanceof IntMetric || metric instanceof LongMetric)
+        counters.add(registry.counter(MetricsRegistry.metricName(name, metric.name())));
+      else counters.add(null);
+    }
   }
 
   @Override
@@ -25,20 +42,28 @@ public abstract class MetricsContextBase<T extends Metrics<T>> implements Metric
     return local;
   }
 
+  /** Returns a snapshot of the global metric. */
   @Override
   public T global() {
-    return globalMetric.get();
+    final T snapshot = newMetric();
+    synchronized (globalMetric) {
+      snapshot.assign(globalMetric);
+    }
+    return snapshot;
   }
 
   @Override
   public void updateGlobal() {
     final T local = local(false);
-    T updated = newMetric(), global;
-    do {
-      global = globalMetric.get();
-      updated.assign(local);
-      updated.accumulate(global);
-    } while (!globalMetric.weakCompareAndSetVolatile(global, updated));
+    synchronized (globalMetric) {
+      globalMetric.accumulate(local);
+    }
+
+    int i = 0;
+    for (Metric<?, ?> metric : local.metrics()) {
+      final LongAdder counter = counters.get(i++);
+      if (counter != null) counter.add(((Number) metric.value()).longValue());
+    }
   }
 
   protected abstract T newMetric();
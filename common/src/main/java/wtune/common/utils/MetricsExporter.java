@@ -0,0 +1,74 @@
+package wtune.common.utils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Dumps a {@link MetricsRegistry} periodically into a directory, as "metrics.prom" (Prometheus
+ * text format, e.g., for node_exporter's textfile collector) and "metrics.json".
+ *
+ * <p>A dump is written to a temporary file and then moved over the old one, so readers never see
+ * a partial dump. The registry is dumped once more on close.
+ */
+public class MetricsExporter implements AutoCloseable {
+  private final MetricsRegistry registry;
+  private final Path promFile, jsonFile;
+  private final ScheduledExecutorService executor;
+
+  private MetricsExporter(MetricsRegistry registry, Path dir) {
+    this.registry = registry;
+    this.promFile = dir.resolve("metrics.prom");
+    this.jsonFile = dir.resolve("metrics.json");
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "metrics-exporter");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public static MetricsExporter start(MetricsRegistry registry, Path dir, long periodMillis)
+      throws IOException {
+    if (periodMillis <= 0) throw new IllegalArgumentException("invalid period: " + periodMillis);
+
+    Files.createDirectories(dir);
+    final MetricsExporter exporter = new MetricsExporter(registry, dir);
+    exporter.executor.scheduleAtFixedRate(
+        exporter::export, 0, periodMillis, TimeUnit.MILLISECONDS);
+    return exporter;
+  }
+
+  public synchronized void export() {
+    try {
+      dump(promFile, registry::writePrometheus);
+      dump(jsonFile, registry::writeJson);
+    } catch (IOException ex) {
+      // Don't let a full disk kill the run being watched.
+      System.err.println("failed to export metrics: " + ex);
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    export();
+  }
+
+  private static void dump(Path file, Consumer<PrintWriter> writer) throws IOException {
+    final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (final PrintWriter out = new PrintWriter(Files.newBufferedWriter(tmp))) {
+      writer.accept(out);
+    }
+    Files.move(tmp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,144 @@
+package wtune.common.utils;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Live metrics of the process, which can be inspected while a long run is going on.
+ *
+ * <p>Counters are {@link LongAdder}s, thus concurrent updates are striped rather than contended.
+ * Callers should look a metric up once and keep it, e.g., in a static field. Names follow the
+ * Prometheus convention. See {@link MetricsExporter} for dumping the registry periodically.
+ */
+public class MetricsRegistry {
+  private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+  private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_:][a-zA-Z0-9_:]*");
+  private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+  private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+  private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  public static MetricsRegistry global() {
+    return GLOBAL;
+  }
+
+  public LongAdder counter(String name) {
+    return counters.computeIfAbsent(checkName(name, counters), ignored -> new LongAdder());
+  }
+
+  public LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(
+        checkName(name, histograms), ignored -> new LatencyHistogram());
+  }
+
+  /** Registers a metric whose value is read on export. Replaces the previous one of the name. */
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(checkName(name, gauges), value);
+  }
+
+  public void writePrometheus(PrintWriter out) {
+    for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+      out.printf("# TYPE %s counter\n", e.getKey());
+      out.printf("%s %d\n", e.getKey(), e.getValue().sum());
+    }
+    for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet()) {
+      out.printf("# TYPE %s gauge\n", e.getKey());
+      out.printf("%s %d\n", e.getKey(), e.getValue().getAsLong());
+    }
+    for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+      final String name = e.getKey();
+      final LatencyHistogram.Snapshot snapshot = e.getValue().snapshot();
+      out.printf("# TYPE %s summary\n", name);
+      for (double quantile : QUANTILES)
+        out.printf("%s{quantile=\"%s\"} %d\n", name, quantile, snapshot.percentile(quantile));
+      out.printf("%s_sum %d\n", name, snapshot.sum());
+      out.printf("%s_count %d\n", name, snapshot.count());
+    }
+  }
+
+  public void writeJson(PrintWriter out) {
+    out.printf("{\"timestamp\":%d", System.currentTimeMillis());
+
+    out.print(",\"counters\":{");
+    String sep = "";
+    for (Map.Entry<String, LongAdder> e : new TreeMap<>(counters).entrySet()) {
+      out.printf("%s\"%s\":%d", sep, e.getKey(), e.getValue().sum());
+      sep = ",";
+    }
+    out.print('}');
+
+    out.print(",\"gauges\":{");
+    sep = "";
+    for (Map.Entry<String, LongSupplier> e : new TreeMap<>(gauges).entrySet()) {
+      out.printf("%s\"%s\":%d", sep, e.getKey(), e.getValue().getAsLong());
+      sep = ",";
+    }
+    out.print('}');
+
+    out.print(",\"histograms\":{");
+    sep = "";
+    for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+      final LatencyHistogram.Snapshot snapshot = e.getValue().snapshot();
+      out.printf(
+          Locale.ROOT,
+          "%s\"%s\":{\"count\":%d,\"sum\":%d,\"max\":%d,\"mean\":%.3f",
+          sep, e.getKey(), snapshot.count(), snapshot.sum(), snapshot.max(), snapshot.mean());
+      for (int i = 0; i < QUANTILES.length; ++i)
+        out.printf(",\"%s\":%d", QUANTILE_NAMES[i], snapshot.percentile(QUANTILES[i]));
+      out.print('}');
+      sep = ",";
+    }
+    out.println("}}");
+  }
+
+  /** Converts a display name, e.g., ("EnumerationMetric", "#CacheEq"), to a metric name. */
+  public static String metricName(String prefix, String name) {
+    final StringBuilder builder = new StringBuilder(prefix.length() + name.length() + 8);
+    appendSnakeCase(prefix, builder);
+    trimTrailingUnderscores(builder);
+    if (builder.length() > 0) builder.append('_');
+    appendSnakeCase(name, builder);
+    trimTrailingUnderscores(builder);
+    return builder.toString();
+  }
+
+  private static void trimTrailingUnderscores(StringBuilder builder) {
+    while (builder.length() > 0 && builder.charAt(builder.length() - 1) == '_')
+      builder.setLength(builder.length() - 1);
+  }
+
+  private static void appendSnakeCase(String str, StringBuilder builder) {
+    char prev = '_';
+    for (int i = 0, bound = str.length(); i < bound; ++i) {
+      final char c = str.charAt(i);
+      if (c < 128 && Character.isLetterOrDigit(c)) {
+        if (Character.isUpperCase(c) && (Character.isLowerCase(prev) || Character.isDigit(prev)))
+          builder.append('_');
+        builder.append(Character.toLowerCase(c));
+        prev = c;
+      } else if (prev != '_' && builder.length() > 0) {
+        builder.append('_');
+        prev = '_';
+      }
+    }
+  }
+
+  private String checkName(String name, Map<String, ?> owner) {
+    if (owner.containsKey(name)) return name;
+    if (!NAME_PATTERN.matcher(name).matches())
+      throw new IllegalArgumentException("invalid metric name: " + name);
+    if ((owner != counters && counters.containsKey(name))
+        || (owner != histograms && histograms.containsKey(name))
+        || (owner != gauges && gauges.containsKey(name)))
+      throw new IllegalArgumentException("duplicated metric name: " + name);
+    return name;
+  }
+}
@@ -0,0 +1,195 @@
+package wtune.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.common.utils.LatencyHistogram.*;
+
+public class LatencyHistogramTest {
+  private static final int SUB_BITS = 4;
+
+  @Test
+  void testBuckets() {
+    assertEquals(960, numBucketsOf(SUB_BITS));
+
+    // Values below 16 have their own buckets.
+    for (long value = 0; value < 16; ++value) {
+      final int bucket = bucketOf(SUB_BITS, value);
+      assertEquals(value, bucket);
+      assertEquals(value, lowerBoundOf(SUB_BITS, bucket));
+      assertEquals(value, upperBoundOf(SUB_BITS, bucket));
+    }
+
+    // [16, 32) is split into 16 buckets of width 1, [32, 64) into 16 of width 2, and so on.
+    assertEquals(16, bucketOf(SUB_BITS, 16));
+    assertEquals(31, bucketOf(SUB_BITS, 31));
+    assertEquals(32, bucketOf(SUB_BITS, 32));
+    assertEquals(32, bucketOf(SUB_BITS, 33));
+    assertEquals(47, bucketOf(SUB_BITS, 63));
+    assertEquals(48, bucketOf(SUB_BITS, 64));
+    assertEquals(33, lowerBoundOf(SUB_BITS, 32) + 1);
+    assertEquals(33, upperBoundOf(SUB_BITS, 32));
+    assertEquals(62, lowerBoundOf(SUB_BITS, 47));
+    assertEquals(63, upperBoundOf(SUB_BITS, 47));
+    assertEquals(64, lowerBoundOf(SUB_BITS, 48));
+    assertEquals(67, upperBoundOf(SUB_BITS, 48));
+  }
+
+  @Test
+  void testPowerOfTwoEdges() {
+    for (int exp = SUB_BITS; exp < Long.SIZE - 1; ++exp) {
+      final long edge = 1L << exp;
+      final int below = bucketOf(SUB_BITS, edge - 1), above = bucketOf(SUB_BITS, edge);
+      assertEquals(below + 1, above, "2^" + exp);
+      assertEquals(edge - 1, upperBoundOf(SUB_BITS, below), "2^" + exp);
+      assertEquals(edge, lowerBoundOf(SUB_BITS, above), "2^" + exp);
+    }
+  }
+
+  @Test
+  void testMaxValue() {
+    final int bucket = bucketOf(SUB_BITS, Long.MAX_VALUE);
+    assertEquals(numBucketsOf(SUB_BITS) - 1, bucket);
+    assertEquals(Long.MAX_VALUE, upperBoundOf(SUB_BITS, bucket));
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(Long.MAX_VALUE);
+    final Snapshot snapshot = histogram.snapshot();
+    assertEquals(1, snapshot.buckets()[bucket]);
+    assertEquals(Long.MAX_VALUE, snapshot.max());
+    assertEquals(Long.MAX_VALUE, snapshot.percentile(0.5));
+    assertEquals(Long.MAX_VALUE, snapshot.percentile(1.0));
+  }
+
+  // The buckets tile the whole range, each with a relative width of at most 2^-subBits.
+  @Test
+  void testBounds() {
+    for (int subBits : new int[] {1, SUB_BITS, 16}) {
+      final int numBuckets = numBucketsOf(subBits);
+      assertEquals(0, lowerBoundOf(subBits, 0));
+      assertEquals(Long.MAX_VALUE, upperBoundOf(subBits, numBuckets - 1));
+
+      for (int bucket = 0; bucket < numBuckets; ++bucket) {
+        final long lower = lowerBoundOf(subBits, bucket), upper = upperBoundOf(subBits, bucket);
+        assertEquals(bucket, bucketOf(subBits, lower));
+        assertEquals(bucket, bucketOf(subBits, upper));
+        assertTrue(upper - lower <= lower >>> subBits, "bucket " + bucket);
+        if (bucket + 1 < numBuckets) assertEquals(upper + 1, lowerBoundOf(subBits, bucket + 1));
+      }
+    }
+  }
+
+  @Test
+  void testPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long value = 1; value <= 100; ++value) histogram.record(value);
+
+    final Snapshot snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.count());
+    assertEquals(5050, snapshot.sum());
+    assertEquals(50.5, snapshot.mean());
+    assertEquals(1, snapshot.percentile(0));
+    assertEquals(51, snapshot.percentile(0.5)); // 50 is in [50, 51]
+    assertEquals(99, snapshot.percentile(0.99)); // 99 is in [96, 99]
+    assertEquals(100, snapshot.percentile(1.0)); // capped by the max, not 103
+  }
+
+  @Test
+  void testPercentilesWithOutlier() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; ++i) histogram.record(10);
+    histogram.record(1_000_000);
+
+    final Snapshot snapshot = histogram.snapshot();
+    assertEquals(10, snapshot.percentile(0.5));
+    assertEquals(10, snapshot.percentile(0.99));
+    assertEquals(1_000_000, snapshot.percentile(1.0));
+  }
+
+  @Test
+  void testZero() {
+    final Snapshot empty = new LatencyHistogram().snapshot();
+    assertEquals(0, empty.count());
+    assertEquals(0, empty.mean());
+    assertEquals(0, empty.percentile(0.5));
+
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(0);
+    histogram.record(-5); // recorded as 0
+    final Snapshot snapshot = histogram.snapshot();
+    assertEquals(2, snapshot.buckets()[0]);
+    assertEquals(0, snapshot.sum());
+    assertEquals(0, snapshot.percentile(1.0));
+
+    assertThrows(IllegalArgumentException.class, () -> snapshot.percentile(1.5));
+    assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(0));
+  }
+
+  @Test
+  void testEncode() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long value : new long[] {0, 3, 3, 40, 1_000_000, Long.MAX_VALUE >>> 1}) {
+      histogram.record(value);
+    }
+
+    final Snapshot snapshot = histogram.snapshot();
+    final String encoded = snapshot.encode();
+    assertEquals(
+        "4 6 %d %d 0:1,3:2,36:1,270:1,943:1".formatted(snapshot.sum(), Long.MAX_VALUE >>> 1),
+        encoded);
+
+    final Snapshot decoded = Snapshot.decode(encoded);
+    assertEquals(SUB_BITS, decoded.subBits());
+    assertArrayEquals(snapshot.buckets(), decoded.buckets());
+    assertEquals(snapshot.count(), decoded.count());
+    assertEquals(snapshot.sum(), decoded.sum());
+    assertEquals(snapshot.max(), decoded.max());
+    assertEquals(encoded, decoded.encode());
+
+    final Snapshot empty = Snapshot.decode(new LatencyHistogram(2).snapshot().encode());
+    assertEquals(2, empty.subBits());
+    assertEquals(numBucketsOf(2), empty.buckets().length);
+    assertEquals(0, empty.count());
+
+    assertThrows(IllegalArgumentException.class, () -> Snapshot.decode("4 1 1"));
+  }
+
+  @Test
+  void testMerge() {
+    final LatencyHistogram first = new LatencyHistogram(), second = new LatencyHistogram();
+    final LatencyHistogram all = new LatencyHistogram();
+    for (long value = 1; value <= 1000; ++value) {
+      (value % 3 == 0 ? first : second).record(value * 7);
+      all.record(value * 7);
+    }
+
+    final LatencyHistogram merged = new LatencyHistogram();
+    merged.merge(first.snapshot());
+    merged.merge(Snapshot.decode(second.snapshot().encode()));
+    assertEquals(all.snapshot().encode(), merged.snapshot().encode());
+    assertEquals(all.snapshot().percentile(0.99), merged.snapshot().percentile(0.99));
+
+    assertThrows(
+        IllegalArgumentException.class, () -> merged.merge(new LatencyHistogram(2).snapshot()));
+  }
+
+  @Test
+  void testRecordCorrected() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    // 5 queries should have been issued every 10 during the one of 55, which are back-filled.
+    histogram.recordCorrected(55, 10);
+
+    final LatencyHistogram expected = new LatencyHistogram();
+    for (long value : new long[] {55, 45, 35, 25, 15}) expected.record(value);
+    assertEquals(expected.snapshot().encode(), histogram.snapshot().encode());
+
+    // Nothing is back-filled if the value is shorter than twice the interval, or no interval.
+    final LatencyHistogram uncorrected = new LatencyHistogram();
+    uncorrected.recordCorrected(19, 10);
+    uncorrected.recordCorrected(100, 0);
+    uncorrected.recordCorrected(100, -1);
+    final Snapshot snapshot = uncorrected.snapshot();
+    assertEquals(3, snapshot.count());
+    assertEquals(219, snapshot.sum());
+  }
+}
@@ -0,0 +1,21 @@
+package wtune.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.common.utils.MetricsRegistry.metricName;
+
+public class MetricsRegistryTest {
+  @Test
+  void testMetricName() {
+    assertEquals("enumeration_metric_cache_eq", metricName("EnumerationMetric", "#CacheEq"));
+    assertEquals("enum_rule_num_pairs", metricName("EnumRule", "numPairs"));
+    assertEquals("cost_cache_p99_latency", metricName("cost-cache", "p99Latency"));
+    assertEquals("prover_z3_calls", metricName("prover", "Z3 calls"));
+    // Separators are never doubled, leading or trailing.
+    assertEquals("a_b", metricName("_A__", "  B ?"));
+    assertEquals("calls", metricName("", "calls"));
+    assertEquals("prover", metricName("prover", "#"));
+    assertEquals("", metricName("", ""));
+  }
+}
@@ -9,6 +9,7 @@ import wtune.sql.schema.Schema;
 import wtune.sql.schema.SchemaSupport;
 import wtune.superopt.optimizer.OptimizationStep;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.superopt.profiler.Profiler;
 import wtune.superopt.substitution.SubstitutionBank;
 
@@ -25,11 +26,9 @@ public class OptimizeSQLSupport {
   private static final String CANNOT_OPTIMIZE_MSG = "This SQL cannot be further optimized.";
   private static final String OPT_SQL_PARSE_ERR_MSG = "Error in parsing optimized SQL query.";
   private static final Integer TIME_OUT_MS = Integer.MAX_VALUE;
-
-  static {
-    addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
-    addOptimizerTweaks(TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
-  }
+  private static final OptimizerConfig OPTIMIZER_CONFIG =
+      new OptimizerConfig(
+          TWEAK_ENABLE_EXTENSIONS | TWEAK_SORT_FILTERS_BEFORE_OUTPUT | TWEAK_PARALLEL_MATCH);
 
   /** Rewrite a SQL and return all rewritten SQLs */
   public static OptimizeStat optimizeSQL(
@@ -45,7 +44,7 @@ public class OptimizeSQLSupport {
     if (plan == null) return OptimizeStat.fail(rawSql, SQL_PARSE_ERR_MSG);
 
     // Rewrite this SQL, output multiple SQLs
-    final Optimizer optimizer = Optimizer.mk(rules);
+    final Optimizer optimizer = Optimizer.mk(rules, OPTIMIZER_CONFIG);
     optimizer.setTimeout(TIME_OUT_MS);
     optimizer.setTracing(true);
 
@@ -78,7 +77,7 @@ public class OptimizeSQLSupport {
     if (plan == null) return OptimizeStat.fail(rawSql, SQL_PARSE_ERR_MSG);
 
     // Rewrite this SQL, output multiple SQLs
-    final Optimizer optimizer = Optimizer.mk(rules);
+    final Optimizer optimizer = Optimizer.mk(rules, OPTIMIZER_CONFIG);
     optimizer.setTimeout(TIME_OUT_MS);
     optimizer.setTracing(true);
 
@@ -4,7 +4,7 @@ import org.antlr.v4.runtime.misc.ParseCancellationException;
 import wtune.common.field.FieldKey;
 import wtune.common.tree.LabeledTreeFields;
 import wtune.sql.ast.constants.*;
-import wtune.sql.parser.AstParser;
+import wtune.sql.parser.ParseCache;
 import wtune.sql.util.SqlCopier;
 import wtune.sql.ast.*;
 
@@ -28,7 +28,7 @@ public abstract class SqlSupport {
 
   public static SqlNode parseSql(String dbType, String sql) {
     try {
-      return AstParser.ofDb(dbType).parse(sql);
+      return ParseCache.instance().parse(dbType, sql);
     } catch (ParseCancellationException ex) {
       if (!PARSING_ERROR_MUTED) System.err.println(ex.getMessage());
       return null;
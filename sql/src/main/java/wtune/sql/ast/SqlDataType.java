@@ -15,6 +15,8 @@ public interface SqlDataType {
 
   boolean unsigned();
 
+  String intervalField();
+
   List<String> valuesList();
 
   boolean isArray();
@@ -1,19 +1,20 @@
 package wtune.sql.mysql;
 
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.ParserRuleContext;
 import wtune.common.datasource.DbSupport;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.mysql.internal.MySQLLexer;
 import wtune.sql.mysql.internal.MySQLParser;
 import wtune.sql.parser.AstParser;
-import wtune.sql.parser.ThrowingErrorListener;
+import wtune.sql.parser.ParsePipeline;
 
 import java.util.Properties;
 import java.util.function.Function;
 
 public class MySQLAstParser implements AstParser {
+  private static final ThreadLocal<ParsePipeline<MySQLLexer, MySQLParser>> PIPELINES =
+      ThreadLocal.withInitial(() -> new ParsePipeline<>(MySQLLexer::new, MySQLParser::new));
+
   private long serverVersion = 0;
   private int sqlMode = MySQLRecognizerCommon.NoMode;
 
@@ -26,22 +27,14 @@ public class MySQLAstParser implements AstParser {
   }
 
   public SqlNode parse(String str, Function<MySQLParser, ParserRuleContext> rule) {
-    final MySQLLexer lexer = new MySQLLexer(CharStreams.fromString(str));
-    lexer.setServerVersion(serverVersion);
-    lexer.setSqlMode(sqlMode);
-    if (str.contains("OVER (")) lexer.setServerVersion(Integer.MAX_VALUE);
-
-      final MySQLParser parser = new MySQLParser(new CommonTokenStream(lexer));
-    parser.setServerVersion(serverVersion);
-    parser.setSqlMode(sqlMode);
-    if (str.contains("OVER (")) parser.setServerVersion(Integer.MAX_VALUE);
-
-    lexer.removeErrorListeners();
-    lexer.addErrorListener(ThrowingErrorListener.instance());
-    parser.removeErrorListeners();
-    parser.addErrorListener(ThrowingErrorListener.instance());
-
-    return rule.apply(parser).accept(new MySQLAstBuilder());
+    final long serverVersion = str.contains("OVER (") ? Integer.MAX_VALUE : this.serverVersion;
+    final ParsePipeline<MySQLLexer, MySQLParser> pipeline = PIPELINES.get();
+    pipeline.lexer().setServerVersion(serverVersion);
+    pipeline.lexer().setSqlMode(sqlMode);
+    pipeline.parser().setServerVersion(serverVersion);
+    pipeline.parser().setSqlMode(sqlMode);
+
+    return pipeline.parse(str, rule).accept(new MySQLAstBuilder());
   }
 
   @Override
@@ -33,6 +33,7 @@ public abstract class MySQLBaseLexer extends Lexer implements MySQLRecognizerCom
   @Override
   public void reset() {
     inVersionComment = false;
+    _pendingTokens.clear();
     super.reset();
   }
 
@@ -0,0 +1,316 @@
+package wtune.sql.parser;
+
+import com.google.common.hash.Hashing;
+import wtune.sql.ast.SqlContext;
+import wtune.sql.ast.SqlNode;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.common.datasource.DbSupport.PostgreSQL;
+
+/**
+ * Memoizes parsed ASTs by the digest of the db type and the normalized SQL text.
+ *
+ * <p>ASTs are kept in their binary form (see {@link SqlNodeCodec}), and each lookup decodes a
+ * fresh AST, since callers are free to mutate it. The in-memory tier is an LRU. If opened with a
+ * file, the encodings are also appended to it and loaded back by later processes, so that a
+ * statement is parsed once across runs. The file is discarded if the AST schema or the key
+ * derivation has changed.
+ *
+ * <p>The default instance is backed by the file named by system property "wetune.parse_cache",
+ * if any. Property "wetune.parse_cache_size" is the capacity, and 0 disables the cache.
+ */
+public class ParseCache {
+  private static final int MAGIC = 0x57545043; // "WTPC"
+  private static final int KEY_VERSION = 2; // bumped whenever normalize() changes
+  private static final int HEADER_SIZE = 3 * Integer.BYTES;
+  private static final int NO_ESCAPE = 0, ESCAPE = 1, AMBIGUOUS_ESCAPE = 2; // of backslashes
+  private static final int DEFAULT_CAPACITY =
+      Integer.getInteger("wetune.parse_cache_size", 65536);
+  private static volatile ParseCache INSTANCE = mkDefault();
+
+  private final int capacity;
+  private final Map<String, byte[]> asts;
+  private final Path file;
+  private long numHits, numMisses;
+
+  private ParseCache(int capacity, Path file) {
+    this.capacity = capacity;
+    this.file = file;
+    this.asts =
+        new LinkedHashMap<>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  public static ParseCache mk(int capacity) {
+    return new ParseCache(capacity, null);
+  }
+
+  public static ParseCache open(Path file) throws IOException {
+    final ParseCache cache = new ParseCache(DEFAULT_CAPACITY, file);
+    try (final FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+      final FileLock lock = channel.lock();
+      try {
+        if (!cache.load(channel)) {
+          final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+          header.putInt(MAGIC).putInt(SqlNodeCodec.SCHEMA_VERSION).putInt(KEY_VERSION).flip();
+          channel.truncate(0);
+          channel.write(header, 0);
+        }
+      } finally {
+        lock.release();
+      }
+    }
+    return cache;
+  }
+
+  public static ParseCache instance() {
+    return INSTANCE;
+  }
+
+  public static void install(ParseCache cache) {
+    INSTANCE = cache;
+  }
+
+  private static ParseCache mkDefault() {
+    final String file = System.getProperty("wetune.parse_cache");
+    if (file == null || DEFAULT_CAPACITY <= 0) return mk(DEFAULT_CAPACITY);
+    try {
+      return open(Paths.get(file));
+    } catch (IOException ex) {
+      System.err.println("failed to open parse cache " + file + ": " + ex);
+      return mk(DEFAULT_CAPACITY);
+    }
+  }
+
+  /**
+   * Parses the SQL, or decodes the AST memoized for it.
+   *
+   * @throws org.antlr.v4.runtime.misc.ParseCancellationException if the SQL is malformed
+   */
+  public SqlNode parse(String dbType, String sql) {
+    if (capacity <= 0) return AstParser.ofDb(dbType).parse(sql);
+
+    final String key = keyOf(dbType, sql);
+    final byte[] bytes = get(key);
+    if (bytes != null) {
+      final SqlNode ast = SqlNodeCodec.decode(bytes, SqlContext.mk(32));
+      ast.context().setDbType(dbType);
+      return ast;
+    }
+
+    final SqlNode ast = AstParser.ofDb(dbType).parse(sql);
+    if (ast != null) {
+      final byte[] encoded = SqlNodeCodec.encode(ast);
+      if (encoded != null) put(key, encoded);
+    }
+    return ast;
+  }
+
+  public synchronized int size() {
+    return asts.size();
+  }
+
+  public synchronized String stats() {
+    return "size=%d, hits=%d, misses=%d".formatted(asts.size(), numHits, numMisses);
+  }
+
+  private synchronized byte[] get(String key) {
+    final byte[] bytes = asts.get(key);
+    if (bytes == null) ++numMisses;
+    else ++numHits;
+    return bytes;
+  }
+
+  private void put(String key, byte[] bytes) {
+    synchronized (this) {
+      if (asts.put(key, bytes) != null) return;
+    }
+    if (file != null) append(key, bytes);
+  }
+
+  // Returns false if the file is empty or of another format/schema.
+  private boolean load(FileChannel channel) throws IOException {
+    if (channel.size() < HEADER_SIZE) return false;
+
+    // Not closed: that would close the channel.
+    final DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    if (in.readInt() != MAGIC
+        || in.readInt() != SqlNodeCodec.SCHEMA_VERSION
+        || in.readInt() != KEY_VERSION) return false;
+
+    try {
+      while (true) {
+        final String key = in.readUTF();
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        asts.put(key, bytes);
+      }
+    } catch (EOFException ignored) {
+      // The last record may be incomplete if a writer was killed. Just skip it.
+    }
+    return true;
+  }
+
+  private void append(String key, byte[] bytes) {
+    final ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 80);
+    try (final DataOutputStream out = new DataOutputStream(record)) {
+      out.writeUTF(key);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+
+    // One write per record under the file lock, so that records of processes don't interleave.
+    try (final FileOutputStream os = new FileOutputStream(file.toFile(), true)) {
+      final FileLock lock = os.getChannel().lock();
+      try {
+        record.writeTo(os);
+      } finally {
+        lock.release();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  static String keyOf(String dbType, String sql) {
+    return Hashing.sha256().hashString(dbType + '\0' + normalize(dbType, sql), UTF_8).toString();
+  }
+
+  // Trims the SQL and collapses the whitespaces outside literals, quoted identifiers and comments,
+  // which are kept verbatim. A run of whitespaces that contains a line break is collapsed into
+  // '\n' rather than ' ', since it may end a comment.
+  //
+  // Where a literal ends may depend on the server's settings: a backslash in a MySQL string escapes
+  // unless NO_BACKSLASH_ESCAPES, and one in a PostgreSQL '' string escapes unless
+  // standard_conforming_strings. Once such a backslash is met, the rest is kept verbatim, so that
+  // different statements never share a key. SQL of other dbs is only trimmed.
+  static String normalize(String dbType, String sql) {
+    final boolean mysql = MySQL.equals(dbType);
+    if (!mysql && !PostgreSQL.equals(dbType)) return sql.trim();
+
+    final StringBuilder builder = new StringBuilder(sql.length());
+    char space = 0;
+    for (int i = 0, bound = sql.length(); i < bound; ) {
+      final char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        if (space != '\n') space = (c == '\n' || c == '\r') ? '\n' : ' ';
+        ++i;
+        continue;
+      }
+      if (space != 0 && builder.length() > 0) builder.append(space);
+      space = 0;
+
+      final int end = mysql ? mySQLTokenEnd(sql, i) : pgTokenEnd(sql, i);
+      builder.append(sql, i, end);
+      i = end;
+    }
+    return builder.toString();
+  }
+
+  // Returns the end of the literal, quoted identifier or comment starting at i, or i + 1.
+  private static int mySQLTokenEnd(String sql, int i) {
+    final char c = sql.charAt(i);
+    final char next = i + 1 < sql.length() ? sql.charAt(i + 1) : 0;
+    if (c == '\'' || c == '"') return quotedEnd(sql, i, c, AMBIGUOUS_ESCAPE);
+    if (c == '`') return quotedEnd(sql, i, c, NO_ESCAPE);
+    if (c == '#') return lineCommentEnd(sql, i);
+    // "--" starts a comment only if followed by a whitespace or a control character.
+    if (c == '-' && next == '-' && (i + 2 >= sql.length() || sql.charAt(i + 2) <= ' '))
+      return lineCommentEnd(sql, i);
+    if (c == '/' && next == '*') {
+      final int end = sql.indexOf("*/", i + 2);
+      return end < 0 ? sql.length() : end + 2;
+    }
+    return i + 1;
+  }
+
+  private static int pgTokenEnd(String sql, int i) {
+    final char c = sql.charAt(i);
+    final char next = i + 1 < sql.length() ? sql.charAt(i + 1) : 0;
+    if (c == '\'')
+      return quotedEnd(sql, i, c, isEscapeString(sql, i) ? ESCAPE : AMBIGUOUS_ESCAPE);
+    if (c == '"') return quotedEnd(sql, i, c, NO_ESCAPE);
+    if (c == '-' && next == '-') return lineCommentEnd(sql, i);
+    if (c == '/' && next == '*') return pgBlockCommentEnd(sql, i);
+    if (c == '$' && (i == 0 || !isPgIdentifierChar(sql.charAt(i - 1))))
+      return dollarQuotedEnd(sql, i);
+    return i + 1;
+  }
+
+  private static int quotedEnd(String sql, int i, char quote, int backslash) {
+    for (int j = i + 1, bound = sql.length(); j < bound; ++j) {
+      final char c = sql.charAt(j);
+      if (c == '\\' && backslash == AMBIGUOUS_ESCAPE) return bound;
+      if (c == '\\' && backslash == ESCAPE) ++j;
+      else if (c == quote) {
+        if (j + 1 < bound && sql.charAt(j + 1) == quote) ++j; // doubled quote
+        else return j + 1;
+      }
+    }
+    return sql.length();
+  }
+
+  private static int lineCommentEnd(String sql, int i) {
+    final int end = sql.indexOf('\n', i);
+    return end < 0 ? sql.length() : end + 1;
+  }
+
+  // Block comments nest in PostgreSQL.
+  private static int pgBlockCommentEnd(String sql, int i) {
+    int depth = 0;
+    for (int j = i, bound = sql.length(); j + 1 < bound; ++j) {
+      final char c = sql.charAt(j), next = sql.charAt(j + 1);
+      if (c == '/' && next == '*') {
+        ++depth;
+        ++j;
+      } else if (c == '*' && next == '/') {
+        ++j;
+        if (--depth == 0) return j + 1;
+      }
+    }
+    return sql.length();
+  }
+
+  // E'...' (or e'...'), in which backslashes always escape.
+  private static boolean isEscapeString(String sql, int i) {
+    if (i == 0 || (sql.charAt(i - 1) != 'E' && sql.charAt(i - 1) != 'e')) return false;
+    return i == 1 || !isPgIdentifierChar(sql.charAt(i - 2));
+  }
+
+  // $tag$...$tag$, where the tag is empty or an identifier without '$'. Otherwise, e.g. "$1", the
+  // '$' is not a quote.
+  private static int dollarQuotedEnd(String sql, int i) {
+    int j = i + 1;
+    final int bound = sql.length();
+    if (j < bound && Character.isDigit(sql.charAt(j))) return i + 1;
+    while (j < bound && sql.charAt(j) != '$' && isPgIdentifierChar(sql.charAt(j))) ++j;
+    if (j >= bound || sql.charAt(j) != '$') return i + 1;
+
+    final String tag = sql.substring(i, j + 1);
+    final int end = sql.indexOf(tag, j + 1);
+    return end < 0 ? bound : end + tag.length();
+  }
+
+  private static boolean isPgIdentifierChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+}
@@ -0,0 +1,72 @@
+package wtune.sql.parser;
+
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.function.Function;
+
+/**
+ * A lexer and a parser that are reused across statements.
+ *
+ * <p>A statement is parsed in SLL mode first, and re-parsed in LL mode only if SLL fails. SLL is
+ * much faster, and yields the same tree whenever it succeeds. The DFA cache is static in the
+ * generated recognizers, thus is shared by all pipelines and warmed up as parsing goes on.
+ *
+ * <p>Not thread-safe. Keep one pipeline per thread.
+ */
+public class ParsePipeline<L extends Lexer, P extends Parser> {
+  private final L lexer;
+  private final CommonTokenStream tokens;
+  private final P parser;
+  private final ANTLRErrorStrategy bail, recover;
+  private long numFallbacks;
+
+  public ParsePipeline(Function<CharStream, L> mkLexer, Function<TokenStream, P> mkParser) {
+    this.lexer = mkLexer.apply(CharStreams.fromString(""));
+    this.tokens = new CommonTokenStream(lexer);
+    this.parser = mkParser.apply(tokens);
+    this.bail = new BailErrorStrategy();
+    this.recover = new DefaultErrorStrategy();
+
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(ThrowingErrorListener.instance());
+    parser.removeErrorListeners();
+    parser.addErrorListener(ThrowingErrorListener.instance());
+  }
+
+  public L lexer() {
+    return lexer;
+  }
+
+  public P parser() {
+    return parser;
+  }
+
+  public long numFallbacks() {
+    return numFallbacks;
+  }
+
+  public ParserRuleContext parse(String str, Function<P, ParserRuleContext> rule) {
+    reset(str);
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    parser.setErrorHandler(bail);
+    try {
+      return rule.apply(parser);
+    } catch (ParseCancellationException ex) {
+      ++numFallbacks;
+    }
+
+    // The lexer may have failed halfway, so start over from lexing.
+    reset(str);
+    parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    parser.setErrorHandler(recover);
+    return rule.apply(parser);
+  }
+
+  private void reset(String str) {
+    lexer.setInputStream(CharStreams.fromString(str));
+    tokens.setTokenSource(lexer);
+    parser.setTokenStream(tokens);
+  }
+}
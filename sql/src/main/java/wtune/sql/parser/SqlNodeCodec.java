@@ -0,0 +1,313 @@
+package wtune.sql.parser;
+
+import wtune.common.field.FieldKey;
+import wtune.sql.ast.*;
+import wtune.sql.ast.constants.Category;
+import wtune.sql.mysql.internal.MySQLLexer;
+import wtune.sql.mysql.internal.MySQLParser;
+import wtune.sql.pg.internal.PGLexer;
+import wtune.sql.pg.internal.PGParser;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Binary form of ASTs, used by {@link ParseCache}.
+ *
+ * <p>A node is written as its kind (plus the expr/table-source kind), followed by its fields. A
+ * field is identified by its index in the field registry, which is built from {@link
+ * SqlKind#fields()}, {@link ExprKind#fields()} and {@link TableSourceKind#fields()}. Enum values
+ * in the fields are written by their names.
+ *
+ * <p>{@link #SCHEMA_VERSION} changes whenever the registry, the constants of the kinds, the
+ * grammars or {@link #BUILDER_VERSION} does, so stale encodings can be detected.
+ */
+class SqlNodeCodec {
+  private static final List<FieldKey<?>> FIELDS = new ArrayList<>(256);
+  private static final Map<FieldKey<?>, Integer> FIELD_IDS = new IdentityHashMap<>(256);
+  private static final int BUILDER_VERSION = 1; // bumped whenever the AST builders change
+  static final int SCHEMA_VERSION;
+
+  private static final byte NULL = 0, NODE = 1, NODES = 2, STRING = 3, BOOL = 4, INT = 5;
+  private static final byte LONG = 6, DOUBLE = 7, FLOAT = 8, BIG_INT = 9, BIG_DECIMAL = 10;
+  private static final byte ENUM = 11, ENUM_SET = 12, LIST = 13, DATA_TYPE = 14;
+
+  static {
+    // Make sure all the fields are registered to their domains.
+    Objects.requireNonNull(SqlNodeFields.Expr_Kind);
+    Objects.requireNonNull(ExprFields.Literal_Value);
+    Objects.requireNonNull(TableSourceFields.Simple_Table);
+
+    final StringBuilder names = new StringBuilder();
+    registerFields(SqlKind.values(), 'S', names);
+    registerFields(ExprKind.values(), 'E', names);
+    registerFields(TableSourceKind.values(), 'T', names);
+    // The kinds are written by their ordinals.
+    for (Enum<?> kind : SqlKind.values()) names.append(kind.name()).append(';');
+    for (Enum<?> kind : ExprKind.values()) names.append(kind.name()).append(';');
+    for (Enum<?> kind : TableSourceKind.values()) names.append(kind.name()).append(';');
+    SCHEMA_VERSION = Objects.hash(names.toString(), BUILDER_VERSION, grammarVersion());
+  }
+
+  // Changes whenever any of the grammars does.
+  private static int grammarVersion() {
+    return Objects.hash(
+        MySQLLexer._serializedATN,
+        MySQLParser._serializedATN,
+        PGLexer._serializedATN,
+        PGParser._serializedATN);
+  }
+
+  private static void registerFields(FieldDomain[] domains, char prefix, StringBuilder names) {
+    for (FieldDomain domain : domains)
+      for (FieldKey<?> field : domain.fields()) {
+        FIELD_IDS.put(field, FIELDS.size());
+        FIELDS.add(field);
+        names.append(prefix).append(field.name()).append(';');
+      }
+  }
+
+  /** Returns null if the AST contains a value that cannot be encoded. */
+  static byte[] encode(SqlNode node) {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    try (final DataOutputStream out = new DataOutputStream(bytes)) {
+      writeNode(out, node);
+    } catch (IOException | UnsupportedOperationException ex) {
+      return null;
+    }
+    return bytes.toByteArray();
+  }
+
+  static SqlNode decode(byte[] bytes, SqlContext ctx) {
+    try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      return readNode(in, ctx);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static void writeNode(DataOutputStream out, SqlNode node) throws IOException {
+    final SqlKind kind = node.kind();
+    out.writeByte(kind.ordinal());
+    if (kind == SqlKind.Expr) out.writeByte(node.$(SqlNodeFields.Expr_Kind).ordinal());
+    if (kind == SqlKind.TableSource)
+      out.writeByte(node.$(SqlNodeFields.TableSource_Kind).ordinal());
+
+    final List<Map.Entry<FieldKey<?>, Object>> entries = new ArrayList<>(node.size());
+    for (Map.Entry<FieldKey<?>, Object> entry : node.entrySet()) {
+      final FieldKey<?> key = entry.getKey();
+      if (key != SqlNodeFields.Expr_Kind && key != SqlNodeFields.TableSource_Kind)
+        entries.add(entry);
+    }
+
+    out.writeShort(entries.size());
+    for (Map.Entry<FieldKey<?>, Object> entry : entries) {
+      final Integer fieldId = FIELD_IDS.get(entry.getKey());
+      if (fieldId == null) throw new UnsupportedOperationException(entry.getKey().name());
+      out.writeShort(fieldId);
+      writeValue(out, entry.getValue());
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static SqlNode readNode(DataInputStream in, SqlContext ctx) throws IOException {
+    final SqlKind kind = SqlKind.values()[in.readByte()];
+    final SqlNode node;
+    if (kind == SqlKind.Expr) node = SqlNode.mk(ctx, ExprKind.values()[in.readByte()]);
+    else if (kind == SqlKind.TableSource)
+      node = SqlNode.mk(ctx, TableSourceKind.values()[in.readByte()]);
+    else node = SqlNode.mk(ctx, kind);
+
+    for (int i = 0, bound = in.readShort(); i < bound; ++i) {
+      final FieldKey<Object> field = (FieldKey<Object>) FIELDS.get(in.readShort());
+      ctx.setFieldOf(node.nodeId(), field, readValue(in, ctx));
+    }
+    return node;
+  }
+
+  private static void writeValue(DataOutputStream out, Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+
+    } else if (value instanceof SqlNode) {
+      out.writeByte(NODE);
+      writeNode(out, (SqlNode) value);
+
+    } else if (value instanceof SqlNodes) {
+      final SqlNodes nodes = (SqlNodes) value;
+      out.writeByte(NODES);
+      out.writeInt(nodes.size());
+      for (SqlNode node : nodes) writeNode(out, node);
+
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOL);
+      out.writeBoolean((Boolean) value);
+
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+
+    } else if (value instanceof BigInteger) {
+      out.writeByte(BIG_INT);
+      writeString(out, value.toString());
+
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(BIG_DECIMAL);
+      writeString(out, value.toString());
+
+    } else if (value instanceof Enum) {
+      final Enum<?> e = (Enum<?>) value;
+      out.writeByte(ENUM);
+      writeString(out, e.getDeclaringClass().getName());
+      writeString(out, e.name());
+
+    } else if (value instanceof EnumSet) {
+      final EnumSet<?> set = (EnumSet<?>) value;
+      final EnumSet<?> witness = set.isEmpty() ? EnumSet.complementOf(set) : set;
+      if (witness.isEmpty()) throw new UnsupportedOperationException("empty enum");
+
+      out.writeByte(ENUM_SET);
+      writeString(out, witness.iterator().next().getDeclaringClass().getName());
+      out.writeShort(set.size());
+      for (Enum<?> e : set) writeString(out, e.name());
+
+    } else if (value instanceof List) {
+      final List<?> list = (List<?>) value;
+      out.writeByte(LIST);
+      out.writeInt(list.size());
+      for (Object element : list) writeValue(out, element);
+
+    } else if (value instanceof SqlDataType) {
+      final SqlDataType type = (SqlDataType) value;
+      out.writeByte(DATA_TYPE);
+      writeString(out, type.category().name());
+      writeValue(out, type.name());
+      out.writeInt(type.width());
+      out.writeInt(type.precision());
+      out.writeBoolean(type.unsigned());
+      writeValue(out, type.intervalField());
+      writeValue(out, type.valuesList());
+      out.writeInt(type.dimensions().length);
+      for (int dimension : type.dimensions()) out.writeInt(dimension);
+
+    } else {
+      throw new UnsupportedOperationException(value.getClass().getName());
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object readValue(DataInputStream in, SqlContext ctx) throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case NODE:
+        return readNode(in, ctx);
+      case NODES:
+        {
+          final int size = in.readInt();
+          final List<SqlNode> nodes = new ArrayList<>(size);
+          for (int i = 0; i < size; ++i) nodes.add(readNode(in, ctx));
+          return SqlNodes.mk(ctx, nodes);
+        }
+      case STRING:
+        return readString(in);
+      case BOOL:
+        return in.readBoolean();
+      case INT:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case BIG_INT:
+        return new BigInteger(readString(in));
+      case BIG_DECIMAL:
+        return new BigDecimal(readString(in));
+      case ENUM:
+        return enumOf((Class) enumClassOf(readString(in)), readString(in));
+      case ENUM_SET:
+        {
+          final Class<? extends Enum> clazz = enumClassOf(readString(in));
+          final EnumSet set = EnumSet.noneOf(clazz);
+          for (int i = 0, bound = in.readShort(); i < bound; ++i)
+            set.add(enumOf(clazz, readString(in)));
+          return set;
+        }
+      case LIST:
+        {
+          final int size = in.readInt();
+          final List<Object> list = new ArrayList<>(size);
+          for (int i = 0; i < size; ++i) list.add(readValue(in, ctx));
+          return list;
+        }
+      case DATA_TYPE:
+        {
+          final Category category = enumOf(Category.class, readString(in));
+          final String name = (String) readValue(in, ctx);
+          final int width = in.readInt(), precision = in.readInt();
+          final SqlDataType type = SqlDataType.mk(category, name, width, precision);
+          type.setUnsigned(in.readBoolean());
+          type.setIntervalField((String) readValue(in, ctx));
+          type.setValuesList((List<String>) readValue(in, ctx));
+          final int[] dimensions = new int[in.readInt()];
+          for (int i = 0; i < dimensions.length; ++i) dimensions[i] = in.readInt();
+          type.setDimensions(dimensions);
+          return type;
+        }
+      default:
+        throw new IOException("malformed AST encoding: unknown tag " + tag);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Class<? extends Enum<?>> enumClassOf(String name) throws IOException {
+    try {
+      return (Class<? extends Enum<?>>) Class.forName(name);
+    } catch (ClassNotFoundException ex) {
+      throw new IOException(ex);
+    }
+  }
+
+  private static <E extends Enum<E>> E enumOf(Class<E> clazz, String name) throws IOException {
+    try {
+      return Enum.valueOf(clazz, name);
+    } catch (IllegalArgumentException ex) {
+      throw new IOException("malformed AST encoding: unknown constant " + name, ex);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String str) throws IOException {
+    final byte[] bytes = str.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+}
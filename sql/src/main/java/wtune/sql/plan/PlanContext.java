@@ -16,6 +16,14 @@ public interface PlanContext extends UniformTreeContext<PlanKind> {
 
   InfoCache infoCache();
 
+  /**
+   * Returns a copy sharing the nodes with this plan. Either plan can be modified afterwards without
+   * affecting the other.
+   *
+   * <p>Note that copying modifies this plan as well: it gives up the ownership of the nodes shared,
+   * so that its subsequent modifications copy them first. Thus, a plan must not be copied
+   * concurrently, nor while being read by another thread.
+   */
   PlanContext copy();
 
   @Override
@@ -4,34 +4,53 @@ import gnu.trove.map.TObjectIntMap;
 import gnu.trove.map.custom_hash.TObjectIntCustomHashMap;
 import gnu.trove.strategy.IdentityHashingStrategy;
 import wtune.common.tree.UniformTreeContextBase;
-import wtune.common.utils.COW;
 import wtune.sql.schema.Schema;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import static wtune.common.tree.TreeSupport.checkNodePresent;
 
+/**
+ * Plans are copied by structural sharing: a copy shares the nodes and the node bindings with the
+ * original, and a node is copied only when either plan modifies it (see {@link #ndForWrite(int)}).
+ * Thus a copy costs one array copy, regardless of the number of the nodes.
+ *
+ * <p>Since copying changes the ownership of the original plan, a plan must not be copied
+ * concurrently.
+ */
 class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanContext {
+  static final int MAX_REG_DEPTH = 8;
+
   private int root;
   private final Schema schema;
-  private final COW<TObjectIntMap<PlanNode>> nodeReg;
+  private NodeReg nodeReg;
+  private Object version; // nodes tagged with it are owned by this plan
   private final ValuesRegistryImpl valuesReg;
   private final InfoCacheImpl infoCache;
 
   protected PlanContextImpl(int root, int expectedNumNodes, Schema schema) {
     super(new PlanNd[(expectedNumNodes <= 0 ? 16 : expectedNumNodes) + 1], 2);
     this.schema = schema;
-    this.nodeReg = new COW<>(mkIdentityMap(), null);
+    this.nodeReg = new NodeReg(null);
+    this.version = new Object();
     this.valuesReg = new ValuesRegistryImpl(this);
     this.infoCache = new InfoCacheImpl();
   }
 
   private PlanContextImpl(PlanContextImpl other) {
-    super(copyNodesArray((PlanNd[]) other.nodes), 2);
+    super(((PlanNd[]) other.nodes).clone(), 2);
     this.root = other.root;
     this.maxNodeId = other.maxNodeId;
     this.schema = other.schema;
-    this.nodeReg = new COW<>(other.nodeReg.forRead(), PlanContextImpl::copyIdentityMap);
+    this.nodeReg = other.nodeReg.fork();
+    this.version = new Object();
     this.valuesReg = new ValuesRegistryImpl(other.valuesReg, this);
     this.infoCache = new InfoCacheImpl(other.infoCache);
+
+    // The nodes and the bindings are shared from now on, so `other` no longer owns them either.
+    if (!other.nodeReg.isEmpty()) other.nodeReg = other.nodeReg.fork();
+    other.version = new Object();
   }
 
   @Override
@@ -58,20 +77,19 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
 
   @Override
   public int nodeIdOf(PlanNode node) {
-    return nodeReg.forRead().get(node);
+    return nodeReg.get(node);
   }
 
   @Override
   public int bindNode(PlanNode node) {
     final int newNodeId = mkNode(node.kind());
     ((PlanNd) nodes[newNodeId]).planNode = node;
-    nodeReg.forWrite().put(node, newNodeId);
+    nodeReg.put(node, newNodeId);
     return newNodeId;
   }
 
   @Override
   public void deleteNode(int nodeId) {
-    nodeReg.forWrite().remove(nodeId);
     valuesReg.deleteNode(nodeId);
     infoCache.deleteNode(nodeId);
     super.deleteNode(nodeId);
@@ -85,7 +103,7 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
 
   @Override
   protected void relocate(int from, int to) {
-    nodeReg.forWrite().put(nodeAt(from), to);
+    nodeReg.put(nodeAt(from), to);
     valuesReg.deleteNode(to);
     valuesReg.relocateNode(from, to);
     infoCache.deleteNode(to);
@@ -111,7 +129,17 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
 
   @Override
   protected Nd<PlanKind> mk(PlanKind planKind) {
-    return new PlanNd(planKind);
+    return new PlanNd(planKind, version);
+  }
+
+  @Override
+  protected Nd<PlanKind> ndForWrite(int nodeId) {
+    final PlanNd nd = (PlanNd) nodes[nodeId];
+    if (nd.owner == version) return nd;
+
+    final PlanNd copied = new PlanNd(nd, version);
+    nodes[nodeId] = copied;
+    return copied;
   }
 
   @Override
@@ -123,28 +151,69 @@ class PlanContextImpl extends UniformTreeContextBase<PlanKind> implements PlanCo
     return new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE);
   }
 
-  private static <K> TObjectIntMap<K> copyIdentityMap(TObjectIntMap<K> other) {
-    return new TObjectIntCustomHashMap<>(IdentityHashingStrategy.INSTANCE, other);
-  }
-
-  private static PlanNd[] copyNodesArray(PlanNd[] nds) {
-    final PlanNd[] copiedNodes = new PlanNd[nds.length];
-    for (int i = 0; i < nds.length; i++) {
-      if (nds[i] != null) copiedNodes[i] = new PlanNd(nds[i]);
-    }
-    return copiedNodes;
-  }
-
   private static class PlanNd extends Nd<PlanKind> {
+    private final Object owner;
     private PlanNode planNode;
 
-    protected PlanNd(PlanKind planKind) {
+    protected PlanNd(PlanKind planKind, Object owner) {
       super(planKind);
+      this.owner = owner;
     }
 
-    protected PlanNd(PlanNd other) {
+    protected PlanNd(PlanNd other, Object owner) {
       super(other);
+      this.owner = owner;
       this.planNode = other.planNode;
     }
   }
+
+  // Bindings from plan nodes to ids, as a stack of layers. A layer is frozen once shared by copies,
+  // then each plan binds nodes in a new layer of its own. Deep stacks are flattened.
+  private static class NodeReg {
+    private final NodeReg base;
+    private final int depth;
+    private TObjectIntMap<PlanNode> ids; // lazily created
+
+    private NodeReg(NodeReg base) {
+      if (base != null && base.depth >= MAX_REG_DEPTH) {
+        this.base = null;
+        this.depth = 1;
+        this.ids = base.flatten();
+      } else {
+        this.base = base;
+        this.depth = base == null ? 1 : base.depth + 1;
+      }
+    }
+
+    private NodeReg fork() {
+      return new NodeReg(isEmpty() ? base : this);
+    }
+
+    private boolean isEmpty() {
+      return ids == null || ids.isEmpty();
+    }
+
+    private int get(PlanNode node) {
+      for (NodeReg reg = this; reg != null; reg = reg.base) {
+        if (reg.ids == null) continue;
+        final int id = reg.ids.get(node);
+        if (id != NO_SUCH_NODE) return id;
+      }
+      return NO_SUCH_NODE;
+    }
+
+    private void put(PlanNode node, int id) {
+      if (ids == null) ids = mkIdentityMap();
+      ids.put(node, id);
+    }
+
+    private TObjectIntMap<PlanNode> flatten() {
+      final Deque<NodeReg> layers = new ArrayDeque<>(depth);
+      for (NodeReg reg = this; reg != null; reg = reg.base) layers.push(reg);
+
+      final TObjectIntMap<PlanNode> flattened = mkIdentityMap();
+      for (NodeReg reg : layers) if (reg.ids != null) flattened.putAll(reg.ids);
+      return flattened;
+    }
+  }
 }
@@ -0,0 +1,42 @@
+package wtune.sql.schema;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of a column.
+ *
+ * @param ndv the number of distinct non-null values
+ * @param nullFraction the fraction of the rows whose value is null
+ * @param histogram bounds of an equi-depth histogram of the non-null values, i.e., each of the
+ *     `histogram.length - 1` buckets holds the same number of values. Empty if the column isn't
+ *     numeric.
+ */
+public record ColumnStats(long ndv, double nullFraction, double[] histogram) {
+  private static final double[] NO_HISTOGRAM = new double[0];
+
+  public ColumnStats(long ndv, double nullFraction) {
+    this(ndv, nullFraction, NO_HISTOGRAM);
+  }
+
+  public boolean hasHistogram() {
+    return histogram.length >= 2;
+  }
+
+  /** Returns the fraction of the non-null values less than `value`, or -1 without a histogram. */
+  public double fractionBelow(double value) {
+    if (!hasHistogram()) return -1;
+
+    final int numBuckets = histogram.length - 1;
+    if (value <= histogram[0]) return 0;
+    if (value > histogram[numBuckets]) return 1;
+
+    int bucket = Arrays.binarySearch(histogram, value);
+    if (bucket < 0) bucket = -bucket - 2; // the bucket containing `value`
+    else while (bucket > 0 && histogram[bucket - 1] == value) --bucket;
+    if (bucket >= numBuckets) return 1;
+
+    final double lower = histogram[bucket], upper = histogram[bucket + 1];
+    final double inBucket = upper > lower ? (value - lower) / (upper - lower) : 0;
+    return (bucket + inBucket) / numBuckets;
+  }
+}
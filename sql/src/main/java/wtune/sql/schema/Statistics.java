@@ -0,0 +1,39 @@
+package wtune.sql.schema;
+
+import javax.sql.DataSource;
+
+/**
+ * Table and column statistics of a schema, used to estimate the cardinalities of plans.
+ *
+ * <p>Statistics are persisted as text, one line per table ("table rowCount") or per column
+ * ("table.column ndv nullFraction bound,bound,..."). Since statistics are shared once loaded, they
+ * must not be mutated afterwards.
+ */
+public interface Statistics {
+  long UNKNOWN = -1;
+
+  /** Returns the number of rows of the table, or {@link #UNKNOWN}. */
+  long rowCountOf(String table);
+
+  /** Returns the statistics of the column, or null if unknown. */
+  ColumnStats columnStatsOf(String table, String column);
+
+  void setRowCount(String table, long rowCount);
+
+  void setColumnStats(String table, String column, ColumnStats stats);
+
+  /** Reverse of {@link #parse(String)}. */
+  String serialize();
+
+  static Statistics mk() {
+    return new StatisticsImpl();
+  }
+
+  static Statistics parse(String str) {
+    return StatisticsImpl.parse(str);
+  }
+
+  static Statistics collect(Schema schema, DataSource dataSource) {
+    return new StatisticsCollector(schema, dataSource).collect();
+  }
+}
@@ -0,0 +1,96 @@
+package wtune.sql.schema;
+
+import wtune.sql.ast.constants.Category;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static wtune.sql.SqlSupport.quoted;
+
+/**
+ * Collects the statistics of a schema by scanning the tables. The histogram of a numeric column has
+ * "wetune.stats.num_buckets" (32) buckets.
+ */
+class StatisticsCollector {
+  private static final int NUM_BUCKETS = Integer.getInteger("wetune.stats.num_buckets", 32);
+
+  private final Schema schema;
+  private final DataSource dataSource;
+
+  StatisticsCollector(Schema schema, DataSource dataSource) {
+    this.schema = schema;
+    this.dataSource = dataSource;
+  }
+
+  Statistics collect() {
+    final Statistics stats = Statistics.mk();
+    try (final Connection conn = dataSource.getConnection();
+        final Statement stmt = conn.createStatement()) {
+      for (Table table : schema.tables()) collectTable(stmt, table, stats);
+    } catch (SQLException ex) {
+      throw new RuntimeException(ex);
+    }
+    return stats;
+  }
+
+  private void collectTable(Statement stmt, Table table, Statistics stats) throws SQLException {
+    final String tableName = quoted(schema.dbType(), table.name());
+    final long rowCount = queryLong(stmt, "SELECT COUNT(*) FROM " + tableName);
+    stats.setRowCount(table.name(), rowCount);
+
+    for (Column column : table.columns()) {
+      final String colName = quoted(schema.dbType(), column.name());
+      final long ndv, numNonNull;
+      final String sql = "SELECT COUNT(DISTINCT %s), COUNT(%s) FROM %s";
+      try (final ResultSet rs = stmt.executeQuery(sql.formatted(colName, colName, tableName))) {
+        rs.next();
+        ndv = rs.getLong(1);
+        numNonNull = rs.getLong(2);
+      }
+      final double nullFraction = rowCount == 0 ? 0 : 1 - numNonNull / (double) rowCount;
+
+      final ColumnStats columnStats;
+      if (isNumeric(column) && numNonNull > 0)
+        columnStats =
+            new ColumnStats(ndv, nullFraction, histogramOf(stmt, tableName, colName, numNonNull));
+      else columnStats = new ColumnStats(ndv, nullFraction);
+
+      stats.setColumnStats(table.name(), column.name(), columnStats);
+    }
+  }
+
+  // Picks the values at the ranks 0, n/k, 2n/k, ..., n-1 of the sorted non-null values.
+  private static double[] histogramOf(
+      Statement stmt, String tableName, String colName, long numValues) throws SQLException {
+    final int numBuckets = (int) Math.min(NUM_BUCKETS, Math.max(1, numValues - 1));
+    final double[] bounds = new double[numBuckets + 1];
+    final String sql =
+        "SELECT %s FROM %s WHERE %s IS NOT NULL ORDER BY %s"
+            .formatted(colName, tableName, colName, colName);
+
+    stmt.setFetchSize(1024);
+    try (final ResultSet rs = stmt.executeQuery(sql)) {
+      long rank = 0;
+      int next = 0;
+      while (next <= numBuckets && rs.next()) {
+        if (rank == (numValues - 1) * next / numBuckets) bounds[next++] = rs.getDouble(1);
+        ++rank;
+      }
+    }
+    return bounds;
+  }
+
+  private static long queryLong(Statement stmt, String sql) throws SQLException {
+    try (final ResultSet rs = stmt.executeQuery(sql)) {
+      return rs.next() ? rs.getLong(1) : 0;
+    }
+  }
+
+  private static boolean isNumeric(Column column) {
+    final Category category = column.dataType().category();
+    return category == Category.INTEGRAL || category == Category.FRACTION;
+  }
+}
@@ -0,0 +1,82 @@
+package wtune.sql.schema;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+class StatisticsImpl implements Statistics {
+  private final Map<String, Long> rowCounts = new TreeMap<>();
+  private final Map<String, ColumnStats> columnStats = new TreeMap<>();
+
+  static Statistics parse(String str) {
+    final StatisticsImpl stats = new StatisticsImpl();
+    for (String line : str.split("\n")) {
+      final String[] fields = line.trim().split(" ");
+      if (fields[0].isEmpty()) continue;
+
+      final int dot = fields[0].indexOf('.');
+      if (dot < 0) {
+        stats.setRowCount(fields[0], Long.parseLong(fields[1]));
+        continue;
+      }
+
+      final double[] histogram;
+      if (fields.length < 4) histogram = new double[0];
+      else {
+        final String[] bounds = fields[3].split(",");
+        histogram = new double[bounds.length];
+        for (int i = 0; i < bounds.length; ++i) histogram[i] = Double.parseDouble(bounds[i]);
+      }
+
+      final ColumnStats column =
+          new ColumnStats(Long.parseLong(fields[1]), Double.parseDouble(fields[2]), histogram);
+      stats.setColumnStats(fields[0].substring(0, dot), fields[0].substring(dot + 1), column);
+    }
+    return stats;
+  }
+
+  @Override
+  public long rowCountOf(String table) {
+    return rowCounts.getOrDefault(keyOf(table), UNKNOWN);
+  }
+
+  @Override
+  public ColumnStats columnStatsOf(String table, String column) {
+    return columnStats.get(keyOf(table, column));
+  }
+
+  @Override
+  public void setRowCount(String table, long rowCount) {
+    rowCounts.put(keyOf(table), rowCount);
+  }
+
+  @Override
+  public void setColumnStats(String table, String column, ColumnStats stats) {
+    columnStats.put(keyOf(table, column), stats);
+  }
+
+  @Override
+  public String serialize() {
+    final StringBuilder builder = new StringBuilder();
+    for (var pair : rowCounts.entrySet())
+      builder.append(pair.getKey()).append(' ').append(pair.getValue()).append('\n');
+
+    for (var pair : columnStats.entrySet()) {
+      final ColumnStats stats = pair.getValue();
+      builder.append(pair.getKey()).append(' ');
+      builder.append(stats.ndv()).append(' ').append(stats.nullFraction());
+      final double[] histogram = stats.histogram();
+      for (int i = 0; i < histogram.length; ++i)
+        builder.append(i == 0 ? ' ' : ',').append(histogram[i]);
+      builder.append('\n');
+    }
+    return builder.toString();
+  }
+
+  private static String keyOf(String table) {
+    return table.toLowerCase();
+  }
+
+  private static String keyOf(String table, String column) {
+    return (table + '.' + column).toLowerCase();
+  }
+}
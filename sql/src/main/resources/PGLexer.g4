@@ -27,6 +27,13 @@ import java.util.Deque;
 /* This field stores the tags which are used to detect the end of a dollar-quoted string literal.
 */
 private final Deque<String> _tags = new ArrayDeque<String>();
+
+/* The lexer is reused across statements, see ParsePipeline. */
+@Override
+public void reset() {
+    _tags.clear();
+    super.reset();
+}
 }
 
     /*
@@ -0,0 +1,137 @@
+package wtune.sql.parser;
+
+import org.junit.jupiter.api.Test;
+import wtune.sql.ast.SqlContext;
+import wtune.sql.ast.SqlNode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.common.datasource.DbSupport.PostgreSQL;
+
+public class ParseCacheTest {
+  private static final String[] SQLS = {
+    "SELECT DISTINCT `a`.`i` AS `x`, COUNT(*) FROM `a` LEFT JOIN `b` ON `a`.`j` = `b`.`x` "
+        + "WHERE `a`.`k` IN (SELECT `y` FROM `b` WHERE `z` > 1.5) GROUP BY `a`.`i` "
+        + "HAVING COUNT(*) > 2 ORDER BY `x` DESC LIMIT 10",
+    "SELECT CAST(`a`.`j` AS CHAR(10)) FROM `a` WHERE `a`.`i` BETWEEN 1 AND 10 OR `a`.`k` IS NULL",
+    "SELECT `i` FROM `a` UNION SELECT `x` FROM `b` "
+        + "WHERE EXISTS (SELECT 1 FROM `c` WHERE `v` LIKE 'x%')",
+    "CREATE TABLE `t` (`id` INT UNSIGNED PRIMARY KEY AUTO_INCREMENT, `e` ENUM('p', 'q') NOT NULL)",
+  };
+
+  @Test
+  void testCodec() {
+    for (String sql : SQLS) {
+      final SqlNode ast = ParseCache.mk(0).parse(MySQL, sql);
+      final byte[] bytes = SqlNodeCodec.encode(ast);
+      assertNotNull(bytes, sql);
+
+      final SqlNode decoded = SqlNodeCodec.decode(bytes, SqlContext.mk(8));
+      decoded.context().setDbType(MySQL);
+      assertEquals(ast.toString(), decoded.toString());
+    }
+  }
+
+  @Test
+  void testMemoize() {
+    final ParseCache cache = ParseCache.mk(16);
+    final SqlNode ast0 = cache.parse(MySQL, "SELECT a FROM t  WHERE b = 'x  y'");
+    final SqlNode ast1 = cache.parse(MySQL, "  SELECT a \t FROM t WHERE b = 'x  y' ");
+    final SqlNode ast2 = cache.parse(MySQL, "SELECT a FROM t WHERE b = 'x y'");
+    final SqlNode ast3 = cache.parse(PostgreSQL, "SELECT a FROM t  WHERE b = 'x  y'");
+    assertEquals("size=3, hits=1, misses=3", cache.stats());
+    assertNotSame(ast0, ast1);
+    assertNotSame(ast0.context(), ast1.context());
+    assertEquals(ast0.toString(), ast1.toString());
+    assertNotEquals(ast0.toString(), ast2.toString());
+    assertEquals(PostgreSQL, ast3.context().dbType());
+
+    // Whitespaces in comments are not collapsed.
+    cache.parse(MySQL, "SELECT a FROM t -- it's\n WHERE b = 'x  y'");
+    cache.parse(MySQL, "SELECT a FROM t -- it's\n WHERE b = 'x y'");
+    assertEquals("size=5, hits=1, misses=5", cache.stats());
+  }
+
+  @Test
+  void testKey() {
+    // Whitespaces outside literals are collapsed.
+    assertSameKey(
+        MySQL, "  SELECT a \t FROM t WHERE b = 'x  y' ", "SELECT a FROM t WHERE b = 'x  y'");
+    assertSameKey(PostgreSQL, "SELECT E'a\\'b'   FROM  t", "SELECT E'a\\'b' FROM t");
+    assertSameKey(PostgreSQL, "SELECT $1,  $2 FROM t", "SELECT $1, $2 FROM t");
+    assertSameKey(PostgreSQL, "SELECT a # b  FROM t", "SELECT a # b FROM t");
+
+    // A backslash may or may not escape, depending on the server's settings.
+    assertDifferentKey(MySQL, "SELECT 'a\\', 'b  c'", "SELECT 'a\\', 'b c'");
+    assertDifferentKey(PostgreSQL, "SELECT 'a\\', 'b  c'", "SELECT 'a\\', 'b c'");
+    assertDifferentKey(PostgreSQL, "SELECT E'a\\'  b', 'c  d'", "SELECT E'a\\'  b', 'c d'");
+    // Dollar quotes and nested comments of PostgreSQL.
+    assertDifferentKey(PostgreSQL, "SELECT $$a  b$$", "SELECT $$a b$$");
+    assertDifferentKey(PostgreSQL, "SELECT $f$a $$ x  y$f$", "SELECT $f$a $$ x y$f$");
+    assertDifferentKey(
+        PostgreSQL, "SELECT /* a /* b */ 'x  y' */ 1", "SELECT /* a /* b */ 'x y' */ 1");
+    // '#' is an operator in PostgreSQL, and "--" must be followed by a space in MySQL.
+    assertDifferentKey(PostgreSQL, "SELECT a#'x  y'", "SELECT a#'x y'");
+    assertDifferentKey(MySQL, "SELECT 1--1, 'a\n  b'", "SELECT 1--1, 'a\n b'");
+    // Quoted identifiers and doubled quotes.
+    assertDifferentKey(MySQL, "SELECT `a  b`", "SELECT `a b`");
+    assertDifferentKey(PostgreSQL, "SELECT \"a  b\"", "SELECT \"a b\"");
+    assertDifferentKey(MySQL, "SELECT 'it''s  x'", "SELECT 'it''s x'");
+  }
+
+  private static void assertSameKey(String dbType, String sql0, String sql1) {
+    assertEquals(ParseCache.keyOf(dbType, sql0), ParseCache.keyOf(dbType, sql1));
+  }
+
+  private static void assertDifferentKey(String dbType, String sql0, String sql1) {
+    assertNotEquals(ParseCache.keyOf(dbType, sql0), ParseCache.keyOf(dbType, sql1));
+  }
+
+  @Test
+  void testPersist() throws IOException {
+    final Path file = Files.createTempFile("parse_cache", ".bin");
+    try {
+      final ParseCache cache = ParseCache.open(file);
+      for (String sql : SQLS) cache.parse(MySQL, sql);
+
+      final ParseCache reopened = ParseCache.open(file);
+      assertEquals(SQLS.length, reopened.size());
+      for (String sql : SQLS)
+        assertEquals(cache.parse(MySQL, sql).toString(), reopened.parse(MySQL, sql).toString());
+      assertEquals("size=4, hits=4, misses=0", reopened.stats());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testStaleVersion() throws IOException {
+    final Path file = Files.createTempFile("parse_cache", ".bin");
+    try {
+      final ParseCache cache = ParseCache.open(file);
+      for (String sql : SQLS) cache.parse(MySQL, sql);
+      assertEquals(SQLS.length, ParseCache.open(file).size());
+
+      // As if written with another AST schema.
+      try (final FileChannel channel = FileChannel.open(file, WRITE)) {
+        final ByteBuffer version = ByteBuffer.allocate(Integer.BYTES);
+        version.putInt(0, SqlNodeCodec.SCHEMA_VERSION + 1);
+        channel.write(version, Integer.BYTES);
+      }
+
+      final ParseCache reopened = ParseCache.open(file);
+      assertEquals(0, reopened.size());
+      reopened.parse(MySQL, SQLS[0]);
+      assertEquals(1, ParseCache.open(file).size());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
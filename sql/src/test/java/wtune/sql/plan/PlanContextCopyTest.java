@@ -0,0 +1,203 @@
+package wtune.sql.plan;
+
+import org.junit.jupiter.api.Test;
+import wtune.common.datasource.DbSupport;
+import wtune.sql.SqlSupport;
+import wtune.sql.schema.Schema;
+import wtune.sql.schema.SchemaSupport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.common.tree.TreeContext.NO_SUCH_NODE;
+import static wtune.sql.plan.PlanContextImpl.MAX_REG_DEPTH;
+
+class PlanContextCopyTest {
+  private static final Schema SCHEMA =
+      SchemaSupport.parseSchema(
+          DbSupport.MySQL, "Create Table t (i int NOT NULL, j int); Create Table s (m int, n int)");
+
+  private static PlanContext mkPlan(String sql) {
+    return PlanSupport.assemblePlan(SqlSupport.parseSql(DbSupport.MySQL, sql), SCHEMA);
+  }
+
+  // Everything observable of the plan: the tree, the bindings, and the stringified form.
+  private static List<String> snapshotOf(PlanContext plan) {
+    final List<String> snapshot = new ArrayList<>();
+    snapshot.add("root " + plan.root() + " max " + plan.maxNodeId());
+    for (int i = 1; i <= plan.maxNodeId(); ++i) {
+      if (!plan.isPresent(i)) {
+        snapshot.add(i + " absent");
+        continue;
+      }
+      final PlanNode node = plan.nodeAt(i);
+      snapshot.add(
+          i
+              + " "
+              + plan.kindOf(i)
+              + " "
+              + plan.parentOf(i)
+              + " "
+              + Arrays.toString(plan.childrenOf(i))
+              + " "
+              + plan.nodeIdOf(node)
+              + " "
+              + System.identityHashCode(node));
+    }
+    snapshot.add(plan.toString());
+    return snapshot;
+  }
+
+  private static int filterOf(PlanContext plan) {
+    final int filter = plan.childOf(plan.root(), 0);
+    assertEquals(PlanKind.Filter, plan.kindOf(filter));
+    return filter;
+  }
+
+  // Removes the filter below the root projection.
+  private static void removeFilter(PlanContext plan) {
+    final int root = plan.root(), filter = filterOf(plan), input = plan.childOf(filter, 0);
+    plan.detachNode(input);
+    plan.setChild(root, 0, input);
+    plan.deleteNode(filter);
+
+    assertFalse(plan.isPresent(filter));
+    assertEquals(input, plan.childOf(root, 0));
+    assertEquals(root, plan.parentOf(input));
+  }
+
+  @Test
+  void testSetChild() {
+    final PlanContext plan = mkPlan("Select t.i From t Join s On t.i = s.m Where t.j = 1");
+    final List<String> expected = snapshotOf(plan);
+
+    final PlanContext copy = plan.copy(), sibling = plan.copy();
+    final List<String> expectedSibling = snapshotOf(sibling);
+    assertEquals(expected, expectedSibling);
+
+    final int root = copy.root(), filter = filterOf(copy), join = copy.childOf(filter, 0);
+    final int lhs = copy.childOf(join, 0), rhs = copy.childOf(join, 1);
+    // Swaps the inputs of the join.
+    copy.detachNode(lhs);
+    copy.detachNode(rhs);
+    copy.setChild(join, 0, rhs);
+    copy.setChild(join, 1, lhs);
+    assertEquals(rhs, copy.childOf(join, 0));
+    assertEquals(lhs, copy.childOf(join, 1));
+    // Hoists the join above the filter.
+    copy.detachNode(join);
+    copy.setChild(root, 0, join);
+    assertEquals(NO_SUCH_NODE, copy.parentOf(filter));
+
+    assertEquals(expected, snapshotOf(plan));
+    assertEquals(expectedSibling, snapshotOf(sibling));
+
+    // The other way around: modifying the original leaves the copies alone.
+    final List<String> expectedCopy = snapshotOf(copy);
+    removeFilter(plan);
+    assertEquals(expectedCopy, snapshotOf(copy));
+    assertEquals(expectedSibling, snapshotOf(sibling));
+  }
+
+  @Test
+  void testDeleteNode() {
+    final PlanContext plan = mkPlan("Select t.i From t Where t.j = 1");
+    final List<String> expected = snapshotOf(plan);
+    final PlanContext copy = plan.copy(), sibling = plan.copy();
+
+    final int filter = filterOf(copy), input = copy.childOf(filter, 0);
+    copy.detachNode(filter);
+    assertEquals(NO_SUCH_NODE, copy.childOf(copy.root(), 0));
+    copy.deleteNode(filter);
+    assertEquals(NO_SUCH_NODE, copy.parentOf(input));
+
+    assertEquals(expected, snapshotOf(plan));
+    assertEquals(expected, snapshotOf(sibling));
+  }
+
+  @Test
+  void testCompact() {
+    final PlanContext plan = mkPlan("Select t.i From t Join s On t.i = s.m Where t.j = 1");
+    final List<String> expected = snapshotOf(plan);
+    final PlanContext copy = plan.copy(), sibling = plan.copy();
+
+    final PlanNode input = copy.nodeAt(copy.childOf(copy.childOf(filterOf(copy), 0), 0));
+    removeFilter(copy);
+    copy.compact();
+
+    // The nodes are renumbered densely, with the bindings following them.
+    assertEquals(plan.maxNodeId() - 1, copy.maxNodeId());
+    for (int i = 1; i <= copy.maxNodeId(); ++i) {
+      assertTrue(copy.isPresent(i));
+      assertEquals(i, copy.nodeIdOf(copy.nodeAt(i)));
+    }
+    assertEquals(PlanKind.Join, copy.kindOf(copy.childOf(copy.root(), 0)));
+    assertSame(input, copy.nodeAt(copy.childOf(copy.childOf(copy.root(), 0), 0)));
+
+    assertEquals(expected, snapshotOf(plan));
+    assertEquals(expected, snapshotOf(sibling));
+  }
+
+  @Test
+  void testBindNode() {
+    final PlanContext plan = mkPlan("Select t.i From t Where t.j = 1");
+    final List<String> expected = snapshotOf(plan);
+    final PlanContext copy = plan.copy(), sibling = plan.copy();
+
+    final int filter = filterOf(copy);
+    final PlanNode node = copy.nodeAt(filter);
+    final int rebound = copy.bindNode(node);
+    assertNotEquals(filter, rebound);
+    assertEquals(rebound, copy.nodeIdOf(node));
+    assertSame(node, copy.nodeAt(rebound));
+
+    assertEquals(filter, plan.nodeIdOf(node));
+    assertEquals(filter, sibling.nodeIdOf(node));
+    assertEquals(expected, snapshotOf(plan));
+    assertEquals(expected, snapshotOf(sibling));
+
+    // Bindings made by the original after copying are not seen by the copies.
+    final PlanNode root = plan.nodeAt(plan.root());
+    final int reboundRoot = plan.bindNode(root);
+    assertEquals(reboundRoot, plan.nodeIdOf(root));
+    assertEquals(copy.root(), copy.nodeIdOf(root));
+    assertEquals(expected, snapshotOf(sibling));
+  }
+
+  @Test
+  void testCopyChain() {
+    // Deep enough for the bindings to be flattened, twice.
+    final int depth = 2 * MAX_REG_DEPTH + 3;
+    final List<PlanContext> plans = new ArrayList<>(depth + 1);
+    final List<List<String>> expected = new ArrayList<>(depth + 1);
+    final List<PlanNode> nodes = new ArrayList<>();
+
+    PlanContext plan = mkPlan("Select t.i From t Join s On t.i = s.m Where t.j = 1");
+    for (int i = 1; i <= plan.maxNodeId(); ++i) nodes.add(plan.nodeAt(i));
+    plans.add(plan);
+
+    for (int i = 0; i < depth; ++i) {
+      final PlanContext copy = plan.copy();
+      // Each copy binds a node of its own, and rebinds one of its ancestors'.
+      final PlanNode node = nodes.get(i % nodes.size());
+      final int rebound = copy.bindNode(node);
+      assertEquals(rebound, copy.nodeIdOf(node));
+      assertNotEquals(rebound, plan.nodeIdOf(node));
+
+      expected.add(snapshotOf(plan));
+      plan = copy;
+      plans.add(plan);
+    }
+    expected.add(snapshotOf(plan));
+
+    for (int i = 0; i <= depth; ++i) assertEquals(expected.get(i), snapshotOf(plans.get(i)));
+
+    // A later binding of the original is not seen by any descendant.
+    final PlanContext first = plans.get(0);
+    final PlanNode root = first.nodeAt(first.root());
+    assertEquals(first.maxNodeId() + 1, first.bindNode(root));
+    for (int i = 1; i <= depth; ++i) assertEquals(expected.get(i), snapshotOf(plans.get(i)));
+  }
+}
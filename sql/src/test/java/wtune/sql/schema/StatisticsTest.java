@@ -0,0 +1,83 @@
+package wtune.sql.schema;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatisticsTest {
+  private static final double EPS = 1e-9;
+
+  @Test
+  void testFractionBelow() {
+    final ColumnStats stats = new ColumnStats(100, 0, new double[] {0, 10, 20, 30, 40});
+    assertEquals(0, stats.fractionBelow(-5), EPS);
+    assertEquals(0, stats.fractionBelow(0), EPS);
+    assertEquals(0.125, stats.fractionBelow(5), EPS);
+    assertEquals(0.25, stats.fractionBelow(10), EPS);
+    assertEquals(0.875, stats.fractionBelow(35), EPS);
+    assertEquals(1, stats.fractionBelow(40), EPS);
+    assertEquals(1, stats.fractionBelow(100), EPS);
+  }
+
+  @Test
+  void testFractionBelowDuplicates() {
+    // 10 takes up the 2nd and 3rd buckets.
+    final ColumnStats stats = new ColumnStats(10, 0, new double[] {0, 10, 10, 10, 20});
+    assertEquals(0.125, stats.fractionBelow(5), EPS);
+    assertEquals(0.25, stats.fractionBelow(10), EPS);
+    assertEquals(0.875, stats.fractionBelow(15), EPS);
+    assertEquals(1, stats.fractionBelow(20), EPS);
+
+    // A single value.
+    final ColumnStats single = new ColumnStats(1, 0, new double[] {7, 7});
+    assertEquals(0, single.fractionBelow(7), EPS);
+    assertEquals(1, single.fractionBelow(8), EPS);
+
+    // Monotone everywhere.
+    double last = 0;
+    for (double value = -1; value <= 21; value += 0.25) {
+      final double fraction = stats.fractionBelow(value);
+      assertTrue(fraction >= last);
+      last = fraction;
+    }
+  }
+
+  @Test
+  void testNoHistogram() {
+    assertFalse(new ColumnStats(10, 0.5).hasHistogram());
+    assertEquals(-1, new ColumnStats(10, 0.5).fractionBelow(1), EPS);
+    assertEquals(-1, new ColumnStats(10, 0.5, new double[] {1}).fractionBelow(1), EPS);
+  }
+
+  @Test
+  void testRoundTrip() {
+    final Statistics stats = Statistics.mk();
+    stats.setRowCount("T", 1000);
+    stats.setRowCount("u", 0);
+    stats.setColumnStats("T", "Id", new ColumnStats(1000, 0));
+    stats.setColumnStats("t", "score", new ColumnStats(10, 0.25, new double[] {-1.5, 0, 2e10}));
+
+    final Statistics parsed = Statistics.parse(stats.serialize());
+    assertEquals(stats.serialize(), parsed.serialize());
+
+    // Names are case-insensitive.
+    assertEquals(1000, parsed.rowCountOf("t"));
+    assertEquals(0, parsed.rowCountOf("U"));
+    assertEquals(Statistics.UNKNOWN, parsed.rowCountOf("v"));
+    assertEquals(1000, parsed.columnStatsOf("t", "ID").ndv());
+    assertFalse(parsed.columnStatsOf("t", "id").hasHistogram());
+    assertNull(parsed.columnStatsOf("t", "name"));
+
+    final ColumnStats score = parsed.columnStatsOf("T", "Score");
+    assertEquals(10, score.ndv());
+    assertEquals(0.25, score.nullFraction(), EPS);
+    assertArrayEquals(new double[] {-1.5, 0, 2e10}, score.histogram(), EPS);
+  }
+
+  @Test
+  void testParseBlankLines() {
+    final Statistics stats = Statistics.parse("\nt 5\n\n  t.c 3 0.0  \n");
+    assertEquals(5, stats.rowCountOf("t"));
+    assertEquals(3, stats.columnStatsOf("t", "c").ndv());
+  }
+}
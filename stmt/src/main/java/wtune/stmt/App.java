@@ -1,6 +1,7 @@
 package wtune.stmt;
 
 import wtune.sql.schema.Schema;
+import wtune.sql.schema.Statistics;
 import wtune.stmt.internal.AppImpl;
 
 import java.util.Collection;
@@ -17,12 +18,17 @@ public interface App {
 
   Schema schema(String tag, boolean patched);
 
+  /** Statistics of the schema of `tag`. Empty if not collected. */
+  Statistics statistics(String tag);
+
   Properties dbProps();
 
   void setDbType(String dbType);
 
   void setSchema(String tag, Schema schema);
 
+  void setStatistics(String tag, Statistics statistics);
+
   void setDbConnProps(Properties props);
 
   default Schema schema(String tag) {
@@ -8,6 +8,7 @@ import wtune.stmt.dao.CalciteOptStatementDao;
 import wtune.stmt.dao.CalciteStatementDao;
 import wtune.stmt.dao.OptStatementDao;
 import wtune.stmt.dao.StatementDao;
+import wtune.stmt.dao.internal.DbDao;
 
 import java.util.List;
 
@@ -109,4 +110,9 @@ public interface Statement {
   static List<Statement> findAllRewrittenCalcite() {
     return CalciteOptStatementDao.instance().findAll();
   }
+
+  /** Closes the DB connection of the calling thread, e.g., when a worker thread finishes. */
+  static void closeConnection() {
+    DbDao.closeConnection();
+  }
 }
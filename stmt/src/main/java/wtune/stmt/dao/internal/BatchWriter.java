@@ -0,0 +1,162 @@
+package wtune.stmt.dao.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue of DAO updates.
+ *
+ * <p>Updates are buffered, and written in one transaction when "wetune.stmt.batch_size" (512) of
+ * them are pending, every "wetune.stmt.flush_interval" (1000) ms, on {@link #flush()} and on
+ * shutdown. Consecutive updates of the same SQL go into one JDBC batch. The order of updates is
+ * kept.
+ *
+ * <p>Updates are written through a connection of its own, in WAL mode with synchronous=NORMAL, so
+ * a commit doesn't fsync and doesn't block the readers. A committed batch survives a crash of the
+ * process, but may be lost on a power failure. A failed batch is rolled back and reported by the
+ * next call to {@link #enqueue} or {@link #flush()}.
+ */
+class BatchWriter {
+  private static final int BATCH_SIZE = Integer.getInteger("wetune.stmt.batch_size", 512);
+  private static final long FLUSH_INTERVAL = Long.getLong("wetune.stmt.flush_interval", 1000L);
+  private static final BatchWriter INSTANCE = new BatchWriter();
+
+  private final Object writeLock = new Object();
+  private final Map<String, PreparedStatement> caches = new HashMap<>(); // guarded by writeLock
+  private Connection connection; // guarded by writeLock
+
+  private List<Update> pending = new ArrayList<>(); // guarded by this
+  private ScheduledExecutorService timer; // guarded by this
+  private Exception failure; // guarded by this
+
+  private BatchWriter() {}
+
+  static BatchWriter instance() {
+    return INSTANCE;
+  }
+
+  void enqueue(String sql, Object... params) {
+    final boolean full;
+    synchronized (this) {
+      throwIfFailed();
+      if (timer == null) startTimer();
+      pending.add(new Update(sql, params));
+      full = pending.size() >= BATCH_SIZE;
+    }
+    if (full) flush();
+  }
+
+  /** Writes all the updates enqueued so far. */
+  void flush() {
+    write();
+    synchronized (this) {
+      throwIfFailed();
+    }
+  }
+
+  private void write() {
+    // Batches are taken and written under the same lock, so that they are written in order.
+    synchronized (writeLock) {
+      final List<Update> updates;
+      synchronized (this) {
+        if (pending.isEmpty()) return;
+        updates = pending;
+        pending = new ArrayList<>();
+      }
+
+      try {
+        writeBatch(updates);
+      } catch (SQLException | RuntimeException ex) {
+        try {
+          if (connection != null) connection.rollback();
+        } catch (SQLException ignored) {
+        }
+        synchronized (this) {
+          if (failure == null) failure = ex;
+          else failure.addSuppressed(ex);
+        }
+      }
+    }
+  }
+
+  private void writeBatch(List<Update> updates) throws SQLException {
+    final Connection conn = connection();
+    PreparedStatement ps = null;
+    String sql = null;
+    for (Update update : updates) {
+      if (!update.sql.equals(sql)) {
+        if (ps != null) ps.executeBatch();
+        sql = update.sql;
+        ps = prepare(sql);
+      }
+      for (int i = 0; i < update.params.length; ++i) ps.setObject(i + 1, update.params[i]);
+      ps.addBatch();
+    }
+    if (ps != null) ps.executeBatch();
+    conn.commit();
+  }
+
+  private Connection connection() throws SQLException {
+    if (connection == null) {
+      connection = DbDao.openConnection();
+      try (final Statement stmt = connection.createStatement()) {
+        stmt.execute("PRAGMA synchronous = NORMAL");
+      }
+      connection.setAutoCommit(false);
+    }
+    return connection;
+  }
+
+  private PreparedStatement prepare(String sql) throws SQLException {
+    PreparedStatement ps = caches.get(sql);
+    if (ps == null) caches.put(sql, ps = connection().prepareStatement(sql));
+    return ps;
+  }
+
+  private void startTimer() {
+    timer =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "stmt-batch-writer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    timer.scheduleWithFixedDelay(
+        this::write, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+    Runtime.getRuntime().addShutdownHook(new Thread(this::close, "stmt-batch-writer-shutdown"));
+  }
+
+  private void close() {
+    synchronized (this) {
+      timer.shutdown();
+    }
+    write();
+    synchronized (writeLock) {
+      try {
+        if (connection != null) connection.close();
+      } catch (SQLException ignored) {
+      }
+    }
+    synchronized (this) {
+      if (failure != null) failure.printStackTrace();
+    }
+  }
+
+  private void throwIfFailed() {
+    if (failure == null) return;
+    final Exception ex = failure;
+    failure = null;
+    throw new RuntimeException(ex);
+  }
+
+  private record Update(String sql, Object[] params) {}
+}
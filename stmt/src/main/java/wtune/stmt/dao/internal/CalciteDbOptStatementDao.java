@@ -7,7 +7,6 @@ import wtune.stmt.support.OptimizerType;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,6 +48,7 @@ public class CalciteDbOptStatementDao extends DbDao implements CalciteOptStateme
 
   @Override
   public Statement findOne(String appName, int stmtId) {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_ONE);
       ps.setString(1, appName);
@@ -66,6 +66,7 @@ public class CalciteDbOptStatementDao extends DbDao implements CalciteOptStateme
 
   @Override
   public List<Statement> findByApp(String appName) {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_BY_APP);
       ps.setString(1, appName);
@@ -84,6 +85,7 @@ public class CalciteDbOptStatementDao extends DbDao implements CalciteOptStateme
 
   @Override
   public List<Statement> findAll() {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_ALL);
       final ResultSet rs = ps.executeQuery();
@@ -100,31 +102,11 @@ public class CalciteDbOptStatementDao extends DbDao implements CalciteOptStateme
 
   @Override
   public void cleanOptStmts() {
-    try {
-      final PreparedStatement clean0 = prepare(CLEAN_OPT_STMT);
-      clean0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(CLEAN_OPT_STMT);
   }
 
   @Override
   public void updateOptStmts(Statement stmt) {
-    try {
-      final PreparedStatement insert0 = prepare(ADD_OPT_STMTS);
-
-      insert0.setString(1, stmt.appName());
-      insert0.setInt(2, stmt.stmtId());
-
-      insert0.setString(3, stmt.rawSql());
-      if (stmt.stackTrace() == null)
-        insert0.setNull(4, Types.VARCHAR);
-      else
-        insert0.setString(4, stmt.stackTrace());
-
-      insert0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(ADD_OPT_STMTS, stmt.appName(), stmt.stmtId(), stmt.rawSql(), stmt.stackTrace());
   }
 }
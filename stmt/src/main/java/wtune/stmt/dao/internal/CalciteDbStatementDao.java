@@ -8,7 +8,6 @@ import wtune.stmt.support.OptimizerType;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -148,33 +147,16 @@ public class CalciteDbStatementDao extends DbDao implements CalciteStatementDao
 
   @Override
   public void cleanProfileData() {
-    try {
-      final PreparedStatement clean0 = prepare(CLEAN_OPT_DATA);
-      clean0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(CLEAN_OPT_DATA);
   }
 
   @Override
   public void updateProfile(CalciteStmtProfile stmtProfile) {
-    try {
-      final PreparedStatement insert0 = prepare(UPDATE_OPT_DATA);
-      if (stmtProfile.p50ImproveCalcite() == null)
-        insert0.setNull(1, Types.FLOAT);
-      else
-        insert0.setFloat(1, stmtProfile.p50ImproveCalcite());
-      if (stmtProfile.p50ImproveWeTune() == null)
-        insert0.setNull(2, Types.FLOAT);
-      else
-        insert0.setFloat(2, stmtProfile.p50ImproveWeTune());
-
-      insert0.setString(3, stmtProfile.appName());
-      insert0.setInt(4, stmtProfile.stmtId());
-      insert0.executeUpdate();
-
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(
+        UPDATE_OPT_DATA,
+        stmtProfile.p50ImproveCalcite(),
+        stmtProfile.p50ImproveWeTune(),
+        stmtProfile.appName(),
+        stmtProfile.stmtId());
   }
 }
@@ -5,27 +5,77 @@ import wtune.common.datasource.DbUtils;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Base of the DAOs, which are shared by threads.
+ *
+ * <p>Each thread has a connection of its own, shared by all the DAOs, and each DAO keeps the
+ * prepared statements per thread. Thus DAOs need no locking, and a transaction opened by {@link
+ * #begin()} is local to the thread. The database is in WAL mode, so readers don't block each
+ * other nor the writer.
+ *
+ * <p>A thread's connection lives until {@link #closeConnection()}, which pooled worker threads
+ * should call when they finish.
+ */
 public abstract class DbDao {
-  private final Map<String, PreparedStatement> caches = new HashMap<>();
-  private Connection connection = null;
+  private static final ThreadLocal<Connection> CONNECTIONS = new ThreadLocal<>();
+
+  private final ThreadLocal<Map<String, PreparedStatement>> caches =
+      ThreadLocal.withInitial(HashMap::new);
+
+  static Connection openConnection() {
+    final Connection conn = DbUtils.newConnection();
+    try (final Statement stmt = conn.createStatement()) {
+      stmt.execute("PRAGMA journal_mode = WAL");
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+    return conn;
+  }
+
+  /** Closes the connection of the current thread, if any. A later access opens a new one. */
+  public static void closeConnection() {
+    final Connection conn = CONNECTIONS.get();
+    if (conn == null) return;
+
+    CONNECTIONS.remove();
+    try {
+      conn.close();
+    } catch (SQLException throwables) {
+      throw new RuntimeException(throwables);
+    }
+  }
 
   protected Connection connection() {
-    if (connection == null) connection = DbUtils.connection();
-    return connection;
+    Connection conn = CONNECTIONS.get();
+    if (conn == null) CONNECTIONS.set(conn = openConnection());
+    return conn;
   }
 
   protected PreparedStatement prepare(String sql) throws SQLException {
+    final Map<String, PreparedStatement> caches = this.caches.get();
+    final Connection conn = connection();
     PreparedStatement ps = caches.get(sql);
-    if (ps != null) return ps;
+    // Statements of a closed connection are stale.
+    if (ps != null && ps.getConnection() == conn) return ps;
 
-    final Connection conn = connection();
     caches.put(sql, ps = conn.prepareStatement(sql));
     return ps;
   }
 
+  /** Enqueues an update to be written behind. See {@link BatchWriter}. */
+  protected void enqueue(String sql, Object... params) {
+    BatchWriter.instance().enqueue(sql, params);
+  }
+
+  /** Writes the enqueued updates, e.g., before reading the tables they touch. */
+  protected void flush() {
+    BatchWriter.instance().flush();
+  }
+
   protected void begin() {
     try {
       final Connection conn = connection();
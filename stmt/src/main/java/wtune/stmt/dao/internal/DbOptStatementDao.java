@@ -8,14 +8,15 @@ import wtune.stmt.support.OptimizerType;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class DbOptStatementDao extends DbDao implements OptStatementDao {
 
   public static OptStatementDao instance(OptimizerType kind) {
-    return new DbOptStatementDao(kind);
+    return INSTANCES.get(kind);
   }
 
   static final String KEY_APP_NAME = "app";
@@ -28,6 +29,15 @@ public class DbOptStatementDao extends DbDao implements OptStatementDao {
           "opt_app_name AS %s, opt_stmt_id AS %s, opt_raw_sql AS %s, trace AS %s ",
           KEY_APP_NAME, KEY_STMT_ID, KEY_RAW_SQL, KEY_TRACE);
 
+  // After SELECT_ITEMS, which the constructor reads.
+  private static final Map<OptimizerType, OptStatementDao> INSTANCES =
+      new EnumMap<>(OptimizerType.class);
+
+  static {
+    for (OptimizerType kind : OptimizerType.values())
+      INSTANCES.put(kind, new DbOptStatementDao(kind));
+  }
+
   private String OPT_STMTS_TABLE;
   private String FIND_ALL;
   private String FIND_ONE;
@@ -74,6 +84,7 @@ public class DbOptStatementDao extends DbDao implements OptStatementDao {
 
   @Override
   public Statement findOne(String appName, int stmtId) {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_ONE);
       ps.setString(1, appName);
@@ -91,6 +102,7 @@ public class DbOptStatementDao extends DbDao implements OptStatementDao {
 
   @Override
   public List<Statement> findByApp(String appName) {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_BY_APP);
       ps.setString(1, appName);
@@ -109,6 +121,7 @@ public class DbOptStatementDao extends DbDao implements OptStatementDao {
 
   @Override
   public List<Statement> findAll() {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_ALL);
       final ResultSet rs = ps.executeQuery();
@@ -125,47 +138,17 @@ public class DbOptStatementDao extends DbDao implements OptStatementDao {
 
   @Override
   public void cleanOptStmts() {
-    try {
-      final PreparedStatement clean0 = prepare(CLEAN_OPT_STMT);
-      clean0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(CLEAN_OPT_STMT);
   }
 
   @Override
   public void updateOptStmts(Statement stmt) {
-    try {
-      final PreparedStatement insert0 = prepare(ADD_OPT_STMTS);
-
-      insert0.setString(1, stmt.appName());
-      insert0.setInt(2, stmt.stmtId());
-
-      insert0.setString(3, stmt.rawSql());
-      if (stmt.stackTrace() == null)
-        insert0.setNull(4, Types.VARCHAR);
-      else
-        insert0.setString(4, stmt.stackTrace());
-
-      insert0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    enqueue(ADD_OPT_STMTS, stmt.appName(), stmt.stmtId(), stmt.rawSql(), stmt.stackTrace());
   }
 
   @Override
   public void updateStmtProfile(StmtProfile stmtProfile) {
-    try {
-      final String updateQuery = UPDATE_PROFILE_TEMPLATE.formatted(stmtProfile.workloadType());
-      final PreparedStatement update0 = prepare(updateQuery);
-
-      update0.setDouble(1, stmtProfile.p50Improve());
-      update0.setString(2, stmtProfile.appName());
-      update0.setInt(3, stmtProfile.stmtId());
-
-      update0.executeUpdate();
-    } catch (SQLException throwables) {
-      throw new RuntimeException(throwables);
-    }
+    final String updateQuery = UPDATE_PROFILE_TEMPLATE.formatted(stmtProfile.workloadType());
+    enqueue(updateQuery, stmtProfile.p50Improve(), stmtProfile.appName(), stmtProfile.stmtId());
   }
 }
@@ -39,17 +39,15 @@ public class DbTimingDao extends DbDao implements TimingDao {
           + " FROM wtune_stmt_perf"
           + " WHERE perf_app_name = ? AND perf_stmt_id = ?";
 
-  private static final String FIND_ONE =
-      "SELECT "
-          + SELECT_ITEMS
-          + " FROM wtune_stmt_perf"
-          + " WHERE perf_app_name = ? AND perf_stmt_id = ? AND perf_tag = ?";
-
+  // The current timing goes to history if the new one differs from it.
   private static final String INSERT_HISTORY =
       "INSERT INTO wtune_stmt_perf_history "
           + "(history_app_name, history_stmt_id, history_tag,"
           + " history_p50, history_p90, history_p99) "
-          + "VALUES (?, ?, ?, ?, ?, ?)";
+          + "SELECT perf_app_name, perf_stmt_id, perf_tag, perf_p50, perf_p90, perf_p99"
+          + " FROM wtune_stmt_perf"
+          + " WHERE perf_app_name = ? AND perf_stmt_id = ? AND perf_tag = ?"
+          + " AND (perf_p50 IS NOT ? OR perf_p90 IS NOT ? OR perf_p99 IS NOT ?)";
 
   private static final String UPSERT_PERF =
       "INSERT OR REPLACE INTO wtune_stmt_perf "
@@ -69,6 +67,7 @@ public class DbTimingDao extends DbDao implements TimingDao {
 
   @Override
   public List<Timing> findByStmt(String appName, int stmtId) {
+    flush();
     try {
       final PreparedStatement ps = prepare(FIND_BY_STMT);
       ps.setString(1, appName);
@@ -87,50 +86,21 @@ public class DbTimingDao extends DbDao implements TimingDao {
 
   @Override
   public void beginBatch() {
-    begin();
+    // Saves are always batched.
   }
 
   @Override
   public void endBatch() {
-    commit();
+    flush();
   }
 
   @Override
   public void save(Timing timing) {
-
-    try {
-      final PreparedStatement find = prepare(FIND_ONE);
-      final PreparedStatement insertHistory = prepare(INSERT_HISTORY);
-      final PreparedStatement upsert = prepare(UPSERT_PERF);
-
-      find.setString(1, timing.app());
-      find.setInt(2, timing.stmtId());
-      find.setString(3, timing.tag());
-
-      final ResultSet rs = find.executeQuery();
-      if (rs.next()) {
-        final Timing existing = inflate(rs);
-        if (existing.p50() == timing.p50()
-            && existing.p90() == timing.p90()
-            && existing.p99() == timing.p99()) return;
-
-        fillParamAndExec(existing, insertHistory);
-      }
-
-      fillParamAndExec(timing, upsert);
-
-    } catch (SQLException throwables) {
-      throwables.printStackTrace();
-    }
-  }
-
-  private void fillParamAndExec(Timing timing, PreparedStatement upsert) throws SQLException {
-    upsert.setString(1, timing.app());
-    upsert.setInt(2, timing.stmtId());
-    upsert.setString(3, timing.tag());
-    upsert.setLong(4, timing.p50());
-    upsert.setLong(5, timing.p90());
-    upsert.setLong(6, timing.p99());
-    upsert.executeUpdate();
+    // Both are written behind, thus the comparison with the current timing is done in SQL.
+    final String app = timing.app(), tag = timing.tag();
+    final int stmtId = timing.stmtId();
+    final long p50 = timing.p50(), p90 = timing.p90(), p99 = timing.p99();
+    enqueue(INSERT_HISTORY, app, stmtId, tag, p50, p90, p99);
+    enqueue(UPSERT_PERF, app, stmtId, tag, p50, p90, p99);
   }
 }
@@ -3,11 +3,14 @@ package wtune.stmt.internal;
 import wtune.common.datasource.DbSupport;
 import wtune.sql.schema.Schema;
 import wtune.sql.schema.SchemaSupport;
+import wtune.sql.schema.Statistics;
 import wtune.stmt.App;
 import wtune.stmt.dao.SchemaPatchDao;
 import wtune.common.io.FileUtils;
 
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.util.function.Function.identity;
@@ -16,14 +19,16 @@ import static wtune.common.datasource.DbSupport.PostgreSQL;
 
 public class AppImpl implements App {
   private final String name;
-  private String dbType;
+  private volatile String dbType;
   private final Map<String, Schema> schemas;
-  private Properties connProps;
+  private final Map<String, Statistics> statistics;
+  private volatile Properties connProps;
 
   private AppImpl(String name, String dbType) {
     this.name = name;
     this.dbType = dbType;
-    this.schemas = new HashMap<>();
+    this.schemas = new ConcurrentHashMap<>();
+    this.statistics = new ConcurrentHashMap<>();
   }
 
   public static App of(String name) {
@@ -43,14 +48,14 @@ public class AppImpl implements App {
   }
 
   public Schema schema(String tag, boolean patched) {
-    final Schema existing = schemas.get(tag);
-    if (existing == null) {
-      final Schema schema = readSchema(tag);
-      if (schema == null) return null;
-      if (patched) schema.patch(SchemaPatchDao.instance().findByApp(name));
-      schemas.put(tag, schema);
-      return schema;
-    } else return existing;
+    // A schema is loaded once even if requested by threads simultaneously, and is patched before
+    // being published. Since it is shared, it must not be mutated afterwards.
+    return schemas.computeIfAbsent(tag, it -> readSchema(it, patched));
+  }
+
+  @Override
+  public Statistics statistics(String tag) {
+    return statistics.computeIfAbsent(tag, this::readStatistics);
   }
 
   @Override
@@ -73,15 +78,28 @@ public class AppImpl implements App {
     schemas.put(tag, schema);
   }
 
+  @Override
+  public void setStatistics(String tag, Statistics statistics) {
+    this.statistics.put(tag, statistics);
+  }
+
   @Override
   public void setDbConnProps(Properties props) {
     this.connProps = props;
   }
 
-  private Schema readSchema(String tag) {
+  private Schema readSchema(String tag, boolean patched) {
     final String str = FileUtils.readFile("schemas", name + "." + tag + ".schema.sql");
     if (str == null) return null;
-    return SchemaSupport.parseSchema(dbType, str);
+    final Schema schema = SchemaSupport.parseSchema(dbType, str);
+    if (patched) schema.patch(SchemaPatchDao.instance().findByApp(name));
+    return schema;
+  }
+
+  private Statistics readStatistics(String tag) {
+    final String fileName = name + "." + tag + ".stats";
+    if (!Files.exists(FileUtils.dataFile("schemas", fileName))) return Statistics.mk();
+    return Statistics.parse(FileUtils.readFile("schemas", fileName));
   }
 
   private static final String[] APP_NAMES = {
@@ -113,5 +131,5 @@ public class AppImpl implements App {
   private static final Map<String, App> KNOWN_APPS =
       Arrays.stream(APP_NAMES)
           .map(it -> new AppImpl(it, (PG_APPS.contains(it) ? PostgreSQL : MySQL)))
-          .collect(Collectors.toMap(App::name, identity()));
+          .collect(Collectors.toConcurrentMap(App::name, identity()));
 }
@@ -0,0 +1,115 @@
+package wtune.stmt.dao.internal;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import wtune.common.io.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DbDaoTest {
+  private static Path dataDir;
+
+  private static class Dao extends DbDao {
+    private int selectOne() throws SQLException {
+      try (final ResultSet rs = prepare("Select 1").executeQuery()) {
+        return rs.next() ? rs.getInt(1) : -1;
+      }
+    }
+  }
+
+  // Keeps the tests off the real database.
+  @BeforeAll
+  static void setUp() throws IOException {
+    dataDir = FileUtils.dataDir();
+    FileUtils.setDataDir(Files.createTempDirectory("wtune_data").toString());
+  }
+
+  @AfterAll
+  static void tearDown() {
+    FileUtils.setDataDir(dataDir.toString());
+  }
+
+  @Test
+  void testCloseConnection() throws SQLException {
+    final Dao dao = new Dao();
+    final Connection conn = dao.connection();
+    assertSame(conn, dao.connection());
+    assertEquals(1, dao.selectOne());
+    final PreparedStatement ps = dao.prepare("Select 1");
+
+    DbDao.closeConnection();
+    assertTrue(conn.isClosed());
+    DbDao.closeConnection(); // no-op without a connection
+
+    // The next access opens a new connection, and prepares the statements again.
+    final Connection reopened = dao.connection();
+    assertNotSame(conn, reopened);
+    assertEquals(1, dao.selectOne());
+    assertNotSame(ps, dao.prepare("Select 1"));
+    assertSame(reopened, dao.prepare("Select 1").getConnection());
+
+    DbDao.closeConnection();
+    assertTrue(reopened.isClosed());
+  }
+
+  @Test
+  void testWorkerThreads() throws Exception {
+    final Dao dao = new Dao();
+    final ConcurrentLinkedQueue<Connection> opened = new ConcurrentLinkedQueue<>();
+    final ConcurrentLinkedQueue<Thread> workers = new ConcurrentLinkedQueue<>();
+    final ExecutorService pool =
+        Executors.newFixedThreadPool(
+            4,
+            runnable -> {
+              final Thread worker =
+                  new Thread(
+                      () -> {
+                        try {
+                          runnable.run();
+                        } finally {
+                          DbDao.closeConnection();
+                        }
+                      });
+              workers.add(worker);
+              return worker;
+            });
+
+    try {
+      final List<Future<Integer>> futures =
+          pool.invokeAll(
+              List.of(
+                  () -> {
+                    opened.add(dao.connection());
+                    return dao.selectOne();
+                  },
+                  () -> {
+                    opened.add(dao.connection());
+                    return dao.selectOne();
+                  }));
+      for (Future<Integer> future : futures) assertEquals(1, future.get());
+    } finally {
+      pool.shutdown();
+    }
+
+    assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    // The pool terminates before its workers finish.
+    for (Thread worker : workers) worker.join();
+    assertFalse(opened.isEmpty());
+    for (Connection conn : opened) assertTrue(conn.isClosed());
+  }
+}
@@ -1,6 +1,7 @@
 package wtune.superopt.constraint;
 
-import wtune.common.utils.PartialOrder;
+import wtune.common.utils.LatencyHistogram;
+import wtune.common.utils.MetricsRegistry;
 import wtune.superopt.fragment.*;
 import wtune.superopt.logic.LogicSupport;
 import wtune.superopt.substitution.Substitution;
@@ -8,15 +9,14 @@ import wtune.superopt.uexpr.UExprTranslationResult;
 import wtune.superopt.uexpr.UExprSupport;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.lang.System.currentTimeMillis;
-import static wtune.common.utils.IterableSupport.any;
 import static wtune.common.utils.IterableSupport.zip;
 import static wtune.common.utils.ListSupport.map;
 import static wtune.superopt.constraint.Constraint.Kind.*;
 import static wtune.superopt.constraint.ConstraintSupport.*;
 import static wtune.superopt.uexpr.UExprSupport.translateToUExpr;
-import static wtune.common.utils.PartialOrder.*;
 
 class ConstraintEnumerator {
   /*
@@ -112,11 +112,16 @@ class ConstraintEnumerator {
    */
   private static final int FREE = 0, MUST_ENABLE = 1, MUST_DISABLE = 2, CONFLICT = 3;
   private static final int TIMEOUT = Integer.MAX_VALUE;
+  // Updated on each verifier call, unlike EnumerationMetrics that is published on close.
+  private static final LatencyHistogram PROVER_LATENCY =
+      MetricsRegistry.global().histogram("enumeration_prover_latency_ms");
+  private static final LongAdder PROVER_UNKNOWNS =
+      MetricsRegistry.global().counter("enumeration_prover_unknown");
 
   private final ConstraintsIndex I;
   private final long timeout;
   private final BitSet enabled;
-  private final List<Generalization> knownEqs, knownNeqs;
+  private final SubsumptionIndex<Generalization> knownEqs, knownNeqs;
   private final EnumerationStage[] stages;
   private final int tweak;
 
@@ -127,8 +132,8 @@ class ConstraintEnumerator {
     this.I = I;
     this.timeout = timeout < 0 ? Long.MAX_VALUE : timeout;
     this.enabled = new BitSet(I.size());
-    this.knownEqs = new LinkedList<>();
-    this.knownNeqs = new LinkedList<>();
+    this.knownEqs = new SubsumptionIndex<>();
+    this.knownNeqs = new SubsumptionIndex<>();
     this.tweak = tweak;
     this.stages = mkStages();
     currentSet(0, I.size() - 1, false);
@@ -150,8 +155,10 @@ class ConstraintEnumerator {
 
         metric.numTotalConstraintSets.set(I.size());
 
-        return map(knownEqs, it -> I.mkRule(it.bits.get(0)));
+        return map(knownEqs.owners(), it -> I.mkRule(it.bits.get(0)));
       }
+    } finally {
+      LogicSupport.releaseIncrementalProver();
     }
   }
 
@@ -164,6 +171,7 @@ class ConstraintEnumerator {
     final boolean dryRun =
         disable0 || disable1 || disable2 || (tweak & ENUM_FLAG_DRY_RUN) == ENUM_FLAG_DRY_RUN;
     final boolean useSpes = (tweak & ENUM_FLAG_USE_SPES) == ENUM_FLAG_USE_SPES;
+    final boolean usePortfolio = (tweak & ENUM_FLAG_USE_PORTFOLIO) == ENUM_FLAG_USE_PORTFOLIO;
 
     final EnumerationStage sourceEnum = new AttrsSourceEnumerator();
     final EnumerationStage tableInstantiation = new InstantiationEnumerator(Symbol.Kind.TABLE);
@@ -183,8 +191,8 @@ class ConstraintEnumerator {
     final EnumerationStage refEnum = new BinaryEnumerator(Reference);
     final EnumerationStage mismatchedSummationBreaker = new MismatchedSummationBreaker(disable2);
     final EnumerationStage timeout = new TimeoutBreaker(currentTimeMillis(), this.timeout);
-    final VerificationCache cache = new VerificationCache(dryRun);
-    final EnumerationStage verifier = new Verifier(useSpes);
+    final VerificationCache cache = new VerificationCache(dryRun, useSpes, usePortfolio);
+    final EnumerationStage verifier = new Verifier(useSpes, usePortfolio);
 
     final EnumerationStage[] stages;
     if (!useSpes) {
@@ -579,58 +587,31 @@ class ConstraintEnumerator {
 
   //// helper methods ////
 
-  private static PartialOrder compareBitset(BitSet bs0, BitSet bs1) {
-    assert bs0.size() == bs1.size();
+  // See "Prune" at the top: a constraint set is known EQ if it is a superset of a known EQ, and
+  // known NEQ if it is a subset of a known NEQ. A Generalization is a group of equivalent forms of
+  // a constraint set, and thus is subsumed if any of its forms is.
 
-    PartialOrder cmp = SAME;
-    for (int i = 0, bound = bs0.size(); i < bound; ++i) {
-      final boolean b0 = bs0.get(i), b1 = bs1.get(i);
-      if (b0 && !b1)
-        if (cmp == LESS_THAN) return INCOMPARABLE;
-        else cmp = GREATER_THAN;
-      else if (!b0 && b1)
-        if (cmp == GREATER_THAN) return INCOMPARABLE;
-        else cmp = LESS_THAN;
-    }
-    return cmp;
-  }
-
-  private static PartialOrder compareVerificationResult(Generalization r0, Generalization r1) {
-    for (BitSet bit0 : r0.bits) {
-      for (BitSet bit1 : r1.bits) {
-        final PartialOrder cmp = compareBitset(bit0, bit1);
-        if (cmp != INCOMPARABLE) return cmp;
-      }
-    }
-    return INCOMPARABLE;
-  }
-
-  private boolean rememberEq(List<Generalization> knownEqs, Generalization eq) {
-    boolean relaxed = knownEqs.removeIf(it -> compareVerificationResult(it, eq).greaterOrSame());
-    knownEqs.add(eq);
+  private static boolean rememberEq(SubsumptionIndex<Generalization> knownEqs, Generalization eq) {
+    final boolean relaxed = knownEqs.removeSupersetsOf(eq.bits);
+    knownEqs.add(eq, eq.bits);
     return relaxed;
   }
 
-  private boolean rememberNeq(List<Generalization> knownNeqs, Generalization neq) {
-    boolean enhanced = knownNeqs.removeIf(it -> compareVerificationResult(it, neq).lessOrSame());
-    knownNeqs.add(neq);
+  private static boolean rememberNeq(
+      SubsumptionIndex<Generalization> knownNeqs, Generalization neq) {
+    final boolean enhanced = knownNeqs.removeSubsetsOf(neq.bits);
+    knownNeqs.add(neq, neq.bits);
     return enhanced;
   }
 
-  private static boolean isKnownEq(List<Generalization> knownEqs, Generalization toCheck) {
-    for (Generalization knownEq : knownEqs)
-      if (compareVerificationResult(toCheck, knownEq).greaterOrSame()) {
-        return true;
-      }
-    return false;
+  private static boolean isKnownEq(
+      SubsumptionIndex<Generalization> knownEqs, Generalization toCheck) {
+    return knownEqs.containsSubsetOf(toCheck.bits);
   }
 
-  private static boolean isKnownNeq(List<Generalization> knownNeqs, Generalization toCheck) {
-    for (Generalization knownNeq : knownNeqs)
-      if (compareVerificationResult(toCheck, knownNeq).lessOrSame()) {
-        return true;
-      }
-    return false;
+  private static boolean isKnownNeq(
+      SubsumptionIndex<Generalization> knownNeqs, Generalization toCheck) {
+    return knownNeqs.containsSupersetOf(toCheck.bits);
   }
 
   private Generalization generalize(BitSet bits) {
@@ -942,7 +923,7 @@ class ConstraintEnumerator {
     private final List<Symbol> syms;
     private final Partitioner partitioner;
     private final int beginIndex, endIndex;
-    private final List<Generalization> localKnownNeqs, localKnownEqs;
+    private final SubsumptionIndex<Generalization> localKnownNeqs, localKnownEqs;
     private final boolean dryRun;
 
     private PartitionEnumerator(Symbol.Kind kind, boolean dryRun) {
@@ -951,8 +932,8 @@ class ConstraintEnumerator {
       this.partitioner = new Partitioner((byte) syms.size());
       this.beginIndex = I.beginIndexOfEq(kind);
       this.endIndex = I.endIndexOfEq(kind);
-      this.localKnownNeqs = new LinkedList<>();
-      this.localKnownEqs = new LinkedList<>();
+      this.localKnownNeqs = new SubsumptionIndex<>();
+      this.localKnownEqs = new SubsumptionIndex<>();
       this.dryRun = dryRun;
     }
 
@@ -1241,9 +1222,13 @@ class ConstraintEnumerator {
 
   private class VerificationCache extends AbstractEnumerationStage {
     private final boolean dryRun;
+    private final VerdictStore store;
+    private final String proverSettings;
 
-    private VerificationCache(boolean dryRun) {
+    private VerificationCache(boolean dryRun, boolean useSpes, boolean usePortfolio) {
       this.dryRun = dryRun;
+      this.store = VerdictStore.current();
+      this.proverSettings = LogicSupport.proverSettings(useSpes, usePortfolio);
     }
 
     @Override
@@ -1263,15 +1248,30 @@ class ConstraintEnumerator {
         return LogicSupport.NEQ;
       }
 
+      // Consult the durable store before invoking the verifier.
+      // A hit is treated as if it were answered by the verifier, except for the timing.
+      final Substitution rule = store == null ? null : I.mkRule(enabled);
+      final int stored = rule == null ? LogicSupport.UNKNOWN : store.lookup(rule, proverSettings);
+      final boolean fromStore = metric.numStoreHit.incrementIf(stored != LogicSupport.UNKNOWN);
+
       final long begin = currentTimeMillis();
-      final int answer = nextStage().enumerate();
+      final int answer = fromStore ? stored : nextStage().enumerate();
       final long elapsed = currentTimeMillis() - begin;
 
       if (isVerbose())
         System.out.println(
-            "  => Answer from verifier: " + LogicSupport.stringifyResult(answer) + ", " + elapsed + "ms");
-
-      metric.numProverInvocations.increment();
+            (fromStore ? "  => Answer from store: " : "  => Answer from verifier: ")
+                + LogicSupport.stringifyResult(answer)
+                + ", "
+                + elapsed
+                + "ms");
+
+      if (!fromStore) {
+        metric.numProverInvocations.increment();
+        PROVER_LATENCY.record(elapsed);
+        if (answer != LogicSupport.EQ && answer != LogicSupport.NEQ) PROVER_UNKNOWNS.increment();
+        if (rule != null) store.record(rule, proverSettings, answer);
+      }
 
       if (metric.numEq.incrementIf(answer == LogicSupport.EQ)) {
         if (metric.numRelaxed.incrementIf(rememberEq(knownEqs, generalization))) {
@@ -1296,7 +1296,7 @@ class ConstraintEnumerator {
         metric.numUnknown.increment();
         metric.elapsedUnknown.add(elapsed);
 
-        if (any(knownEqs, it -> compareVerificationResult(it, generalization).greaterOrSame())) {
+        if (knownEqs.containsSupersetOf(generalization.bits)) {
           metric.numUnknown0.increment();
         } else {
           metric.numUnknown1.increment();
@@ -1314,17 +1314,24 @@ class ConstraintEnumerator {
 
   private class Verifier extends AbstractEnumerationStage {
     private final boolean useSpes;
+    private final boolean usePortfolio;
 
-    private Verifier(boolean useSpes) {
+    private Verifier(boolean useSpes, boolean usePortfolio) {
       this.useSpes = useSpes;
+      this.usePortfolio = usePortfolio;
     }
 
     @Override
     public int enumerate() {
       final Substitution rule = I.mkRule(enabled);
-      if (!useSpes) {
+      if (usePortfolio) {
+        final UExprTranslationResult uExprs = UExprSupport.translateToUExpr(rule);
+        final int answer = LogicSupport.proveEqByPortfolio(uExprs);
+        assert answer != LogicSupport.FAST_REJECTED; // fast rejection should be checked early.
+        return answer;
+      } else if (!useSpes) {
         final UExprTranslationResult uExprs = UExprSupport.translateToUExpr(rule);
-        final int answer = LogicSupport.proveEq(uExprs);
+        final int answer = LogicSupport.proveEqIncrementally(uExprs);
         assert answer != LogicSupport.FAST_REJECTED; // fast rejection should be checked early.
         return answer;
       } else {
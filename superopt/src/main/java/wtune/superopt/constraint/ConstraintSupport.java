@@ -21,6 +21,7 @@ public interface ConstraintSupport {
   int ENUM_FLAG_USE_SPES = 32;
   int ENUM_FLAG_SINGLE_DIRECTION = 64;
   int ENUM_FLAG_DUMP = ENUM_FLAG_SINGLE_DIRECTION | ENUM_FLAG_VERBOSE;
+  int ENUM_FLAG_USE_PORTFOLIO = 128;
 
   static boolean isVerbose(int tweak) {
     return (tweak & ENUM_FLAG_VERBOSE) == ENUM_FLAG_VERBOSE;
@@ -14,6 +14,7 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
   public final IntMetric numProverInvocations = new IntMetric("#Prover");
   public final IntMetric numCacheHitEq = new IntMetric("#CacheEq");
   public final IntMetric numCacheHitNeq = new IntMetric("#CacheNeq");
+  public final IntMetric numStoreHit = new IntMetric("#StoreHit");
   public final IntMetric numEq = new IntMetric("#Eq");
   public final IntMetric numNeq = new IntMetric("#Neq");
   public final IntMetric numUnknown = new IntMetric("#Unknown");
@@ -34,6 +35,7 @@ public class EnumerationMetrics implements Metrics<EnumerationMetrics>, AutoClos
           numProverInvocations,
           numCacheHitEq,
           numCacheHitNeq,
+          numStoreHit,
           numEq,
           numNeq,
           numUnknown,
@@ -0,0 +1,164 @@
+package wtune.superopt.constraint;
+
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Index of constraint sets that answers subset/superset queries.
+ *
+ * <p>Each entry is an owner with one or more bitsets (the generalizations of a constraint set). A
+ * query is also a list of bitsets, and matches an entry if any of the query's bitsets is a
+ * subset/superset of any of the entry's.
+ *
+ * <p>The index is inverted: for each constraint index, a posting bitset records the rows (i.e.
+ * entry bitsets) containing the constraint. Then
+ *
+ * <ul>
+ *   <li>rows that are superset of Q = AND of postings of constraints in Q
+ *   <li>rows that are subset of Q = NOT (OR of postings of constraints outside Q)
+ * </ul>
+ *
+ * Both are evaluated word by word, instead of comparing Q with each row bit by bit.
+ */
+class SubsumptionIndex<T> {
+  private final List<T> owners; // null for removed ones
+  private final TIntList ownerBegin; // the first row of each owner
+  private final TIntList rowOwner;
+  private final List<BitSet> rowBits;
+  private final List<BitSet> postings;
+  private final BitSet liveRows;
+  private int numOwners;
+
+  SubsumptionIndex() {
+    this.owners = new ArrayList<>();
+    this.ownerBegin = new TIntArrayList();
+    this.rowOwner = new TIntArrayList();
+    this.rowBits = new ArrayList<>();
+    this.postings = new ArrayList<>();
+    this.liveRows = new BitSet();
+  }
+
+  int size() {
+    return numOwners;
+  }
+
+  boolean isEmpty() {
+    return numOwners == 0;
+  }
+
+  List<T> owners() {
+    final List<T> ret = new ArrayList<>(numOwners);
+    for (T owner : owners) if (owner != null) ret.add(owner);
+    return ret;
+  }
+
+  void add(T owner, List<BitSet> bits) {
+    final int ownerId = owners.size();
+    owners.add(owner);
+    ownerBegin.add(rowBits.size());
+    ++numOwners;
+    for (BitSet bs : bits) addRow(ownerId, bs);
+  }
+
+  boolean containsSubsetOf(List<BitSet> query) {
+    for (BitSet bs : query) if (!subsetRowsOf(bs).isEmpty()) return true;
+    return false;
+  }
+
+  boolean containsSupersetOf(List<BitSet> query) {
+    for (BitSet bs : query) if (!supersetRowsOf(bs).isEmpty()) return true;
+    return false;
+  }
+
+  /** Removes entries that are subset of `query`. Returns whether any entry is removed. */
+  boolean removeSubsetsOf(List<BitSet> query) {
+    boolean removed = false;
+    for (BitSet bs : query) removed |= removeRows(subsetRowsOf(bs));
+    if (removed) compactIfNecessary();
+    return removed;
+  }
+
+  /** Removes entries that are superset of `query`. Returns whether any entry is removed. */
+  boolean removeSupersetsOf(List<BitSet> query) {
+    boolean removed = false;
+    for (BitSet bs : query) removed |= removeRows(supersetRowsOf(bs));
+    if (removed) compactIfNecessary();
+    return removed;
+  }
+
+  private void addRow(int ownerId, BitSet bs) {
+    final int row = rowBits.size();
+    rowBits.add(bs);
+    rowOwner.add(ownerId);
+    liveRows.set(row);
+    for (int i = bs.nextSetBit(0); i >= 0; i = bs.nextSetBit(i + 1)) postingOf(i).set(row);
+  }
+
+  private BitSet postingOf(int index) {
+    while (postings.size() <= index) postings.add(new BitSet());
+    return postings.get(index);
+  }
+
+  private BitSet supersetRowsOf(BitSet bs) {
+    final BitSet rows = (BitSet) liveRows.clone();
+    for (int i = bs.nextSetBit(0); i >= 0 && !rows.isEmpty(); i = bs.nextSetBit(i + 1)) {
+      if (i >= postings.size()) return new BitSet(0);
+      rows.and(postings.get(i));
+    }
+    return rows;
+  }
+
+  private BitSet subsetRowsOf(BitSet bs) {
+    final BitSet rows = (BitSet) liveRows.clone();
+    for (int i = bs.nextClearBit(0), bound = postings.size(); i < bound; i = bs.nextClearBit(i + 1)) {
+      rows.andNot(postings.get(i));
+      if (rows.isEmpty()) break;
+    }
+    return rows;
+  }
+
+  private boolean removeRows(BitSet rows) {
+    if (rows.isEmpty()) return false;
+    for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+      final int ownerId = rowOwner.get(row);
+      if (owners.get(ownerId) == null) continue;
+
+      final int begin = ownerBegin.get(ownerId);
+      final int end = ownerId + 1 < ownerBegin.size() ? ownerBegin.get(ownerId + 1) : rowBits.size();
+      liveRows.clear(begin, end);
+      owners.set(ownerId, null);
+      --numOwners;
+    }
+    return true;
+  }
+
+  private void compactIfNecessary() {
+    // Removed rows still occupy the postings. Rebuild when they dominate.
+    final int numRows = rowBits.size(), numLiveRows = liveRows.cardinality();
+    if (numRows < 64 || numLiveRows * 2 > numRows) return;
+
+    final List<T> oldOwners = new ArrayList<>(owners);
+    final TIntList oldOwnerBegin = new TIntArrayList(ownerBegin);
+    final List<BitSet> oldRowBits = new ArrayList<>(rowBits);
+
+    owners.clear();
+    ownerBegin.clear();
+    rowOwner.clear();
+    rowBits.clear();
+    postings.clear();
+    liveRows.clear();
+    numOwners = 0;
+
+    for (int i = 0, bound = oldOwners.size(); i < bound; ++i) {
+      final T owner = oldOwners.get(i);
+      if (owner == null) continue;
+      final int begin = oldOwnerBegin.get(i);
+      final int end = i + 1 < bound ? oldOwnerBegin.get(i + 1) : oldRowBits.size();
+      add(owner, oldRowBits.subList(begin, end));
+    }
+  }
+}
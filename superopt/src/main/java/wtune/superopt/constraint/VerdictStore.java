@@ -0,0 +1,135 @@
+package wtune.superopt.constraint;
+
+import com.google.common.hash.Hashing;
+import wtune.common.utils.IOSupport;
+import wtune.superopt.logic.LogicSupport;
+import wtune.superopt.substitution.Substitution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Durable verification results, shared across enumeration runs and partitions.
+ *
+ * <p>A verdict is keyed by the digest of the rule's canonical string plus the prover settings, and
+ * is appended to a plain text file as "digest verdict". Appends are guarded by a file lock, so
+ * workers in different processes may share one file. A lookup miss first pulls in the lines that
+ * others appended since the last read, if the size or modified time of the file changed.
+ *
+ * <p>Only EQ and NEQ are persisted. UNKNOWN mostly stems from timeout, which depends on the load
+ * of the machine rather than the rule itself.
+ */
+public class VerdictStore {
+  private static volatile VerdictStore INSTANCE;
+
+  private final Path path;
+  private final Map<String, Integer> verdicts;
+  private long offset;
+  // Size and modified time of the file as of the last refresh.
+  private volatile long seenSize = -1, seenModified = -1;
+
+  private VerdictStore(Path path) {
+    this.path = path;
+    this.verdicts = new ConcurrentHashMap<>();
+  }
+
+  public static VerdictStore open(Path path) throws IOException {
+    if (!Files.exists(path)) Files.createFile(path);
+    final VerdictStore store = new VerdictStore(path);
+    store.refresh();
+    return store;
+  }
+
+  public static void install(VerdictStore store) {
+    INSTANCE = store;
+  }
+
+  static VerdictStore current() {
+    return INSTANCE;
+  }
+
+  public int size() {
+    return verdicts.size();
+  }
+
+  int lookup(Substitution rule, String settings) {
+    final String key = digest(rule, settings);
+    Integer verdict = verdicts.get(key);
+    if (verdict == null && isModified()) {
+      refresh();
+      verdict = verdicts.get(key);
+    }
+    return verdict == null ? LogicSupport.UNKNOWN : verdict;
+  }
+
+  void record(Substitution rule, String settings, int verdict) {
+    if (verdict != LogicSupport.EQ && verdict != LogicSupport.NEQ) return;
+
+    final String key = digest(rule, settings);
+    if (verdicts.putIfAbsent(key, verdict) != null) return;
+
+    final String line = key + ' ' + LogicSupport.stringifyResult(verdict);
+    IOSupport.printWithLock(path, out -> out.println(line));
+  }
+
+  private static String digest(Substitution rule, String settings) {
+    final String key = settings + '|' + rule.canonicalStringify();
+    return Hashing.sha256().hashString(key, UTF_8).toString();
+  }
+
+  private boolean isModified() {
+    final BasicFileAttributes attrs = attributes();
+    return attrs.size() != seenSize || attrs.lastModifiedTime().toMillis() != seenModified;
+  }
+
+  private BasicFileAttributes attributes() {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private synchronized void refresh() {
+    // Taken before the read, so that a concurrent append is seen by the next check.
+    final BasicFileAttributes attrs = attributes();
+    seenSize = attrs.size();
+    seenModified = attrs.lastModifiedTime().toMillis();
+
+    try (final FileChannel channel = FileChannel.open(path, READ)) {
+      final long size = channel.size();
+      if (size <= offset) return;
+
+      final ByteBuffer buffer = ByteBuffer.allocate((int) (size - offset));
+      while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) ;
+
+      // Only consume complete lines. A partial tail is being written by another worker.
+      final String chunk = new String(buffer.array(), 0, buffer.position(), UTF_8);
+      final int end = chunk.lastIndexOf('\n');
+      if (end < 0) return;
+
+      for (String line : chunk.substring(0, end).split("\n")) {
+        final String[] fields = line.split(" ");
+        if (fields.length != 2) continue;
+        switch (fields[1]) {
+          case "EQ" -> verdicts.putIfAbsent(fields[0], LogicSupport.EQ);
+          case "NEQ" -> verdicts.putIfAbsent(fields[0], LogicSupport.NEQ);
+        }
+      }
+      offset += end + 1;
+
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+}
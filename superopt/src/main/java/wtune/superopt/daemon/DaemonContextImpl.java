@@ -10,12 +10,14 @@ import wtune.sql.schema.Schema;
 import wtune.stmt.App;
 import wtune.stmt.Statement;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.superopt.profiler.ConnectionProvider;
 import wtune.superopt.profiler.DataSourceFactory;
 import wtune.superopt.substitution.SubstitutionBank;
 import wtune.superopt.substitution.SubstitutionSupport;
 
 import java.io.IOException;
+import java.lang.System.Logger.Level;
 import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.nio.file.Paths;
@@ -24,28 +26,44 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static wtune.sql.plan.PlanSupport.translateAsAst;
 
 public class DaemonContextImpl implements DaemonContext {
+  private static final String TWEAKS_KEY = "optimizer_tweaks";
+
   private final SubstitutionBank bank;
+  private final OptimizerConfig optimizerConfig; // default of the contexts
+  private final Map<String, OptimizerConfig> contextOptimizerConfigs;
   private final Map<String, App> appMap;
   private final Map<String, Registration> regs;
 
   private final Server server;
   private final ExecutorService executor;
 
-  private boolean stopped;
+  private final AtomicLong numRejected;
+  private volatile boolean stopped;
 
-  private DaemonContextImpl(SubstitutionBank bank, Server server, ExecutorService executor) {
+  private DaemonContextImpl(
+      SubstitutionBank bank,
+      OptimizerConfig optimizerConfig,
+      Map<String, OptimizerConfig> contextOptimizerConfigs,
+      Server server,
+      ExecutorService executor) {
     this.bank = bank;
+    this.optimizerConfig = optimizerConfig;
+    this.contextOptimizerConfigs = contextOptimizerConfigs;
     this.executor = executor;
-    this.appMap = new HashMap<>();
-    this.regs = new HashMap<>();
+    this.appMap = new ConcurrentHashMap<>();
+    this.regs = new ConcurrentHashMap<>();
     this.server = server;
+    this.numRejected = new AtomicLong();
   }
 
   public static DaemonContext make(Properties config) throws IOException {
@@ -54,20 +72,37 @@ public class DaemonContextImpl implements DaemonContext {
     final String bankPath = config.getProperty("bank_path", "wtune_data/filtered_bank");
     final SubstitutionBank bank = SubstitutionSupport.loadBank(Paths.get(bankPath));
 
+    // "optimizer_tweaks" is the default, and "optimizer_tweaks.<context>" is of a context.
+    final OptimizerConfig optimizerConfig =
+        new OptimizerConfig(Integer.parseInt(config.getProperty(TWEAKS_KEY, "0")));
+    final Map<String, OptimizerConfig> contextOptimizerConfigs = new HashMap<>();
+    for (String key : config.stringPropertyNames())
+      if (key.startsWith(TWEAKS_KEY + "."))
+        contextOptimizerConfigs.put(
+            key.substring(TWEAKS_KEY.length() + 1),
+            new OptimizerConfig(Integer.parseInt(config.getProperty(key))));
+
     final int port = Integer.parseInt(config.getProperty("port", "9876"));
     final String inetAddrStr = config.getProperty("bind_address", "localhost");
     final InetAddress inetAddr = Inet4Address.getByName(inetAddrStr);
-    final UDPServer server = new UDPServer(inetAddr, port, new ArrayBlockingQueue<>(1024));
+    final int numReceivers = Integer.parseInt(config.getProperty("receivers", "1"));
+    final int queueCapacity = Integer.parseInt(config.getProperty("queue_capacity", "1024"));
+    final Server server = new NioUDPServer(inetAddr, port, numReceivers, queueCapacity);
 
     final String maxWorkersStr = config.getProperty("max_workers");
     final int maxWorkers =
         maxWorkersStr == null
             ? Runtime.getRuntime().availableProcessors()
             : Integer.parseInt(maxWorkersStr);
+    // With a bounded queue, a pool only grows beyond the core size once the queue is full.
+    // Thus, start with `maxWorkers` core threads and let the idle ones time out.
     final ThreadPoolExecutor executor =
-        new ThreadPoolExecutor(1, maxWorkers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024));
+        new ThreadPoolExecutor(
+            maxWorkers, maxWorkers, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity));
+    executor.allowCoreThreadTimeOut(true);
 
-    return new DaemonContextImpl(bank, server, executor);
+    return new DaemonContextImpl(
+        bank, optimizerConfig, contextOptimizerConfigs, server, executor);
   }
 
   @Override
@@ -86,7 +121,9 @@ public class DaemonContextImpl implements DaemonContext {
     final Schema schema = stmt.app().schema("base");
     final SqlNode ast = SqlSupport.parseSql(schema.dbType(), stmt.rawSql());
     final PlanContext plan = PlanSupport.assemblePlan(ast, schema);
-    final Optimizer optimizer = Optimizer.mk(bank);
+    final OptimizerConfig config =
+        contextOptimizerConfigs.getOrDefault(stmt.appName(), optimizerConfig);
+    final Optimizer optimizer = Optimizer.mk(bank, config);
     final Set<PlanContext> optimized = optimizer.optimize(plan);
     final Set<SqlNode> sqls = SetSupport.map(optimized, it -> translateAsAst(it, it.root(), false));
     return Iterables.get(sqls, 0); // TODO
@@ -109,6 +146,11 @@ public class DaemonContextImpl implements DaemonContext {
         final byte[] packet = server.poll();
         executor.execute(() -> new PacketHandler(this).handle(packet));
 
+      } catch (RejectedExecutionException ex) {
+        // All workers are busy. Drop it rather than stalling the ingestion.
+        if (numRejected.incrementAndGet() == 1)
+          LOG.log(Level.WARNING, "workers are saturated. Packets are being dropped.");
+
       } catch (InterruptedException ex) {
         break;
       }
@@ -120,5 +162,6 @@ public class DaemonContextImpl implements DaemonContext {
     server.stop();
     stopped = true;
     executor.shutdown();
+    LOG.log(Level.INFO, "daemon stopped. #rejected packets: " + numRejected.get());
   }
 }
@@ -0,0 +1,176 @@
+package wtune.superopt.daemon;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+import static wtune.superopt.daemon.DaemonContext.LOG;
+
+/**
+ * UDP server based on DatagramChannel.
+ *
+ * <p>Each receiver thread owns a direct buffer that is reused for every datagram, so only the
+ * payload is copied out. With more than one receiver, each binds its own channel with
+ * SO_REUSEPORT where supported, and the kernel spreads the datagrams among them. Otherwise, the
+ * receivers share one channel.
+ *
+ * <p>A packet is never blocked on: if the queue is full, it is dropped and counted. So are the
+ * malformed ones. See {@link #stats()}.
+ */
+public class NioUDPServer implements Server {
+  private static final byte MAGIC = 0x19;
+  private static final int HEADER_SIZE = 2 + Integer.BYTES;
+  private static final int MAX_DATAGRAM_SIZE = 65536;
+
+  private final List<DatagramChannel> channels;
+  private final int numReceivers;
+  private final BlockingQueue<byte[]> queue;
+  private final int queueCapacity;
+  private final List<Thread> receivers;
+  private volatile boolean stopped;
+
+  private final AtomicLong numReceived = new AtomicLong();
+  private final AtomicLong numMalformed = new AtomicLong();
+  private final AtomicLong numDropped = new AtomicLong();
+  private final AtomicLong maxQueued = new AtomicLong();
+
+  public NioUDPServer(InetAddress address, int port, int numReceivers, int queueCapacity)
+      throws IOException {
+    if (numReceivers <= 0)
+      throw new IllegalArgumentException("invalid number of receivers: " + numReceivers);
+
+    this.numReceivers = numReceivers;
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    this.queueCapacity = queueCapacity;
+    this.channels = new ArrayList<>(numReceivers);
+    this.receivers = new ArrayList<>(numReceivers);
+
+    final InetSocketAddress endpoint = new InetSocketAddress(address, port);
+    final DatagramChannel first = DatagramChannel.open();
+    channels.add(first);
+    try {
+      final boolean reusePort =
+          numReceivers > 1 && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+      if (reusePort) first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+      first.bind(endpoint);
+
+      for (int i = 1; reusePort && i < numReceivers; ++i) {
+        final DatagramChannel channel = DatagramChannel.open();
+        channels.add(channel);
+        channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        channel.bind(endpoint);
+      }
+
+    } catch (IOException | RuntimeException ex) {
+      closeChannels();
+      throw ex;
+    }
+  }
+
+  @Override
+  public void run() {
+    if (stopped) throw new IllegalStateException("server has been stopped");
+
+    // The calling thread serves as the last receiver.
+    for (int i = 0; i < numReceivers - 1; ++i) {
+      final DatagramChannel channel = channels.get(i % channels.size());
+      final Thread receiver = new Thread(() -> receive(channel), "udp-receiver-%d".formatted(i));
+      receiver.setDaemon(true);
+      receivers.add(receiver);
+      receiver.start();
+    }
+
+    receive(channels.get((numReceivers - 1) % channels.size()));
+  }
+
+  @Override
+  public void stop() {
+    if (stopped) return;
+    stopped = true;
+    closeChannels();
+    for (Thread receiver : receivers) receiver.interrupt();
+    LOG.log(INFO, "UDP server stopped. " + stats());
+  }
+
+  @Override
+  public byte[] poll() throws InterruptedException {
+    return queue.take();
+  }
+
+  public String stats() {
+    return "received=%d, malformed=%d, dropped=%d, queued=%d/%d, max_queued=%d"
+        .formatted(
+            numReceived.get(),
+            numMalformed.get(),
+            numDropped.get(),
+            queue.size(),
+            queueCapacity,
+            maxQueued.get());
+  }
+
+  private void receive(DatagramChannel channel) {
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+
+    while (!stopped) {
+      try {
+        buffer.clear();
+        if (channel.receive(buffer) == null) continue;
+        numReceived.incrementAndGet();
+
+        buffer.flip();
+        final byte[] payload = extractPayload(buffer);
+        if (payload == null) {
+          numMalformed.incrementAndGet();
+          continue;
+        }
+
+        if (!queue.offer(payload)) {
+          if (numDropped.incrementAndGet() == 1)
+            LOG.log(WARNING, "UDP server queue is full. Packets are being dropped.");
+          continue;
+        }
+
+        final int queued = queue.size();
+        if (queued > maxQueued.get()) maxQueued.accumulateAndGet(queued, Math::max);
+
+      } catch (ClosedChannelException ex) {
+        break; // stopped
+      } catch (IOException ex) {
+        if (!stopped) LOG.log(WARNING, "failed to receive packet", ex);
+      }
+    }
+  }
+
+  // Packet: magic (2 bytes), length (int), payload
+  private static byte[] extractPayload(ByteBuffer buffer) {
+    if (buffer.remaining() < HEADER_SIZE) return null;
+    if (buffer.get() != MAGIC || buffer.get() != MAGIC) return null;
+
+    final int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) return null;
+
+    final byte[] payload = new byte[length];
+    buffer.get(payload);
+    return payload;
+  }
+
+  private void closeChannels() {
+    for (DatagramChannel channel : channels) {
+      try {
+        channel.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+}
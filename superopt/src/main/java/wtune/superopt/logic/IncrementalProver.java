@@ -0,0 +1,93 @@
+package wtune.superopt.logic;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Solver;
+import wtune.superopt.fragment.Fragment;
+import wtune.superopt.substitution.Substitution;
+import wtune.superopt.uexpr.UExprTranslationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prover that keeps the Z3 context and solver across the proofs of one template pair.
+ *
+ * <p>The constraint sets of a template pair are enumerated in an order that successive sets share
+ * most of their axioms. Each axiom is asserted in its own scope, so that a proof only pops the
+ * diverging suffix and pushes the new axioms, instead of rebuilding everything in a fresh context.
+ * The terms that only depend on the context (sorts, functions, basic axioms) are shared as well.
+ */
+class IncrementalProver implements AutoCloseable {
+  // Z3 keeps the terms of a context alive. Renew the context periodically to bound the memory.
+  private static final int MAX_PROOFS_PER_CONTEXT = 1024;
+
+  private final Fragment source, target;
+  private final List<BoolExpr> asserted;
+  private Context z3;
+  private Solver solver;
+  private LogicProver.Cache cache;
+  private int numProofs;
+
+  IncrementalProver(Substitution rule) {
+    this.source = rule._0();
+    this.target = rule._1();
+    this.asserted = new ArrayList<>();
+  }
+
+  boolean isFor(Substitution rule) {
+    return rule._0() == source && rule._1() == target;
+  }
+
+  int proveEq(UExprTranslationResult uExprs) {
+    if (z3 == null || numProofs >= MAX_PROOFS_PER_CONTEXT) reset();
+    ++numProofs;
+
+    try {
+      return new LogicProver(uExprs, z3, cache).proveEq(this);
+    } catch (RuntimeException ex) {
+      // The scopes of the solver may be inconsistent with `asserted` now. Start over next time.
+      close();
+      throw ex;
+    }
+  }
+
+  /** Makes the solver assert exactly `axioms`, reusing the longest common prefix. */
+  Solver sync(List<BoolExpr> axioms) {
+    int common = 0;
+    final int bound = Math.min(asserted.size(), axioms.size());
+    while (common < bound && asserted.get(common).equals(axioms.get(common))) ++common;
+
+    final int numPops = asserted.size() - common;
+    if (numPops > 0) {
+      solver.pop(numPops);
+      asserted.subList(common, asserted.size()).clear();
+    }
+
+    for (BoolExpr axiom : axioms.subList(common, axioms.size())) {
+      solver.push();
+      solver.add(axiom);
+      asserted.add(axiom);
+    }
+
+    return solver;
+  }
+
+  private void reset() {
+    close();
+    z3 = new Context();
+    solver = z3.mkSolver();
+    cache = new LogicProver.Cache(z3);
+  }
+
+  @Override
+  public void close() {
+    if (z3 == null) return;
+    z3.close();
+    z3 = null;
+    solver = null;
+    cache = null;
+    asserted.clear();
+    numProofs = 0;
+  }
+}
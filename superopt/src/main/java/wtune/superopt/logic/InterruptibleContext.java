@@ -0,0 +1,63 @@
+package wtune.superopt.logic;
+
+import com.microsoft.z3.Context;
+import com.microsoft.z3.Solver;
+import com.microsoft.z3.Symbol;
+import com.microsoft.z3.Tactic;
+import com.microsoft.z3.Z3Exception;
+
+/**
+ * A Z3 context that refuses to make solvers once interrupted.
+ *
+ * <p>{@link Context#interrupt()} only stops the solver call in progress. A prover issuing many
+ * short calls, e.g., SPES, would go on with the next one. With this context, the next call fails
+ * with a {@link Z3Exception} instead. (A call made between the check and the interruption still
+ * runs, bounded by the global SMT timeout.)
+ */
+class InterruptibleContext extends Context {
+  private volatile boolean interrupted;
+
+  boolean isInterrupted() {
+    return interrupted;
+  }
+
+  @Override
+  public void interrupt() {
+    interrupted = true;
+    super.interrupt();
+  }
+
+  @Override
+  public Solver mkSolver() {
+    checkInterrupted();
+    return super.mkSolver();
+  }
+
+  @Override
+  public Solver mkSolver(Symbol logic) {
+    checkInterrupted();
+    return super.mkSolver(logic);
+  }
+
+  @Override
+  public Solver mkSolver(String logic) {
+    checkInterrupted();
+    return super.mkSolver(logic);
+  }
+
+  @Override
+  public Solver mkSolver(Tactic tactic) {
+    checkInterrupted();
+    return super.mkSolver(tactic);
+  }
+
+  @Override
+  public Solver mkSimpleSolver() {
+    checkInterrupted();
+    return super.mkSimpleSolver();
+  }
+
+  private void checkInterrupted() {
+    if (interrupted) throw new Z3Exception("interrupted");
+  }
+}
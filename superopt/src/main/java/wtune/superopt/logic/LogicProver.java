@@ -26,23 +26,57 @@ class LogicProver {
   private final Cache cache;
 
   private int callCount;
+  private int randomSeed;
 
   LogicProver(UExprTranslationResult uExprs, Context z3) {
+    this(uExprs, z3, new Cache(z3));
+  }
+
+  LogicProver(UExprTranslationResult uExprs, Context z3, Cache cache) {
     this.rule = uExprs.rule();
     this.uExprs = uExprs;
     this.z3 = z3;
     this.constraints = new ArrayList<>();
-    this.cache = new Cache();
+    this.cache = cache;
+  }
+
+  void setRandomSeed(int randomSeed) {
+    this.randomSeed = randomSeed;
   }
 
   int proveEq() {
+    return proveEq(null);
+  }
+
+  int proveEq(IncrementalProver incremental) {
     if (LogicSupport.isFastRejected(uExprs)) return LogicSupport.FAST_REJECTED;
 
     trConstraints();
+
+    final Solver solver;
+    if (incremental != null) {
+      solver = incremental.sync(constraints);
+    } else {
+      solver = z3.mkSolver();
+      if (randomSeed != 0) {
+        final Params params = z3.mkParams();
+        params.add("random_seed", randomSeed);
+        solver.setParameters(params);
+      }
+      solver.add(constraints.toArray(BoolExpr[]::new));
+    }
+
     // master: the side with more bounded variables, or the source side if the numbers are equal
     // slave: the side with less bounded variables, or the target side if the numbers are equal
     final UTerm srcTerm = uExprs.sourceExpr(), tgtTerm = uExprs.targetExpr();
-    return proveEq0(LogicSupport.getMaster(srcTerm, tgtTerm), LogicSupport.getSlave(srcTerm, tgtTerm));
+    // The solver may be reused by later proofs. Scope the assertions made by proveEq0.
+    solver.push();
+    try {
+      return proveEq0(
+          LogicSupport.getMaster(srcTerm, tgtTerm), LogicSupport.getSlave(srcTerm, tgtTerm), solver);
+    } finally {
+      solver.pop();
+    }
   }
 
   private void trConstraints() {
@@ -98,15 +132,22 @@ class LogicProver {
   }
 
   private void trTableBasic(String tableName) {
+    constraints.add(cache.tableAxioms.computeIfAbsent(tableName, this::mkTableAxiom));
+  }
+
+  private void trAttrsBasic(String attrsName) {
+    constraints.add(cache.attrsAxioms.computeIfAbsent(attrsName, this::mkAttrsAxiom));
+  }
+
+  private BoolExpr mkTableAxiom(String tableName) {
     final FuncDecl tableFunc = tableFunc(tableName);
     final Expr tuple = z3.mkConst("x", tupleSort());
     final Expr[] vars = new Expr[] {tuple};
     final Expr body = z3.mkGe((ArithExpr) tableFunc.apply(tuple), zero());
-    final BoolExpr assertion = mkForall(vars, body);
-    constraints.add(assertion);
+    return mkForall(vars, body);
   }
 
-  private void trAttrsBasic(String attrsName) {
+  private BoolExpr mkAttrsAxiom(String attrsName) {
     final FuncDecl projFunc = projFunc(attrsName);
     final Expr tuple = z3.mkConst("x", tupleSort());
     final IntExpr schema = z3.mkIntConst("s");
@@ -114,8 +155,7 @@ class LogicProver {
     final BoolExpr projIsNull = z3.mkEq(projFunc.apply(schema, tuple), nullTuple());
     final BoolExpr tupleIsNull = z3.mkEq(tuple, nullTuple());
     final BoolExpr body = z3.mkImplies(tupleIsNull, projIsNull);
-    final BoolExpr assertion = mkForall(vars, body);
-    constraints.add(assertion);
+    return mkForall(vars, body);
   }
 
   private void trAttrSub(Constraint c) {
@@ -247,13 +287,11 @@ class LogicProver {
     }
   }
 
-  private int proveEq0(UTerm masterTerm, UTerm slaveTerm) {
+  private int proveEq0(UTerm masterTerm, UTerm slaveTerm, Solver solver) {
     final UTerm masterBody = LogicSupport.getBody(masterTerm);
     final UTerm slaveBody = LogicSupport.getBody(slaveTerm);
     final Set<UVar> masterVars = LogicSupport.getBoundedVars(masterTerm);
     final Set<UVar> slaveVars = LogicSupport.getBoundedVars(slaveTerm);
-    final Solver solver = z3.mkSolver();
-    solver.add(constraints.toArray(BoolExpr[]::new));
 
     // simple case: E = E' or Sum{x}(E) = Sum{x}(E') ==> tr(E) = tr(E')
     if (masterVars.size() == slaveVars.size()) {
@@ -547,7 +585,6 @@ class LogicProver {
       System.out.println("(check-sat)");
       System.out.println("==== End of Snippet-" + callCount + " ====");
       System.out.println("==> Result: " + res);
-      return res;
     }
     solver.pop();
     return res;
@@ -570,18 +607,31 @@ class LogicProver {
     return z3.mkFuncDecl("concat" + arity, argSorts, tupleSort());
   }
 
-  private class Cache {
-    private final Lazy<IntNum> zero = Lazy.mk(() -> z3.mkInt(0));
-    private final Lazy<IntNum> one = Lazy.mk(() -> z3.mkInt(1));
-    private final Lazy<Sort> tupleSort = Lazy.mk(() -> z3.mkUninterpretedSort("Tuple"));
-    private final Lazy<Expr> nullTuple = Lazy.mk(() -> z3.mkConst("Null", tupleSort.get()));
-    private final Lazy<Sort[]> projFuncArgSorts =
-        Lazy.mk(() -> new Sort[] {z3.getIntSort(), tupleSort.get()});
-    private final Map<String, FuncDecl> tableFuncs =
-        MapSupport.mkLazy(it -> z3.mkFuncDecl(it, tupleSort.get(), z3.getIntSort()));
-    private final Map<String, FuncDecl> projFuncs =
-        MapSupport.mkLazy(it -> z3.mkFuncDecl(it, projFuncArgSorts.get(), tupleSort.get()));
-    private final Map<String, FuncDecl> predFuncs =
-        MapSupport.mkLazy(it -> z3.mkFuncDecl(it, tupleSort.get(), z3.getBoolSort()));
+  // Terms that only depend on the context. Shared by the provers on the same context.
+  static class Cache {
+    private final Lazy<IntNum> zero;
+    private final Lazy<IntNum> one;
+    private final Lazy<Sort> tupleSort;
+    private final Lazy<Expr> nullTuple;
+    private final Lazy<Sort[]> projFuncArgSorts;
+    private final Map<String, FuncDecl> tableFuncs;
+    private final Map<String, FuncDecl> projFuncs;
+    private final Map<String, FuncDecl> predFuncs;
+    private final Map<String, BoolExpr> tableAxioms;
+    private final Map<String, BoolExpr> attrsAxioms;
+
+    Cache(Context z3) {
+      zero = Lazy.mk(() -> z3.mkInt(0));
+      one = Lazy.mk(() -> z3.mkInt(1));
+      tupleSort = Lazy.mk(() -> z3.mkUninterpretedSort("Tuple"));
+      nullTuple = Lazy.mk(() -> z3.mkConst("Null", tupleSort.get()));
+      projFuncArgSorts = Lazy.mk(() -> new Sort[] {z3.getIntSort(), tupleSort.get()});
+      tableFuncs = MapSupport.mkLazy(it -> z3.mkFuncDecl(it, tupleSort.get(), z3.getIntSort()));
+      projFuncs =
+          MapSupport.mkLazy(it -> z3.mkFuncDecl(it, projFuncArgSorts.get(), tupleSort.get()));
+      predFuncs = MapSupport.mkLazy(it -> z3.mkFuncDecl(it, tupleSort.get(), z3.getBoolSort()));
+      tableAxioms = new HashMap<>();
+      attrsAxioms = new HashMap<>();
+    }
   }
 }
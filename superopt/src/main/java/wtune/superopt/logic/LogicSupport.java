@@ -12,13 +12,21 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class LogicSupport {
+  private static final String SMT_TIMEOUT = System.getProperty("wetune.smt_timeout", "20");
+  private static final String SMT_RANDOM_SEED = "9876543210";
+  private static final boolean SMT_INCREMENTAL =
+      Boolean.parseBoolean(System.getProperty("wetune.smt_incremental", "true"));
+  private static final ThreadLocal<IncrementalProver> INCREMENTAL_PROVERS = new ThreadLocal<>();
+  // Number of Z3 racers with non-default seeds in the portfolio mode.
+  private static final int PORTFOLIO_EXTRA_SEEDS =
+      Integer.parseInt(System.getProperty("wetune.portfolio_seeds", "0"));
+
   static {
-    final String timeout = System.getProperty("wetune.smt_timeout", "20");
-    Global.setParameter("smt.random_seed", "9876543210");
+    Global.setParameter("smt.random_seed", SMT_RANDOM_SEED);
     Global.setParameter("smt.qi.quick_checker", "2");
     Global.setParameter("smt.qi.max_multi_patterns", "1024");
     Global.setParameter("smt.mbqi.max_iterations", "3");
-    Global.setParameter("timeout", timeout);
+    Global.setParameter("timeout", SMT_TIMEOUT);
     Global.setParameter("combined_solver.solver2_unknown", "0");
     Global.setParameter("pp.max_depth", "100");
   }
@@ -52,12 +60,57 @@ public abstract class LogicSupport {
     return NUM_INVOCATIONS.get();
   }
 
+  public static String proverSettings(boolean useSpes, boolean usePortfolio) {
+    if (usePortfolio)
+      return "portfolio;" + z3Settings() + ";extra_seeds=" + PORTFOLIO_EXTRA_SEEDS;
+    if (useSpes) return "spes";
+    // Only the plain Z3 prover solves incrementally.
+    return z3Settings() + ";incremental=" + SMT_INCREMENTAL;
+  }
+
+  private static String z3Settings() {
+    return "z3;timeout=" + SMT_TIMEOUT + ";seed=" + SMT_RANDOM_SEED;
+  }
+
   public static int proveEq(UExprTranslationResult uExprs) {
     try (final Context z3 = new Context()) {
       return new LogicProver(uExprs, z3).proveEq();
     }
   }
 
+  /**
+   * Same as {@link #proveEq(UExprTranslationResult)}, but reuses the Z3 context of the previous
+   * proof if it is of the same template pair. Call {@link #releaseIncrementalProver()} once done
+   * with the pair.
+   */
+  public static int proveEqIncrementally(UExprTranslationResult uExprs) {
+    if (!SMT_INCREMENTAL) return proveEq(uExprs);
+
+    IncrementalProver prover = INCREMENTAL_PROVERS.get();
+    if (prover == null || !prover.isFor(uExprs.rule())) {
+      if (prover != null) prover.close();
+      prover = new IncrementalProver(uExprs.rule());
+      INCREMENTAL_PROVERS.set(prover);
+    }
+    return prover.proveEq(uExprs);
+  }
+
+  public static void releaseIncrementalProver() {
+    final IncrementalProver prover = INCREMENTAL_PROVERS.get();
+    if (prover != null) {
+      prover.close();
+      INCREMENTAL_PROVERS.remove();
+    }
+  }
+
+  /**
+   * Races LogicProver (with optionally extra random seeds, see `wetune.portfolio_seeds`) and SPES.
+   * Returns the first definitive answer, or UNKNOWN if none.
+   */
+  public static int proveEqByPortfolio(UExprTranslationResult uExprs) {
+    return new PortfolioProver(uExprs, PORTFOLIO_EXTRA_SEEDS).proveEq();
+  }
+
   public static int proveEqBySpes(Substitution rule) {
     try{
       var planPair = SubstitutionSupport.translateAsPlan2(rule);
@@ -68,6 +121,17 @@ public abstract class LogicSupport {
     }
   }
 
+  /** Proves by SPES on the given context, which may be interrupted to stop the proof. */
+  static int proveEqBySpes(Substitution rule, Context z3) {
+    try {
+      var planPair = SubstitutionSupport.translateAsPlan2(rule);
+      boolean eq = SPESSupport.prove(planPair.getLeft(), planPair.getRight(), z3);
+      return eq ? EQ : NEQ;
+    } catch (Exception e) {
+      return NEQ;
+    }
+  }
+
   public static boolean isMismatchedOutput(UExprTranslationResult uExprs) {
     // case 1: different output schema
     final UVar sourceOutVar = uExprs.sourceOutVar();
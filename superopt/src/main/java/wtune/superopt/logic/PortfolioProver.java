@@ -0,0 +1,139 @@
+package wtune.superopt.logic;
+
+import wtune.superopt.uexpr.UExprTranslationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static wtune.superopt.logic.LogicSupport.*;
+
+/**
+ * Races several provers on the same rule and takes the first definitive answer.
+ *
+ * <p>The racers are LogicProver (Z3 with the default seed), LogicProver with other random seeds,
+ * and SPES. Definitive answers are EQ/NEQ from Z3 and EQ from SPES. (SPES answers NEQ whenever it
+ * fails to prove, which is not a counterexample.) Once one is obtained, the others are stopped by
+ * interrupting their Z3 contexts (see {@link InterruptibleContext}). UNKNOWN is returned if no
+ * racer is definitive.
+ *
+ * <p>Racers run on a shared pool of "wetune.portfolio_threads" (default: the number of processors)
+ * threads. If it is busy, racers queue up, and the race degrades to running them in turn.
+ */
+class PortfolioProver {
+  private static final int NUM_THREADS =
+      Integer.getInteger("wetune.portfolio_threads", Runtime.getRuntime().availableProcessors());
+  private static final ExecutorService EXECUTOR =
+      Executors.newFixedThreadPool(
+          NUM_THREADS,
+          runnable -> {
+            final Thread thread = new Thread(runnable, "portfolio-prover");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private final UExprTranslationResult uExprs;
+  private final int numExtraSeeds;
+  private final List<Racer> racers;
+
+  PortfolioProver(UExprTranslationResult uExprs, int numExtraSeeds) {
+    this.uExprs = uExprs;
+    this.numExtraSeeds = numExtraSeeds;
+    this.racers = new ArrayList<>(numExtraSeeds + 2);
+  }
+
+  int proveEq() {
+    if (isFastRejected(uExprs)) return FAST_REJECTED;
+
+    final CompletionService<Integer> service = new ExecutorCompletionService<>(EXECUTOR);
+    final List<Future<Integer>> futures = new ArrayList<>(numExtraSeeds + 2);
+    for (int i = 0; i <= numExtraSeeds; ++i) racers.add(new Z3Racer(i));
+    racers.add(new SpesRacer());
+    for (Racer racer : racers) futures.add(service.submit(racer));
+
+    try {
+      for (int i = 0, bound = futures.size(); i < bound; ++i) {
+        final int answer = answerOf(service.take());
+        if (answer == EQ || answer == NEQ) return answer;
+      }
+      return UNKNOWN;
+
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return UNKNOWN;
+
+    } finally {
+      for (Racer racer : racers) racer.cancel();
+      for (Future<Integer> future : futures) future.cancel(true);
+    }
+  }
+
+  private static int answerOf(Future<Integer> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException | CancellationException ex) {
+      return UNKNOWN;
+    }
+  }
+
+  /** A prover on its own Z3 context, which is interrupted on {@link #cancel()}. */
+  abstract static class Racer implements Callable<Integer> {
+    private InterruptibleContext z3;
+    private boolean cancelled;
+
+    @Override
+    public Integer call() {
+      final InterruptibleContext z3;
+      synchronized (this) {
+        if (cancelled) return UNKNOWN;
+        z3 = this.z3 = new InterruptibleContext();
+      }
+
+      try {
+        return race(z3);
+
+      } catch (RuntimeException ex) {
+        // Mostly Z3Exception caused by the interruption.
+        return UNKNOWN;
+
+      } finally {
+        synchronized (this) {
+          this.z3 = null;
+          z3.close();
+        }
+      }
+    }
+
+    protected abstract int race(InterruptibleContext z3);
+
+    synchronized void cancel() {
+      cancelled = true;
+      if (z3 != null) z3.interrupt();
+    }
+  }
+
+  private class Z3Racer extends Racer {
+    private final int randomSeed;
+
+    private Z3Racer(int randomSeed) {
+      this.randomSeed = randomSeed;
+    }
+
+    @Override
+    protected int race(InterruptibleContext z3) {
+      final LogicProver prover = new LogicProver(uExprs, z3);
+      // Seed 0 stands for the global one.
+      prover.setRandomSeed(randomSeed);
+      return prover.proveEq();
+    }
+  }
+
+  private class SpesRacer extends Racer {
+    @Override
+    protected int race(InterruptibleContext z3) {
+      // Only EQ of SPES is definitive.
+      final int answer = proveEqBySpes(uExprs.rule(), z3);
+      return answer == EQ && !z3.isInterrupted() ? EQ : UNKNOWN;
+    }
+  }
+}
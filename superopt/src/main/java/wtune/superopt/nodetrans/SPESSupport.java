@@ -8,6 +8,15 @@ import wtune.sql.plan.PlanContext;
 public class SPESSupport {
   public static boolean prove(PlanContext plan1, PlanContext plan2) {
     try (final Context ctx = new Context()) {
+      return prove(plan1, plan2, ctx);
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+  /** Proves on a context owned by the caller, e.g., one to be interrupted from another thread. */
+  public static boolean prove(PlanContext plan1, PlanContext plan2, Context ctx) {
+    try {
       final AlgeNode algeNode0 = AlgeRule.normalize(plan2AlgeNode(plan1, ctx));
       final AlgeNode algeNode1 = AlgeRule.normalize(plan2AlgeNode(plan2, ctx));
 
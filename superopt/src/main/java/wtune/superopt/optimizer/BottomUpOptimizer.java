@@ -8,9 +8,10 @@ import wtune.sql.plan.PlanNode;
 import wtune.sql.plan.PlanSupport;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
-import wtune.superopt.util.Fingerprint;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import static java.util.Collections.*;
 import static java.util.Objects.requireNonNull;
@@ -21,17 +22,29 @@ import static wtune.superopt.optimizer.PreprocessRule.*;
 
 class BottomUpOptimizer implements Optimizer {
   private final SubstitutionBank rules;
+  private final OptimizerConfig config;
 
   private Memo memo;
+  private String lastError;
 
   private long startAt;
   private long timeout;
+  private volatile boolean cancelled;
+
+  // Anytime optimization, see `publishImprovements`
+  private ImprovementListener listener;
+  private SubPlan rootPlan;
+  private PlanContext origin;
+  private CostModel.Cost bestCost;
+  private Set<Integer> published;
 
   private boolean tracing, verbose, extended, keepOriginal;
   private final Lazy<Map<String, OptimizationStep>> traces;
 
-  BottomUpOptimizer(SubstitutionBank rules) {
+  BottomUpOptimizer(SubstitutionBank rules, OptimizerConfig config) {
     this.rules = requireNonNull(rules);
+    this.config = requireNonNull(config);
+    this.keepOriginal = config.isEnabled(TWEAK_KEEP_ORIGINAL_PLAN);
     this.traces = Lazy.mk(HashMap::new);
     this.startAt = Long.MIN_VALUE;
     this.timeout = Long.MAX_VALUE;
@@ -62,6 +75,21 @@ class BottomUpOptimizer implements Optimizer {
     this.keepOriginal = keepOriginal;
   }
 
+  @Override
+  public void cancel() {
+    cancelled = true;
+  }
+
+  @Override
+  public OptimizerConfig config() {
+    return config;
+  }
+
+  @Override
+  public String lastError() {
+    return lastError;
+  }
+
   @Override
   public List<OptimizationStep> traceOf(PlanContext plan) {
     return collectTrace(plan);
@@ -69,25 +97,50 @@ class BottomUpOptimizer implements Optimizer {
 
   @Override
   public Set<PlanContext> optimize(PlanContext plan) {
+    // Reset on entry, so that a cancel() made during preprocessing is not lost.
+    cancelled = false;
+    return optimizeWhole(plan);
+  }
+
+  private Set<PlanContext> optimizeWhole(PlanContext plan) {
     setExtended(rules.isExtended());
-    setKeepOriginal((optimizerTweaks & TWEAK_KEEP_ORIGINAL_PLAN) != 0);
 
     final PlanContext originalPlan = plan;
 
     plan = plan.copy();
     int planRoot = preprocess(plan);
 
-    memo = new Memo();
+    memo = new Memo(config.costModel());
+    rootPlan = new SubPlan(plan, planRoot);
     startAt = System.currentTimeMillis();
 
-    final Set<SubPlan> results = optimize0(new SubPlan(plan, planRoot));
+    final Set<SubPlan> results = optimize0(rootPlan);
     return collectRewritten(originalPlan, results);
   }
 
+  @Override
+  public Set<PlanContext> optimize(PlanContext plan, ImprovementListener listener) {
+    cancelled = false;
+    this.listener = requireNonNull(listener);
+    this.origin = outputOf(plan);
+    // The baseline is the input as given rather than preprocessed, so that a plan improved by
+    // preprocessing alone is published, too.
+    this.bestCost = config.costModel().costOf(plan, plan.root());
+    this.published = new HashSet<>();
+    try {
+      return optimizeWhole(plan);
+    } finally {
+      this.listener = null;
+      this.origin = null;
+      this.bestCost = null;
+      this.published = null;
+    }
+  }
+
   @Override
   public Set<PlanContext> optimizePartial(PlanContext plan, int rootId) {
-    setExtended((optimizerTweaks & TWEAK_ENABLE_EXTENSIONS) != 0);
-    setKeepOriginal((optimizerTweaks & TWEAK_KEEP_ORIGINAL_PLAN) != 0);
+    cancelled = false;
+    setExtended(config.isEnabled(TWEAK_ENABLE_EXTENSIONS));
 
     final PlanContext originalPlan = plan;
     plan = plan.copy();
@@ -98,10 +151,11 @@ class BottomUpOptimizer implements Optimizer {
 
     final int subTreeRoot = plan.nodeIdOf(subTreeRootNode);
 
-    memo = new Memo();
+    memo = new Memo(config.costModel());
+    rootPlan = new SubPlan(plan, subTreeRoot);
     startAt = System.currentTimeMillis();
 
-    final Set<SubPlan> results = optimize0(new SubPlan(plan, subTreeRoot));
+    final Set<SubPlan> results = optimize0(rootPlan);
     return collectRewritten(originalPlan, results);
   }
 
@@ -129,6 +183,7 @@ class BottomUpOptimizer implements Optimizer {
     // 3. Register the candidates. See `optimized0` for explanation.
     final Set<SubPlan> group = memo.mkEqClass(n);
     group.addAll(candidates);
+    publishImprovements();
 
     return group;
   }
@@ -170,6 +225,7 @@ class BottomUpOptimizer implements Optimizer {
     // 3. Register the candidates. See `optimized0` for explanation.
     final Set<SubPlan> group = memo.mkEqClass(n);
     group.addAll(candidates);
+    publishImprovements();
     // Note: `group` may contain plans that has been fully-optimized.
     // To get rid of duplicated calculation, don't pass the whole `group` to `transform`,
     // pass the `candidates` instead.
@@ -193,44 +249,106 @@ class BottomUpOptimizer implements Optimizer {
     if (kind.isFilter() && plan.kindOf(plan.parentOf(root)).isFilter()) return emptySet();
 
     final Set<SubPlan> group = memo.eqClassOf(subPlan);
-    final Set<SubPlan> transformed = new MinCostSet();
-    // 1. fast search for candidate substitution by fingerprint
-    final Iterable<Substitution> rules = fastMatchRules(subPlan);
-    for (Substitution rule : rules) {
-      if (isTimedOut()) break;
-
-      // 2. full match
-      final Match baseMatch = new Match(rule).setSourcePlan(plan).setMatchRootNode(root);
-      final List<Match> fullMatches = Match.match(baseMatch, rule._0().root(), root);
-
-      for (Match match : fullMatches) {
-        if (match.assembleModifiedPlan()) {
-          // 3. generate new plan according to match
-          final PlanContext newPlan = match.modifiedPlan();
-          int newSubPlanRoot = match.modifiedRootNode();
-
-          final int normalizedRoot = normalizePlan(newPlan, newSubPlanRoot);
-          if (normalizedRoot == NO_SUCH_NODE) continue;
-
-          final SubPlan newSubPlan = new SubPlan(newPlan, normalizedRoot);
-          // If the `newNode` has been bound with a group, then no need to further optimize it.
-          // (because it must either have been or is being optimized.)
-          final boolean registered = memo.isRegistered(newSubPlan);
-          if (group.add(newSubPlan)) {
-            if (!registered) transformed.add(newSubPlan);
-            traceStep(subPlan.plan(), newSubPlan.plan(), rule);
-          }
-
-        } else if (verbose) {
-          System.err.printf("instantiation failed: %s\n%s\n%s\n", subPlan, rule, getLastError());
-        }
+    final Set<SubPlan> transformed = new MinCostSet(memo);
+    // 1-3. match the rules and generate new plans, see `applyRules`
+    for (Rewrite rewrite : applyRules(subPlan)) {
+      if (rewrite.error() != null) {
+        lastError = rewrite.error();
+        if (verbose)
+          System.err.printf("rewrite failed: %s\n%s\n%s\n", subPlan, rewrite.rule(), lastError);
+        continue;
+      }
+
+      final SubPlan newSubPlan = rewrite.result();
+      // If the `newNode` has been bound with a group, then no need to further optimize it.
+      // (because it must either have been or is being optimized.)
+      final boolean registered = memo.isRegistered(newSubPlan);
+      if (group.add(newSubPlan)) {
+        if (!registered) transformed.add(newSubPlan);
+        traceStep(subPlan.plan(), newSubPlan.plan(), rewrite.rule());
       }
     }
+    publishImprovements();
 
     transformed.addAll(ListSupport.flatMap(transformed, this::transform));
     return transformed;
   }
 
+  /*
+   * Applies the eligible rules to `subPlan`. The rewrites are returned in the order of the rules,
+   * thus the result doesn't depend on whether the rules are applied in parallel.
+   *
+   * Applying a rule doesn't touch the memo, so with TWEAK_PARALLEL_MATCH the rules are applied as
+   * fork-join tasks, each on a copy of the plan. The values of the plan are resolved beforehand,
+   * since they are lazily bound into the plan on the first access.
+   */
+  private List<Rewrite> applyRules(SubPlan subPlan) {
+    final PlanContext plan = subPlan.plan();
+    final int root = subPlan.nodeId();
+    // 1. fast search for candidate substitution by fingerprint
+    final List<Substitution> rules = new ArrayList<>();
+    for (Substitution rule : fastMatchRules(subPlan)) rules.add(rule);
+
+    if (rules.size() <= 1 || !config.isEnabled(TWEAK_PARALLEL_MATCH)) {
+      final List<Rewrite> rewrites = new ArrayList<>();
+      for (Substitution rule : rules) {
+        if (isTimedOut()) break;
+        applyRule(plan, root, rule, rewrites);
+      }
+      return rewrites;
+    }
+
+    resolveValues(plan, plan.root());
+    final List<ForkJoinTask<List<Rewrite>>> tasks = new ArrayList<>(rules.size());
+    for (Substitution rule : rules) {
+      final PlanContext copy = plan.copy(); // a plan must not be copied concurrently
+      tasks.add(
+          MatchPool.INSTANCE.submit(
+              () -> {
+                final List<Rewrite> rewrites = new ArrayList<>();
+                if (!isTimedOut()) applyRule(copy, root, rule, rewrites);
+                return rewrites;
+              }));
+    }
+
+    final List<Rewrite> rewrites = new ArrayList<>();
+    for (ForkJoinTask<List<Rewrite>> task : tasks) rewrites.addAll(task.join());
+    return rewrites;
+  }
+
+  private void applyRule(PlanContext plan, int root, Substitution rule, List<Rewrite> rewrites) {
+    // 2. full match
+    final Match baseMatch = new Match(rule, config).setSourcePlan(plan).setMatchRootNode(root);
+    final List<Match> fullMatches = Match.match(baseMatch, rule._0().root(), root);
+
+    for (Match match : fullMatches) {
+      if (!match.assembleModifiedPlan()) {
+        rewrites.add(new Rewrite(rule, null, match.lastError()));
+        continue;
+      }
+
+      // 3. generate new plan according to match
+      final PlanContext newPlan = match.modifiedPlan();
+      final int normalizedRoot = normalizePlan(newPlan, match.modifiedRootNode(), config);
+      if (normalizedRoot == NO_SUCH_NODE) continue;
+
+      final int malformed = compensateSubqueryExpr(newPlan, normalizedRoot);
+      if (malformed != NO_SUCH_NODE) {
+        final String error = FAILURE_MALFORMED_SUBQUERY + malformed + " in " + newPlan;
+        rewrites.add(new Rewrite(rule, null, error));
+        continue;
+      }
+
+      rewrites.add(new Rewrite(rule, new SubPlan(newPlan, normalizedRoot), null));
+    }
+  }
+
+  private static void resolveValues(PlanContext plan, int nodeId) {
+    plan.valuesReg().valuesOf(nodeId);
+    for (int i = 0, bound = plan.kindOf(nodeId).numChildren(); i < bound; ++i)
+      resolveValues(plan, plan.childOf(nodeId, i));
+  }
+
   protected Set<SubPlan> onInput(SubPlan input) {
     return singleton(input);
   }
@@ -306,8 +424,7 @@ class BottomUpOptimizer implements Optimizer {
   }
 
   private Iterable<Substitution> fastMatchRules(SubPlan subPlan) {
-    final Set<Fingerprint> fingerprints = Fingerprint.mk(subPlan.plan(), subPlan.nodeId());
-    return ListSupport.flatMap(fingerprints, rules::ruleOfFingerprint);
+    return rules.matchRules(subPlan.plan(), subPlan.nodeId());
   }
 
   private List<OptimizationStep> collectTrace(PlanContext plan) {
@@ -329,7 +446,7 @@ class BottomUpOptimizer implements Optimizer {
       if (replaced.plan().childOf(replaced.nodeId(), childIdx) == replacement.nodeId())
         return replaced;
     }
-    if (replaced.child(childIdx).toString().equals(replacement.toString())) {
+    if (memo.idOf(replaced.child(childIdx)) == memo.idOf(replacement)) {
       return replaced;
     }
 
@@ -345,8 +462,8 @@ class BottomUpOptimizer implements Optimizer {
   private int preprocess(PlanContext plan) {
     int planRoot = plan.root();
 
-    if ((optimizerTweaks & TWEAK_SORT_FILTERS_DURING_REWRITE) != 0)
-      planRoot = normalizeFilter(plan, planRoot);
+    if (config.isEnabled(TWEAK_SORT_FILTERS_DURING_REWRITE))
+      planRoot = normalizeFilter(plan, planRoot, config);
 
     planRoot = enforceInnerJoin(plan, planRoot);
     planRoot = reduceSort(plan, planRoot);
@@ -397,10 +514,10 @@ class BottomUpOptimizer implements Optimizer {
   }
 
   private Set<PlanContext> collectRewritten(PlanContext origin, Set<SubPlan> subPlans) {
-    final boolean shouldSortFilters = (optimizerTweaks & TWEAK_SORT_FILTERS_BEFORE_OUTPUT) != 0;
+    final boolean shouldSortFilters = config.isEnabled(TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
     if (shouldSortFilters) {
       origin = origin.copy();
-      normalizeFilter(origin, origin.root());
+      normalizeFilter(origin, origin.root(), config);
     }
 
     final Set<String> known = new HashSet<>(subPlans.size());
@@ -408,7 +525,7 @@ class BottomUpOptimizer implements Optimizer {
     for (SubPlan subPlan : subPlans) {
       // Preclude the original one
       final PlanContext plan = subPlan.plan();
-      if (shouldSortFilters) normalizeFilter(plan, plan.root());
+      if (shouldSortFilters) normalizeFilter(plan, plan.root(), config);
 
       if (keepOriginal || !PlanSupport.isLiteralEq(origin, plan)) {
         if (known.add(stringifyTree(plan, plan.root(), true))) {
@@ -421,7 +538,43 @@ class BottomUpOptimizer implements Optimizer {
   }
 
   private boolean isTimedOut() {
-    return System.currentTimeMillis() - startAt >= timeout;
+    return cancelled || System.currentTimeMillis() - startAt >= timeout;
+  }
+
+  /*
+   * Publishes the plans of the root group that are cheaper than the best one published so far.
+   * Called once plans are registered. A plan is examined only once: if it isn't cheaper than the
+   * best one now, it won't be later either.
+   */
+  private void publishImprovements() {
+    if (listener == null || cancelled || !memo.isRegistered(rootPlan)) return;
+
+    for (SubPlan candidate : memo.eqClassOf(rootPlan)) {
+      if (!published.add(memo.idOf(candidate))) continue;
+
+      final CostModel.Cost cost = config.costModel().costOf(candidate.plan(), candidate.nodeId());
+      if (cost.compareTo(bestCost) >= 0) continue;
+
+      final PlanContext output = outputOf(candidate.plan());
+      if (!keepOriginal && PlanSupport.isLiteralEq(origin, output)) continue;
+
+      bestCost = cost;
+      final long elapsed = System.currentTimeMillis() - startAt;
+      final Improvement improvement =
+          new Improvement(output, collectTrace(candidate.plan()), elapsed);
+      if (!listener.onImprovement(improvement)) {
+        cancel();
+        return;
+      }
+    }
+  }
+
+  // The plan as returned to callers. Plans in the memo are left untouched.
+  private PlanContext outputOf(PlanContext plan) {
+    if (!config.isEnabled(TWEAK_SORT_FILTERS_BEFORE_OUTPUT)) return plan.copy();
+    final PlanContext output = plan.copy();
+    normalizeFilter(output, output.root(), config);
+    return output;
   }
 
   private void traceStep(PlanContext source, PlanContext target, Substitution rule) {
@@ -435,4 +588,15 @@ class BottomUpOptimizer implements Optimizer {
     final String key = stringifyTree(target, target.root(), true);
     traces.get().computeIfAbsent(key, ignored -> new OptimizationStep(source, target, null, extra));
   }
+
+  // Either a new plan, or the error of a failed rewrite.
+  private record Rewrite(Substitution rule, SubPlan result, String error) {}
+
+  // Shared by the optimizers, created on the first use.
+  private static class MatchPool {
+    private static final ForkJoinPool INSTANCE =
+        new ForkJoinPool(
+            Integer.getInteger(
+                "wetune.optimizer.parallelism", Runtime.getRuntime().availableProcessors()));
+  }
 }
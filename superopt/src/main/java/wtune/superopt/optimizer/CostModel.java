@@ -0,0 +1,23 @@
+package wtune.superopt.optimizer;
+
+import wtune.sql.plan.PlanContext;
+import wtune.sql.schema.Statistics;
+
+/**
+ * Ranks the plans of an equivalence class in the memo. Only the cheapest plans of a class are kept
+ * (see {@link MinCostSet}).
+ */
+public interface CostModel {
+  /** Ranks plans by the numbers of operators, see {@link wtune.superopt.util.Complexity}. */
+  CostModel OP_COUNT = (plan, nodeId) -> new OpCountCost(plan, nodeId);
+
+  Cost costOf(PlanContext plan, int nodeId);
+
+  /** Ranks plans by their estimated costs, based on `stats` of the tables. */
+  static CostModel mk(Statistics stats) {
+    return new EstimatedCostModel(stats);
+  }
+
+  /** Cost of a plan. Costs of the same model are comparable, 0 if none is preferred. */
+  interface Cost extends Comparable<Cost> {}
+}
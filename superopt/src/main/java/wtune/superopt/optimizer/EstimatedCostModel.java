@@ -0,0 +1,302 @@
+package wtune.superopt.optimizer;
+
+import wtune.sql.ast.ExprKind;
+import wtune.sql.ast.SqlNode;
+import wtune.sql.ast.constants.BinaryOpKind;
+import wtune.sql.ast.constants.LiteralKind;
+import wtune.sql.plan.*;
+import wtune.sql.schema.Column;
+import wtune.sql.schema.ColumnStats;
+import wtune.sql.schema.Statistics;
+
+import java.util.List;
+
+import static wtune.sql.ast.ExprFields.*;
+import static wtune.sql.ast.constants.TernaryOp.BETWEEN_AND;
+import static wtune.sql.ast.constants.UnaryOpKind.NOT;
+import static wtune.sql.ast.constants.UnaryOpKind.UNARY_MINUS;
+import static wtune.sql.plan.PlanSupport.joinKindOf;
+import static wtune.sql.plan.PlanSupport.tryResolveColumn;
+
+/**
+ * Estimates the cost of a plan as the number of rows processed by its operators, given the
+ * cardinalities of the tables and the selectivities of the predicates.
+ *
+ * <p>Selectivities follow the textbook assumptions (uniformity and independence): an equality
+ * selects 1/NDV of the rows, a range is looked up in the histogram of the column, and a join on
+ * keys selects 1/max(NDV) of the cross product. Unknown statistics fall back to fixed guesses.
+ * Costs in the same bucket are ranked by their numbers of operators instead. Buckets grow by a
+ * factor of 1 + {@link #TOLERANCE}. Unlike a tolerance between each two costs, which doesn't chain,
+ * they keep the ranking transitive.
+ */
+class EstimatedCostModel implements CostModel {
+  private static final double TOLERANCE = 0.01;
+  private static final double LOG_BUCKET = Math.log1p(TOLERANCE);
+  private static final double DEFAULT_ROW_COUNT = 1000;
+  private static final double DEFAULT_SELECTIVITY = 1.0 / 3;
+  private static final double DEFAULT_EQ_SELECTIVITY = 0.1;
+  private static final double DEFAULT_MATCH_SELECTIVITY = 0.1;
+  private static final double DEFAULT_NULL_FRACTION = 0.05;
+  private static final double SEMI_JOIN_SELECTIVITY = 0.5;
+
+  private final Statistics stats;
+
+  EstimatedCostModel(Statistics stats) {
+    this.stats = stats;
+  }
+
+  @Override
+  public Cost costOf(PlanContext plan, int nodeId) {
+    final Estimator estimator = new Estimator(plan);
+    estimator.cardinalityOf(nodeId);
+    return new EstimatedCost(estimator.cost, new OpCountCost(plan, nodeId));
+  }
+
+  record EstimatedCost(double cost, OpCountCost opCount) implements Cost {
+    @Override
+    public int compareTo(Cost o) {
+      final EstimatedCost other = (EstimatedCost) o;
+      final int cmp = Long.compare(bucketOf(cost), bucketOf(other.cost));
+      return cmp != 0 ? cmp : opCount.compareTo(other.opCount);
+    }
+
+    private static long bucketOf(double cost) {
+      return cost < 1 ? 0 : 1 + (long) Math.floor(Math.log(cost) / LOG_BUCKET);
+    }
+  }
+
+  private class Estimator {
+    private final PlanContext plan;
+    private double cost;
+
+    private Estimator(PlanContext plan) {
+      this.plan = plan;
+    }
+
+    // Returns the estimated number of rows of the node, and adds its cost to `cost`.
+    private double cardinalityOf(int nodeId) {
+      switch (plan.kindOf(nodeId)) {
+        case Input -> {
+          final long rowCount = stats.rowCountOf(((InputNode) plan.nodeAt(nodeId)).table().name());
+          final double rows = rowCount == Statistics.UNKNOWN ? DEFAULT_ROW_COUNT : rowCount;
+          cost += rows;
+          return rows;
+        }
+        case Filter -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          final Expression predicate = ((SimpleFilterNode) plan.nodeAt(nodeId)).predicate();
+          cost += input;
+          return input * selectivityOf(predicate, predicate.template(), DEFAULT_EQ_SELECTIVITY);
+        }
+        case InSub -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          final double subquery = cardinalityOf(plan.childOf(nodeId, 1));
+          cost += input + subquery;
+          return input * inSubSelectivityOf(((InSubNode) plan.nodeAt(nodeId)).expr(), subquery);
+        }
+        case Exists -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          cost += input + cardinalityOf(plan.childOf(nodeId, 1));
+          return input * SEMI_JOIN_SELECTIVITY;
+        }
+        case Join -> {
+          final double lhs = cardinalityOf(plan.childOf(nodeId, 0));
+          final double rhs = cardinalityOf(plan.childOf(nodeId, 1));
+          final Expression cond = ((JoinNode) plan.nodeAt(nodeId)).joinCond();
+          // Without statistics, assume a join on the key of the larger side.
+          final double eqDefault = 1 / Math.max(1, Math.max(lhs, rhs));
+          final double selectivity =
+              cond == null ? 1 : selectivityOf(cond, cond.template(), eqDefault);
+          double rows = lhs * rhs * selectivity;
+          if (!joinKindOf(plan, nodeId).isInner()) rows = Math.max(rows, lhs);
+          cost += lhs + rhs + rows;
+          return rows;
+        }
+        case Proj -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          cost += input;
+          return input;
+        }
+        case Sort -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          cost += input * log2(input);
+          return input;
+        }
+        case Agg -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          final AggNode agg = (AggNode) plan.nodeAt(nodeId);
+          cost += input;
+          final double groups = numGroupsOf(agg.groupByExprs(), input);
+          return agg.havingExpr() == null ? groups : groups * DEFAULT_SELECTIVITY;
+        }
+        case Limit -> {
+          final double input = cardinalityOf(plan.childOf(nodeId, 0));
+          final Expression limit = ((LimitNode) plan.nodeAt(nodeId)).limit();
+          final Double count = limit == null ? null : numberOf(limit.template());
+          return count == null ? input : Math.min(input, count);
+        }
+        case SetOp -> {
+          final double rows =
+              cardinalityOf(plan.childOf(nodeId, 0)) + cardinalityOf(plan.childOf(nodeId, 1));
+          cost += rows;
+          return rows;
+        }
+        default -> throw new IllegalArgumentException("unknown plan kind: " + plan.kindOf(nodeId));
+      }
+    }
+
+    private double selectivityOf(Expression expr, SqlNode ast, double eqDefault) {
+      if (ast.$(Unary_Op) == NOT) return 1 - selectivityOf(expr, ast.$(Unary_Expr), eqDefault);
+      if (ast.$(Ternary_Op) == BETWEEN_AND) {
+        final double upper = rangeSelectivityOf(expr, ast.$(Ternary_Left), ast.$(Ternary_Right));
+        final double lower = rangeSelectivityOf(expr, ast.$(Ternary_Left), ast.$(Ternary_Middle));
+        if (upper < 0 || lower < 0) return DEFAULT_SELECTIVITY * DEFAULT_SELECTIVITY;
+        return Math.max(0, upper - lower);
+      }
+
+      final BinaryOpKind op = ast.$(Binary_Op);
+      if (op == null) return DEFAULT_SELECTIVITY;
+
+      final SqlNode lhs = ast.$(Binary_Left), rhs = ast.$(Binary_Right);
+      switch (op) {
+        case AND:
+          return selectivityOf(expr, lhs, eqDefault) * selectivityOf(expr, rhs, eqDefault);
+        case OR:
+          final double s0 = selectivityOf(expr, lhs, eqDefault);
+          final double s1 = selectivityOf(expr, rhs, eqDefault);
+          return s0 + s1 - s0 * s1;
+        case EQUAL:
+        case NULL_SAFE_EQUAL:
+          return eqSelectivityOf(expr, lhs, rhs, eqDefault);
+        case NOT_EQUAL:
+        case IS_DISTINCT_FROM:
+          return 1 - eqSelectivityOf(expr, lhs, rhs, eqDefault);
+        case LESS_THAN:
+        case LESS_OR_EQUAL:
+        case GREATER_THAN:
+        case GREATER_OR_EQUAL:
+          return comparisonSelectivityOf(expr, op, lhs, rhs);
+        case IN_LIST:
+          return inListSelectivityOf(expr, lhs, rhs);
+        case IS:
+          return isSelectivityOf(expr, lhs, rhs);
+        case LIKE:
+        case ILIKE:
+        case SIMILAR_TO:
+        case REGEXP:
+        case REGEXP_PG:
+        case REGEXP_I_PG:
+          return DEFAULT_MATCH_SELECTIVITY;
+        case IN_SUBQUERY:
+          return SEMI_JOIN_SELECTIVITY;
+        default:
+          return DEFAULT_SELECTIVITY;
+      }
+    }
+
+    private double eqSelectivityOf(Expression expr, SqlNode lhs, SqlNode rhs, double eqDefault) {
+      final ColumnStats lhsStats = columnStatsOf(expr, lhs), rhsStats = columnStatsOf(expr, rhs);
+      final double ndv = Math.max(ndvOf(lhsStats), ndvOf(rhsStats));
+      if (ndv <= 0) return eqDefault;
+      return nonNullFractionOf(lhsStats != null ? lhsStats : rhsStats) / ndv;
+    }
+
+    private double comparisonSelectivityOf(
+        Expression expr, BinaryOpKind op, SqlNode lhs, SqlNode rhs) {
+      // `value < col` is `col > value`, and vice versa.
+      final boolean isLess = op == BinaryOpKind.LESS_THAN || op == BinaryOpKind.LESS_OR_EQUAL;
+      double below = rangeSelectivityOf(expr, lhs, rhs);
+      if (below >= 0) return isLess ? below : nonNullFractionOfColumn(expr, lhs) - below;
+      below = rangeSelectivityOf(expr, rhs, lhs);
+      if (below >= 0) return isLess ? nonNullFractionOfColumn(expr, rhs) - below : below;
+      return DEFAULT_SELECTIVITY;
+    }
+
+    // Returns the selectivity of `colRef < value`, or -1 if unknown.
+    private double rangeSelectivityOf(Expression expr, SqlNode colRef, SqlNode value) {
+      final ColumnStats stats = columnStatsOf(expr, colRef);
+      final Double number = numberOf(value);
+      if (stats == null || number == null || !stats.hasHistogram()) return -1;
+      return stats.fractionBelow(number) * nonNullFractionOf(stats);
+    }
+
+    private double inListSelectivityOf(Expression expr, SqlNode lhs, SqlNode rhs) {
+      final int numValues = ExprKind.Tuple.isInstance(rhs) ? rhs.$(Tuple_Exprs).size() : 1;
+      final ColumnStats stats = columnStatsOf(expr, lhs);
+      if (stats == null || stats.ndv() <= 0)
+        return Math.min(SEMI_JOIN_SELECTIVITY, numValues * DEFAULT_EQ_SELECTIVITY);
+      return Math.min(1.0, numValues / (double) stats.ndv()) * nonNullFractionOf(stats);
+    }
+
+    private double isSelectivityOf(Expression expr, SqlNode lhs, SqlNode rhs) {
+      final LiteralKind literal = rhs.$(Literal_Kind);
+      if (literal != LiteralKind.NULL && literal != LiteralKind.NOT_NULL)
+        return DEFAULT_SELECTIVITY;
+
+      final ColumnStats stats = columnStatsOf(expr, lhs);
+      final double nullFraction = stats == null ? DEFAULT_NULL_FRACTION : stats.nullFraction();
+      return literal == LiteralKind.NULL ? nullFraction : 1 - nullFraction;
+    }
+
+    private double inSubSelectivityOf(Expression expr, double subqueryRows) {
+      final List<SqlNode> colRefs = expr.internalRefs();
+      final ColumnStats stats = colRefs.size() == 1 ? columnStatsOf(expr, colRefs.get(0)) : null;
+      if (stats == null || stats.ndv() <= 0) return SEMI_JOIN_SELECTIVITY;
+      return Math.min(1.0, subqueryRows / stats.ndv()) * nonNullFractionOf(stats);
+    }
+
+    private double numGroupsOf(List<Expression> groupBys, double inputRows) {
+      if (groupBys == null || groupBys.isEmpty()) return 1;
+
+      double groups = 1;
+      for (Expression groupBy : groupBys) {
+        final List<SqlNode> colRefs = groupBy.internalRefs();
+        final ColumnStats stats =
+            colRefs.size() == 1 ? columnStatsOf(groupBy, colRefs.get(0)) : null;
+        // Without statistics, assume each key halves the rows.
+        groups *= stats == null || stats.ndv() <= 0 ? Math.max(1, inputRows / 2) : stats.ndv();
+        if (groups >= inputRows) return inputRows;
+      }
+      return groups;
+    }
+
+    private ColumnStats columnStatsOf(Expression expr, SqlNode node) {
+      if (!ExprKind.ColRef.isInstance(node)) return null;
+
+      final int index = expr.internalRefs().indexOf(node);
+      if (index < 0) return null;
+      final Values refs = plan.valuesReg().valueRefsOf(expr);
+      if (index >= refs.size()) return null;
+      final Column column = tryResolveColumn(plan, refs.get(index));
+      if (column == null) return null;
+
+      return stats.columnStatsOf(column.tableName(), column.name());
+    }
+
+    private double nonNullFractionOfColumn(Expression expr, SqlNode colRef) {
+      return nonNullFractionOf(columnStatsOf(expr, colRef));
+    }
+  }
+
+  private static double nonNullFractionOf(ColumnStats stats) {
+    return stats == null ? 1 : 1 - stats.nullFraction();
+  }
+
+  private static double ndvOf(ColumnStats stats) {
+    return stats == null ? -1 : stats.ndv();
+  }
+
+  private static Double numberOf(SqlNode node) {
+    if (ExprKind.Unary.isInstance(node) && node.$(Unary_Op) == UNARY_MINUS) {
+      final Double number = numberOf(node.$(Unary_Expr));
+      return number == null ? null : -number;
+    }
+    if (!ExprKind.Literal.isInstance(node)) return null;
+    final Object value = node.$(Literal_Value);
+    return value instanceof Number ? ((Number) value).doubleValue() : null;
+  }
+
+  private static double log2(double x) {
+    return Math.log(Math.max(x, 2)) / Math.log(2);
+  }
+}
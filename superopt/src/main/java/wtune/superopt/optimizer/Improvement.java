@@ -0,0 +1,14 @@
+package wtune.superopt.optimizer;
+
+import wtune.sql.plan.PlanContext;
+
+import java.util.List;
+
+/**
+ * A rewriting cheaper than those found before it, published during an anytime optimization (see
+ * {@link Optimizer#optimize(PlanContext, Optimizer.ImprovementListener)}).
+ *
+ * @param trace the steps from the original plan, empty unless tracing is enabled
+ * @param elapsed milliseconds since the optimization started
+ */
+public record Improvement(PlanContext plan, List<OptimizationStep> trace, long elapsed) {}
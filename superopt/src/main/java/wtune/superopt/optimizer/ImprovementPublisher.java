@@ -0,0 +1,49 @@
+package wtune.superopt.optimizer;
+
+import wtune.sql.plan.PlanContext;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Publishes the improvements of an anytime optimization. The optimization is run on the executor
+ * on the first subscription, and is cancelled at the next improvement after all the subscribers
+ * have cancelled. A later subscriber misses the improvements published before it.
+ */
+class ImprovementPublisher implements Flow.Publisher<Improvement> {
+  private final Optimizer optimizer;
+  private final PlanContext plan;
+  private final Executor executor;
+  // Delivers to the subscribers in the common pool, so that a slow subscriber doesn't block the
+  // optimization unless its buffer is full.
+  private final SubmissionPublisher<Improvement> publisher = new SubmissionPublisher<>();
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  ImprovementPublisher(Optimizer optimizer, PlanContext plan, Executor executor) {
+    this.optimizer = optimizer;
+    this.plan = plan;
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super Improvement> subscriber) {
+    publisher.subscribe(subscriber);
+    if (started.compareAndSet(false, true)) executor.execute(this::run);
+  }
+
+  private void run() {
+    try {
+      optimizer.optimize(
+          plan,
+          improvement -> {
+            publisher.submit(improvement);
+            return publisher.hasSubscribers();
+          });
+      publisher.close();
+    } catch (Throwable ex) {
+      publisher.closeExceptionally(ex);
+    }
+  }
+}
@@ -31,7 +31,7 @@ class JoinMatcher {
   }
 
   private Match tryMatchAt(int rootJoineeIdx, Match baseMatch) {
-    if (rootJoineeIdx < 0 && !allowFlip()) return null;
+    if (rootJoineeIdx < 0 && baseMatch.config().isEnabled(TWEAK_DISABLE_JOIN_FLIP)) return null;
     if (!joinTree.isEligibleRoot(rootJoineeIdx)) return null;
 
     final PlanContext newPlan = joinTree.mkRootedBy(rootJoineeIdx);
@@ -43,8 +43,4 @@ class JoinMatcher {
     if (derived.matchOne(op, joiner)) return derived;
     else return null;
   }
-
-  private boolean allowFlip() {
-    return (OptimizerSupport.optimizerTweaks & TWEAK_DISABLE_JOIN_FLIP) == 0;
-  }
 }
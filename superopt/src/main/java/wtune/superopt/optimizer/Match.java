@@ -38,9 +38,15 @@ class Match {
   private PlanContext modifiedPlan;
   private int modifiedRootNode;
 
+  private String lastError;
+
   Match(Substitution rule) {
+    this(rule, OptimizerConfig.DEFAULT);
+  }
+
+  Match(Substitution rule, OptimizerConfig config) {
     this.rule = rule;
-    this.model = new Model(rule.constraints());
+    this.model = new Model(rule.constraints(), config);
     this.matchRootNode = NO_SUCH_NODE;
     this.matchStartNode = NO_SUCH_NODE;
     this.lastMatchedNode = NO_SUCH_NODE;
@@ -81,6 +87,14 @@ class Match {
     return model;
   }
 
+  OptimizerConfig config() {
+    return model.config();
+  }
+
+  String lastError() {
+    return lastError;
+  }
+
   PlanContext sourcePlan() {
     return sourcePlan;
   }
@@ -105,7 +119,7 @@ class Match {
     final Instantiation instantiation = new Instantiation(rule, model);
     final int modifiedPoint = instantiation.instantiate();
     if (modifiedPoint <= 0) {
-      OptimizerSupport.setLastError(instantiation.lastError());
+      lastError = instantiation.lastError();
       return false;
     }
 
@@ -323,7 +337,8 @@ class Match {
         matches.addAll(linkedListFlatMap(partialMatches, m -> match(m, nextOp1, nextNode1)));
       }
 
-      if (shouldPermuteJoinTree() || matches.size() <= 1) return matches;
+      if (match.config().isEnabled(TWEAK_PERMUTE_JOIN_TREE) || matches.size() <= 1)
+        return matches;
       else return new ArrayList<>(matches.subList(0, 1));
     }
 
@@ -351,11 +366,7 @@ class Match {
       return linkedListFlatMap(match(match, nextOp0, nextNode0), m -> match(m, nextOp1, nextNode1));
     }
 
-    OptimizerSupport.setLastError(FAILURE_UNKNOWN_OP + op.kind());
+    match.lastError = FAILURE_UNKNOWN_OP + op.kind();
     return emptyList();
   }
-
-  private static boolean shouldPermuteJoinTree() {
-    return (optimizerTweaks & TWEAK_PERMUTE_JOIN_TREE) != 0;
-  }
 }
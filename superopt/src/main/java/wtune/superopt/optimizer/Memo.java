@@ -1,29 +1,91 @@
 package wtune.superopt.optimizer;
 
+import gnu.trove.map.TIntIntMap;
+import gnu.trove.map.hash.TIntIntHashMap;
 import wtune.common.utils.BaseCongruence;
 import wtune.common.utils.BaseCongruentClass;
 import wtune.sql.plan.PlanContext;
 import wtune.sql.plan.PlanKind;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import static wtune.sql.plan.PlanSupport.stringifyNode;
 
-class Memo extends BaseCongruence<String, SubPlan> {
+/**
+ * Groups of equivalent sub-plans, keyed by hash-consed sub-plan ids.
+ *
+ * <p>The id of a sub-plan is interned from the compact string of its root node and the ids of its
+ * children. Thus structurally identical sub-plans share the same id, and the id of a sub-plan is
+ * derived from its children's without stringifying the whole subtree. Ids are cached per plan and
+ * node, so each node is stringified at most once. (Plans are not modified once wrapped in a
+ * SubPlan.)
+ *
+ * <p>An Input node on its own is keyed by its non-compact string (which includes the node id), so
+ * that different occurrences of the same table are not merged.
+ */
+class Memo extends BaseCongruence<Integer, SubPlan> {
+  private static final int NO_ID = 0, INPUT_ROOT = -1;
+
+  private final Map<Signature, Integer> ids;
+  private final Map<PlanContext, TIntIntMap> idCache;
+  private final CostModel costModel;
+
+  Memo(CostModel costModel) {
+    this.ids = new HashMap<>();
+    this.idCache = new IdentityHashMap<>();
+    this.costModel = costModel;
+  }
+
+  CostModel costModel() {
+    return costModel;
+  }
+
   boolean isRegistered(SubPlan node) {
     return classes.containsKey(extractKey(node));
   }
 
   boolean isRegistered(PlanContext plan, int nodeId) {
-    return classes.containsKey(extractKey(new SubPlan(plan, nodeId)));
+    return classes.containsKey(keyOf(plan, nodeId));
+  }
+
+  /** Returns the hash-consed id of the sub-plan. Identical sub-plans have the same id. */
+  int idOf(SubPlan subPlan) {
+    return idOf(subPlan.plan(), subPlan.nodeId());
+  }
+
+  int idOf(PlanContext plan, int nodeId) {
+    final TIntIntMap cachedIds = idCache.computeIfAbsent(plan, ignored -> new TIntIntHashMap());
+    final int cached = cachedIds.get(nodeId);
+    if (cached != NO_ID) return cached;
+
+    final int numChildren = plan.kindOf(nodeId).numChildren();
+    final int lhs = numChildren >= 1 ? idOf(plan, plan.childOf(nodeId, 0)) : NO_ID;
+    final int rhs = numChildren >= 2 ? idOf(plan, plan.childOf(nodeId, 1)) : NO_ID;
+    final int id = intern(stringifyNode(plan, nodeId, true), lhs, rhs);
+    cachedIds.put(nodeId, id);
+    return id;
   }
 
   @Override
-  protected String extractKey(SubPlan subPlan) {
-    if (subPlan.rootKind() != PlanKind.Input) return subPlan.toString();
-    else return stringifyNode(subPlan.plan(), subPlan.nodeId());
+  protected Integer extractKey(SubPlan subPlan) {
+    return keyOf(subPlan.plan(), subPlan.nodeId());
   }
 
   @Override
   protected BaseCongruentClass<SubPlan> mkCongruentClass() {
     return new OptGroup(this);
   }
+
+  private int keyOf(PlanContext plan, int nodeId) {
+    if (plan.kindOf(nodeId) != PlanKind.Input) return idOf(plan, nodeId);
+    else return intern(stringifyNode(plan, nodeId), INPUT_ROOT, INPUT_ROOT);
+  }
+
+  private int intern(String node, int lhs, int rhs) {
+    return ids.computeIfAbsent(new Signature(node, lhs, rhs), ignored -> ids.size() + 1);
+  }
+
+  private record Signature(String node, int lhs, int rhs) {}
 }
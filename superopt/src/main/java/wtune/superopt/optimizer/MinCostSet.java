@@ -1,30 +1,30 @@
 package wtune.superopt.optimizer;
 
-import wtune.superopt.util.Complexity;
-
 import java.util.*;
 
 class MinCostSet implements Set<SubPlan> {
-  private final Map<String, SubPlan> subPlans;
-  private final Set<String> evicted;
-  private Complexity minCost;
+  private final Memo memo;
+  private final Map<Integer, SubPlan> subPlans; // keyed by sub-plan id
+  private final Set<Integer> evicted;
+  private CostModel.Cost minCost;
 
-  MinCostSet() {
+  MinCostSet(Memo memo) {
+    this.memo = memo;
     this.subPlans = new HashMap<>();
     this.evicted = new HashSet<>();
   }
 
-  public Set<String> evicted() {
+  public Set<Integer> evicted() {
     return evicted;
   }
 
   @Override
   public boolean add(SubPlan subPlan) {
-    final Complexity cost = Complexity.mk(subPlan.plan(), subPlan.nodeId());
+    final CostModel.Cost cost = memo.costModel().costOf(subPlan.plan(), subPlan.nodeId());
     final int cmp = minCost == null ? -1 : cost.compareTo(minCost);
     // the new plan is more costly, abandon it
     if (cmp > 0) {
-      evicted.add(subPlan.toString());
+      evicted.add(memo.idOf(subPlan));
       return false;
     }
     // the new plan is cheaper, abandon existing ones
@@ -34,13 +34,13 @@ class MinCostSet implements Set<SubPlan> {
       minCost = cost;
     }
 
-    return subPlans.putIfAbsent(subPlan.toString(), subPlan) == null;
+    return subPlans.putIfAbsent(memo.idOf(subPlan), subPlan) == null;
   }
 
   @Override
   public boolean remove(Object o) {
     if (!(o instanceof SubPlan)) return false;
-    return subPlans.remove(o.toString()) != null;
+    return subPlans.remove(memo.idOf((SubPlan) o)) != null;
   }
 
   @Override
@@ -76,7 +76,7 @@ class MinCostSet implements Set<SubPlan> {
   @Override
   public boolean contains(Object o) {
     if (!(o instanceof SubPlan)) return false;
-    return subPlans.containsKey(o.toString());
+    return subPlans.containsKey(memo.idOf((SubPlan) o));
   }
 
   @Override
@@ -18,12 +18,12 @@ import static wtune.sql.schema.SchemaSupport.findIC;
 import static wtune.sql.schema.SchemaSupport.findRelatedIC;
 import static wtune.superopt.constraint.Constraint.Kind.Reference;
 import static wtune.superopt.optimizer.OptimizerSupport.TWEAK_ENABLE_QUERY_AS_EQ_INPUT;
-import static wtune.superopt.optimizer.OptimizerSupport.optimizerTweaks;
 import static wtune.common.utils.IterableSupport.*;
 
 class Model {
   private final Model base;
   private final Constraints constraints;
+  private final OptimizerConfig config;
   private final Lazy<Map<Symbol, Object>> assignments;
 
   private PlanContext plan;
@@ -31,13 +31,15 @@ class Model {
   private Model(Model other) {
     this.base = other;
     this.constraints = other.constraints;
+    this.config = other.config;
     this.assignments = Lazy.mk(HashMap::new);
     this.plan = other.plan;
   }
 
-  Model(Constraints constraints) {
+  Model(Constraints constraints, OptimizerConfig config) {
     this.base = null;
     this.constraints = constraints;
+    this.config = config;
     this.assignments = Lazy.mk(HashMap::new);
   }
 
@@ -58,6 +60,10 @@ class Model {
     return constraints;
   }
 
+  OptimizerConfig config() {
+    return config;
+  }
+
   Model derive() {
     return new Model(this);
   }
@@ -130,7 +136,7 @@ class Model {
       return v1 instanceof List<?> && isFuncsEq((List<Expression>) v0, (List<Expression>) v1);
     if (kind == Symbol.Kind.TABLE) {
       if (!(v1 instanceof Integer)) return false;
-      if ((optimizerTweaks & TWEAK_ENABLE_QUERY_AS_EQ_INPUT) == 0) {
+      if (!config.isEnabled(TWEAK_ENABLE_QUERY_AS_EQ_INPUT)) {
         return isEqualTree(plan, (Integer) v0, plan, (Integer) v1);
       } else {
         return isLiteralEq(plan, (Integer) v0, plan, (Integer) v1);
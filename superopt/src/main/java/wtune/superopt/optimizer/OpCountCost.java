@@ -0,0 +1,21 @@
+package wtune.superopt.optimizer;
+
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.util.Complexity;
+
+class OpCountCost implements CostModel.Cost {
+  private final Complexity complexity;
+
+  OpCountCost(PlanContext plan, int nodeId) {
+    this.complexity = Complexity.mk(plan, nodeId);
+  }
+
+  Complexity complexity() {
+    return complexity;
+  }
+
+  @Override
+  public int compareTo(CostModel.Cost o) {
+    return complexity.compareTo(((OpCountCost) o).complexity);
+  }
+}
@@ -17,17 +17,17 @@ class OptGroup extends BaseCongruentClass<SubPlan> {
     ((MinCostSet) elements).evicted().addAll(((OptGroup) other).evicted());
 
     final Memo memo = (Memo) this.congruence;
-    for (String key : ((OptGroup) other).evicted()) {
+    for (Integer key : ((OptGroup) other).evicted()) {
       ((OptGroup) memo.eqClassAt(key)).elements = elements;
     }
   }
 
-  private Set<String> evicted() {
+  private Set<Integer> evicted() {
     return ((MinCostSet) elements).evicted();
   }
 
   @Override
   protected Collection<SubPlan> mkCollection() {
-    return new MinCostSet();
+    return new MinCostSet((Memo) congruence);
   }
 }
@@ -8,14 +8,34 @@ import wtune.superopt.substitution.SubstitutionBank;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 
 import static java.util.Collections.emptySet;
 
 public interface Optimizer {
   Set<PlanContext> optimize(PlanContext plan);
 
+  /**
+   * Anytime optimization. Each rewriting cheaper than the original plan and those published before
+   * is passed to `listener` as soon as it is registered in the memo. The search goes on until it
+   * ends, times out, is cancelled, or `listener` returns false.
+   *
+   * <p>"The original plan" is `plan` as given, before preprocessing. Hence, a plan improved by
+   * preprocessing alone is published if it is cheaper.
+   *
+   * <p>Returns the same as {@link #optimize(PlanContext)}, i.e., the cheapest rewritings found.
+   */
+  Set<PlanContext> optimize(PlanContext plan, ImprovementListener listener);
+
   Set<PlanContext> optimizePartial(PlanContext plan, int root);
 
+  /**
+   * Stops the ongoing optimization as if it timed out. Can be called from any thread. A call made
+   * before an optimization starts has no effect on it.
+   */
+  void cancel();
+
   void setTimeout(long timeout);
 
   void setTracing(boolean flag);
@@ -26,10 +46,28 @@ public interface Optimizer {
 
   void setKeepOriginal(boolean keepOriginal);
 
+  OptimizerConfig config();
+
+  /** Returns the reason of the last failed rewrite, for diagnosis. */
+  String lastError();
+
   List<OptimizationStep> traceOf(PlanContext plan);
 
+  /**
+   * Returns a publisher of the improvements of the anytime optimization of `plan`, which runs on
+   * `executor` once subscribed. The optimization stops once all the subscribers have cancelled. The
+   * optimizer must not be used by others meanwhile.
+   */
+  default Flow.Publisher<Improvement> publish(PlanContext plan, Executor executor) {
+    return new ImprovementPublisher(this, plan, executor);
+  }
+
   static Optimizer mk(SubstitutionBank bank) {
-    return new BottomUpOptimizer(bank);
+    return mk(bank, OptimizerConfig.DEFAULT);
+  }
+
+  static Optimizer mk(SubstitutionBank bank, OptimizerConfig config) {
+    return new BottomUpOptimizer(bank, config);
   }
 
   default Set<PlanContext> optimize(SqlNode sql) {
@@ -41,4 +79,10 @@ public interface Optimizer {
     if (plan != null) return optimize(plan);
     else return emptySet();
   }
+
+  @FunctionalInterface
+  interface ImprovementListener {
+    /** Returns false to stop the optimization. */
+    boolean onImprovement(Improvement improvement);
+  }
 }
@@ -0,0 +1,33 @@
+package wtune.superopt.optimizer;
+
+/**
+ * Immutable configuration of an optimizer, i.e., the enabled TWEAK_* flags of {@link
+ * OptimizerSupport} and the cost model ranking the plans.
+ *
+ * <p>Each optimizer keeps its own configuration, so optimizers of different configurations can run
+ * concurrently.
+ */
+public record OptimizerConfig(int tweaks, CostModel costModel) {
+  public static final OptimizerConfig DEFAULT = new OptimizerConfig(0);
+
+  public OptimizerConfig(int tweaks) {
+    this(tweaks, CostModel.OP_COUNT);
+  }
+
+  public boolean isEnabled(int tweak) {
+    return (tweaks & tweak) != 0;
+  }
+
+  /** Returns a configuration with `tweaks` enabled in addition. */
+  public OptimizerConfig with(int tweaks) {
+    return new OptimizerConfig(this.tweaks | tweaks, costModel);
+  }
+
+  public OptimizerConfig without(int tweaks) {
+    return new OptimizerConfig(this.tweaks & ~tweaks, costModel);
+  }
+
+  public OptimizerConfig with(CostModel costModel) {
+    return new OptimizerConfig(tweaks, costModel);
+  }
+}
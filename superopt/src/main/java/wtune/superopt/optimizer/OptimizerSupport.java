@@ -26,21 +26,8 @@ public abstract class OptimizerSupport {
   public static final int TWEAK_SORT_FILTERS_BEFORE_OUTPUT = 16;
   public static final int TWEAK_PERMUTE_JOIN_TREE = 32;
   public static final int TWEAK_ENABLE_QUERY_AS_EQ_INPUT = 64;
-  static int optimizerTweaks = 0;
-
-  private static final ThreadLocal<String> LAST_ERROR = new ThreadLocal<>();
-
-  public static void setOptimizerTweaks(int optimizerTweaks) {
-    OptimizerSupport.optimizerTweaks = optimizerTweaks;
-  }
-
-  public static void addOptimizerTweaks(int optimizerTweaks) {
-    OptimizerSupport.optimizerTweaks |= optimizerTweaks;
-  }
-
-  static void setLastError(String error) {
-    LAST_ERROR.set(error);
-  }
+  // Match the rules in parallel, see "wetune.optimizer.parallelism". Results are unaffected.
+  public static final int TWEAK_PARALLEL_MATCH = 128;
 
   static int normalizeJoin(PlanContext plan, int rootId) {
     return new NormalizeJoin(plan).normalizeTree(rootId);
@@ -50,35 +37,33 @@ public abstract class OptimizerSupport {
     return new NormalizeProj(plan).normalizeTree(rootId);
   }
 
-  static int normalizeFilter(PlanContext plan, int rootId) {
-    if ((optimizerTweaks & TWEAK_SORT_FILTERS_DURING_REWRITE) != 0) {
+  static int normalizeFilter(PlanContext plan, int rootId, OptimizerConfig config) {
+    if (config.isEnabled(TWEAK_SORT_FILTERS_DURING_REWRITE)) {
       return new NormalizeFilter(plan).normalizeTree(rootId);
     } else {
       return rootId;
     }
   }
 
-  static int normalizePlan(PlanContext plan, int rootId) {
+  /** Should be followed by {@link #compensateSubqueryExpr(PlanContext, int)}. */
+  static int normalizePlan(PlanContext plan, int rootId, OptimizerConfig config) {
     if ((rootId = normalizeJoin(plan, rootId)) == NO_SUCH_NODE) return NO_SUCH_NODE;
     if ((rootId = normalizeProj(plan, rootId)) == NO_SUCH_NODE) return NO_SUCH_NODE;
-    if ((rootId = normalizeFilter(plan, rootId)) == NO_SUCH_NODE) return NO_SUCH_NODE;
-    if (!compensateSubqueryExpr(plan, rootId)) return NO_SUCH_NODE;
+    if ((rootId = normalizeFilter(plan, rootId, config)) == NO_SUCH_NODE) return NO_SUCH_NODE;
     return rootId;
   }
 
-  private static boolean compensateSubqueryExpr(PlanContext plan, int nodeId) {
+  /** Returns the node whose subquery expression can't be set up, or NO_SUCH_NODE if none. */
+  static int compensateSubqueryExpr(PlanContext plan, int nodeId) {
     final PlanKind kind = plan.kindOf(nodeId);
-    if (kind.isSubqueryFilter() && !setupSubqueryExprOf(plan, nodeId)) {
-      LAST_ERROR.set(FAILURE_MALFORMED_SUBQUERY + nodeId + " in " + plan);
-      return false;
-    }
+    if (kind.isSubqueryFilter() && !setupSubqueryExprOf(plan, nodeId)) return nodeId;
 
-    for (int i = 0; i < kind.numChildren(); ++i)
-      if (!compensateSubqueryExpr(plan, plan.childOf(nodeId, i))) {
-        return false;
-      }
+    for (int i = 0; i < kind.numChildren(); ++i) {
+      final int malformed = compensateSubqueryExpr(plan, plan.childOf(nodeId, i));
+      if (malformed != NO_SUCH_NODE) return malformed;
+    }
 
-    return true;
+    return NO_SUCH_NODE;
   }
 
   public static void dumpTrace(Optimizer optimizer, PlanContext result) {
@@ -99,8 +84,4 @@ public abstract class OptimizerSupport {
     }
     System.out.println("=== end dump trace ===");
   }
-
-  public static String getLastError() {
-    return LAST_ERROR.get();
-  }
 }
@@ -0,0 +1,128 @@
+package wtune.superopt.profiler;
+
+import com.google.common.hash.Hashing;
+import wtune.common.utils.IOSupport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * LRU cache of estimated query costs.
+ *
+ * <p>A cost is keyed by the digest of the database (jdbcUrl), the statistics version and the
+ * normalized SQL text. The statistics version is the "statsVersion" property of the database, which
+ * should be bumped whenever the statistics are refreshed (e.g., after ANALYZE). Otherwise, stale
+ * costs are served.
+ *
+ * <p>If opened with a file, the costs are also appended to it as "digest cost", and are loaded
+ * back by later runs. Failed estimations (Double.MAX_VALUE) are not cached.
+ */
+public class CostCache {
+  private static final int DEFAULT_CAPACITY =
+      Integer.parseInt(System.getProperty("wetune.cost_cache_size", "65536"));
+  private static volatile CostCache INSTANCE = new CostCache(DEFAULT_CAPACITY, null);
+
+  private final Map<String, Double> costs;
+  private final Path file;
+  private long numHits, numMisses;
+
+  private CostCache(int capacity, Path file) {
+    this.file = file;
+    this.costs =
+        new LinkedHashMap<>(256, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            return size() > capacity;
+          }
+        };
+  }
+
+  public static CostCache mk(int capacity) {
+    return new CostCache(capacity, null);
+  }
+
+  public static CostCache open(Path file) throws IOException {
+    final CostCache cache = new CostCache(DEFAULT_CAPACITY, file);
+    if (!Files.exists(file)) return cache;
+
+    for (String line : Files.readAllLines(file)) {
+      final String[] fields = line.split(" ");
+      if (fields.length != 2) continue;
+      try {
+        cache.costs.put(fields[0], Double.parseDouble(fields[1]));
+      } catch (NumberFormatException ignored) {
+      }
+    }
+    return cache;
+  }
+
+  public static CostCache instance() {
+    return INSTANCE;
+  }
+
+  public static void install(CostCache cache) {
+    INSTANCE = cache;
+  }
+
+  /** Returns the cached cost, or null if absent. */
+  public synchronized Double get(String key) {
+    final Double cost = costs.get(key);
+    if (cost == null) ++numMisses;
+    else ++numHits;
+    return cost;
+  }
+
+  public void put(String key, double cost) {
+    if (cost == Double.MAX_VALUE) return;
+
+    synchronized (this) {
+      if (costs.put(key, cost) != null) return;
+    }
+    if (file != null) IOSupport.printWithLock(file, out -> out.println(key + ' ' + cost));
+  }
+
+  public synchronized int size() {
+    return costs.size();
+  }
+
+  public synchronized String stats() {
+    return "size=%d, hits=%d, misses=%d".formatted(costs.size(), numHits, numMisses);
+  }
+
+  static String keyOf(Properties dbProps, String query) {
+    final String key =
+        dbProps.getProperty("jdbcUrl")
+            + '|'
+            + dbProps.getProperty("statsVersion", "0")
+            + '|'
+            + normalize(query);
+    return Hashing.sha256().hashString(key, UTF_8).toString();
+  }
+
+  // Collapses the whitespaces outside quotes. The cases are kept, as identifiers may be quoted.
+  private static String normalize(String query) {
+    final StringBuilder builder = new StringBuilder(query.length());
+    boolean space = false;
+    char quote = 0;
+    for (int i = 0, bound = query.length(); i < bound; ++i) {
+      final char c = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        space = true;
+        continue;
+      }
+      if (space && builder.length() > 0) builder.append(' ');
+      space = false;
+      builder.append(c);
+
+      if (quote == 0 && (c == '\'' || c == '"' || c == '`')) quote = c;
+      else if (c == quote) quote = 0;
+    }
+    return builder.toString();
+  }
+}
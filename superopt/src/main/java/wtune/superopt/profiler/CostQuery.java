@@ -1,11 +1,15 @@
 package wtune.superopt.profiler;
 
+import java.sql.Connection;
 
 import static wtune.common.datasource.DbSupport.*;
 
 public interface CostQuery {
   double getCost();
 
+  /** Estimates the cost on the given connection, which is left open. */
+  double getCost(Connection conn);
+
   static CostQuery mysql(ConnectionProvider provider, String query) {
     return new MySQLCostQuery(provider, query);
   }
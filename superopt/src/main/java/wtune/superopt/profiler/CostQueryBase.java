@@ -1,5 +1,6 @@
 package wtune.superopt.profiler;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 
 public abstract class CostQueryBase implements CostQuery {
@@ -14,21 +15,36 @@ public abstract class CostQueryBase implements CostQuery {
     this.query = query;
   }
 
-  protected abstract double doQuery() throws SQLException;
+  protected abstract double doQuery(Connection conn) throws SQLException;
 
   @Override
   public double getCost() {
     if (queried) return cost;
 
+    try (final Connection conn = provider.get()) {
+      return getCost(conn);
+    } catch (SQLException ex) {
+      return onError(ex);
+    }
+  }
+
+  @Override
+  public double getCost(Connection conn) {
+    if (queried) return cost;
+
     try {
-      cost = doQuery();
+      cost = doQuery(conn);
+      queried = true;
+      return cost;
     } catch (SQLException ex) {
-      System.out.println(query);
-      System.out.println(ex);
-      cost = Double.MAX_VALUE;
+      return onError(ex);
     }
+  }
 
+  private double onError(SQLException ex) {
+    System.out.println(query);
+    System.out.println(ex);
     queried = true;
-    return cost;
+    return cost = Double.MAX_VALUE;
   }
 }
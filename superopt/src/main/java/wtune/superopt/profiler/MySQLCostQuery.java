@@ -13,10 +13,9 @@ public class MySQLCostQuery extends CostQueryBase {
   }
 
   @Override
-  protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON (" + query + ");");
+  protected double doQuery(Connection conn) throws SQLException {
+    try (final Statement stmt = conn.createStatement();
+        final ResultSet rs = stmt.executeQuery("EXPLAIN FORMAT=JSON (" + query + ");")) {
 
       if (!rs.next()) return Double.MAX_VALUE;
 
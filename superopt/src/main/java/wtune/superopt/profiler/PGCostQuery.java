@@ -13,11 +13,9 @@ public class PGCostQuery extends CostQueryBase {
     super(provider, query);
   }
 
-  protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery("EXPLAIN (" + query + ");");
+  protected double doQuery(Connection conn) throws SQLException {
+    try (final Statement stmt = conn.createStatement();
+        final ResultSet rs = stmt.executeQuery("EXPLAIN (" + query + ");")) {
 
       if (rs.next()) {
         final String result = rs.getString(1);
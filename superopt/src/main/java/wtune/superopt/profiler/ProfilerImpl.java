@@ -7,35 +7,46 @@ import wtune.sql.plan.PlanContext;
 import wtune.sql.util.ParamInterpolator;
 import wtune.superopt.util.Complexity;
 
-import javax.sql.DataSource;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
 
 import static wtune.common.datasource.DbSupport.MySQL;
 import static wtune.common.datasource.DbSupport.SQLServer;
 import static wtune.common.datasource.SQLSyntaxAdaptor.adaptToSQLServer;
 import static wtune.sql.plan.PlanSupport.translateAsAst;
 
+/**
+ * Costs are estimated lazily. The queries profiled so far are looked up in {@link CostCache}
+ * first, and the remaining ones (deduplicated) are EXPLAINed back-to-back on a single connection
+ * when any cost is requested.
+ */
 class ProfilerImpl implements Profiler {
   private final Properties dbProps;
   private PlanContext baseline;
+  private String baseQuery;
   private double baseCost;
   private final List<PlanContext> plans;
+  private final List<String> queries;
   private final TDoubleList costs;
+  private int numCosted;
 
   ProfilerImpl(Properties dbProps) {
     this.dbProps = dbProps;
     this.plans = new ArrayList<>();
+    this.queries = new ArrayList<>();
     this.costs = new TDoubleArrayList();
   }
 
   @Override
   public void setBaseline(PlanContext baseline) {
     plans.clear();
+    queries.clear();
     costs.clear();
+    numCosted = 0;
     this.baseline = baseline;
-    this.baseCost = queryCost(translateAsAst(baseline, baseline.root(), false));
+    this.baseQuery = queryOf(translateAsAst(baseline, baseline.root(), false));
+    this.baseCost = -1;
   }
 
   @Override
@@ -45,17 +56,8 @@ class ProfilerImpl implements Profiler {
 
   @Override
   public void profile(PlanContext plan) {
-    if (plan == null) {
-      plans.add(null);
-      costs.add(Double.MAX_VALUE);
-      return;
-    }
-
-    final SqlNode ast = translateAsAst(plan, plan.root(), false);
-    final double cost = queryCost(ast);
-
     plans.add(plan);
-    costs.add(cost);
+    queries.add(plan == null ? null : queryOf(translateAsAst(plan, plan.root(), false)));
   }
 
   @Override
@@ -65,17 +67,20 @@ class ProfilerImpl implements Profiler {
 
   @Override
   public double getCost(int index) {
+    ensureCosted();
     return costs.get(index);
   }
 
   @Override
   public double getBaselineCost() {
     if (baseline == null) return Double.MAX_VALUE;
+    ensureCosted();
     return baseCost;
   }
 
   @Override
   public int minCostIndex() {
+    ensureCosted();
     double minCost = baseCost;
     int minCostIndex = -1;
     for (int i = 0, bound = costs.size(); i < bound; ++i) {
@@ -105,6 +110,7 @@ class ProfilerImpl implements Profiler {
 
   @Override
   public int minCostIndexOfCandidates() {
+    ensureCosted();
     if (costs.size() == 0) return -1;
 
     double minCost = costs.get(0);
@@ -118,7 +124,7 @@ class ProfilerImpl implements Profiler {
     return minCostIndex;
   }
 
-  private double queryCost(SqlNode ast) {
+  String queryOf(SqlNode ast) {
     final ParamInterpolator interpolator = new ParamInterpolator(ast);
     interpolator.go();
 
@@ -126,11 +132,47 @@ class ProfilerImpl implements Profiler {
 
     interpolator.undo();
 
-    final String dbType = dbProps.getProperty("dbType");
-    if (SQLServer.equals(dbType)) query = adaptToSQLServer(query);
+    if (SQLServer.equals(dbProps.getProperty("dbType"))) query = adaptToSQLServer(query);
+    return query;
+  }
+
+  private void ensureCosted() {
+    if (baseline == null || (baseCost >= 0 && numCosted == queries.size())) return;
+
+    final CostCache cache = CostCache.instance();
+    final Map<String, Double> known = new HashMap<>();
+    final Set<String> pending = new LinkedHashSet<>();
+    if (baseCost < 0) lookup(cache, baseQuery, known, pending);
+    for (int i = numCosted, bound = queries.size(); i < bound; ++i)
+      if (queries.get(i) != null) lookup(cache, queries.get(i), known, pending);
+
+    if (!pending.isEmpty()) {
+      final String dbType = dbProps.getProperty("dbType");
+      final ConnectionProvider provider = DataSourceFactory.instance().mk(dbProps)::getConnection;
+      try (final Connection conn = provider.get()) {
+        for (String query : pending) {
+          final double cost = CostQuery.mk(dbType, provider, query).getCost(conn);
+          cache.put(CostCache.keyOf(dbProps, query), cost);
+          known.put(query, cost);
+        }
+      } catch (SQLException ex) {
+        System.out.println(ex);
+      }
+    }
+
+    if (baseCost < 0) baseCost = known.getOrDefault(baseQuery, Double.MAX_VALUE);
+    for (int bound = queries.size(); numCosted < bound; ++numCosted) {
+      final String query = queries.get(numCosted);
+      costs.add(query == null ? Double.MAX_VALUE : known.getOrDefault(query, Double.MAX_VALUE));
+    }
+  }
 
-    final DataSource dataSource = DataSourceFactory.instance().mk(dbProps);
-    return CostQuery.mk(dbType, dataSource::getConnection, query).getCost();
+  private void lookup(
+      CostCache cache, String query, Map<String, Double> known, Set<String> pending) {
+    if (known.containsKey(query) || pending.contains(query)) return;
+    final Double cost = cache.get(CostCache.keyOf(dbProps, query));
+    if (cost != null) known.put(query, cost);
+    else pending.add(query);
   }
 
 }
@@ -16,17 +16,16 @@ public class SQLServerCostQuery extends CostQueryBase {
   }
 
   @Override
-  protected double doQuery() throws SQLException {
-    try (final Connection conn = provider.get()) {
-      final Statement configStmt = conn.createStatement();
+  protected double doQuery(Connection conn) throws SQLException {
+    try (final Statement configStmt = conn.createStatement()) {
       configStmt.execute(SHOW_PLAN_ON_CMD);
-
-      final Statement stmt = conn.createStatement();
-      final ResultSet rs = stmt.executeQuery(query);
-      double cost = rs.next() ? Double.parseDouble(rs.getString(LABEL)) : Double.MAX_VALUE;
-
-      configStmt.execute(SHOW_PLAN_OFF_CMD);
-      return cost;
+      try (final Statement stmt = conn.createStatement();
+          final ResultSet rs = stmt.executeQuery(query)) {
+        return rs.next() ? Double.parseDouble(rs.getString(LABEL)) : Double.MAX_VALUE;
+      } finally {
+        // The connection may be reused by later queries.
+        configStmt.execute(SHOW_PLAN_OFF_CMD);
+      }
     }
   }
 }
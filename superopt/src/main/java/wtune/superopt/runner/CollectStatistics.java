@@ -0,0 +1,67 @@
+package wtune.superopt.runner;
+
+import wtune.common.datasource.DbSupport;
+import wtune.common.io.FileUtils;
+import wtune.common.utils.Args;
+import wtune.sql.schema.Schema;
+import wtune.sql.schema.Statistics;
+import wtune.stmt.App;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collects the table statistics of the apps' databases, which are used by "RewriteQuery
+ * -estimateCost". Statistics of app `a` are saved to "schemas/a.base.stats".
+ */
+public class CollectStatistics implements Runner {
+  private Collection<App> apps;
+  private String tag;
+  private int verbosity;
+
+  @Override
+  public void prepare(String[] argStrings) throws Exception {
+    final Args args = Args.parse(argStrings, 1);
+    final String appName = args.getOptional("app", String.class, "all");
+    tag = args.getOptional("tag", String.class, "base");
+    verbosity = args.getOptional("v", "verbose", int.class, 0);
+
+    if ("all".equals(appName)) apps = App.all();
+    else {
+      apps = new ArrayList<>();
+      for (String name : appName.split(",")) apps.add(App.of(name));
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    final List<String> failed = new ArrayList<>();
+    for (App app : apps) {
+      final Schema schema = app.schema(tag);
+      if (schema == null) continue;
+
+      final DataSource dataSource = DbSupport.makeDataSource(app.dbProps());
+      try {
+        final Statistics stats = Statistics.collect(schema, dataSource);
+        final Path file = FileUtils.dataFile("schemas", app.name() + "." + tag + ".stats");
+        Files.writeString(file, stats.serialize());
+        app.setStatistics(tag, stats);
+        if (verbosity >= 1) System.out.println("collected statistics of " + app.name());
+
+      } catch (RuntimeException ex) {
+        failed.add(app.name());
+        if (verbosity >= 1) ex.printStackTrace();
+
+      } finally {
+        if (dataSource instanceof Closeable) ((Closeable) dataSource).close();
+      }
+    }
+
+    if (!failed.isEmpty()) System.err.println("failed: " + String.join(",", failed));
+  }
+}
@@ -0,0 +1,35 @@
+package wtune.superopt.runner;
+
+import wtune.common.utils.Args;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static wtune.superopt.runner.RunnerSupport.dataDir;
+
+/** Converts a text rule bank into the binary format. `loadBank` accepts either format. */
+public class ConvertRules implements Runner {
+  private Path inFile;
+  private Path outFile;
+
+  @Override
+  public void prepare(String[] argStrings) {
+    final Args args = Args.parse(argStrings, 1);
+    final Path dataDir = dataDir();
+    final String inFileName = args.getOptional("R", "rules", String.class, "rules/rules.txt");
+    final String outFileName = args.getOptional("o", "output", String.class, "rules/rules.bin");
+
+    inFile = dataDir.resolve(inFileName);
+    outFile = dataDir.resolve(outFileName);
+
+    if (!Files.exists(inFile)) throw new IllegalArgumentException("no such file: " + inFile);
+  }
+
+  @Override
+  public void run() throws Exception {
+    SubstitutionSupport.convertBank(inFile, outFile);
+    final int numRules = SubstitutionSupport.loadBank(outFile).size();
+    System.out.printf("%d rules written to %s\n", numRules, outFile);
+  }
+}
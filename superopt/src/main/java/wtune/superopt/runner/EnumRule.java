@@ -4,13 +4,17 @@ import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.lang3.tuple.Pair;
 import wtune.common.utils.Args;
 import wtune.common.utils.IOSupport;
+import wtune.common.utils.MetricsExporter;
+import wtune.common.utils.MetricsRegistry;
 import wtune.superopt.constraint.ConstraintSupport;
 import wtune.superopt.constraint.EnumerationMetrics;
+import wtune.superopt.constraint.VerdictStore;
 import wtune.superopt.fragment.Fragment;
 import wtune.superopt.fragment.FragmentSupport;
 import wtune.superopt.fragment.FragmentSupportSPES;
 import wtune.superopt.fragment.SymbolNaming;
 import wtune.superopt.substitution.Substitution;
+import wtune.superopt.util.Complexity;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -22,12 +26,14 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.Integer.parseInt;
 import static wtune.common.utils.ListSupport.map;
+import static wtune.superopt.constraint.ConstraintSupport.ENUM_FLAG_USE_PORTFOLIO;
 import static wtune.superopt.constraint.ConstraintSupport.enumConstraints;
 import static wtune.superopt.constraint.ConstraintSupport.enumConstraintsSPES;
 import static wtune.superopt.fragment.FragmentSupport.enumFragments;
@@ -39,7 +45,10 @@ public class EnumRule implements Runner {
 
   private Path success, failure, err, checkpoint;
   private Path prevFailure, prevCheckpoint;
+  private Path queue;
+  private long leaseDuration;
   private boolean useSpes;
+  private boolean usePortfolio;
   private int verbosity;
   private long timeout;
   private int parallelism;
@@ -49,6 +58,7 @@ public class EnumRule implements Runner {
   private Pair<Fragment, Fragment> target;
   private ProgressBar progressBar;
   private CountDownLatch latch;
+  private MetricsExporter metricsExporter;
   private int iEnd, jEnd;
 
   private final AtomicInteger numSkipped = new AtomicInteger(0);
@@ -56,6 +66,18 @@ public class EnumRule implements Runner {
   @Override
   public void prepare(String[] argStrings) throws Exception {
     final Args args = Args.parse(argStrings, 1);
+    final String verdictsFile = args.getOptional("verdicts", String.class, null);
+    if (verdictsFile != null)
+      VerdictStore.install(VerdictStore.open(RunnerSupport.dataDir().resolve(verdictsFile)));
+
+    // Live metrics for watching a long run, refreshed every `metricsPeriod` ms.
+    final String metricsDir = args.getOptional("metricsDir", String.class, null);
+    final long metricsPeriod = args.getOptional("metricsPeriod", long.class, 10000L);
+    if (metricsDir != null)
+      metricsExporter =
+          MetricsExporter.start(
+              MetricsRegistry.global(), RunnerSupport.dataDir().resolve(metricsDir), metricsPeriod);
+
     final String target = args.getOptional("target", String.class, null);
     if (target != null) {
       try {
@@ -76,8 +98,13 @@ public class EnumRule implements Runner {
     timeout = args.getOptional("timeout", long.class, 240000L);
     parallelism = args.getOptional("parallelism", int.class, 1);
     useSpes = args.getOptional("useSpes", boolean.class, false);
+    usePortfolio = args.getOptional("portfolio", boolean.class, false);
+
+    // A pair is enumerated in at most two directions, each bounded by `timeout`.
+    leaseDuration = args.getOptional("lease", long.class, 3 * timeout);
 
     if (timeout <= 0) throw new IllegalArgumentException("invalid timeout: " + timeout);
+    if (leaseDuration <= 0) throw new IllegalArgumentException("invalid lease: " + leaseDuration);
     if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
     if (partitionFields.length != 2)
       throw new IllegalArgumentException("invalid partition: " + partition);
@@ -91,7 +118,10 @@ public class EnumRule implements Runner {
     final Path dataDir = RunnerSupport.dataDir();
     final String subDirName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss"));
     final String dirName = args.getOptional("D", "dir", String.class, "enumeration");
-    final Path dir = dataDir.resolve(dirName).resolve("run" + subDirName + "_" + workerIndex);
+    // The pid tells apart the workers started in the same second, e.g., those sharing a queue.
+    final long pid = ProcessHandle.current().pid();
+    final Path dir =
+        dataDir.resolve(dirName).resolve("run" + subDirName + "_" + pid + "_" + workerIndex);
 
     if (!Files.exists(dir)) Files.createDirectories(dir);
 
@@ -103,6 +133,9 @@ public class EnumRule implements Runner {
     final String prevCheckpointFile = args.getOptional("checkpoint", String.class, null);
     prevCheckpoint = prevCheckpointFile == null ? null : dataDir.resolve(prevCheckpointFile);
 
+    final String queueFile = args.getOptional("queue", String.class, null);
+    queue = queueFile == null ? null : dataDir.resolve(queueFile);
+
     final String prevFailureFile = args.getOptional("failure", String.class, null);
     prevFailure = prevFailureFile == null ? null : dataDir.resolve(prevFailureFile);
 
@@ -116,11 +149,14 @@ public class EnumRule implements Runner {
   public void run() throws Exception {
     if (target != null) fromTarget();
     else if (prevFailure != null) fromFailures();
+    else if (queue != null) fromQueue();
     else fromEnumeration();
   }
 
   @Override
   public void stop() {
+    if (metricsExporter != null) metricsExporter.close();
+
     final EnumerationMetrics metric = ConstraintSupport.getEnumerationMetric();
     final Integer enumPairs = metric.numEnumeratorInvocations.value();
     final Integer enumSets = metric.numEnumeratedConstraintSets.value();
@@ -140,6 +176,7 @@ public class EnumRule implements Runner {
     System.out.println(", " + metric.elapsedUnknown.value() + "ms");
     System.out.println("# of EQ from cache: " + metric.numCacheHitEq.value());
     System.out.println("# of NEQ from cache: " + metric.numCacheHitNeq.value());
+    System.out.println("# of answers from verdict store: " + metric.numStoreHit.value());
     System.out.println();
   }
 
@@ -199,6 +236,52 @@ public class EnumRule implements Runner {
     }
   }
 
+  private void fromQueue() throws IOException, InterruptedException {
+    // Pairs are leased from a queue shared by all workers instead of statically partitioned.
+    // `partition`, `checkpoint` and `from` are ignored: the queue itself tracks the progress.
+    final List<Fragment> templates = useSpes ? enumFragmentsSPES() : enumFragments();
+    final int numTemplates = templates.size();
+    final int[] pairs = sortPairsByCost(templates);
+    iEnd = jEnd = -1;
+
+    try (final PairLeaseQueue queue = PairLeaseQueue.open(this.queue, pairs.length, leaseDuration);
+        final ProgressBar pb = new ProgressBar("Candidates", pairs.length)) {
+      progressBar = pb;
+      pb.stepTo(queue.numDone());
+
+      threadPool = Executors.newFixedThreadPool(parallelism);
+      for (int n = 0; n < parallelism; ++n)
+        threadPool.submit(() -> enumerateLeased(queue, templates, pairs));
+
+      threadPool.shutdown();
+      threadPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+  }
+
+  private void enumerateLeased(PairLeaseQueue queue, List<Fragment> templates, int[] pairs) {
+    final int numTemplates = templates.size();
+    try {
+      int slot;
+      while ((slot = queue.lease()) >= 0) {
+        final int i = pairs[slot] / numTemplates, j = pairs[slot] % numTemplates;
+        if (verbosity >= 4) System.out.printf("%d,%d\n", i, j);
+        try {
+          enumerate(templates.get(i), templates.get(j), i, j);
+        } catch (RuntimeException ex) {
+          // Failures of the enumeration are recorded by enumerate() itself, this is for the rest,
+          // e.g., I/O. The pair is recorded as failed and completed, rather than retried forever.
+          recordFailure(templates.get(i), templates.get(j), ex);
+        }
+        queue.complete(slot);
+      }
+    } catch (InterruptedException ignored) {
+    } catch (RuntimeException ex) {
+      // The queue itself fails. The slot leased, if any, is stolen by others once it expires.
+      System.err.println("enumeration worker stops: queue failure");
+      ex.printStackTrace();
+    }
+  }
+
   private void fromFailures() throws IOException, InterruptedException {
     final List<String> failures = Files.readAllLines(prevFailure);
 
@@ -249,6 +332,37 @@ public class EnumRule implements Runner {
     }
   }
 
+  private static int[] sortPairsByCost(List<Fragment> templates) {
+    // Estimated cost of a pair: total #operators of the two templates.
+    // Pairs are sorted in descending order, so that the expensive ones are scheduled early.
+    // Counting sort keeps the order among pairs of the same cost, thus every worker agrees on it.
+    final int numTemplates = templates.size();
+    final int[] costs = new int[numTemplates];
+    int maxCost = 0;
+    for (int i = 0; i < numTemplates; ++i) {
+      for (int count : Complexity.mk(templates.get(i)).opCounts()) costs[i] += count;
+      maxCost = Math.max(maxCost, costs[i]);
+    }
+
+    final int[] offsets = new int[(maxCost << 1) + 1];
+    for (int i = 0; i < numTemplates; ++i)
+      for (int j = i; j < numTemplates; ++j) ++offsets[costs[i] + costs[j]];
+
+    int total = 0;
+    for (int cost = offsets.length - 1; cost >= 0; --cost) {
+      final int count = offsets[cost];
+      offsets[cost] = total;
+      total += count;
+    }
+
+    final int[] pairs = new int[total];
+    for (int i = 0; i < numTemplates; ++i)
+      for (int j = i; j < numTemplates; ++j)
+        pairs[offsets[costs[i] + costs[j]]++] = i * numTemplates + j;
+
+    return pairs;
+  }
+
   private int ordinal(int total, int i, int j) {
     assert i <= j;
     return ((total * 2) - i + 1) * i / 2 + j - i;
@@ -285,7 +399,7 @@ public class EnumRule implements Runner {
   }
 
   private void enumerate0(Fragment f0_, Fragment f1_, int i, int j) {
-    boolean outLocked = false, errLocked = false;
+    boolean outLocked = false;
     final Fragment f0 = f0_;
     final Fragment f1;
     if (f0_ != f1_) f1 = f1_;
@@ -295,8 +409,10 @@ public class EnumRule implements Runner {
     }
 
     try {
-      final List<Substitution> rules =
-          !useSpes ? enumConstraints(f0, f1, timeout) : enumConstraintsSPES(f0, f1, timeout);
+      final List<Substitution> rules;
+      if (useSpes) rules = enumConstraintsSPES(f0, f1, timeout);
+      else if (usePortfolio) rules = enumConstraints(f0, f1, timeout, ENUM_FLAG_USE_PORTFOLIO, null);
+      else rules = enumConstraints(f0, f1, timeout);
       if (rules == null) {
         numSkipped.incrementAndGet();
         return;
@@ -317,9 +433,18 @@ public class EnumRule implements Runner {
       if (i >= 0 && j >= 0) IOSupport.appendTo(checkpoint, out -> out.printf("%d,%d\n", i, j));
 
     } catch (Throwable ex) {
-      errLock.lock();
-      errLocked = true;
+      recordFailure(f0, f1, ex);
 
+    } finally {
+      if (i >= 0 && j >= 0 && isLastPair(i, j))
+        IOSupport.appendTo(checkpoint, out -> out.printf("finished\n"));
+      if (outLocked) outLock.unlock();
+    }
+  }
+
+  private void recordFailure(Fragment f0, Fragment f1, Throwable ex) {
+    errLock.lock();
+    try {
       IOSupport.appendTo(
           err,
           err -> {
@@ -338,11 +463,13 @@ public class EnumRule implements Runner {
             err.println(f1);
           });
 
+    } catch (RuntimeException ioEx) {
+      System.err.printf("failed to record the failure of %s|%s\n", f0, f1);
+      ex.printStackTrace();
+      ioEx.printStackTrace();
+
     } finally {
-      if (i >= 0 && j >= 0 && isLastPair(i, j))
-        IOSupport.appendTo(checkpoint, out -> out.printf("finished\n"));
-      if (outLocked) outLock.unlock();
-      if (errLocked) errLock.unlock();
+      errLock.unlock();
     }
   }
 }
@@ -0,0 +1,158 @@
+package wtune.superopt.runner;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A work queue of template pairs shared by enumeration workers on the same machine.
+ *
+ * <p>The queue is a memory-mapped file with one slot per pair. The slots are laid out in the order
+ * of estimated cost (descending), which every worker computes identically. A slot holds one of
+ *
+ * <ul>
+ *   <li>FREE: not leased yet
+ *   <li>DONE: completed
+ *   <li>a timestamp: leased until then
+ * </ul>
+ *
+ * Workers lease free slots in order. Once the free ones run out, workers steal the slots whose
+ * lease expired, e.g., those of a crashed or hanging worker. Thus, there is no static partition and
+ * the most expensive pairs are started first.
+ *
+ * <p>The whole file is locked during each update, so it works across processes. A pair may be
+ * enumerated twice if its lease expires before completion. Choose the lease duration accordingly.
+ */
+class PairLeaseQueue implements AutoCloseable {
+  private static final long FREE = 0, DONE = -1;
+  private static final int HEADER_SIZE = Long.BYTES;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer slots;
+  private final int numSlots;
+  private final long leaseDuration;
+  private final long pollInterval;
+  private int cursor;
+
+  private PairLeaseQueue(FileChannel channel, int numSlots, long leaseDuration) throws IOException {
+    this.channel = channel;
+    this.slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, size(numSlots));
+    this.numSlots = numSlots;
+    this.leaseDuration = leaseDuration;
+    this.pollInterval = Math.min(leaseDuration, 1000L);
+  }
+
+  static PairLeaseQueue open(Path path, int numSlots, long leaseDuration) throws IOException {
+    final FileChannel channel = FileChannel.open(path, READ, WRITE, CREATE);
+    try {
+      final FileLock lock = channel.lock();
+      try {
+        // Mapping a fresh file in READ_WRITE mode extends it to the expected size.
+        final long size = channel.size();
+        if (size != 0 && size != size(numSlots))
+          throw new IllegalArgumentException(
+              "queue %s doesn't match the pair space: %d pairs expected".formatted(path, numSlots));
+
+        final PairLeaseQueue queue = new PairLeaseQueue(channel, numSlots, leaseDuration);
+        if (size == 0) queue.slots.putLong(0, numSlots);
+        else if (queue.slots.getLong(0) != numSlots)
+          throw new IllegalArgumentException("corrupted queue: " + path);
+        return queue;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException | RuntimeException ex) {
+      if (channel.isOpen()) channel.close();
+      throw ex;
+    }
+  }
+
+  int numSlots() {
+    return numSlots;
+  }
+
+  /** Returns the leased slot, or -1 if all slots are done. Blocks if the rest are all leased. */
+  int lease() throws InterruptedException {
+    while (true) {
+      synchronized (this) {
+        final int slot = tryLease();
+        if (slot != -2) return slot;
+      }
+      Thread.sleep(pollInterval);
+    }
+  }
+
+  synchronized void complete(int slot) {
+    try {
+      final FileLock lock = channel.lock();
+      try {
+        setSlot(slot, DONE);
+      } finally {
+        lock.release();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  synchronized int numDone() {
+    int count = 0;
+    for (int i = 0; i < numSlots; ++i) if (getSlot(i) == DONE) ++count;
+    return count;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    slots.force();
+    channel.close();
+  }
+
+  private int tryLease() {
+    try {
+      final FileLock lock = channel.lock();
+      try {
+        final long now = System.currentTimeMillis();
+
+        for (; cursor < numSlots; ++cursor)
+          if (getSlot(cursor) == FREE) {
+            setSlot(cursor, now + leaseDuration);
+            return cursor++;
+          }
+
+        boolean allDone = true;
+        for (int i = 0; i < numSlots; ++i) {
+          final long state = getSlot(i);
+          if (state == DONE) continue;
+          allDone = false;
+          if (state == FREE || state < now) {
+            setSlot(i, now + leaseDuration);
+            return i;
+          }
+        }
+
+        return allDone ? -1 : -2;
+      } finally {
+        lock.release();
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private long getSlot(int slot) {
+    return slots.getLong(HEADER_SIZE + slot * Long.BYTES);
+  }
+
+  private void setSlot(int slot, long state) {
+    slots.putLong(HEADER_SIZE + slot * Long.BYTES, state);
+  }
+
+  private static long size(int numSlots) {
+    return HEADER_SIZE + numSlots * (long) Long.BYTES;
+  }
+}
@@ -10,6 +10,7 @@ import wtune.sql.schema.Schema;
 import wtune.sql.support.action.NormalizationSupport;
 import wtune.stmt.App;
 import wtune.stmt.Statement;
+import wtune.superopt.profiler.CostCache;
 import wtune.superopt.profiler.Profiler;
 
 import java.nio.file.Files;
@@ -80,6 +81,9 @@ public class PickMinCost implements Runner {
 
     // Default datasource is Sql Server
     useSqlServer = args.getOptional("sqlserver", boolean.class, true);
+
+    final String costCacheFile = args.getOptional("costCache", String.class, null);
+    if (costCacheFile != null) CostCache.install(CostCache.open(dataDir.resolve(costCacheFile)));
   }
 
   @Override
@@ -98,6 +102,7 @@ public class PickMinCost implements Runner {
       }
     }
     System.err.println("failed to profile " + (failures));
+    if (verbosity >= 1) System.err.println("cost cache: " + CostCache.instance().stats());
   }
 
   private List<OptimizedStatements> collectOpts(List<String> lines) {
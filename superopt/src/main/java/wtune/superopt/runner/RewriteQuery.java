@@ -9,36 +9,57 @@ import wtune.sql.plan.PlanKind;
 import wtune.sql.plan.PlanSupport;
 import wtune.sql.schema.Schema;
 import wtune.stmt.Statement;
+import wtune.superopt.optimizer.CostModel;
 import wtune.superopt.optimizer.OptimizationStep;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.superopt.optimizer.OptimizerSupport;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
 import wtune.superopt.substitution.SubstitutionSupport;
+import wtune.superopt.util.Complexity;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
 import static wtune.common.utils.Commons.countOccurrences;
 import static wtune.common.utils.Commons.joining;
 import static wtune.common.utils.IterableSupport.all;
+import static wtune.common.utils.ListSupport.map;
 import static wtune.sql.plan.PlanSupport.*;
 import static wtune.sql.support.action.NormalizationSupport.normalizeAst;
 import static wtune.superopt.optimizer.OptimizerSupport.*;
 import static wtune.superopt.runner.RunnerSupport.parseIntArg;
 
 public class RewriteQuery implements Runner {
+  // The budget of a plan with this number of operators is exactly `timeout`.
+  private static final int REFERENCE_NUM_OPS = 8;
+
   private Path out, err;
   private Path rulesOut;
   private String targetApp;
   private int stmtId;
   private boolean single, excludeNonEssential;
   private int verbosity;
+  private int parallelism;
+  private long timeout;
+  private boolean adaptiveTimeout;
+  private boolean parallelMatch;
+  private boolean estimateCost;
   private SubstitutionBank rules;
+  private OptimizerConfig optimizerConfig;
   private Map<Integer, Substitution> ruleRecord;
 
   @Override
@@ -66,6 +87,13 @@ public class RewriteQuery implements Runner {
     if (single && stmtId > 0) verbosity = Integer.MAX_VALUE;
 
     excludeNonEssential = args.getOptional("E", boolean.class, false);
+    parallelism = args.getOptional("parallelism", int.class, 1);
+    timeout = args.getOptional("timeout", long.class, 5000L);
+    adaptiveTimeout = args.getOptional("adaptive", boolean.class, false);
+    parallelMatch = args.getOptional("parallelMatch", boolean.class, false);
+    estimateCost = args.getOptional("estimateCost", boolean.class, false);
+    if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
+    if (timeout <= 0) throw new IllegalArgumentException("invalid timeout: " + timeout);
 
     final Path dataDir = RunnerSupport.dataDir();
     final String ruleFileName = args.getOptional("R", "rules", String.class, "rules/rules.txt");
@@ -93,11 +121,14 @@ public class RewriteQuery implements Runner {
 
   @Override
   public void run() throws Exception {
-    if (rules.isExtended()) addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
-    addOptimizerTweaks(TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
+    optimizerConfig = OptimizerConfig.DEFAULT.with(TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
+    if (rules.isExtended()) optimizerConfig = optimizerConfig.with(TWEAK_ENABLE_EXTENSIONS);
+    if (parallelMatch) optimizerConfig = optimizerConfig.with(TWEAK_PARALLEL_MATCH);
 
     if (single && stmtId > 0) {
       optimizeOne(Statement.findOne(targetApp, stmtId));
+    } else if (single) {
+      for (Statement stmt : collectToRun()) optimizeOne(stmt);
     } else {
       optimizeAll(collectToRun());
     }
@@ -120,16 +151,86 @@ public class RewriteQuery implements Runner {
     return toRun;
   }
 
-  private void optimizeAll(List<Statement> stmts) {
-    try (final ProgressBar pb = new ProgressBar("Optimization", stmts.size())) {
-      for (Statement stmt : stmts) {
-        optimizeOne(stmt);
-        pb.step();
+  private void optimizeAll(List<Statement> stmts) throws IOException, InterruptedException {
+    try (final PrintWriter outWriter = new PrintWriter(Files.newBufferedWriter(out));
+        final PrintWriter errWriter = new PrintWriter(Files.newBufferedWriter(err));
+        final ProgressBar pb = new ProgressBar("Optimization", stmts.size())) {
+      if (parallelism == 1) {
+        for (Statement stmt : stmts) {
+          emit(optimizeOne(stmt), outWriter, errWriter);
+          pb.step();
+        }
+        return;
       }
+
+      // Statements are submitted in a sliding window, and the results are written in the order of
+      // submission. Thus, the output is identical to the sequential one, while at most `window`
+      // results are buffered.
+      final ExecutorService executor =
+          Executors.newFixedThreadPool(
+              parallelism,
+              runnable ->
+                  new Thread(
+                      () -> {
+                        // Each worker opens a DB connection of its own on demand.
+                        try {
+                          runnable.run();
+                        } finally {
+                          Statement.closeConnection();
+                        }
+                      }));
+      final int window = parallelism * 4;
+      final Deque<Future<Rewritten>> pending = new ArrayDeque<>(window);
+      try {
+        final Iterator<Statement> iter = stmts.iterator();
+        while (iter.hasNext() || !pending.isEmpty()) {
+          while (iter.hasNext() && pending.size() < window) {
+            final Statement stmt = iter.next();
+            pending.add(executor.submit(() -> optimizeOne(stmt)));
+          }
+          emit(pending.poll().get(), outWriter, errWriter);
+          pb.step();
+        }
+      } catch (ExecutionException ex) {
+        throw new RuntimeException(ex.getCause()); // optimizeOne catches everything
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  private void emit(Rewritten result, PrintWriter outWriter, PrintWriter errWriter) {
+    if (result == null) return;
+
+    final Statement stmt = result.stmt();
+    for (int i = 0, bound = result.sqls().size(); i < bound; i++)
+      outWriter.printf(
+          "%s\t%d\t%d\t%s\t%s\n",
+          stmt.appName(), stmt.stmtId(), i, result.sqls().get(i), result.traces().get(i));
+
+    for (Substitution rule : result.rules())
+      if (rule != null) ruleRecord.putIfAbsent(rule.id(), rule);
+
+    if (result.error() != null) {
+      errWriter.print(" >");
+      errWriter.println(stmt);
+      errWriter.print(result.error());
+      // Errors are rare and worth to be seen early.
+      errWriter.flush();
     }
   }
 
-  private void optimizeOne(Statement stmt) {
+  private long budgetOf(PlanContext plan) {
+    if (!adaptiveTimeout) return timeout;
+    // The search space grows with the number of operators, and so does the budget.
+    int numOps = 0;
+    for (int count : Complexity.mk(plan, plan.root()).opCounts()) numOps += count;
+    final long budget = timeout * numOps / REFERENCE_NUM_OPS;
+    return Math.max(timeout / 4, Math.min(timeout * 4, budget));
+  }
+
+  // Returns null if nothing to output. In single mode, the rewritings are printed instead.
+  private Rewritten optimizeOne(Statement stmt) {
     if (verbosity >= 3) {
       System.out.println("begin optimize " + stmt);
       if (verbosity >= 4) System.out.println(stmt.ast().toString(false));
@@ -138,19 +239,23 @@ public class RewriteQuery implements Runner {
     PlanContext plan = null;
     try {
       plan = parsePlan(stmt);
-      if (plan == null) return;
+      if (plan == null) return null;
 
       if (isSimple(plan)) {
         if (verbosity >= 3) System.out.println("skip simple query " + stmt);
-        return;
+        return null;
       }
 
-      final Optimizer optimizer = Optimizer.mk(rules);
-      optimizer.setTimeout(5000);
+      final OptimizerConfig config =
+          estimateCost
+              ? optimizerConfig.with(CostModel.mk(stmt.app().statistics("base")))
+              : optimizerConfig;
+      final Optimizer optimizer = Optimizer.mk(rules, config);
+      optimizer.setTimeout(budgetOf(plan));
       optimizer.setTracing(true);
 
       final Set<PlanContext> optimized = optimizer.optimize(plan);
-      if (optimized.isEmpty()) return;
+      if (optimized.isEmpty()) return null;
 
       final List<String> optimizedSql = new ArrayList<>(optimized.size());
       final List<String> traces = new ArrayList<>(optimized.size());
@@ -183,27 +288,12 @@ public class RewriteQuery implements Runner {
 
         final String trace = joining(",", steps, it -> String.valueOf(it.ruleId()));
         traces.add(trace);
-        steps.stream()
-                .forEach(optStep -> rules.add(optStep.rule()));
+        rules.addAll(map(steps, OptimizationStep::rule));
       }
 
-      if (single) return;
+      if (single) return null;
 
-      IOSupport.appendTo(
-          out,
-          writer -> {
-            for (int i = 0, bound = optimizedSql.size(); i < bound; i++)
-              writer.printf(
-                  "%s\t%d\t%d\t%s\t%s\n",
-                  stmt.appName(), stmt.stmtId(), i, optimizedSql.get(i), traces.get(i));
-          });
-
-
-        for (Substitution rule: rules){
-          if (rule != null && !ruleRecord.containsKey(rule.id())){
-            ruleRecord.put(rule.id(), rule);
-          }
-      }
+      return new Rewritten(stmt, optimizedSql, traces, rules, null);
 
     } catch (Throwable ex) {
       if (verbosity >= 1) System.err.println("fail to optimize stmt " + stmt);
@@ -212,15 +302,11 @@ public class RewriteQuery implements Runner {
         if (plan != null) System.err.println(stringifyTree(plan, plan.root(), false, false));
         ex.printStackTrace();
       }
-      if (single) return;
+      if (single) return null;
 
-      IOSupport.appendTo(
-          err,
-          writer -> {
-            writer.print(" >");
-            writer.println(stmt);
-            ex.printStackTrace(writer);
-          });
+      final StringWriter trace = new StringWriter();
+      ex.printStackTrace(new PrintWriter(trace));
+      return new Rewritten(stmt, emptyList(), emptyList(), emptySet(), trace.toString());
     }
   }
 
@@ -277,6 +363,13 @@ public class RewriteQuery implements Runner {
     }
   }
 
+  private record Rewritten(
+      Statement stmt,
+      List<String> sqls,
+      List<String> traces,
+      Set<Substitution> rules,
+      String error) {}
+
   private static boolean isTooComplex(String sql) {
     return countOccurrences(sql.toLowerCase(Locale.ROOT), "join") >= 10;
   }
@@ -13,6 +13,7 @@ import wtune.stmt.App;
 import wtune.superopt.logic.LogicSupport;
 import wtune.superopt.optimizer.OptimizationStep;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.superopt.optimizer.OptimizerSupport;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
@@ -134,8 +135,11 @@ public class RunCalciteTest implements Runner {
   private void verifyRule() {
     checkFileExists(testCasesPath);
     checkFileExists(rulesPath);
-    OptimizerSupport.setOptimizerTweaks(
-        OptimizerSupport.TWEAK_KEEP_ORIGINAL_PLAN | OptimizerSupport.TWEAK_SORT_FILTERS_DURING_REWRITE | OptimizerSupport.TWEAK_PERMUTE_JOIN_TREE);
+    final OptimizerConfig config =
+        new OptimizerConfig(
+            OptimizerSupport.TWEAK_KEEP_ORIGINAL_PLAN
+                | OptimizerSupport.TWEAK_SORT_FILTERS_DURING_REWRITE
+                | OptimizerSupport.TWEAK_PERMUTE_JOIN_TREE);
 
     final SubstitutionBank rules = this.rules.get();
     final List<QueryPair> pairs = this.queryPairs.get();
@@ -143,8 +147,8 @@ public class RunCalciteTest implements Runner {
     int count = 0;
     outer:
     for (final QueryPair pair : pairs) {
-      final Optimizer opt0 = Optimizer.mk(rules);
-      final Optimizer opt1 = Optimizer.mk(rules);
+      final Optimizer opt0 = Optimizer.mk(rules, config);
+      final Optimizer opt1 = Optimizer.mk(rules, config);
       //      opt0.setTracing(true);
       //      opt1.setTracing(true);
       final Set<PlanContext> rewritten0 = opt0.optimize(pair.p0);
@@ -170,19 +174,21 @@ public class RunCalciteTest implements Runner {
   }
 
   private void generateRewritings() throws IOException {
-    OptimizerSupport.setOptimizerTweaks(0);
     checkFileExists(testCasesPath);
     checkFileExists(rulesPath);
     if (!Files.exists(outDir)) Files.createDirectories(outDir);
 
     final SubstitutionBank rules = this.rules.get();
-    if(rules.isExtended()) OptimizerSupport.addOptimizerTweaks(OptimizerSupport.TWEAK_ENABLE_EXTENSIONS);
+    final OptimizerConfig config =
+        rules.isExtended()
+            ? OptimizerConfig.DEFAULT.with(OptimizerSupport.TWEAK_ENABLE_EXTENSIONS)
+            : OptimizerConfig.DEFAULT;
 
     final List<QueryPair> pairs = this.queryPairs.get();
 
     for (final QueryPair pair : pairs) {
-      final Optimizer opt0 = Optimizer.mk(rules);
-      final Optimizer opt1 = Optimizer.mk(rules);
+      final Optimizer opt0 = Optimizer.mk(rules, config);
+      final Optimizer opt1 = Optimizer.mk(rules, config);
       opt0.setTracing(true);
       opt1.setTracing(true);
       final Set<PlanContext> rewritten0 = opt0.optimize(pair.p0);
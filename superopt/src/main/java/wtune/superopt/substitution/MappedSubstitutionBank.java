@@ -0,0 +1,311 @@
+package wtune.superopt.substitution;
+
+import wtune.common.utils.ListSupport;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.util.Fingerprint;
+import wtune.superopt.util.FingerprintTrie;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A rule bank backed by a memory-mapped binary file.
+ *
+ * <p>Only the fingerprint index is decoded when the file is opened. A rule is parsed on first
+ * access, e.g., when it is matched against a plan node. Thus, the start-up cost no longer grows
+ * with the parsing of the whole bank.
+ *
+ * <p>Layout (big-endian):
+ *
+ * <pre>
+ * header:       magic, version, #rules, isExtended          (int x 4)
+ * rules:        id, offset, length, canonicalOffset, canonicalLength (int x 5, per rule)
+ * fingerprints: #fingerprints,
+ *               then per fingerprint: length (byte), chars (ASCII), #rules (int), rule indices
+ * strings:      the rule lines and their canonical strings (UTF-8)
+ * </pre>
+ *
+ * Offsets are relative to the beginning of the file. Rules added after loading are kept in
+ * memory.
+ */
+class MappedSubstitutionBank implements SubstitutionBank {
+  private static final int MAGIC = 0x57544242; // "WTBB"
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+  private static final int RECORD_SIZE = 5 * Integer.BYTES;
+
+  private final ByteBuffer buffer;
+  private final List<Entry> entries;
+  private final FingerprintTrie<Entry> fingerprintIndex;
+  private Map<String, Entry> canonicalIndex; // built on demand
+  private boolean isExtended;
+  private int size;
+
+  private MappedSubstitutionBank(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.entries = new ArrayList<>(buffer.getInt(2 * Integer.BYTES));
+    this.fingerprintIndex = new FingerprintTrie<>();
+    this.isExtended = buffer.getInt(3 * Integer.BYTES) != 0;
+  }
+
+  static boolean isBinaryBank(Path path) throws IOException {
+    try (final DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException ex) {
+      return false;
+    }
+  }
+
+  static MappedSubstitutionBank open(Path path) throws IOException {
+    final ByteBuffer buffer;
+    try (final FileChannel channel = FileChannel.open(path, READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buffer.getInt(0) != MAGIC) throw new IOException("not a binary rule bank: " + path);
+    if (buffer.getInt(Integer.BYTES) != VERSION)
+      throw new IOException("unsupported rule bank version: " + path);
+
+    final MappedSubstitutionBank bank = new MappedSubstitutionBank(buffer);
+    bank.loadIndex();
+    return bank;
+  }
+
+  /** Converts a text rule bank (one rule per line) into the binary format. */
+  static void convert(Path textFile, Path binaryFile) throws IOException {
+    final SubstitutionBank bank = new SubstitutionBankImpl();
+    final List<Integer> ids = new ArrayList<>();
+    final List<byte[]> lines = new ArrayList<>(), canonicals = new ArrayList<>();
+    final Map<String, List<Integer>> index = new LinkedHashMap<>();
+
+    int lineNum = 0;
+    for (String line : Files.readAllLines(textFile)) {
+      ++lineNum;
+      if (line.isEmpty() || !Character.isLetter(line.charAt(0))) continue;
+
+      final Substitution rule = Substitution.parse(line);
+      if (!bank.add(rule)) continue;
+
+      final String fingerprint = Fingerprint.mk(rule._0()).fingerprint();
+      index.computeIfAbsent(fingerprint, ignored -> new ArrayList<>()).add(ids.size());
+      ids.add(lineNum);
+      lines.add(line.getBytes(UTF_8));
+      canonicals.add(rule.canonicalStringify().getBytes(UTF_8));
+    }
+
+    final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+    final DataOutputStream indexOut = new DataOutputStream(indexBytes);
+    indexOut.writeInt(index.size());
+    for (var pair : index.entrySet()) {
+      final byte[] fingerprint = pair.getKey().getBytes(US_ASCII);
+      indexOut.writeByte(fingerprint.length);
+      indexOut.write(fingerprint);
+      indexOut.writeInt(pair.getValue().size());
+      for (int ruleIndex : pair.getValue()) indexOut.writeInt(ruleIndex);
+    }
+    indexOut.flush();
+
+    final int numRules = ids.size();
+    try (final DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(binaryFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numRules);
+      out.writeInt(bank.isExtended() ? 1 : 0);
+
+      long offset = HEADER_SIZE + (long) RECORD_SIZE * numRules + indexBytes.size();
+      for (int i = 0; i < numRules; ++i) {
+        final int lineLength = lines.get(i).length, canonicalLength = canonicals.get(i).length;
+        out.writeInt(ids.get(i));
+        out.writeInt(Math.toIntExact(offset));
+        out.writeInt(lineLength);
+        out.writeInt(Math.toIntExact(offset + lineLength));
+        out.writeInt(canonicalLength);
+        offset += lineLength + canonicalLength;
+      }
+
+      indexBytes.writeTo(out);
+
+      for (int i = 0; i < numRules; ++i) {
+        out.write(lines.get(i));
+        out.write(canonicals.get(i));
+      }
+    }
+  }
+
+  private void loadIndex() {
+    final int numRules = buffer.getInt(2 * Integer.BYTES);
+    for (int i = 0; i < numRules; ++i) entries.add(new Entry(i));
+    size = numRules;
+
+    int offset = HEADER_SIZE + RECORD_SIZE * numRules;
+    final int numFingerprints = buffer.getInt(offset);
+    offset += Integer.BYTES;
+    for (int i = 0; i < numFingerprints; ++i) {
+      final int length = buffer.get(offset);
+      final Fingerprint fingerprint = new Fingerprint(decode(offset + 1, length, US_ASCII));
+      offset += 1 + length;
+
+      final int count = buffer.getInt(offset);
+      offset += Integer.BYTES;
+      for (int j = 0; j < count; ++j, offset += Integer.BYTES) {
+        final Entry entry = entries.get(buffer.getInt(offset));
+        entry.fingerprint = fingerprint;
+        fingerprintIndex.add(fingerprint, entry);
+      }
+    }
+  }
+
+  private String decode(int offset, int length, Charset charset) {
+    final byte[] bytes = new byte[length];
+    buffer.get(offset, bytes);
+    return new String(bytes, charset);
+  }
+
+  private int recordField(int index, int field) {
+    return buffer.getInt(HEADER_SIZE + RECORD_SIZE * index + field * Integer.BYTES);
+  }
+
+  private Map<String, Entry> canonicalIndex() {
+    if (canonicalIndex == null) {
+      canonicalIndex = new HashMap<>(entries.size() << 1);
+      for (Entry entry : entries) if (!entry.removed) canonicalIndex.put(entry.canonical(), entry);
+    }
+    return canonicalIndex;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isExtended() {
+    return isExtended;
+  }
+
+  @Override
+  public boolean add(Substitution rule) {
+    final String identity = rule.canonicalStringify();
+    if (canonicalIndex().containsKey(identity)) return false;
+
+    rule.setId(size + 1);
+    final Entry entry = new Entry(rule, identity);
+    entries.add(entry);
+    canonicalIndex.put(identity, entry);
+    fingerprintIndex.add(entry.fingerprint, entry);
+    ++size;
+    if (!isExtended) isExtended = identity.contains("Union") || identity.contains("Agg");
+    return true;
+  }
+
+  @Override
+  public boolean contains(Substitution rule) {
+    return canonicalIndex().containsKey(rule.canonicalStringify());
+  }
+
+  @Override
+  public void remove(Substitution rule) {
+    final Entry entry = canonicalIndex().remove(rule.canonicalStringify());
+    if (entry != null) remove0(entry);
+  }
+
+  @Override
+  public void removeIf(Predicate<Substitution> check) {
+    for (Entry entry : entries)
+      if (!entry.removed && check.test(entry.rule())) {
+        if (canonicalIndex != null) canonicalIndex.remove(entry.canonical());
+        remove0(entry);
+      }
+  }
+
+  private void remove0(Entry entry) {
+    entry.removed = true;
+    fingerprintIndex.remove(entry.fingerprint, entry);
+    --size;
+  }
+
+  @Override
+  public Collection<Substitution> rules() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Substitution> iterator() {
+        final Iterator<Entry> iter = entries.stream().filter(it -> !it.removed).iterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return iter.hasNext();
+          }
+
+          @Override
+          public Substitution next() {
+            return iter.next().rule();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  @Override
+  public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
+    return ListSupport.map(fingerprintIndex.get(fingerprint), Entry::rule);
+  }
+
+  @Override
+  public Iterable<Substitution> matchRules(PlanContext plan, int nodeId) {
+    return ListSupport.map(fingerprintIndex.match(plan, nodeId), Entry::rule);
+  }
+
+  private class Entry {
+    private final int index; // -1 for the rules added after loading
+    private volatile Substitution rule;
+    private String canonical;
+    private Fingerprint fingerprint;
+    private boolean removed;
+
+    private Entry(int index) {
+      this.index = index;
+    }
+
+    private Entry(Substitution rule, String canonical) {
+      this.index = -1;
+      this.rule = rule;
+      this.canonical = canonical;
+      this.fingerprint = Fingerprint.mk(rule._0());
+    }
+
+    private Substitution rule() {
+      Substitution rule = this.rule;
+      if (rule != null) return rule;
+
+      synchronized (this) {
+        if ((rule = this.rule) == null) {
+          rule = Substitution.parse(decode(recordField(index, 1), recordField(index, 2), UTF_8));
+          rule.setId(recordField(index, 0));
+          this.rule = rule;
+        }
+        return rule;
+      }
+    }
+
+    private String canonical() {
+      if (canonical == null)
+        canonical = decode(recordField(index, 3), recordField(index, 4), UTF_8);
+      return canonical;
+    }
+  }
+}
@@ -5,6 +5,7 @@ import wtune.common.utils.ListSupport;
 import wtune.common.utils.SetSupport;
 import wtune.superopt.constraint.Constraints;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.sql.plan.*;
 import wtune.superopt.fragment.*;
 
@@ -21,15 +22,15 @@ import static wtune.superopt.optimizer.OptimizerSupport.*;
 
 class ReduceRuleBank {
   private final SubstitutionBank bank;
+  private final OptimizerConfig config;
 
   ReduceRuleBank(SubstitutionBank bank) {
+    final OptimizerConfig config = OptimizerConfig.DEFAULT.with(TWEAK_DISABLE_JOIN_FLIP);
     this.bank = bank;
+    this.config = bank.isExtended() ? config.with(TWEAK_ENABLE_EXTENSIONS) : config;
   }
 
   SubstitutionBank reduce() {
-    addOptimizerTweaks(TWEAK_DISABLE_JOIN_FLIP);
-    if (bank.isExtended()) addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
-
     bank.removeIf(ReduceRuleBank::isUselessHeuristic1);
     bank.removeIf(ReduceRuleBank::isUselessHeuristic2);
     bank.removeIf(ReduceRuleBank::isJoinFlipRule);
@@ -100,9 +101,9 @@ class ReduceRuleBank {
     final boolean isCappedByProj = completePlan(plan);
 
     final String str = stringifyTree(plan, plan.root());
-    final Set<String> optimized0 = optimizeAsString(plan, bank, isCappedByProj);
+    final Set<String> optimized0 = optimizeAsString(plan, bank, config, isCappedByProj);
     bank.remove(rule);
-    final Set<String> optimized1 = optimizeAsString(plan, bank, isCappedByProj);
+    final Set<String> optimized1 = optimizeAsString(plan, bank, config, isCappedByProj);
     optimized0.remove(str);
     optimized1.remove(str);
 
@@ -110,8 +111,8 @@ class ReduceRuleBank {
   }
 
   private static Set<String> optimizeAsString(
-      PlanContext plan, SubstitutionBank rules, boolean isCappedByProj) {
-    final Optimizer optimizer = Optimizer.mk(rules);
+      PlanContext plan, SubstitutionBank rules, OptimizerConfig config, boolean isCappedByProj) {
+    final Optimizer optimizer = Optimizer.mk(rules, config);
     //    optimizer.setTracing(true);
     final Set<PlanContext> optimized;
     if (!isCappedByProj) {
@@ -1,9 +1,8 @@
 package wtune.superopt.substitution;
 
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
-import wtune.common.utils.ListSupport;
+import wtune.sql.plan.PlanContext;
 import wtune.superopt.util.Fingerprint;
+import wtune.superopt.util.FingerprintTrie;
 
 import java.util.Collection;
 import java.util.LinkedHashMap;
@@ -12,12 +11,12 @@ import java.util.function.Predicate;
 
 class SubstitutionBankImpl implements SubstitutionBank {
   private final Map<String, Substitution> rules;
-  private final Multimap<String, String> fingerprintIndex;
+  private final FingerprintTrie<Substitution> fingerprintIndex;
   private boolean isExtended;
 
   SubstitutionBankImpl() {
     this.rules = new LinkedHashMap<>(2048);
-    this.fingerprintIndex = MultimapBuilder.hashKeys(2048).arrayListValues(32).build();
+    this.fingerprintIndex = new FingerprintTrie<>();
     this.isExtended = false;
   }
 
@@ -43,7 +42,7 @@ class SubstitutionBankImpl implements SubstitutionBank {
     if (rules.containsKey(identity)) return false;
     rule.setId(rules.size() + 1);
     rules.put(identity, rule);
-    fingerprintIndex.put(Fingerprint.mk(rule._0()).toString(), identity);
+    fingerprintIndex.add(Fingerprint.mk(rule._0()), rule);
     if (!isExtended) isExtended = identity.contains("Union") || identity.contains("Agg");
     return true;
   }
@@ -52,7 +51,7 @@ class SubstitutionBankImpl implements SubstitutionBank {
   public void remove(Substitution o) {
     final String identity = o.canonicalStringify();
     final Substitution removed = rules.remove(identity);
-    if (removed != null) fingerprintIndex.remove(Fingerprint.mk(o._0()).toString(), identity);
+    if (removed != null) fingerprintIndex.remove(Fingerprint.mk(removed._0()), removed);
   }
 
   @Override
@@ -60,10 +59,9 @@ class SubstitutionBankImpl implements SubstitutionBank {
     final var iter = rules.entrySet().iterator();
     while (iter.hasNext()) {
       final Substitution rule = iter.next().getValue();
-      final String identity = rule.canonicalStringify();
       if (check.test(rule)) {
         iter.remove();
-        fingerprintIndex.remove(Fingerprint.mk(rule._0()).toString(), identity);
+        fingerprintIndex.remove(Fingerprint.mk(rule._0()), rule);
       }
     }
   }
@@ -75,6 +73,11 @@ class SubstitutionBankImpl implements SubstitutionBank {
 
   @Override
   public Iterable<Substitution> ruleOfFingerprint(Fingerprint fingerprint) {
-    return ListSupport.map(fingerprintIndex.get(fingerprint.fingerprint()), rules::get);
+    return fingerprintIndex.get(fingerprint);
+  }
+
+  @Override
+  public Iterable<Substitution> matchRules(PlanContext plan, int nodeId) {
+    return fingerprintIndex.match(plan, nodeId);
   }
 }
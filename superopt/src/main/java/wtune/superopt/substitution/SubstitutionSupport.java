@@ -9,7 +9,10 @@ import java.nio.file.Path;
 import java.util.List;
 
 public class SubstitutionSupport {
+  /** Loads a rule bank, either in text format or in the binary format made by `convertBank`. */
   public static SubstitutionBank loadBank(Path path) throws IOException {
+    if (MappedSubstitutionBank.isBinaryBank(path)) return MappedSubstitutionBank.open(path);
+
     final SubstitutionBank bank = new SubstitutionBankImpl();
     final List<String> lines = Files.readAllLines(path);
 
@@ -33,6 +36,11 @@ public class SubstitutionSupport {
     return bank;
   }
 
+  /** Converts a text rule bank into the binary format, which is memory-mapped and lazily parsed. */
+  public static void convertBank(Path textFile, Path binaryFile) throws IOException {
+    MappedSubstitutionBank.convert(textFile, binaryFile);
+  }
+
   public static SubstitutionBank reduceBank(SubstitutionBank bank) {
     return new ReduceRuleBank(bank).reduce();
   }
@@ -15,7 +15,7 @@ import static wtune.sql.plan.PlanSupport.joinKindOf;
 public class Fingerprint {
   private final String fingerprint;
 
-  Fingerprint(String fingerprint) {
+  public Fingerprint(String fingerprint) {
     this.fingerprint = fingerprint;
   }
 
@@ -37,7 +37,7 @@ public class Fingerprint {
     return fingerprints;
   }
 
-  private static char getOpIdentifier(OpKind kind, boolean dedup) {
+  static char getOpIdentifier(OpKind kind, boolean dedup) {
     switch (kind) {
       case PROJ:
         return dedup ? 'q' : 'p';
@@ -0,0 +1,215 @@
+package wtune.superopt.util;
+
+import wtune.sql.ast.constants.JoinKind;
+import wtune.sql.plan.PlanContext;
+import wtune.sql.plan.PlanKind;
+import wtune.superopt.fragment.OpKind;
+
+import java.util.*;
+
+import static java.lang.Integer.min;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
+import static wtune.sql.plan.PlanSupport.isDedup;
+import static wtune.sql.plan.PlanSupport.joinKindOf;
+import static wtune.superopt.util.Fingerprint.getOpIdentifier;
+
+/**
+ * A trie of fragment fingerprints, which serves as a matching automaton for plan nodes.
+ *
+ * <p>{@link Fingerprint#mk(PlanContext, int)} enumerates the fingerprints of a node under depth
+ * limit 1 to 4, each being a string. Instead, {@link #match(PlanContext, int)} walks the plan once
+ * in the same manner while advancing in the trie, and prunes a path as soon as the trie has no
+ * such transition. Every state reached corresponds to one of those fingerprints, so the values
+ * collected are exactly those indexed by them.
+ */
+public class FingerprintTrie<T> {
+  private static final String ALPHABET = "pqfsjlavu?";
+  private static final int MAX_DEPTH = 4;
+
+  private final Node<T> root;
+  private int size;
+
+  public FingerprintTrie() {
+    this.root = new Node<>();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void add(Fingerprint fingerprint, T value) {
+    Node<T> node = root;
+    for (char c : fingerprint.fingerprint().toCharArray()) node = node.mkChild(c);
+    node.values.add(value);
+    ++size;
+  }
+
+  public boolean remove(Fingerprint fingerprint, T value) {
+    final Node<T> node = nodeOf(fingerprint);
+    if (node == null || !node.values.remove(value)) return false;
+    --size;
+    return true;
+  }
+
+  public List<T> get(Fingerprint fingerprint) {
+    final Node<T> node = nodeOf(fingerprint);
+    return node == null ? emptyList() : Collections.unmodifiableList(node.values);
+  }
+
+  /** Returns the values of all fingerprints of the plan node. */
+  public List<T> match(PlanContext plan, int node) {
+    return new Matcher(plan).match(node);
+  }
+
+  private Node<T> nodeOf(Fingerprint fingerprint) {
+    Node<T> node = root;
+    for (char c : fingerprint.fingerprint().toCharArray()) {
+      node = node.child(c);
+      if (node == null) return null;
+    }
+    return node;
+  }
+
+  private static class Node<T> {
+    private final List<T> values = new ArrayList<>(2);
+    private List<Node<T>> children;
+
+    private Node<T> child(char c) {
+      return children == null ? null : children.get(ALPHABET.indexOf(c));
+    }
+
+    private Node<T> mkChild(char c) {
+      if (children == null) children = new ArrayList<>(nCopies(ALPHABET.length(), null));
+      final int index = ALPHABET.indexOf(c);
+      Node<T> child = children.get(index);
+      if (child == null) children.set(index, child = new Node<>());
+      return child;
+    }
+  }
+
+  // Mirrors Fingerprint.PlanFingerprintBuilder, but steps in the trie instead of appending chars.
+  private class Matcher {
+    private final PlanContext plan;
+    private final Set<Node<T>> reached;
+
+    private Matcher(PlanContext plan) {
+      this.plan = plan;
+      this.reached = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private List<T> match(int node) {
+      walk(node, root, MAX_DEPTH);
+
+      List<T> values = null;
+      for (Node<T> state : reached) {
+        if (state.values.isEmpty()) continue;
+        if (values == null) values = new ArrayList<>(state.values);
+        else values.addAll(state.values);
+      }
+      return values == null ? emptyList() : values;
+    }
+
+    private void walk(int node, Node<T> state, int budget) {
+      final PlanKind nodeKind = plan.kindOf(node);
+      // Each non-empty prefix is the fingerprint under a smaller depth limit.
+      if (state != root || budget <= 0 || nodeKind == PlanKind.Input) reached.add(state);
+      if (budget <= 0 || nodeKind == PlanKind.Input) return;
+
+      if (nodeKind.isFilter()) {
+        final int chainChild = locateFilterChainChild(node);
+        final int[] counts = countFilters(node);
+        final int tot = counts[0], subTot = counts[1];
+        final int limit = min(tot, budget);
+
+        for (int cnt = 1; cnt <= limit; ++cnt) {
+          for (int subCnt = 0, subBudget = min(cnt, subTot); subCnt <= subBudget; ++subCnt) {
+            Node<T> next = step(state, getOpIdentifier(OpKind.SIMPLE_FILTER, false), cnt - subCnt);
+            next = step(next, getOpIdentifier(OpKind.IN_SUB_FILTER, false), subCnt);
+            if (next == null) continue;
+
+            if (cnt == subCnt && subCnt < subTot) reached.add(next);
+            else walk(chainChild, next, budget - cnt);
+          }
+        }
+
+      } else if (nodeKind == PlanKind.Join) {
+        final int treeChild = locateJoinTreeChild(node);
+        final int[] counts = countJoins(node);
+        walkJoins(counts[0], counts[1], budget, treeChild, state);
+
+      } else if (nodeKind == PlanKind.Proj || nodeKind == PlanKind.SetOp) {
+        final Node<T> next = state.child(identifierOf(node));
+        if (next != null) walk(plan.childOf(node, 0), next, budget - 1);
+
+      } else if (nodeKind == PlanKind.Agg) {
+        final Node<T> next = state.child(identifierOf(node));
+        if (next != null) walk(plan.childOf(plan.childOf(node, 0), 0), next, budget - 1);
+      }
+    }
+
+    private void walkJoins(int joins, int leftJoins, int budget, int treeChild, Node<T> state) {
+      if (budget == 0 || joins == 0) {
+        walk(treeChild, state, budget);
+        return;
+      }
+
+      if (leftJoins > 0) {
+        final Node<T> next = state.child(getOpIdentifier(OpKind.LEFT_JOIN, false));
+        if (next != null) stepJoin(joins - 1, leftJoins - 1, budget - 1, treeChild, next);
+      }
+
+      final Node<T> next = state.child(getOpIdentifier(OpKind.INNER_JOIN, false));
+      if (next != null) stepJoin(joins - 1, leftJoins, budget - 1, treeChild, next);
+    }
+
+    private void stepJoin(int joins, int leftJoins, int budget, int treeChild, Node<T> state) {
+      // Under a smaller depth limit, the budget runs out right after this join, so the state is a
+      // fingerprint even if more joins follow.
+      reached.add(state);
+      walkJoins(joins, leftJoins, budget, treeChild, state);
+    }
+
+    private Node<T> step(Node<T> state, char c, int count) {
+      for (int i = 0; i < count && state != null; ++i) state = state.child(c);
+      return state;
+    }
+
+    private char identifierOf(int node) {
+      final PlanKind kind = plan.kindOf(node);
+      if (kind == PlanKind.Proj) return getOpIdentifier(OpKind.PROJ, isDedup(plan, node));
+      else if (kind == PlanKind.SetOp) return getOpIdentifier(OpKind.SET_OP, isDedup(plan, node));
+      else return getOpIdentifier(OpKind.AGG, false);
+    }
+
+    private int locateFilterChainChild(int node) {
+      while (plan.kindOf(node).isFilter()) node = plan.childOf(node, 0);
+      return node;
+    }
+
+    private int locateJoinTreeChild(int node) {
+      while (plan.kindOf(node) == PlanKind.Join) node = plan.childOf(node, 0);
+      return node;
+    }
+
+    private int[] countFilters(int node) {
+      int total = 0, subquery = 0;
+      while (plan.kindOf(node).isFilter()) {
+        ++total;
+        if (plan.kindOf(node).isSubqueryFilter()) ++subquery;
+        node = plan.childOf(node, 0);
+      }
+      return new int[] {total, subquery};
+    }
+
+    private int[] countJoins(int node) {
+      int total = 0, leftJoin = 0;
+      while (plan.kindOf(node) == PlanKind.Join) {
+        ++total;
+        if (joinKindOf(plan, node) == JoinKind.LEFT_JOIN) ++leftJoin;
+        node = plan.childOf(node, 0);
+      }
+      return new int[] {total, leftJoin};
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package wtune.superopt.constraint;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("enumeration")
+@Tag("fast")
+class SubsumptionIndexTest {
+  private static BitSet bits(int... indices) {
+    final BitSet bs = new BitSet();
+    for (int index : indices) bs.set(index);
+    return bs;
+  }
+
+  @Test
+  void testQuery() {
+    final SubsumptionIndex<String> index = new SubsumptionIndex<>();
+    index.add("a", List.of(bits(0, 2)));
+    index.add("b", List.of(bits(1, 3), bits(1, 4)));
+
+    assertTrue(index.containsSubsetOf(List.of(bits(0, 1, 2))));
+    assertTrue(index.containsSubsetOf(List.of(bits(0, 1), bits(1, 4, 5))));
+    assertFalse(index.containsSubsetOf(List.of(bits(0, 3, 4))));
+
+    assertTrue(index.containsSupersetOf(List.of(bits(2))));
+    assertTrue(index.containsSupersetOf(List.of(bits(3, 4), bits(4))));
+    assertFalse(index.containsSupersetOf(List.of(bits(0, 1))));
+    assertFalse(index.containsSupersetOf(List.of(bits(5))));
+  }
+
+  @Test
+  void testRemove() {
+    final SubsumptionIndex<String> index = new SubsumptionIndex<>();
+    index.add("a", List.of(bits(0, 2)));
+    index.add("b", List.of(bits(1, 3), bits(1, 4)));
+    index.add("c", List.of(bits(0, 1, 2, 4)));
+
+    assertTrue(index.removeSupersetsOf(List.of(bits(1, 4))));
+    assertEquals(List.of("a"), index.owners());
+
+    index.add("d", List.of(bits(5)));
+    assertFalse(index.removeSubsetsOf(List.of(bits(0, 1))));
+    assertTrue(index.removeSubsetsOf(List.of(bits(0, 2, 3))));
+    assertEquals(List.of("d"), index.owners());
+    assertFalse(index.containsSupersetOf(List.of(bits(0))));
+  }
+
+  @Test
+  void testCompaction() {
+    final SubsumptionIndex<Integer> index = new SubsumptionIndex<>();
+    for (int i = 0; i < 200; ++i) {
+      index.removeSupersetsOf(List.of(bits(i % 7)));
+      index.add(i, List.of(bits(i % 7, 7 + i % 11)));
+    }
+    assertEquals(7, index.size());
+    for (int i = 0; i < 7; ++i) {
+      assertTrue(index.containsSupersetOf(List.of(bits(i))));
+      assertFalse(index.containsSubsetOf(List.of(bits(i))));
+    }
+  }
+}
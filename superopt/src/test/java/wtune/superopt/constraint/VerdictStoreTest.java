@@ -0,0 +1,116 @@
+package wtune.superopt.constraint;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.superopt.substitution.Substitution;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.superopt.logic.LogicSupport.EQ;
+import static wtune.superopt.logic.LogicSupport.NEQ;
+import static wtune.superopt.logic.LogicSupport.UNKNOWN;
+
+@Tag("fast")
+@Tag("enumeration")
+public class VerdictStoreTest {
+  private static final Substitution RULE0 =
+      Substitution.parse("Filter<p0 a0>(Filter<p1 a1>(Input<t0>))|Input<t1>|AttrsEq(a0,a1);");
+  private static final Substitution RULE1 =
+      Substitution.parse("Proj<a0 s0>(Input<t0>)|Proj*<a1 s1>(Input<t1>)|AttrsEq(a0,a1);");
+
+  @Test
+  void testReopen() throws Exception {
+    final Path file = Files.createTempFile("verdicts", ".txt");
+    try {
+      final VerdictStore store = VerdictStore.open(file);
+      store.record(RULE0, "s", EQ);
+      store.record(RULE1, "s", NEQ);
+      store.record(RULE0, "t", UNKNOWN); // not persisted
+      assertEquals(2, store.size());
+
+      final VerdictStore reopened = VerdictStore.open(file);
+      assertEquals(2, reopened.size());
+      assertEquals(EQ, reopened.lookup(RULE0, "s"));
+      assertEquals(NEQ, reopened.lookup(RULE1, "s"));
+      assertEquals(UNKNOWN, reopened.lookup(RULE0, "t"));
+      assertEquals(2, Files.readAllLines(file).size());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testSharedFile() throws Exception {
+    // The stores stand for two processes sharing the file.
+    final Path file = Files.createTempFile("verdicts", ".txt");
+    try {
+      final VerdictStore store0 = VerdictStore.open(file), store1 = VerdictStore.open(file);
+      assertEquals(UNKNOWN, store1.lookup(RULE0, "s"));
+
+      store0.record(RULE0, "s", EQ);
+      assertEquals(EQ, store1.lookup(RULE0, "s"));
+
+      // A verdict recorded by both is appended once per store, and read as one.
+      store1.record(RULE1, "s", NEQ);
+      store0.record(RULE1, "s", NEQ);
+      assertEquals(2, VerdictStore.open(file).size());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testConcurrent() throws Exception {
+    final int numThreads = 8, numVerdicts = 200;
+    final Path file = Files.createTempFile("verdicts", ".txt");
+    final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      final VerdictStore store0 = VerdictStore.open(file), store1 = VerdictStore.open(file);
+      final List<Future<?>> futures = new ArrayList<>(numThreads);
+      for (int n = 0; n < numThreads; ++n) {
+        final int thread = n;
+        final VerdictStore store = (thread & 1) == 0 ? store0 : store1;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < numVerdicts; ++i) {
+                    final String settings = thread + "#" + i;
+                    final int verdict = (i & 1) == 0 ? EQ : NEQ;
+                    store.record(RULE0, settings, verdict);
+                    assertEquals(verdict, store.lookup(RULE0, settings));
+                    // Others' verdicts are either not there yet, or intact.
+                    final String others = ((thread + 1) % numThreads) + "#" + i;
+                    final int seen = store.lookup(RULE0, others);
+                    if (seen != UNKNOWN) assertEquals(verdict, seen);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) future.get();
+
+      // Every line is appended intact.
+      final List<String> lines = Files.readAllLines(file);
+      assertEquals(numThreads * numVerdicts, lines.size());
+      for (String line : lines) assertEquals(2, line.split(" ").length);
+
+      final VerdictStore reopened = VerdictStore.open(file);
+      assertEquals(numThreads * numVerdicts, reopened.size());
+      for (int n = 0; n < numThreads; ++n)
+        for (int i = 0; i < numVerdicts; ++i)
+          assertEquals((i & 1) == 0 ? EQ : NEQ, reopened.lookup(RULE0, n + "#" + i));
+
+      // A store catches up with the others on a miss.
+      assertEquals(UNKNOWN, store0.lookup(RULE1, "absent"));
+      assertEquals(numThreads * numVerdicts, store0.size());
+    } finally {
+      executor.shutdownNow();
+      Files.deleteIfExists(file);
+    }
+  }
+}
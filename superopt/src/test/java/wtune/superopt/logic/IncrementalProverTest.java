@@ -0,0 +1,62 @@
+package wtune.superopt.logic;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.superopt.TestHelper;
+import wtune.superopt.constraint.Constraint;
+import wtune.superopt.substitution.Substitution;
+import wtune.superopt.uexpr.UExprSupport;
+import wtune.superopt.uexpr.UExprTranslationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("prover")
+class IncrementalProverTest {
+  private static final int NUM_RULES = 50;
+
+  private static UExprTranslationResult translate(Substitution rule) {
+    try {
+      return UExprSupport.translateToUExpr(rule);
+    } catch (RuntimeException ex) {
+      return null; // Dropping a constraint may leave the rule ill-formed.
+    }
+  }
+
+  // Like the enumerator, proves rules of the same template pair but different constraints one
+  // after another, so the incremental prover reuses its context and pops the stale axioms.
+  @Test
+  void testSameVerdicts() {
+    int numEq = 0, numOthers = 0, numRules = 0;
+    for (Substitution rule : TestHelper.bankForTest().rules()) {
+      if (numRules++ >= NUM_RULES) break;
+
+      final List<Constraint> constraints = rule.constraints();
+      try (final IncrementalProver prover = new IncrementalProver(rule)) {
+        // The i-th variant drops the i-th constraint, the last one keeps all.
+        for (int i = 0; i <= constraints.size(); ++i) {
+          final List<Constraint> kept = new ArrayList<>(constraints);
+          if (i < constraints.size()) kept.remove(i);
+
+          final Substitution variant = Substitution.mk(rule._0(), rule._1(), kept);
+          final UExprTranslationResult uExprs = translate(variant);
+          if (uExprs == null) continue;
+
+          final int fresh = LogicSupport.proveEq(uExprs);
+          final int incremental = prover.proveEq(translate(variant));
+          assertEquals(fresh, incremental, variant.toString());
+
+          if (fresh == LogicSupport.EQ) ++numEq;
+          else ++numOthers;
+        }
+      }
+    }
+
+    // Otherwise there is little to compare.
+    assertTrue(numEq > 0);
+    assertTrue(numOthers > 0);
+  }
+}
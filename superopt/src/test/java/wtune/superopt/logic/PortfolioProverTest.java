@@ -0,0 +1,69 @@
+package wtune.superopt.logic;
+
+import com.microsoft.z3.BoolExpr;
+import com.microsoft.z3.IntExpr;
+import com.microsoft.z3.Solver;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("prover")
+@Tag("fast")
+class PortfolioProverTest {
+  @Test
+  void testCancelStopsRacer() throws Exception {
+    // Issues short solver calls one after another, like SPES does, which never ends by itself.
+    final AtomicInteger numChecks = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final PortfolioProver.Racer racer =
+        new PortfolioProver.Racer() {
+          @Override
+          protected int race(InterruptibleContext z3) {
+            final IntExpr x = z3.mkIntConst("x");
+            final BoolExpr expr = z3.mkAnd(z3.mkGt(x, z3.mkInt(0)), z3.mkLt(x, z3.mkInt(0)));
+            while (true) {
+              final Solver solver = z3.mkSolver();
+              solver.add(expr);
+              solver.check();
+              numChecks.incrementAndGet();
+              started.countDown();
+            }
+          }
+        };
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Future<Integer> future = executor.submit(racer);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      racer.cancel();
+
+      // Stops at the next solver call, rather than looping on.
+      assertEquals(LogicSupport.UNKNOWN, (int) future.get(10, TimeUnit.SECONDS));
+      assertTrue(numChecks.get() > 0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testCancelBeforeStart() throws Exception {
+    final PortfolioProver.Racer racer =
+        new PortfolioProver.Racer() {
+          @Override
+          protected int race(InterruptibleContext z3) {
+            throw new AssertionError("a cancelled racer should not start");
+          }
+        };
+    racer.cancel();
+    assertEquals(LogicSupport.UNKNOWN, (int) racer.call());
+  }
+}
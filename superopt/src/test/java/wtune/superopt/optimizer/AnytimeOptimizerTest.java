@@ -0,0 +1,186 @@
+package wtune.superopt.optimizer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.TestHelper;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("optimizer")
+@Tag("fast")
+public class AnytimeOptimizerTest {
+  // Each eliminates a LEFT JOIN, so the plan below is improved step by step.
+  private static final List<String> RULES =
+      List.of(
+          "Proj<a2 s0>(LeftJoin<a0 a1>(Input<t0>,Input<t1>))|Proj<a3 s1>(Input<t2>)|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);Unique(t1,a1);TableEq(t2,t0);AttrsEq(a3,a2);SchemaEq(s1,s0)",
+          "Proj*<a2 s0>(LeftJoin<a0 a1>(Input<t0>,Input<t1>))|Proj*<a3 s1>(Input<t2>)|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);TableEq(t2,t0);AttrsEq(a3,a2);SchemaEq(s1,s0)");
+  private static final String SQL =
+      "Select Distinct a.i From a "
+          + "Left Join b On a.i = b.x "
+          + "Left Join c On a.j = c.u "
+          + "Left Join d On a.k = d.p";
+
+  private static SubstitutionBank bank() {
+    try {
+      final Path file = Files.createTempFile("rules", ".txt");
+      try {
+        Files.write(file, RULES);
+        return SubstitutionSupport.loadBank(file);
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static CostModel.Cost costOf(PlanContext plan) {
+    return CostModel.OP_COUNT.costOf(plan, plan.root());
+  }
+
+  private static void assertDecreasing(PlanContext original, List<Improvement> improvements) {
+    CostModel.Cost last = costOf(original);
+    for (Improvement improvement : improvements) {
+      final CostModel.Cost cost = costOf(improvement.plan());
+      assertTrue(cost.compareTo(last) < 0);
+      last = cost;
+    }
+  }
+
+  @Test
+  void testDecreasingCost() {
+    final PlanContext plan = TestHelper.parsePlan(SQL);
+    final List<Improvement> improvements = new ArrayList<>();
+    final Set<PlanContext> results =
+        Optimizer.mk(bank()).optimize(plan, improvement -> improvements.add(improvement));
+
+    assertTrue(improvements.size() >= 2);
+    assertDecreasing(plan, improvements);
+
+    // The last improvement is as cheap as the results.
+    final CostModel.Cost last = costOf(improvements.get(improvements.size() - 1).plan());
+    assertFalse(results.isEmpty());
+    for (PlanContext result : results) assertEquals(0, costOf(result).compareTo(last));
+  }
+
+  @Test
+  void testListenerStops() {
+    final PlanContext plan = TestHelper.parsePlan(SQL);
+    final List<Improvement> improvements = new ArrayList<>();
+    Optimizer.mk(bank())
+        .optimize(
+            plan,
+            improvement -> {
+              improvements.add(improvement);
+              return false;
+            });
+    assertEquals(1, improvements.size());
+
+    // A later optimization is not affected by the stop.
+    final List<Improvement> again = new ArrayList<>();
+    Optimizer.mk(bank()).optimize(plan, improvement -> again.add(improvement));
+    assertTrue(again.size() >= 2);
+  }
+
+  @Test
+  void testCancelOnStart() {
+    // Cancels while the original plan is costed, i.e., before the search starts.
+    final Optimizer[] optimizer = new Optimizer[1];
+    final CostModel costModel =
+        (plan, nodeId) -> {
+          optimizer[0].cancel();
+          return CostModel.OP_COUNT.costOf(plan, nodeId);
+        };
+    optimizer[0] = Optimizer.mk(bank(), OptimizerConfig.DEFAULT.with(costModel));
+
+    final List<Improvement> improvements = new ArrayList<>();
+    optimizer[0].optimize(TestHelper.parsePlan(SQL), improvement -> improvements.add(improvement));
+    assertEquals(List.of(), improvements);
+  }
+
+  @Test
+  void testPublisher() throws Exception {
+    final PlanContext plan = TestHelper.parsePlan(SQL);
+    final Collector collector = new Collector(Long.MAX_VALUE);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Optimizer.mk(bank()).publish(plan, executor).subscribe(collector);
+      assertTrue(collector.done.await(30, TimeUnit.SECONDS));
+      assertNull(collector.error);
+      assertTrue(collector.items.size() >= 2);
+      assertDecreasing(plan, collector.items);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testPublisherCancelled() throws Exception {
+    final PlanContext plan = TestHelper.parsePlan(SQL);
+    final Collector collector = new Collector(1);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Optimizer.mk(bank()).publish(plan, executor).subscribe(collector);
+
+      // The optimization ends once the only subscriber has cancelled.
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+      assertEquals(1, collector.items.size());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  // Takes `limit` items, then cancels.
+  private static class Collector implements Flow.Subscriber<Improvement> {
+    private final long limit;
+    private final List<Improvement> items = new CopyOnWriteArrayList<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Flow.Subscription subscription;
+    private volatile Throwable error;
+
+    private Collector(long limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(limit);
+    }
+
+    @Override
+    public void onNext(Improvement item) {
+      items.add(item);
+      if (items.size() >= limit) subscription.cancel();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      done.countDown();
+    }
+  }
+}
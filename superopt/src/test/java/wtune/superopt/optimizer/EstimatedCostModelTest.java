@@ -0,0 +1,143 @@
+package wtune.superopt.optimizer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.sql.plan.PlanContext;
+import wtune.sql.schema.Statistics;
+import wtune.superopt.TestHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("optimizer")
+@Tag("fast")
+public class EstimatedCostModelTest {
+  private static final double EPS = 1e-6;
+  private static final Statistics STATS =
+      Statistics.parse(
+          ""
+              + "a 1000\n"
+              + "b 100\n"
+              + "a.i 1000 0.0\n"
+              + "a.j 10 0.2 0.0,25.0,50.0,75.0,100.0\n"
+              + "a.k 50 0.0\n"
+              + "b.x 100 0.0\n");
+  private static final CostModel MODEL = CostModel.mk(STATS);
+
+  private static EstimatedCostModel.EstimatedCost costOf(PlanContext plan) {
+    return (EstimatedCostModel.EstimatedCost) MODEL.costOf(plan, plan.root());
+  }
+
+  private static double costOf(String sql) {
+    return costOf(TestHelper.parsePlan(sql)).cost();
+  }
+
+  // The number of rows of `a` (1000 in total) that `predicate` selects.
+  private static double rowsOf(String predicate) {
+    return costOf("Select a.i From a Where " + predicate) - costOf("Select a.i From a");
+  }
+
+  @Test
+  void testEquality() {
+    assertEquals(2000, costOf("Select a.i From a"), EPS);
+    // 1000 rows * non-null fraction / NDV
+    assertEquals(80, rowsOf("a.j = 1"), EPS);
+    assertEquals(80, rowsOf("1 = a.j"), EPS);
+    assertEquals(920, rowsOf("a.j <> 1"), EPS);
+    assertEquals(1, rowsOf("a.i = 1"), EPS);
+  }
+
+  @Test
+  void testRange() {
+    // The non-null values are uniform in [0, 100], and 20% of the rows are null.
+    assertEquals(400, rowsOf("a.j < 50"), EPS);
+    assertEquals(200, rowsOf("a.j < 25"), EPS);
+    assertEquals(400, rowsOf("a.j >= 50"), EPS);
+    assertEquals(400, rowsOf("50 > a.j"), EPS);
+    assertEquals(0, rowsOf("a.j < -1"), EPS);
+    assertEquals(800, rowsOf("a.j < 200"), EPS);
+    assertEquals(0, rowsOf("a.j > 200"), EPS);
+    assertEquals(400, rowsOf("a.j Between 25 And 75"), EPS);
+  }
+
+  @Test
+  void testInListAndNull() {
+    assertEquals(240, rowsOf("a.j In (1, 2, 3)"), EPS);
+    // Capped by the NDV.
+    assertEquals(800, rowsOf("a.j In (1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12)"), EPS);
+    assertEquals(200, rowsOf("a.j Is Null"), EPS);
+    assertEquals(800, rowsOf("a.j Is Not Null"), EPS);
+  }
+
+  @Test
+  void testJoin() {
+    // a.k = b.x selects 1 / max(50, 100) of the 1000 * 100 pairs, i.e., 1000 rows.
+    // Inputs: 1000 + 100. Join: 1000 + 100 + 1000. Proj: 1000.
+    assertEquals(4200, costOf("Select a.i From a Join b On a.k = b.x"), EPS);
+    // a.i = b.x selects 1 / max(1000, 100), i.e., 100 rows.
+    assertEquals(2400, costOf("Select a.i From a Join b On a.i = b.x"), EPS);
+  }
+
+  @Test
+  void testTransitive() {
+    // Costs closer than the tolerance, with operator counts in reverse.
+    final List<PlanContext> plans =
+        List.of(
+            TestHelper.parsePlan("Select a.i From a Join b On a.i = b.x Where a.j = 1"),
+            TestHelper.parsePlan("Select a.i From a Join b On a.i = b.x"),
+            TestHelper.parsePlan("Select a.i From a"));
+    final List<CostModel.Cost> costs = new ArrayList<>();
+    for (int i = 0; i < 12; ++i) {
+      final PlanContext plan = plans.get(i % plans.size());
+      costs.add(
+          new EstimatedCostModel.EstimatedCost(
+              100 + 0.4 * i, new OpCountCost(plan, plan.root())));
+    }
+
+    for (CostModel.Cost x : costs)
+      for (CostModel.Cost y : costs) {
+        assertEquals(Integer.signum(x.compareTo(y)), -Integer.signum(y.compareTo(x)));
+        for (CostModel.Cost z : costs)
+          if (x.compareTo(y) <= 0 && y.compareTo(z) <= 0) assertTrue(x.compareTo(z) <= 0);
+      }
+
+    // Far apart costs are ranked by themselves.
+    final PlanContext plan = plans.get(0), cheapPlan = plans.get(2);
+    assertTrue(
+        new EstimatedCostModel.EstimatedCost(100, new OpCountCost(plan, plan.root()))
+                .compareTo(
+                    new EstimatedCostModel.EstimatedCost(
+                        200, new OpCountCost(cheapPlan, cheapPlan.root())))
+            < 0);
+  }
+
+  @Test
+  void testMinCostSet() {
+    // More operators, yet fewer rows processed.
+    final PlanContext filtered =
+        TestHelper.parsePlan("Select a.i From a Join b On a.i = b.x Where a.j = 1");
+    final PlanContext unfiltered = TestHelper.parsePlan("Select a.i From a Join b On a.k = b.x");
+    assertTrue(costOf(filtered).compareTo(costOf(unfiltered)) < 0);
+
+    final Memo memo = new Memo(MODEL);
+    final SubPlan cheap = new SubPlan(filtered, filtered.root());
+    final SubPlan costly = new SubPlan(unfiltered, unfiltered.root());
+    final MinCostSet set = new MinCostSet(memo);
+    assertTrue(set.add(costly));
+    assertTrue(set.add(cheap));
+    assertFalse(set.add(costly));
+    assertEquals(1, set.size());
+    assertTrue(set.contains(cheap));
+    assertTrue(set.evicted().contains(memo.idOf(costly)));
+
+    // The operator count ranks them the other way around.
+    final Memo opCountMemo = new Memo(CostModel.OP_COUNT);
+    final MinCostSet opCountSet = new MinCostSet(opCountMemo);
+    opCountSet.add(cheap);
+    opCountSet.add(costly);
+    assertEquals(1, opCountSet.size());
+    assertTrue(opCountSet.contains(costly));
+  }
+}
@@ -7,8 +7,11 @@ import wtune.common.utils.SetSupport;
 import wtune.sql.plan.PlanContext;
 import wtune.superopt.fragment.Fragment;
 import wtune.superopt.util.Fingerprint;
+import wtune.superopt.util.FingerprintTrie;
 import wtune.superopt.TestHelper;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -77,4 +80,83 @@ public class FingerprintTest {
         Set.of("p", "pflj", "pfjj", "pfj", "pf", "pfl", "pfjl"),
         SetSupport.map(fingerprints, Fingerprint::toString));
   }
+
+  @Test
+  void testTrie() {
+    final PlanContext plan =
+        TestHelper.parsePlan(
+            "Select * From a "
+                + "Join b On a.i = b.x "
+                + "Left Join a As a1 On a.i = a1.i "
+                + "Where a.i = 1 And a.i In (Select b.x From b)");
+
+    final List<String> indexed = List.of("p", "pf", "ps", "pfs", "pfl", "pfsl", "pfsj", "pj", "fs");
+    final FingerprintTrie<String> trie = new FingerprintTrie<>();
+    for (String fingerprint : indexed) trie.add(new Fingerprint(fingerprint), fingerprint);
+
+    final Set<String> expected =
+        SetSupport.map(Fingerprint.mk(plan, plan.root()), Fingerprint::toString);
+    expected.retainAll(indexed);
+    assertEquals(expected, new HashSet<>(trie.match(plan, plan.root())));
+    assertEquals(Set.of("p", "pf", "ps", "pfs", "pfl", "pfsl", "pfsj"), expected);
+
+    trie.remove(new Fingerprint("pfs"), "pfs");
+    assertEquals(8, trie.size());
+    assertEquals(List.of(), trie.get(new Fingerprint("pfs")));
+  }
+
+  @Test
+  void testTrieJoins() {
+    final List<String> indexed =
+        List.of(
+            "p", "pj", "pl", "pjj", "pjl", "plj", "pll", "pjjj", "pjjl", "pjlj", "pljj", "pf",
+            "pfj", "pfl", "pfjj", "pfjl", "pflj", "ps", "psj", "pfsj", "jj", "lj");
+
+    final Set<String> matched2 =
+        assertTrieMatches(
+            "Select * From a Join b On a.i = b.x Join c On a.i = c.u Where a.i = 1", indexed);
+    assertEquals(Set.of("p", "pf", "pfj", "pfjj"), matched2);
+
+    final Set<String> matched3 =
+        assertTrieMatches(
+            "Select * From a "
+                + "Join b On a.i = b.x "
+                + "Join c On a.i = c.u "
+                + "Left Join a As a1 On a.i = a1.i",
+            indexed);
+    // A left join may also be matched as an inner one, hence "pjjj".
+    assertEquals(
+        Set.of("p", "pj", "pl", "pjj", "pjl", "plj", "pjjj", "pjjl", "pjlj", "pljj"), matched3);
+
+    assertTrieMatches(
+        "Select * From a "
+            + "Left Join b On a.i = b.x "
+            + "Left Join c On a.i = c.u "
+            + "Join d On a.i = d.p "
+            + "Where a.i In (Select b.x From b)",
+        indexed);
+    assertTrieMatches(
+        "Select * From a "
+            + "Join b On a.i = b.x "
+            + "Join c On a.i = c.u "
+            + "Join d On a.i = d.p "
+            + "Left Join a As a1 On a.i = a1.i "
+            + "Left Join b As b1 On a.i = b1.x",
+        indexed);
+  }
+
+  // Asserts that the trie retrieves exactly the indexed fingerprints made by Fingerprint.mk.
+  private static Set<String> assertTrieMatches(String sql, List<String> indexed) {
+    final PlanContext plan = TestHelper.parsePlan(sql);
+    final FingerprintTrie<String> trie = new FingerprintTrie<>();
+    for (String fingerprint : indexed) trie.add(new Fingerprint(fingerprint), fingerprint);
+
+    final Set<String> expected =
+        SetSupport.map(Fingerprint.mk(plan, plan.root()), Fingerprint::toString);
+    expected.retainAll(indexed);
+    final List<String> matched = trie.match(plan, plan.root());
+    assertEquals(expected, new HashSet<>(matched));
+    assertEquals(expected.size(), matched.size());
+    return expected;
+  }
 }
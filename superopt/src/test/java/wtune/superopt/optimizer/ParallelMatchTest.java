@@ -0,0 +1,68 @@
+package wtune.superopt.optimizer;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.TestHelper;
+import wtune.superopt.substitution.SubstitutionBank;
+import wtune.superopt.substitution.SubstitutionSupport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static wtune.sql.plan.PlanSupport.stringifyTree;
+import static wtune.superopt.optimizer.OptimizerSupport.TWEAK_ENABLE_EXTENSIONS;
+import static wtune.superopt.optimizer.OptimizerSupport.TWEAK_PARALLEL_MATCH;
+
+@Tag("optimizer")
+@Tag("fast")
+public class ParallelMatchTest {
+  private static final List<String> SQLS =
+      List.of(
+          "Select a.i From a Join b On a.i = b.x Where a.j = 1",
+          "Select Distinct a.i From a Left Join b On a.i = b.x Left Join c On a.j = c.u",
+          "Select a.i From a Where a.i In (Select b.x From b Where b.y = 1) And a.j = 2",
+          "Select d.p From d Join c On d.p = c.u Join a On c.u = a.i Where a.k In (1, 2)",
+          "Select b.y, Count(b.x) From b Join a On b.x = a.i Group By b.y Order By b.y Limit 10");
+
+  private static SubstitutionBank bank() {
+    try {
+      return SubstitutionSupport.loadBank(Paths.get("wtune_data", "prepared", "rules.txt"));
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+  }
+
+  private static Set<String> optimize(SubstitutionBank bank, String sql, int tweaks) {
+    OptimizerConfig config = OptimizerConfig.DEFAULT.with(tweaks);
+    if (bank.isExtended()) config = config.with(TWEAK_ENABLE_EXTENSIONS);
+
+    final Optimizer optimizer = Optimizer.mk(bank, config);
+    final Set<String> optimized = new TreeSet<>();
+    for (PlanContext plan : optimizer.optimize(TestHelper.parsePlan(sql)))
+      optimized.add(stringifyTree(plan, plan.root(), true));
+    return optimized;
+  }
+
+  // The rules are applied in parallel whenever more than one is eligible, which the joins below
+  // make the common case.
+  @Test
+  void testSameResults() {
+    final SubstitutionBank bank = bank();
+    boolean rewritten = false;
+    for (String sql : SQLS) {
+      final Set<String> sequential = optimize(bank, sql, 0);
+      final Set<String> parallel = optimize(bank, sql, TWEAK_PARALLEL_MATCH);
+      assertEquals(sequential, parallel, sql);
+      rewritten |= sequential.size() > 1;
+    }
+    // Otherwise there is little to compare.
+    assertTrue(rewritten);
+  }
+}
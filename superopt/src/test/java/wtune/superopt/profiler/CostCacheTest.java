@@ -0,0 +1,93 @@
+package wtune.superopt.profiler;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CostCacheTest {
+  @Test
+  void testRoundTrip() throws Exception {
+    final Path file = Files.createTempFile("cost_cache", ".txt");
+    try {
+      final CostCache cache = CostCache.open(file);
+      cache.put("a", 1.5);
+      cache.put("b", 2);
+      assertEquals(2, cache.size());
+      assertEquals(List.of("a 1.5", "b 2.0"), Files.readAllLines(file));
+
+      // Malformed lines are skipped.
+      Files.writeString(file, "c\nd x\n", StandardOpenOption.APPEND);
+
+      final CostCache reopened = CostCache.open(file);
+      assertEquals(2, reopened.size());
+      assertEquals(1.5, (double) reopened.get("a"));
+      assertEquals(2.0, (double) reopened.get("b"));
+      assertNull(reopened.get("c"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testOpenAbsent() throws Exception {
+    final Path file = Files.createTempFile("cost_cache", ".txt");
+    Files.delete(file);
+    try {
+      final CostCache cache = CostCache.open(file);
+      assertEquals(0, cache.size());
+      cache.put("a", 1);
+      assertEquals(1.0, (double) CostCache.open(file).get("a"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testEviction() {
+    final CostCache cache = CostCache.mk(2);
+    cache.put("a", 1);
+    cache.put("b", 2);
+    assertEquals(1.0, (double) cache.get("a")); // "b" is the least recently used now
+    cache.put("c", 3);
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("b"));
+    assertEquals(1.0, (double) cache.get("a"));
+    assertEquals(3.0, (double) cache.get("c"));
+    assertEquals("size=2, hits=3, misses=1", cache.stats());
+  }
+
+  @Test
+  void testFailureNotCached() throws Exception {
+    final Path file = Files.createTempFile("cost_cache", ".txt");
+    try {
+      final CostCache cache = CostCache.open(file);
+      cache.put("a", Double.MAX_VALUE);
+      assertNull(cache.get("a"));
+      assertEquals(0, cache.size());
+      assertEquals(0, Files.size(file));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testKey() {
+    final Properties dbProps = new Properties();
+    dbProps.setProperty("jdbcUrl", "jdbc:mysql://localhost/test");
+    final String key = CostCache.keyOf(dbProps, "Select a  From\n t Where b = ' x  y'");
+
+    assertEquals(key, CostCache.keyOf(dbProps, "Select a From t Where b = ' x  y'"));
+    assertNotEquals(key, CostCache.keyOf(dbProps, "Select a From t Where b = ' x y'"));
+    assertNotEquals(key, CostCache.keyOf(dbProps, "select a From t Where b = ' x  y'"));
+
+    dbProps.setProperty("statsVersion", "1");
+    assertNotEquals(key, CostCache.keyOf(dbProps, "Select a From t Where b = ' x  y'"));
+  }
+}
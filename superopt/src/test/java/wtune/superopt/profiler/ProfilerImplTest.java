@@ -0,0 +1,61 @@
+package wtune.superopt.profiler;
+
+import org.junit.jupiter.api.Test;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.TestHelper;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.sql.plan.PlanSupport.translateAsAst;
+
+public class ProfilerImplTest {
+  private static String keyOf(ProfilerImpl profiler, Properties dbProps, PlanContext plan) {
+    return CostCache.keyOf(dbProps, profiler.queryOf(translateAsAst(plan, plan.root(), false)));
+  }
+
+  // All costs are cached beforehand, so no database is needed.
+  @Test
+  void testCostLaterQueries() {
+    final Properties dbProps = new Properties();
+    dbProps.setProperty("dbType", MySQL);
+    dbProps.setProperty("jdbcUrl", "jdbc:mysql://localhost/test");
+
+    final PlanContext base = TestHelper.parsePlan("Select a.i From a Join b On a.i = b.x");
+    final PlanContext plan0 = TestHelper.parsePlan("Select a.i From a Where a.i = 1");
+    final PlanContext plan1 = TestHelper.parsePlan("Select a.i From a");
+
+    final CostCache previous = CostCache.instance();
+    final CostCache cache = CostCache.mk(16);
+    CostCache.install(cache);
+    try {
+      final ProfilerImpl profiler = new ProfilerImpl(dbProps);
+      cache.put(keyOf(profiler, dbProps, base), 10);
+      cache.put(keyOf(profiler, dbProps, plan0), 5);
+      cache.put(keyOf(profiler, dbProps, plan1), 3);
+
+      profiler.setBaseline(base);
+      profiler.profile(plan0);
+      assertEquals(10, profiler.getBaselineCost());
+      assertEquals(5, profiler.getCost(0));
+      assertEquals(0, profiler.minCostIndex());
+
+      // Queries added after the first batch are costed on the next request.
+      profiler.profile(plan1);
+      profiler.profile(null);
+      assertEquals(3, profiler.getCost(1));
+      assertEquals(Double.MAX_VALUE, profiler.getCost(2));
+      assertEquals(1, profiler.minCostIndex());
+      assertEquals(1, profiler.minCostIndexOfCandidates());
+
+      // A new baseline starts over.
+      profiler.setBaseline(plan0);
+      profiler.profile(plan1);
+      assertEquals(5, profiler.getBaselineCost());
+      assertEquals(3, profiler.getCost(0));
+    } finally {
+      CostCache.install(previous);
+    }
+  }
+}
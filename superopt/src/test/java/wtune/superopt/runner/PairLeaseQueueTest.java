@@ -0,0 +1,119 @@
+package wtune.superopt.runner;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PairLeaseQueueTest {
+  private static final long LONG_LEASE = 60_000L, SHORT_LEASE = 50L;
+
+  @Test
+  void testLeaseInOrder() throws Exception {
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 3, LONG_LEASE)) {
+      assertEquals(3, queue.numSlots());
+      assertEquals(0, queue.lease());
+      assertEquals(1, queue.lease());
+      assertEquals(2, queue.lease());
+      assertEquals(0, queue.numDone());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testComplete() throws Exception {
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 2, LONG_LEASE)) {
+      final int first = queue.lease(), second = queue.lease();
+      queue.complete(second);
+      assertEquals(1, queue.numDone());
+      queue.complete(first);
+      assertEquals(2, queue.numDone());
+      assertEquals(-1, queue.lease());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testShared() throws Exception {
+    // The handles stand for two processes sharing the queue.
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try (final PairLeaseQueue queue0 = PairLeaseQueue.open(file, 3, LONG_LEASE);
+        final PairLeaseQueue queue1 = PairLeaseQueue.open(file, 3, LONG_LEASE)) {
+      assertEquals(0, queue0.lease());
+      assertEquals(1, queue1.lease());
+      assertEquals(2, queue0.lease());
+      queue1.complete(1);
+      assertEquals(1, queue0.numDone());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testExpiry() throws Exception {
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try (final PairLeaseQueue crashed = PairLeaseQueue.open(file, 2, SHORT_LEASE);
+        final PairLeaseQueue queue = PairLeaseQueue.open(file, 2, SHORT_LEASE)) {
+      assertEquals(0, crashed.lease());
+      assertEquals(1, queue.lease());
+      queue.complete(1);
+
+      // Blocks until the lease of slot 0 expires, then steals it.
+      assertEquals(0, queue.lease());
+
+      queue.complete(0);
+      assertEquals(-1, queue.lease());
+      assertEquals(-1, crashed.lease());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testReopen() throws Exception {
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try {
+      try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 3, LONG_LEASE)) {
+        queue.complete(queue.lease());
+        queue.lease(); // leased, but never completed
+      }
+
+      // A resumed run skips the completed slot, and the one leased is left to its lease.
+      try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 3, SHORT_LEASE)) {
+        assertEquals(1, queue.numDone());
+        assertEquals(2, queue.lease());
+        queue.complete(2);
+        assertEquals(2, queue.numDone());
+      }
+
+      assertThrows(IllegalArgumentException.class, () -> PairLeaseQueue.open(file, 4, LONG_LEASE));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test
+  void testReopenExpired() throws Exception {
+    final Path file = Files.createTempFile("pair_queue", ".bin");
+    try {
+      try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 1, SHORT_LEASE)) {
+        assertEquals(0, queue.lease());
+      }
+      Thread.sleep(SHORT_LEASE * 2);
+
+      try (final PairLeaseQueue queue = PairLeaseQueue.open(file, 1, SHORT_LEASE)) {
+        assertEquals(0, queue.lease());
+        queue.complete(0);
+        assertEquals(-1, queue.lease());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
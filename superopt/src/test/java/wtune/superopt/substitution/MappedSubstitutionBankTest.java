@@ -0,0 +1,92 @@
+package wtune.superopt.substitution;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import wtune.sql.plan.PlanContext;
+import wtune.superopt.TestHelper;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("fast")
+@Tag("substitution")
+public class MappedSubstitutionBankTest {
+  // Line numbers are the rule ids. Rules of line 6, 7 and 8 contain two joins.
+  private static final List<String> LINES =
+      List.of(
+          "# rules with one or two joins",
+          "Proj*<a4 s1>(InnerJoin<a2 a3>(Proj<a1 s0>(Filter<p0 a0>(Input<t0>)),Input<t1>))|Proj*<a8 s2>(Filter<p1 a7>(InnerJoin<a5 a6>(Input<t2>,Input<t3>)))|AttrsSub(a0,t0);AttrsSub(a1,t0);AttrsSub(a2,s0);AttrsSub(a3,t1);AttrsSub(a4,s0);TableEq(t2,t0);TableEq(t3,t1);AttrsEq(a5,a2);AttrsEq(a6,a3);AttrsEq(a7,a0);AttrsEq(a8,a4);PredicateEq(p1,p0);SchemaEq(s2,s1)",
+          "Proj<a3 s0>(Filter<p0 a2>(InnerJoin<a0 a1>(Input<t0>,Input<t1>)))|Proj<a5 s1>(Filter<p1 a4>(Input<t2>))|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);AttrsSub(a3,t0);NotNull(t0,a0);Reference(t0,a0,t1,a1);Unique(t1,a1);TableEq(t2,t0);AttrsEq(a4,a2);AttrsEq(a5,a3);PredicateEq(p1,p0);SchemaEq(s1,s0)",
+          "Proj*<a2 s0>(InnerJoin<a0 a1>(Input<t0>,Input<t1>))|Proj*<a3 s1>(Input<t2>)|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);NotNull(t0,a0);Reference(t0,a0,t1,a1);TableEq(t2,t0);AttrsEq(a3,a2);SchemaEq(s1,s0)",
+          "Proj<a3 s0>(Filter<p0 a2>(LeftJoin<a0 a1>(Input<t0>,Input<t1>)))|Proj<a5 s1>(Filter<p1 a4>(Input<t2>))|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);AttrsSub(a3,t0);Unique(t1,a1);TableEq(t2,t0);AttrsEq(a4,a2);AttrsEq(a5,a3);PredicateEq(p1,p0);SchemaEq(s1,s0)",
+          "InnerJoin<a0 k2>(InnerJoin<k0 k1>(Input<t0>,Input<t1>),Input<t2>)|InnerJoin<a1 k5>(InnerJoin<k3 k4>(Input<t3>,Input<t4>),Input<t5>)|AttrsEq(a0,k1);AttrsSub(a0,t1);AttrsSub(k0,t0);AttrsSub(k1,t1);AttrsSub(k2,t2);TableEq(t3,t0);TableEq(t4,t1);TableEq(t5,t2);AttrsEq(k3,k0);AttrsEq(k4,k1);AttrsEq(a1,k0);AttrsEq(k5,k2)",
+          "LeftJoin<a0 k2>(InnerJoin<k0 k1>(Input<t0>,Input<t1>),Input<t2>)|LeftJoin<a1 k5>(InnerJoin<k3 k4>(Input<t3>,Input<t4>),Input<t5>)|AttrsEq(a0,k0);AttrsSub(a0,t0);AttrsSub(k0,t0);AttrsSub(k1,t1);AttrsSub(k2,t2);TableEq(t3,t0);TableEq(t4,t1);TableEq(t5,t2);AttrsEq(k3,k0);AttrsEq(k4,k1);AttrsEq(a1,k1);AttrsEq(k5,k2)",
+          "InnerJoin<a0 k2>(InnerJoin<k0 k1>(Input<t0>,Input<t1>),Input<t2>)|InnerJoin<a1 k5>(InnerJoin<k3 k4>(Input<t3>,Input<t4>),Input<t5>)|AttrsEq(a0,k0);AttrsSub(a0,t0);AttrsSub(k0,t0);AttrsSub(k1,t1);AttrsSub(k2,t2);TableEq(t3,t0);TableEq(t4,t1);TableEq(t5,t2);AttrsEq(k3,k0);AttrsEq(k4,k1);AttrsEq(a1,k1);AttrsEq(k5,k2)",
+          "Proj*<a2 s0>(LeftJoin<a0 a1>(Input<t0>,Input<t1>))|Proj*<a3 s1>(Input<t2>)|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);TableEq(t2,t0);AttrsEq(a3,a2);SchemaEq(s1,s0)",
+          "",
+          "Proj<a3 s0>(Filter<p0 a2>(InnerJoin<a0 a1>(Input<t0>,Input<t1>)))|Proj<a5 s1>(Filter<p1 a4>(Input<t2>))|AttrsSub(a0,t0);AttrsSub(a1,t1);AttrsSub(a2,t0);AttrsSub(a3,t0);NotNull(t0,a0);Reference(t0,a0,t1,a1);Unique(t1,a1);TableEq(t2,t0);AttrsEq(a4,a2);AttrsEq(a5,a3);PredicateEq(p1,p0);SchemaEq(s1,s0)");
+
+  private static final List<String> SQLS =
+      List.of(
+          "Select a.i From a Join b On a.i = b.x Join c On b.y = c.u Where a.j = 1",
+          "Select * From a Join b On a.i = b.x Left Join c On a.i = c.u",
+          "Select Distinct a.i From a "
+              + "Left Join b On a.i = b.x "
+              + "Join c On a.i = c.u "
+              + "Join d On c.u = d.p "
+              + "Where a.i In (Select b.x From b Where b.y = 1)");
+
+  @Test
+  void testRoundTrip() throws Exception {
+    final Path textFile = Files.createTempFile("rules", ".txt");
+    final Path binaryFile = Files.createTempFile("rules", ".bin");
+    try {
+      Files.write(textFile, LINES);
+      SubstitutionSupport.convertBank(textFile, binaryFile);
+
+      final SubstitutionBank expected = SubstitutionSupport.loadBank(textFile);
+      final SubstitutionBank actual = SubstitutionSupport.loadBank(binaryFile);
+      assertTrue(actual instanceof MappedSubstitutionBank);
+      assertEquals(8, expected.size());
+      assertEquals(expected.size(), actual.size());
+      assertEquals(expected.isExtended(), actual.isExtended());
+      assertEquals(describe(expected.rules()), describe(actual.rules()));
+
+      final Set<Integer> matchedIds = new TreeSet<>();
+      for (String sql : SQLS) {
+        final PlanContext plan = TestHelper.parsePlan(sql);
+        for (int node = 1; node <= plan.maxNodeId(); ++node) {
+          if (!plan.isPresent(node)) continue;
+          final List<String> matched = describe(expected.matchRules(plan, node));
+          assertEquals(matched, describe(actual.matchRules(plan, node)), sql);
+          for (Substitution rule : actual.matchRules(plan, node)) matchedIds.add(rule.id());
+        }
+      }
+      assertTrue(matchedIds.containsAll(List.of(6, 7, 8)), matchedIds.toString());
+
+      // Both banks agree after removal, too.
+      final Substitution removed = expected.rules().iterator().next();
+      expected.remove(removed);
+      actual.remove(removed);
+      assertEquals(describe(expected.rules()), describe(actual.rules()));
+
+    } finally {
+      Files.deleteIfExists(textFile);
+      Files.deleteIfExists(binaryFile);
+    }
+  }
+
+  // Sorted "id|rule" strings, so that both the ids and the rules are compared.
+  private static List<String> describe(Iterable<Substitution> rules) {
+    final List<String> descs = new ArrayList<>();
+    for (Substitution rule : rules) descs.add(rule.id() + "|" + rule.canonicalStringify());
+    descs.sort(null);
+    return descs;
+  }
+}
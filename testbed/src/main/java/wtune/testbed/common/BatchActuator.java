@@ -8,4 +8,26 @@ public interface BatchActuator extends Actuator {
   default void beginOne(Collection collection) {}
 
   default void endOne() {}
+
+  /**
+   * Returns an actuator populating a part of the collection concurrently with this one, or null if
+   * this actuator can't be split.
+   *
+   * <p>A part is begun by {@link #beginPart(Collection)} after this actuator is begun, and is
+   * ended by {@link #end()}. Then it is passed to {@link #join(BatchActuator)}, in the order of the
+   * units it populated, before this actuator is ended.
+   */
+  default BatchActuator fork() {
+    return null;
+  }
+
+  default void beginPart(Collection collection) {}
+
+  default void join(BatchActuator part) {}
+
+  /**
+   * Releases the resources of an actuator that is not ended, e.g., after a failure. Nothing is
+   * done if it is ended already.
+   */
+  default void close() {}
 }
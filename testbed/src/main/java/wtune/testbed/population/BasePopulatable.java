@@ -27,11 +27,14 @@ class BasePopulatable implements Populatable {
 
   @Override
   public boolean populateOne(BatchActuator actuator) {
+    return populateOne(nextRowId++, actuator);
+  }
+
+  @Override
+  public boolean populateOne(int unitId, BatchActuator actuator) {
     actuator.beginOne(collection);
-    for (Generator generator : generators) generator.generate(nextRowId, actuator);
+    for (Generator generator : generators) generator.generate(unitId, actuator);
     actuator.endOne();
-
-    ++nextRowId;
     return true;
   }
 }
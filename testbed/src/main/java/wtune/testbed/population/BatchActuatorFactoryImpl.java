@@ -4,7 +4,6 @@ import wtune.testbed.common.BatchActuator;
 import wtune.testbed.common.BatchActuatorFactory;
 
 import javax.sql.DataSource;
-import java.sql.SQLException;
 import java.util.Properties;
 
 import static wtune.common.datasource.DbSupport.makeDataSource;
@@ -14,16 +13,18 @@ import static wtune.common.datasource.DbSupport.PostgreSQL;
 class BatchActuatorFactoryImpl implements BatchActuatorFactory {
   private final Properties dbProperties;
   private final int batchSize;
+  private final boolean bulkLoad;
   private final String dbType;
   private DataSource dataSource;
 
-  BatchActuatorFactoryImpl(Properties properties, int batchSize) {
+  BatchActuatorFactoryImpl(Properties properties, int batchSize, boolean bulkLoad) {
     this.dbProperties = properties;
     this.batchSize = batchSize;
+    this.bulkLoad = bulkLoad;
     this.dbType = determineDbType(properties.getProperty("jdbcUrl"));
   }
 
-  private DataSource dataSource() {
+  private synchronized DataSource dataSource() {
     if (dataSource == null) dataSource = makeDataSource(dbProperties);
     return dataSource;
   }
@@ -36,10 +37,7 @@ class BatchActuatorFactoryImpl implements BatchActuatorFactory {
 
   @Override
   public BatchActuator make(String collectionName) {
-    try {
-      return new PopulationActuator(dbType, dataSource().getConnection(), batchSize);
-    } catch (SQLException ex) {
-      throw new RuntimeException(ex);
-    }
+    if (bulkLoad) return new BulkLoadActuator(dbType, dataSource(), batchSize);
+    else return new PopulationActuator(dbType, dataSource(), batchSize);
   }
 }
@@ -0,0 +1,201 @@
+package wtune.testbed.population;
+
+import wtune.testbed.common.Actuator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.common.datasource.DbSupport.PostgreSQL;
+
+/**
+ * Rows rendered in the text format of `COPY ... FROM STDIN` (PostgreSQL) or `LOAD DATA` (MySQL)
+ * under the default options: fields are separated by tabs, rows end with '\n', NULL is "\N", and
+ * backslashes, tabs, line breaks and NULs in a value are escaped by a backslash.
+ *
+ * <p>A value is rendered as the text the server parses into what {@link PopulationActuator} binds,
+ * e.g., a datetime as {@link Timestamp#toString()}. Bytes are "\x" + hex for PostgreSQL (bytea),
+ * and raw for MySQL. So are MySQL BITs, since LOAD DATA takes a string as the bits.
+ */
+class BulkLoadRows implements Actuator {
+  private static final byte[] NULL = {'\\', 'N'};
+
+  private final boolean mysql;
+  private final ByteArrayOutputStream buffer;
+  private BitSet bitFields;
+  private byte[][] fields;
+  private int index;
+  private int numRows;
+
+  BulkLoadRows(String dbType) {
+    if (!MySQL.equals(dbType) && !PostgreSQL.equals(dbType))
+      throw new IllegalArgumentException("bulk load is unsupported by " + dbType);
+    this.mysql = MySQL.equals(dbType);
+    this.buffer = new ByteArrayOutputStream(1 << 16);
+  }
+
+  /** Sets the number of fields in a row, and those of MySQL BIT type. */
+  void bind(int numFields, BitSet bitFields) {
+    this.fields = new byte[numFields][];
+    this.bitFields = bitFields;
+  }
+
+  void beginRow() {
+    Arrays.fill(fields, null);
+    index = 0;
+  }
+
+  void endRow() {
+    for (int i = 0; i < fields.length; ++i) {
+      if (i > 0) buffer.write('\t');
+      if (fields[i] == null) buffer.writeBytes(NULL);
+      else buffer.writeBytes(fields[i]);
+    }
+    buffer.write('\n');
+    ++numRows;
+  }
+
+  int numRows() {
+    return numRows;
+  }
+
+  byte[] toByteArray() {
+    return buffer.toByteArray();
+  }
+
+  void clear() {
+    buffer.reset();
+    numRows = 0;
+  }
+
+  @Override
+  public int getAndForwardIndex() {
+    return index++;
+  }
+
+  @Override
+  public void setInt(int index, int i) {
+    setText(index, String.valueOf(i));
+  }
+
+  @Override
+  public void setFraction(int index, double d) {
+    setText(index, String.valueOf(d));
+  }
+
+  @Override
+  public void setDecimal(int index, BigDecimal d) {
+    setText(index, d == null ? null : d.toPlainString());
+  }
+
+  @Override
+  public void setBool(int index, boolean b) {
+    if (mysql && bitFields.get(index)) fields[index] = escape(new byte[] {(byte) (b ? 1 : 0)});
+    else setText(index, b ? "1" : "0");
+  }
+
+  @Override
+  public void setString(int index, String s) {
+    setText(index, s);
+  }
+
+  @Override
+  public void setDateTime(int index, LocalDateTime t) {
+    setText(index, t == null ? null : Timestamp.valueOf(t).toString());
+  }
+
+  @Override
+  public void setTime(int index, LocalTime t) {
+    setText(index, t == null ? null : Time.valueOf(t).toString());
+  }
+
+  @Override
+  public void setDate(int index, LocalDate t) {
+    setText(index, t == null ? null : Date.valueOf(t).toString());
+  }
+
+  @Override
+  public void setBlob(int index, InputStream in, int length) {
+    try {
+      setBytes(index, in.readNBytes(length));
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  public void setBytes(int index, byte[] bs) {
+    if (bs == null) fields[index] = null;
+    else if (mysql) fields[index] = escape(bs);
+    else setText(index, "\\x" + HexFormat.of().formatHex(bs));
+  }
+
+  @Override
+  public void setObject(int index, Object obj, int typeId) {
+    setText(index, obj == null ? null : obj.toString());
+  }
+
+  @Override
+  public void setArray(int index, Object[] array, String type) {
+    if (array == null) {
+      fields[index] = null;
+      return;
+    }
+
+    // Array literal of PostgreSQL, with every element quoted.
+    final StringBuilder builder = new StringBuilder().append('{');
+    for (int i = 0; i < array.length; ++i) {
+      if (i > 0) builder.append(',');
+      if (array[i] == null) {
+        builder.append("NULL");
+        continue;
+      }
+      builder.append('"');
+      for (char c : array[i].toString().toCharArray()) {
+        if (c == '"' || c == '\\') builder.append('\\');
+        builder.append(c);
+      }
+      builder.append('"');
+    }
+    setText(index, builder.append('}').toString());
+  }
+
+  private void setText(int index, String s) {
+    fields[index] = s == null ? null : escape(s.getBytes(UTF_8));
+  }
+
+  // Escaping bytes of UTF-8 is safe, since bytes of a multibyte char are never ASCII.
+  private static byte[] escape(byte[] bytes) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 8);
+    for (byte b : bytes) {
+      final char escaped =
+          switch (b) {
+            case '\\' -> '\\';
+            case '\t' -> 't';
+            case '\n' -> 'n';
+            case '\r' -> 'r';
+            case 0 -> '0';
+            default -> 0;
+          };
+      if (escaped == 0) out.write(b);
+      else {
+        out.write('\\');
+        out.write(escaped);
+      }
+    }
+    return out.toByteArray();
+  }
+}
@@ -5,6 +5,7 @@ import wtune.testbed.common.Collection;
 
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -15,12 +16,22 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class EchoActuator implements BatchActuator {
+  private static final DateTimeFormatter DATETIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
+
   private final PrintWriter writer;
+  private final StringWriter buffer; // non-null for a forked part
   private List<String> values;
   private int index;
 
   public EchoActuator(PrintWriter writer) {
     this.writer = writer;
+    this.buffer = null;
+  }
+
+  private EchoActuator(StringWriter buffer) {
+    this.writer = new PrintWriter(buffer);
+    this.buffer = buffer;
   }
 
   @Override
@@ -32,6 +43,11 @@ public class EchoActuator implements BatchActuator {
     writer.close();
   }
 
+  @Override
+  public void close() {
+    writer.close();
+  }
+
   @Override
   public void beginOne(Collection collection) {
     this.values = Arrays.asList(new String[collection.elements().size()]);
@@ -41,7 +57,19 @@ public class EchoActuator implements BatchActuator {
   @Override
   public void endOne() {
     writer.println(String.join(";", values));
-    writer.flush();
+  }
+
+  @Override
+  public BatchActuator fork() {
+    // A part is rendered into memory, and copied to the writer when joined.
+    return new EchoActuator(new StringWriter());
+  }
+
+  @Override
+  public void join(BatchActuator part) {
+    final StringWriter buffer = ((EchoActuator) part).buffer;
+    writer.append(buffer.getBuffer());
+    buffer.getBuffer().setLength(0);
   }
 
   @Override
@@ -76,8 +104,7 @@ public class EchoActuator implements BatchActuator {
 
   @Override
   public void setDateTime(int index, LocalDateTime t) {
-    DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'hh:mm:ss");
-    values.set(index, t.format(formatter) + "");
+    values.set(index, t.format(DATETIME_FORMAT));
   }
 
   @Override
@@ -8,6 +8,12 @@ public interface Populatable {
 
   boolean populateOne(BatchActuator actuator);
 
+  /**
+   * Populates the `unitId`-th unit. The units are deterministic given their ids, thus can be
+   * populated in any order and concurrently.
+   */
+  boolean populateOne(int unitId, BatchActuator actuator);
+
   static Populatable ofCollection(Collection collection) {
     return new BasePopulatable(collection);
   }
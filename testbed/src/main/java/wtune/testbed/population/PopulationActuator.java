@@ -4,6 +4,7 @@ import wtune.testbed.common.BatchActuator;
 import wtune.testbed.common.Collection;
 import wtune.testbed.common.Element;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -18,38 +19,77 @@ import static wtune.common.datasource.DbSupport.PostgreSQL;
 class PopulationActuator extends PreparedStatementActuator implements BatchActuator {
   private final int batchSize;
   private final String dbType;
-  private final Connection conn;
-  private final char quotation;
+  private final DataSource dataSource;
+
+  private Connection conn; // opened on begin, so that a part not begun holds no connection
 
   private int rowInCurrentBatch;
   private PreparedStatement stmt;
 
-  PopulationActuator(String dbType, Connection conn, int batchSize) {
+  PopulationActuator(String dbType, DataSource dataSource, int batchSize) {
     this.dbType = dbType;
-    this.conn = conn;
+    this.dataSource = dataSource;
     this.batchSize = batchSize;
-    this.quotation = MySQL.equals(dbType) ? '`' : '"';
   }
 
-  @Override
-  public void begin(Collection collection) {
-    performSQL(() -> begin0(collection));
+  static Connection connect(DataSource dataSource) {
+    try {
+      final Connection conn = dataSource.getConnection();
+      // Each batch is committed as a whole, rather than row by row.
+      conn.setAutoCommit(false);
+      return conn;
+    } catch (SQLException ex) {
+      throw new RuntimeException(ex);
+    }
   }
 
-  private void begin0(Collection collection) throws SQLException {
-    final Statement stmt = conn.createStatement();
-    if (MySQL.equals(dbType)) {
-      stmt.execute("set foreign_key_checks=0");
-      stmt.execute("set unique_checks=0");
-      stmt.execute("truncate table " + quotation + collection.collectionName() + quotation);
+  static char quotationOf(String dbType) {
+    return MySQL.equals(dbType) ? '`' : '"';
+  }
 
-    } else if (PostgreSQL.equals(dbType)) {
-      stmt.execute("set session_replication_role='replica'");
-      stmt.execute(
-          "truncate table " + quotation + collection.collectionName() + quotation + " CASCADE");
+  /** Disables the constraint checks of the session, and truncates the collection if asked. */
+  static void prepareSession(Connection conn, String dbType, Collection collection, boolean clear)
+      throws SQLException {
+    final char quotation = quotationOf(dbType);
+    try (final Statement stmt = conn.createStatement()) {
+      if (MySQL.equals(dbType)) {
+        stmt.execute("set foreign_key_checks=0");
+        stmt.execute("set unique_checks=0");
+        if (clear)
+          stmt.execute("truncate table " + quotation + collection.collectionName() + quotation);
+
+      } else if (PostgreSQL.equals(dbType)) {
+        stmt.execute("set session_replication_role='replica'");
+        if (clear)
+          stmt.execute(
+              "truncate table " + quotation + collection.collectionName() + quotation + " CASCADE");
+      }
     }
+    conn.commit();
+  }
+
+  static String columnList(String dbType, Collection collection) {
+    final char quotation = quotationOf(dbType);
+    return collection.elements().stream()
+        .map(it -> "%c%s%c".formatted(quotation, it.elementName(), quotation))
+        .collect(Collectors.joining(","));
+  }
+
+  @Override
+  public void begin(Collection collection) {
+    conn = connect(dataSource);
+    performSQL(() -> prepareSession(conn, dbType, collection, true));
+  }
+
+  @Override
+  public void beginPart(Collection collection) {
+    conn = connect(dataSource);
+    performSQL(() -> prepareSession(conn, dbType, collection, false));
+  }
 
-    stmt.close();
+  @Override
+  public BatchActuator fork() {
+    return new PopulationActuator(dbType, dataSource, batchSize);
   }
 
   @Override
@@ -59,10 +99,29 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
 
   private void end0() throws SQLException {
     if (stmt != null) {
-      stmt.executeUpdate();
+      if (rowInCurrentBatch > 0) stmt.executeBatch();
+      stmt.close();
       stmt = null;
     }
+    conn.commit();
     conn.close();
+    conn = null;
+  }
+
+  @Override
+  public void close() {
+    if (conn == null) return;
+    performSQL(
+        () -> {
+          try {
+            if (stmt != null) stmt.close();
+            conn.rollback();
+          } finally {
+            stmt = null;
+            conn.close();
+            conn = null;
+          }
+        });
   }
 
   @Override
@@ -71,7 +130,8 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
   }
 
   protected void beginOne0(Collection collection) throws SQLException {
-    if (rowInCurrentBatch == 0) {
+    if (stmt == null) {
+      final char quotation = quotationOf(dbType);
       final List<Element> elements = collection.elements();
       final String sql =
           "INSERT INTO %c%s%c (%s) VALUES (%s)"
@@ -79,9 +139,7 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
                   quotation,
                   collection.collectionName(),
                   quotation,
-                  elements.stream()
-                      .map(it -> "%c%s%c".formatted(quotation, it.elementName(), quotation))
-                      .collect(Collectors.joining(",")),
+                  columnList(dbType, collection),
                   Stream.generate(() -> "?")
                       .limit(elements.size())
                       .collect(Collectors.joining(",")));
@@ -102,8 +160,7 @@ class PopulationActuator extends PreparedStatementActuator implements BatchActua
     stmt.addBatch();
     if (rowInCurrentBatch >= batchSize) {
       stmt.executeBatch();
-      stmt.close();
-      stmt = null;
+      conn.commit();
       rowInCurrentBatch = 0;
     }
   }
@@ -21,6 +21,8 @@ public interface PopulationConfig {
 
   Runnable progressCallback();
 
+  int parallelism();
+
   void setRandomSeed(int i);
 
   void setDefaultUnitCount(int rowCount);
@@ -35,6 +37,12 @@ public interface PopulationConfig {
 
   void setBatchSize(int batchSize);
 
+  /** Loads rows by COPY/LOAD DATA rather than INSERTs. Only effective with db properties. */
+  void setBulkLoad(boolean flag);
+
+  /** Sets the number of workers populating the collections concurrently. */
+  void setParallelism(int parallelism);
+
   void setProgressCallback(Runnable runnable);
 
   void setDump(Function<String, PrintWriter> factory);
@@ -3,10 +3,21 @@ package wtune.testbed.population;
 import wtune.testbed.common.Collection;
 import wtune.testbed.common.Element;
 
-public interface Populator {
+import java.util.List;
+
+public interface Populator extends AutoCloseable {
   void setConfig(PopulationConfig config);
 
   boolean populate(Collection collection);
 
+  /**
+   * Populates the collections, those not referencing each other concurrently. Returns the ones
+   * failed to populate.
+   */
+  List<Collection> populateAll(List<Collection> collections);
+
   Generator getGenerator(Element element);
+
+  @Override
+  default void close() {}
 }
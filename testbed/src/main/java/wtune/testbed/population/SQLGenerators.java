@@ -11,9 +11,9 @@ import wtune.testbed.common.Element;
 import wtune.testbed.util.MathHelper;
 import wtune.testbed.util.RandomHelper;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.lang.Math.max;
@@ -27,7 +27,9 @@ class SQLGenerators implements Generators {
 
   SQLGenerators(PopulationConfig config) {
     this.config = config;
-    this.generators = new HashMap<>();
+    // Collections may be populated concurrently. A generator, once made, is a pure function of
+    // the seed and can be shared.
+    this.generators = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -18,6 +18,7 @@ import static wtune.testbed.util.MathHelper.isPow10;
 public class SQLPopulationConfig implements PopulationConfig {
   private static final int DEFAULT_ROW_COUNT = 10000;
   private static final int DEFAULT_BATCH_SIZE = 500;
+  private static final int DEFAULT_BULK_BATCH_SIZE = 50000;
   private static final BatchActuatorFactory DEFAULT_ACTUATOR =
       ignored -> new EchoActuator(new PrintWriter(System.out));
 
@@ -30,8 +31,11 @@ public class SQLPopulationConfig implements PopulationConfig {
   private BatchActuatorFactory actuatorFactory = DEFAULT_ACTUATOR;
   private Properties dbProperties;
   private Function<String, PrintWriter> dumpDestinations = ignored -> new PrintWriter(System.out);
+  private boolean dryRun = true;
 
-  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int batchSize = -1;
+  private boolean bulkLoad = false;
+  private int parallelism = 1;
   private Runnable progressCallback = null;
   private boolean needPrePopulation = false;
 
@@ -92,6 +96,7 @@ public class SQLPopulationConfig implements PopulationConfig {
 
   @Override
   public BatchActuatorFactory actuatorFactory() {
+    if (actuatorFactory == null) actuatorFactory = makeActuatorFactory();
     return actuatorFactory;
   }
 
@@ -110,28 +115,58 @@ public class SQLPopulationConfig implements PopulationConfig {
     this.progressCallback = progressCallback;
   }
 
+  @Override
+  public int parallelism() {
+    return parallelism;
+  }
+
   @Override
   public void setDbProperties(Properties dbProperties) {
     this.dbProperties = dbProperties;
-    setDryRun(false);
+    this.dryRun = false;
+    this.actuatorFactory = null;
   }
 
   @Override
   public void setDump(Function<String, PrintWriter> factory) {
     this.dumpDestinations = factory;
-    setDryRun(true);
-  }
-
-  private void setDryRun(boolean flag) {
-    if (flag)
-      if (dumpDestinations == null) actuatorFactory = DEFAULT_ACTUATOR;
-      else
-        actuatorFactory = name -> new EchoActuator(new PrintWriter(dumpDestinations.apply(name)));
-    else actuatorFactory = new BatchActuatorFactoryImpl(dbProperties, batchSize);
+    this.dryRun = true;
+    this.actuatorFactory = null;
   }
 
   @Override
   public void setBatchSize(int batchSize) {
+    if (batchSize <= 0) throw new IllegalArgumentException("invalid batch size: " + batchSize);
     this.batchSize = batchSize;
+    this.actuatorFactory = null;
+  }
+
+  @Override
+  public void setBulkLoad(boolean bulkLoad) {
+    this.bulkLoad = bulkLoad;
+    this.actuatorFactory = null;
+  }
+
+  @Override
+  public void setParallelism(int parallelism) {
+    if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
+    this.parallelism = parallelism;
+    this.actuatorFactory = null;
+  }
+
+  // The factory is made on demand, so that the setters can be called in any order.
+  private BatchActuatorFactory makeActuatorFactory() {
+    if (dryRun)
+      if (dumpDestinations == null) return DEFAULT_ACTUATOR;
+      else return name -> new EchoActuator(new PrintWriter(dumpDestinations.apply(name)));
+
+    final int batchSize;
+    if (this.batchSize > 0) batchSize = this.batchSize;
+    else batchSize = bulkLoad ? DEFAULT_BULK_BATCH_SIZE : DEFAULT_BATCH_SIZE;
+    // Each concurrently populated table, and each of its parts in flight, holds a connection.
+    final Properties props = new Properties();
+    props.putAll(dbProperties);
+    props.setProperty("maximumPoolSize", String.valueOf(3 * parallelism + 1));
+    return new BatchActuatorFactoryImpl(props, batchSize, bulkLoad);
   }
 }
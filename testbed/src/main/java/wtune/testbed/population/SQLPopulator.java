@@ -1,20 +1,65 @@
 package wtune.testbed.population;
 
+import wtune.sql.schema.Constraint;
+import wtune.sql.schema.Table;
 import wtune.testbed.common.BatchActuator;
 import wtune.testbed.common.Collection;
 import wtune.testbed.common.Element;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static java.lang.Math.min;
+import static wtune.sql.ast.constants.ConstraintKind.FOREIGN;
+
+/**
+ * Populates collections with generated units.
+ *
+ * <p>If {@link PopulationConfig#parallelism()} > 1, a collection is split into chunks of
+ * "wetune.population.chunk_size" (10000) units. The chunks are populated by the workers through
+ * forked actuators (see {@link BatchActuator#fork()}), and joined in order. Since a unit is
+ * determined by its id, the result is the same as that of sequential population. Collections are
+ * also populated concurrently, each after those it references by foreign keys. References in a
+ * cycle are ignored.
+ */
 public class SQLPopulator implements Populator {
+  private static final int CHUNK_SIZE = Integer.getInteger("wetune.population.chunk_size", 10000);
+
   private PopulationConfig config;
   private Generators generators;
   private Runnable progressCallback;
 
+  private ExecutorService workers; // populates chunks
+  private ExecutorService coordinators; // populates collections, by splitting them into chunks
+  private Semaphore chunkPermits; // bounds the chunks not joined yet, which may hold memory
+
   @Override
   public void setConfig(PopulationConfig config) {
     if (this.config == config) return;
+    close();
     this.config = config;
     this.generators = Generators.make(config);
     this.progressCallback = config.progressCallback();
+
+    final int parallelism = config.parallelism();
+    if (parallelism > 1) {
+      this.workers = Executors.newFixedThreadPool(parallelism);
+      this.coordinators = Executors.newFixedThreadPool(parallelism);
+      this.chunkPermits = new Semaphore(2 * parallelism);
+    }
   }
 
   @Override
@@ -25,19 +70,192 @@ public class SQLPopulator implements Populator {
     final BatchActuator actuator = config.actuatorFactory().make(collection.collectionName());
     final int unitCount = config.unitCountOf(collection.collectionName());
 
-    actuator.begin(collection);
+    try {
+      actuator.begin(collection);
 
-    for (int i = 0; i < unitCount; i++) {
-      if (progressCallback != null) progressCallback.run();
-      if (!populatable.populateOne(actuator)) return false;
+      if (workers == null || unitCount <= CHUNK_SIZE) {
+        if (!populateRange(populatable, actuator, 0, unitCount)) return false;
+      } else {
+        if (!populateChunks(collection, populatable, actuator, unitCount)) return false;
+      }
+
+      actuator.end();
+      return true;
+
+    } finally {
+      actuator.close(); // no-op if ended
     }
-    actuator.end();
+  }
 
-    return true;
+  @Override
+  public List<Collection> populateAll(List<Collection> collections) {
+    final List<Collection> failed = new ArrayList<>();
+    if (coordinators == null) {
+      for (Collection collection : orderByReference(collections))
+        if (!populate(collection)) failed.add(collection);
+      return failed;
+    }
+
+    final Map<String, CompletableFuture<Boolean>> futures = new HashMap<>();
+    for (Collection collection : orderByReference(collections)) {
+      final List<CompletableFuture<Boolean>> referenced = new ArrayList<>();
+      for (String name : referencedNames(collection)) {
+        final CompletableFuture<Boolean> future = futures.get(name);
+        if (future != null) referenced.add(future);
+      }
+
+      final CompletableFuture<Boolean> future =
+          CompletableFuture.allOf(referenced.toArray(CompletableFuture[]::new))
+              // A failed collection doesn't block those referencing it.
+              .handle((ignored, ex) -> null)
+              .thenApplyAsync(ignored -> populate(collection), coordinators);
+      futures.put(collection.collectionName(), future);
+    }
+
+    RuntimeException exception = null;
+    for (Collection collection : collections) {
+      try {
+        if (!futures.get(collection.collectionName()).join()) failed.add(collection);
+      } catch (CompletionException ex) {
+        final RuntimeException cause =
+            ex.getCause() instanceof RuntimeException
+                ? (RuntimeException) ex.getCause()
+                : new RuntimeException(ex.getCause());
+        if (exception == null) exception = cause;
+        else exception.addSuppressed(cause);
+      }
+    }
+    if (exception != null) throw exception;
+
+    return failed;
   }
 
   @Override
   public Generator getGenerator(Element element) {
     return generators.bind(element);
   }
+
+  @Override
+  public void close() {
+    if (workers != null) workers.shutdownNow();
+    if (coordinators != null) coordinators.shutdownNow();
+    workers = coordinators = null;
+    chunkPermits = null;
+  }
+
+  private boolean populateRange(
+      Populatable populatable, BatchActuator actuator, int fromUnit, int toUnit) {
+    for (int i = fromUnit; i < toUnit; i++) {
+      if (progressCallback != null) progressCallback.run();
+      if (!populatable.populateOne(i, actuator)) return false;
+    }
+    return true;
+  }
+
+  private boolean populateChunks(
+      Collection collection, Populatable populatable, BatchActuator actuator, int unitCount) {
+    final Deque<Future<BatchActuator>> chunks = new ArrayDeque<>();
+    try {
+      for (int i = 0; i < unitCount; i += CHUNK_SIZE) {
+        if (!acquireChunk(actuator, chunks)) return false;
+
+        final BatchActuator part = actuator.fork();
+        if (part == null) {
+          // The actuator can't be split, populate the rest here.
+          chunkPermits.release();
+          while (!chunks.isEmpty()) if (!joinChunk(actuator, chunks.poll())) return false;
+          return populateRange(populatable, actuator, i, unitCount);
+        }
+
+        final int fromUnit = i, toUnit = min(unitCount, i + CHUNK_SIZE);
+        chunks.add(
+            workers.submit(
+                () -> {
+                  try {
+                    part.beginPart(collection);
+                    if (!populateRange(populatable, part, fromUnit, toUnit)) return null;
+                    part.end();
+                    return part;
+                  } finally {
+                    part.close(); // no-op if ended
+                  }
+                }));
+      }
+
+      while (!chunks.isEmpty()) if (!joinChunk(actuator, chunks.poll())) return false;
+      return true;
+
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new RuntimeException(ex);
+
+    } finally {
+      for (Future<BatchActuator> chunk : chunks) {
+        chunk.cancel(true);
+        chunkPermits.release();
+      }
+    }
+  }
+
+  // Waits for the permit of a new chunk. Own chunks are joined meanwhile, otherwise coordinators
+  // waiting for each other's permits would deadlock.
+  private boolean acquireChunk(BatchActuator actuator, Deque<Future<BatchActuator>> chunks)
+      throws InterruptedException, ExecutionException {
+    while (!chunkPermits.tryAcquire()) {
+      if (chunks.isEmpty()) {
+        chunkPermits.acquire();
+        return true;
+      }
+      if (!joinChunk(actuator, chunks.poll())) return false;
+    }
+    return true;
+  }
+
+  private boolean joinChunk(BatchActuator actuator, Future<BatchActuator> chunk)
+      throws InterruptedException, ExecutionException {
+    try {
+      final BatchActuator part = chunk.get();
+      if (part == null) return false;
+      actuator.join(part);
+      return true;
+    } finally {
+      chunkPermits.release();
+    }
+  }
+
+  private static List<String> referencedNames(Collection collection) {
+    final Table table = collection.unwrap(Table.class);
+    if (table == null) return List.of();
+
+    final List<String> names = new ArrayList<>();
+    for (Constraint fk : table.constraints(FOREIGN))
+      if (fk.refTable() != null && !fk.refTable().name().equals(table.name()))
+        names.add(fk.refTable().name());
+    return names;
+  }
+
+  // Orders the collections such that one comes after those it references.
+  private static List<Collection> orderByReference(List<Collection> collections) {
+    final Map<String, Collection> byName = new HashMap<>();
+    for (Collection collection : collections) byName.put(collection.collectionName(), collection);
+
+    final List<Collection> ordered = new ArrayList<>(collections.size());
+    final Set<String> visited = new HashSet<>();
+    for (Collection collection : collections) visit(collection, byName, visited, ordered);
+    return ordered;
+  }
+
+  private static void visit(
+      Collection collection,
+      Map<String, Collection> byName,
+      Set<String> visited,
+      List<Collection> ordered) {
+    // A collection is marked before its references are visited, which breaks the cycles.
+    if (!visited.add(collection.collectionName())) return;
+
+    for (String name : referencedNames(collection)) {
+      final Collection referenced = byName.get(name);
+      if (referenced != null) visit(referenced, byName, visited, ordered);
+    }
+    ordered.add(collection);
+  }
 }
@@ -0,0 +1,128 @@
+package wtune.testbed.profile;
+
+import wtune.testbed.profile.AdaptiveResult.StopReason;
+
+import static java.lang.Math.exp;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.sqrt;
+import static wtune.testbed.profile.ProfilerImpl.progressStep;
+
+/**
+ * Profiles two statements in interleaved pairs, until the latency ratio is known well enough.
+ *
+ * <p>A pair runs both statements once with the same parameters, and the order within a pair
+ * alternates, so that drifts of the database (e.g., caches) affect both alike. The log of the
+ * latency ratio of the pairs is tracked online, and its 95% confidence interval is computed by the
+ * normal approximation. After "wetune.profile.min_pairs" (10) pairs, it stops once
+ *
+ * <ul>
+ *   <li>the interval is within "wetune.profile.tolerance_pct" (5) percent of the ratio, or
+ *   <li>the interval excludes [1/2, 2], i.e., one is at least twice as fast.
+ * </ul>
+ *
+ * Otherwise, it stops after {@link ProfileConfig#profileCycles()} pairs, or once both statements
+ * have taken twice the time budget of a statement in the non-adaptive profiling. A single
+ * execution longer than 5 seconds stops it at once, which is likely a pathological plan.
+ */
+class AdaptiveComparator {
+  private static final int MIN_PAIRS = Integer.getInteger("wetune.profile.min_pairs", 10);
+  private static final double TOLERANCE =
+      Integer.getInteger("wetune.profile.tolerance_pct", 5) / 100.0;
+  private static final double WINNER_RATIO = 2.0;
+  private static final double Z_95 = 1.96;
+  private static final long ABORT_LATENCY = 5_000_000_000L;
+
+  private final Profiler profiler0, profiler1;
+  private final ProfileConfig config;
+
+  private long elapsed0, elapsed1;
+  // Running mean and sum of squared deviations of the log ratios (Welford's method).
+  private int pairs;
+  private double mean, m2;
+
+  AdaptiveComparator(Profiler profiler0, Profiler profiler1, ProfileConfig config) {
+    this.profiler0 = profiler0;
+    this.profiler1 = profiler1;
+    this.config = config;
+  }
+
+  /** Returns null if an execution fails. */
+  AdaptiveResult run() {
+    final long budget = 2 * ProfilerImpl.TIME_BUDGET * 1_000_000L;
+    long spent = 0;
+
+    System.out.printf(" warmup %d pairs: ", config.warmupCycles());
+    for (int i = 0, bound = config.warmupCycles(); i < bound && spent < budget; ++i) {
+      if (i % 5 == 0) System.out.print(" " + i);
+      if (!runPair(i, false)) return null;
+      // The ratio of the warmup pairs only matters if no pair can be profiled afterwards.
+      addSample();
+      if (max(elapsed0, elapsed1) >= ABORT_LATENCY) {
+        // Not worth another run, take this as the only record.
+        profiler0.metric().addRecord(elapsed0);
+        profiler1.metric().addRecord(elapsed1);
+        return result(StopReason.PATHOLOGICAL);
+      }
+      spent += elapsed0 + elapsed1;
+    }
+
+    pairs = 0;
+    mean = m2 = 0;
+    System.out.print(" profile: ");
+    for (int i = 0, bound = config.profileCycles(), step = progressStep(bound); i < bound; ++i) {
+      if (i % step == 0) System.out.print(" " + i);
+      if (!runPair(i, true)) return null;
+      addSample();
+      spent += elapsed0 + elapsed1;
+
+      if (max(elapsed0, elapsed1) >= ABORT_LATENCY) return result(StopReason.PATHOLOGICAL);
+      if (pairs >= MIN_PAIRS) {
+        final double halfWidth = halfWidth();
+        if (halfWidth <= log(1 + TOLERANCE)) return result(StopReason.CONVERGED);
+        if (mean - halfWidth > log(WINNER_RATIO) || mean + halfWidth < -log(WINNER_RATIO))
+          return result(StopReason.WINNER);
+      }
+      if (spent >= budget) return result(StopReason.BUDGET);
+    }
+
+    return result(StopReason.MAX_CYCLES);
+  }
+
+  private boolean runPair(int cycle, boolean record) {
+    if (cycle % 2 == 0) {
+      elapsed0 = profiler0.runCycle(cycle, record);
+      elapsed1 = elapsed0 < 0 ? -1 : profiler1.runCycle(cycle, record);
+    } else {
+      elapsed1 = profiler1.runCycle(cycle, record);
+      elapsed0 = elapsed1 < 0 ? -1 : profiler0.runCycle(cycle, record);
+    }
+    return elapsed0 >= 0 && elapsed1 >= 0;
+  }
+
+  private void addSample() {
+    final double sample = log(max(1, elapsed1)) - log(max(1, elapsed0));
+    ++pairs;
+    final double delta = sample - mean;
+    mean += delta / pairs;
+    m2 += delta * (sample - mean);
+  }
+
+  private double halfWidth() {
+    if (pairs < 2) return Double.POSITIVE_INFINITY;
+    return Z_95 * sqrt(m2 / (pairs - 1) / pairs);
+  }
+
+  private AdaptiveResult result(StopReason reason) {
+    System.out.println();
+    final double halfWidth = halfWidth();
+    return new AdaptiveResult(
+        profiler0.metric(),
+        profiler1.metric(),
+        pairs,
+        exp(mean),
+        exp(mean - halfWidth),
+        exp(mean + halfWidth),
+        reason);
+  }
+}
@@ -0,0 +1,28 @@
+package wtune.testbed.profile;
+
+/**
+ * Result of an adaptive comparison, see {@link ProfileSupport#compareAdaptively}.
+ *
+ * <p>`ratio` is the geometric mean of the latency ratios (rewritten / original) of the recorded
+ * pairs, and [ratioLow, ratioHigh] is its confidence interval. A ratio below 1 is a speedup. The
+ * interval is [0, Infinity] if there is only one pair.
+ *
+ * <p>If stopped as PATHOLOGICAL during the warmup, `pairs` counts the warmup pairs run, which the
+ * ratio is computed from, while the metrics only record the last pair.
+ */
+public record AdaptiveResult(
+    Metric metric0,
+    Metric metric1,
+    int pairs,
+    double ratio,
+    double ratioLow,
+    double ratioHigh,
+    StopReason stopReason) {
+  public enum StopReason {
+    CONVERGED, // the confidence interval is tight enough
+    WINNER, // one is faster by far, with confidence
+    PATHOLOGICAL, // a single execution is too long to repeat
+    BUDGET, // the time budget is used up
+    MAX_CYCLES
+  }
+}
@@ -0,0 +1,118 @@
+package wtune.testbed.profile;
+
+import wtune.sql.support.resolution.ParamDesc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Replays a statement from concurrent clients, each with a connection of its own.
+ *
+ * <p>Clients are closed-loop: a client issues the next query after the last one returns. If a
+ * target rate is given, the queries are scheduled at fixed intervals, and a client waits for the
+ * schedule of its next query; otherwise clients run back to back. Queries take the parameters in
+ * turn. Only the queries issued after the warmup are recorded.
+ *
+ * <p>Each client records the latencies into a metric of its own, and they are merged at the end.
+ * Under a target rate, a slow query delays the queries the client should have issued meanwhile,
+ * which is corrected as coordinated omission (see {@link Metric#addRecord(long, long)}).
+ */
+class LoadDriver {
+  private final Supplier<Executor> executors;
+  private final List<Map<ParamDesc, Object>> params;
+  private final int clients;
+  private final double targetRate;
+  private final long warmupNanos, durationNanos;
+
+  private final AtomicLong nextTicket = new AtomicLong();
+  private final LongAdder completed = new LongAdder(), failed = new LongAdder();
+  private long startTime;
+
+  LoadDriver(
+      Supplier<Executor> executors, List<Map<ParamDesc, Object>> params, ProfileConfig config) {
+    this.executors = executors;
+    this.params = params;
+    this.clients = config.clients();
+    this.targetRate = config.targetRate();
+    this.warmupNanos = TimeUnit.MILLISECONDS.toNanos(config.loadWarmup());
+    this.durationNanos = TimeUnit.MILLISECONDS.toNanos(config.loadDuration());
+  }
+
+  LoadResult run() {
+    final List<Executor> connected = new ArrayList<>(clients);
+    for (int i = 0; i < clients; ++i) connected.add(executors.get());
+
+    final Metric latency = Metric.mk();
+    final ExecutorService pool = Executors.newFixedThreadPool(clients);
+    try {
+      startTime = System.nanoTime();
+      final List<Future<Metric>> futures = new ArrayList<>(clients);
+      for (Executor executor : connected) futures.add(pool.submit(() -> runClient(executor)));
+      for (Future<Metric> future : futures) latency.merge(future.get());
+
+    } catch (InterruptedException | ExecutionException ex) {
+      throw new RuntimeException(ex);
+
+    } finally {
+      pool.shutdownNow();
+      for (Executor executor : connected) executor.close();
+    }
+
+    return new LoadResult(latency, completed.sum(), failed.sum(), durationNanos);
+  }
+
+  private Metric runClient(Executor executor) {
+    final Metric latency = Metric.mk();
+    final long recordFrom = startTime + warmupNanos;
+    final long deadline = recordFrom + durationNanos;
+    // Each client is expected to issue a query every `clients` tickets.
+    final long expectedInterval = targetRate <= 0 ? 0 : (long) (clients * 1e9 / targetRate);
+
+    while (true) {
+      final long ticket = nextTicket.getAndIncrement();
+      final long scheduled = scheduleOf(ticket);
+      if (scheduled >= deadline) return latency;
+
+      final long now = System.nanoTime();
+      if (now >= deadline) return latency;
+      if (scheduled > now) {
+        try {
+          TimeUnit.NANOSECONDS.sleep(scheduled - now);
+        } catch (InterruptedException ex) {
+          return latency;
+        }
+      }
+
+      final long issued = System.nanoTime();
+      final boolean recording = issued >= recordFrom;
+      final Map<ParamDesc, Object> params = this.params.get((int) (ticket % this.params.size()));
+      final long elapsed = executor.installParams(params) ? executor.execute() : -1L;
+
+      if (elapsed < 0) {
+        // The error has been logged by the executor.
+        if (recording) failed.increment();
+        continue;
+      }
+      executor.endOne();
+
+      if (recording) {
+        completed.increment();
+        latency.addRecord(elapsed, expectedInterval);
+      }
+    }
+  }
+
+  private long scheduleOf(long ticket) {
+    if (targetRate <= 0) return startTime;
+    return startTime + (long) (ticket * 1e9 / targetRate);
+  }
+}
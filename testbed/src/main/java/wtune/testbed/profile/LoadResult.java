@@ -0,0 +1,9 @@
+package wtune.testbed.profile;
+
+/** Result of a load test: the latencies and the number of queries completed in the period. */
+public record LoadResult(Metric latency, long completed, long failed, long elapsedNanos) {
+  /** Completed queries per second. */
+  public double throughput() {
+    return elapsedNanos <= 0 ? 0 : completed * 1e9 / elapsedNanos;
+  }
+}
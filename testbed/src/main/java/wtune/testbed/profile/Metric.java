@@ -1,11 +1,33 @@
 package wtune.testbed.profile;
 
+import wtune.common.utils.LatencyHistogram;
+
+/**
+ * Latencies of a statement, in nanoseconds.
+ *
+ * <p>Latencies are kept in a histogram of constant memory, so a metric may record any number of
+ * executions. A metric is not thread-safe: concurrent recorders should have a metric each, and
+ * merge them afterwards.
+ */
 public interface Metric {
   void addRecord(long latency);
 
+  /**
+   * Records the latency of a query expected to be issued every `expectedInterval` ns, with the
+   * correction of coordinated omission. See {@link LatencyHistogram#recordCorrected(long, long)}.
+   */
+  void addRecord(long latency, long expectedInterval);
+
+  /** Returns -1 if nothing is recorded. */
   long atPercentile(double percentile);
 
-  static Metric mk(int nExpectedRecords) {
-    return new MetricImpl(nExpectedRecords);
+  long numRecords();
+
+  void merge(Metric other);
+
+  LatencyHistogram.Snapshot snapshot();
+
+  static Metric mk() {
+    return new MetricImpl();
   }
 }
@@ -1,28 +1,47 @@
 package wtune.testbed.profile;
 
-import gnu.trove.list.TLongList;
-import gnu.trove.list.array.TLongArrayList;
+import wtune.common.utils.LatencyHistogram;
 
 public class MetricImpl implements Metric {
-  private final TLongList records;
-  private boolean sorted;
+  // The relative error of a percentile is 2^-7 (< 1%). A metric takes about 57KB.
+  private static final int PRECISION_BITS = Integer.getInteger("wetune.profile.precision_bits", 7);
 
-  public MetricImpl(int expectedSize) {
-    this.records = new TLongArrayList(expectedSize);
-    this.sorted = false;
+  private final LatencyHistogram histogram;
+
+  public MetricImpl() {
+    this.histogram = new LatencyHistogram(PRECISION_BITS);
   }
 
   @Override
   public void addRecord(long latency) {
-    records.add(latency);
-    sorted = false;
+    histogram.record(latency);
+  }
+
+  @Override
+  public void addRecord(long latency, long expectedInterval) {
+    histogram.recordCorrected(latency, expectedInterval);
   }
 
   @Override
   public long atPercentile(double percentile) {
     if (percentile < 0.0 || percentile > 1.0) throw new IllegalArgumentException();
-    if (records.isEmpty()) return -1L;
-    if (!sorted) records.sort();
-    return records.get((int) (percentile * records.size()));
+    final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    if (snapshot.count() == 0) return -1L;
+    return snapshot.percentile(percentile);
+  }
+
+  @Override
+  public long numRecords() {
+    return histogram.snapshot().count();
+  }
+
+  @Override
+  public void merge(Metric other) {
+    histogram.merge(other.snapshot());
+  }
+
+  @Override
+  public LatencyHistogram.Snapshot snapshot() {
+    return histogram.snapshot();
   }
 }
@@ -23,6 +23,18 @@ public interface ProfileConfig {
 
   boolean calciteConn();
 
+  /** Number of concurrent clients of a load test. */
+  int clients();
+
+  /** Target queries per second of a load test, or 0 to run the clients back to back. */
+  double targetRate();
+
+  /** Milliseconds a load test runs before recording. */
+  long loadWarmup();
+
+  /** Milliseconds a load test records. */
+  long loadDuration();
+
   Generators generators();
 
   ExecutorFactory executorFactory();
@@ -43,6 +55,12 @@ public interface ProfileConfig {
 
   void setCalciteConn(boolean calciteConn);
 
+  void setClients(int clients);
+
+  void setTargetRate(double queriesPerSecond);
+
+  void setLoadDuration(long warmupMillis, long durationMillis);
+
   void setGenerators(Generators generators);
 
   void setDbProperties(Properties properties);
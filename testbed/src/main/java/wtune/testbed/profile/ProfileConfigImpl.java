@@ -18,7 +18,11 @@ class ProfileConfigImpl implements ProfileConfig {
   private boolean dryRun;
   private boolean useSqlServer;
   private boolean calciteConn;
+  private int clients;
+  private double targetRate;
+  private long loadWarmup, loadDuration;
   private Generators generators;
+  private Properties dbProperties;
   private ExecutorFactory factory;
   private Function<Statement, String> paramSaveFile;
 
@@ -26,6 +30,9 @@ class ProfileConfigImpl implements ProfileConfig {
     this.warmupCycles = 100;
     this.profileCycles = 100;
     this.randomSeed = 0x98761234;
+    this.clients = 1;
+    this.loadWarmup = 2000;
+    this.loadDuration = 10000;
     this.generators = generators;
     this.factory = (ignored0, ignored1, ignored2) -> new NoOpExecutor();
   }
@@ -60,6 +67,26 @@ class ProfileConfigImpl implements ProfileConfig {
     return calciteConn;
   }
 
+  @Override
+  public int clients() {
+    return clients;
+  }
+
+  @Override
+  public double targetRate() {
+    return targetRate;
+  }
+
+  @Override
+  public long loadWarmup() {
+    return loadWarmup;
+  }
+
+  @Override
+  public long loadDuration() {
+    return loadDuration;
+  }
+
   @Override
   public Generators generators() {
     return generators;
@@ -67,6 +94,13 @@ class ProfileConfigImpl implements ProfileConfig {
 
   @Override
   public ExecutorFactory executorFactory() {
+    if (factory == null) {
+      // Each client of a load test holds a connection.
+      final Properties props = new Properties();
+      props.putAll(dbProperties);
+      props.setProperty("maximumPoolSize", String.valueOf(Math.max(10, clients + 1)));
+      factory = new ExecutorFactoryImpl(props);
+    }
     return factory;
   }
 
@@ -129,6 +163,28 @@ class ProfileConfigImpl implements ProfileConfig {
     this.calciteConn = calciteConn;
   }
 
+  @Override
+  public void setClients(int clients) {
+    if (clients <= 0) throw new IllegalArgumentException("invalid clients: " + clients);
+    this.clients = clients;
+  }
+
+  @Override
+  public void setTargetRate(double queriesPerSecond) {
+    if (queriesPerSecond < 0)
+      throw new IllegalArgumentException("invalid rate: " + queriesPerSecond);
+    this.targetRate = queriesPerSecond;
+  }
+
+  @Override
+  public void setLoadDuration(long warmupMillis, long durationMillis) {
+    if (warmupMillis < 0 || durationMillis <= 0)
+      throw new IllegalArgumentException(
+          "invalid duration: %d, %d".formatted(warmupMillis, durationMillis));
+    this.loadWarmup = warmupMillis;
+    this.loadDuration = durationMillis;
+  }
+
   @Override
   public void setGenerators(Generators generators) {
     this.generators = generators;
@@ -136,8 +192,9 @@ class ProfileConfigImpl implements ProfileConfig {
 
   @Override
   public void setDbProperties(Properties properties) {
+    this.dbProperties = properties;
     if (properties == null) this.factory = (ignored0, ignored1, ignored2) -> new NoOpExecutor();
-    else this.factory = new ExecutorFactoryImpl(properties);
+    else this.factory = null; // made on demand, after the clients are set
   }
 
   @Override
@@ -55,6 +55,77 @@ public interface ProfileSupport {
   }
 
   static Pair<Metric, Metric> compare(Statement stmt0, Statement stmt1, ProfileConfig config) {
+    final Pair<Profiler, Profiler> profilers = prepareProfilers(stmt0, stmt1, config);
+    if (profilers == null) return null;
+    final Profiler profiler0 = profilers.getLeft(), profiler1 = profilers.getRight();
+
+    try {
+      System.out.println(stmt0 + ".base ");
+      if (!profiler0.run()) return null;
+      System.out.println(stmt1 + ".opt ");
+      if (!profiler1.run()) return null;
+
+      return Pair.of(profiler0.metric(), profiler1.metric());
+    } finally {
+      close(profiler0, profiler1, config);
+    }
+  }
+
+  /**
+   * Compares the statements by interleaved executions, until the ratio of their latencies is
+   * known well enough. Returns null if failed. See {@link AdaptiveComparator}.
+   */
+  static AdaptiveResult compareAdaptively(Statement stmt0, Statement stmt1, ProfileConfig config) {
+    final Pair<Profiler, Profiler> profilers = prepareProfilers(stmt0, stmt1, config);
+    if (profilers == null) return null;
+    final Profiler profiler0 = profilers.getLeft(), profiler1 = profilers.getRight();
+
+    try {
+      System.out.println(stmt0 + ".base vs " + stmt1 + ".opt ");
+      return new AdaptiveComparator(profiler0, profiler1, config).run();
+    } finally {
+      close(profiler0, profiler1, config);
+    }
+  }
+
+  /**
+   * Compares the statements under concurrent load, see {@link ProfileConfig#clients()}. The
+   * statements are loaded in turn, with the same parameters.
+   */
+  static Pair<LoadResult, LoadResult> compareUnderLoad(
+      Statement stmt0, Statement stmt1, ProfileConfig config) {
+    final Pair<Profiler, Profiler> profilers = prepareProfilers(stmt0, stmt1, config);
+    if (profilers == null) return null;
+    final Profiler profiler0 = profilers.getLeft(), profiler1 = profilers.getRight();
+
+    try {
+      System.out.println(stmt0 + ".base ");
+      final LoadResult result0 = profiler0.runLoad();
+      System.out.println(stmt1 + ".opt ");
+      final LoadResult result1 = profiler1.runLoad();
+
+      if (result0 == null || result1 == null) return null;
+      return Pair.of(result0, result1);
+    } finally {
+      close(profiler0, profiler1, config);
+    }
+  }
+
+  // Closes all even if one throws.
+  private static void close(Profiler profiler0, Profiler profiler1, ProfileConfig config) {
+    try {
+      profiler0.close();
+    } finally {
+      try {
+        profiler1.close();
+      } finally {
+        config.executorFactory().close();
+      }
+    }
+  }
+
+  private static Pair<Profiler, Profiler> prepareProfilers(
+      Statement stmt0, Statement stmt1, ProfileConfig config) {
     setupParams(stmt0);
     setupParams(stmt1);
 
@@ -72,16 +143,7 @@ public interface ProfileSupport {
       trySaveParams(profiler1, config);
     }
 
-    System.out.println(stmt0 + ".base ");
-    if (!profiler0.run()) return null;
-    System.out.println(stmt1 + ".opt ");
-    if (!profiler1.run()) return null;
-
-    profiler0.close();
-    profiler1.close();
-    config.executorFactory().close();
-
-    return Pair.of(profiler0.metric(), profiler1.metric());
+    return Pair.of(profiler0, profiler1);
   }
 
   static boolean dryRunStmt(Statement stmt0, ProfileConfig config) {
@@ -27,6 +27,15 @@ public interface Profiler {
 
   boolean runOnce();
 
+  /**
+   * Runs once with the parameters of the cycle, and records the latency into {@link #metric()} if
+   * `record`. Returns the latency, or -1 on failure.
+   */
+  long runCycle(int cycle, boolean record);
+
+  /** Runs a load test as configured. Returns null if dry-run. */
+  LoadResult runLoad();
+
   void close();
 
   static Profiler make(Statement stmt, ProfileConfig config) {
@@ -20,6 +20,10 @@ import static wtune.sql.support.resolution.Params.PARAMS;
 
 class ProfilerImpl implements Profiler {
   private static final int DEFAULT_PROBING_TIMES = 5;
+  // Cycles beyond it reuse the parameters in turn, so that the parameters don't grow with cycles.
+  private static final int MAX_PARAMS = Integer.getInteger("wetune.profile.max_params", 1000);
+  // Cycles of a statement are cut to fit the budget (ms).
+  static final long TIME_BUDGET = Long.getLong("wetune.profile.time_budget", 10_000L);
 
   private final Statement statement;
   private final ProfileConfig config;
@@ -49,7 +53,7 @@ class ProfilerImpl implements Profiler {
             ? null
             : config.executorFactory().mk(
                     stmt.ast().toString(), config.useSqlServer(), config.calciteConn());
-    this.metric = Metric.mk(config.profileCycles());
+    this.metric = Metric.mk();
     this.warmupCycles = config.warmupCycles();
     this.profileCycles = config.profileCycles();
 
@@ -84,7 +88,7 @@ class ProfilerImpl implements Profiler {
 
   @Override
   public boolean prepare() {
-    final int paramsCount = config.profileCycles();
+    final int paramsCount = Math.min(config.profileCycles(), MAX_PARAMS);
     final List<Map<ParamDesc, Object>> params = new ArrayList<>(paramsCount);
 
     TIntList seeds = this.seeds;
@@ -146,8 +150,8 @@ class ProfilerImpl implements Profiler {
     recording = false;
     probing = false;
     System.out.printf(" warmup %d cycles: ", warmupCycles);
-    for (int i = 0, bound = warmupCycles; i < bound; ++i) {
-      if (i % 5 == 0) System.out.print(" " + i);
+    for (int i = 0, bound = warmupCycles, step = progressStep(bound); i < bound; ++i) {
+      if (i % step == 0) System.out.print(" " + i);
       if (!run0(i)) {
         return false;
       }
@@ -155,8 +159,8 @@ class ProfilerImpl implements Profiler {
 
     recording = true;
     System.out.printf(" profile %d cycles: ", profileCycles);
-    for (int i = 0, bound = profileCycles; i < bound; ++i) {
-      if (i % 5 == 0) System.out.print(" " + i);
+    for (int i = 0, bound = profileCycles, step = progressStep(bound); i < bound; ++i) {
+      if (i % step == 0) System.out.print(" " + i);
       if (!run0(i)) {
         return false;
       }
@@ -172,6 +176,21 @@ class ProfilerImpl implements Profiler {
     return run0(0);
   }
 
+  @Override
+  public LoadResult runLoad() {
+    if (config.dryRun()) return null;
+
+    final String sql = statement.ast().toString();
+    final ExecutorFactory factory = config.executorFactory();
+    final LoadDriver driver =
+        new LoadDriver(
+            () -> factory.mk(sql, config.useSqlServer(), config.calciteConn()), params, config);
+    System.out.printf(" load %d clients: ", config.clients());
+    final LoadResult result = driver.run();
+    System.out.printf("%.1f qps\n", result.throughput());
+    return result;
+  }
+
   @Override
   public void close() {
     if (executor != null) executor.close();
@@ -197,13 +216,28 @@ class ProfilerImpl implements Profiler {
     return true;
   }
 
-  private boolean run0(int cycle) {
+  @Override
+  public long runCycle(int cycle, boolean record) {
+    if (config.dryRun()) return 0;
+
+    final long elapsed = execute(cycle);
+    if (elapsed >= 0 && record) metric.addRecord(elapsed);
+    return elapsed;
+  }
+
+  private long execute(int cycle) {
     final Map<ParamDesc, Object> params = this.params.get(cycle % this.params.size());
-    if (!executor.installParams(params)) return false;
+    if (!executor.installParams(params)) return -1;
 
     final long elapsed = executor.execute();
-    if (elapsed < 0) return false;
+    if (elapsed < 0) return -1;
     executor.endOne();
+    return elapsed;
+  }
+
+  private boolean run0(int cycle) {
+    final long elapsed = execute(cycle);
+    if (elapsed < 0) return false;
 
     if (probing) maxProbingElapsed = Math.max(maxProbingElapsed, elapsed);
 
@@ -212,6 +246,10 @@ class ProfilerImpl implements Profiler {
     return true;
   }
 
+  static int progressStep(int cycles) {
+    return Math.max(5, cycles / 20);
+  }
+
   private void adjustNumCycles() {
     if (maxProbingElapsed >= 5_000_000_000L) { // 10 seconds
       warmupCycles = 0;
@@ -220,7 +258,8 @@ class ProfilerImpl implements Profiler {
       return;
     }
 
-    final int cycleBudget = (int) (10_000_000_000L / maxProbingElapsed);
+    final long budget = TIME_BUDGET * 1_000_000L / Math.max(1, maxProbingElapsed);
+    final int cycleBudget = (int) Math.min(Integer.MAX_VALUE, budget);
     if (cycleBudget <= profileCycles) {
       warmupCycles = 0;
       profileCycles = cycleBudget;
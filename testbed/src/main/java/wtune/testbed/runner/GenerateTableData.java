@@ -1,8 +1,10 @@
 package wtune.testbed.runner;
 
 import me.tongfei.progressbar.ProgressBar;
+import wtune.common.datasource.DbSupport;
 import wtune.common.utils.Args;
 import wtune.common.utils.IOSupport;
+import wtune.common.utils.ListSupport;
 import wtune.common.utils.SetSupport;
 import wtune.sql.ast.SqlNode;
 import wtune.sql.ast.SqlNodes;
@@ -39,7 +41,8 @@ public class GenerateTableData implements Runner {
 
   private Map<String, Set<String>> targets;
   private OptimizerType optimizedBy;
-  private int verbosity;
+  private int verbosity, parallelism;
+  private boolean load, bulkLoad;
   private String tag;
   private Path dir, failure;
   private ProgressBar progressBar;
@@ -66,6 +69,12 @@ public class GenerateTableData implements Runner {
 
     tag = args.getOptional("t", "tag", String.class, BASE);
     verbosity = args.getOptional("v", "verbose", int.class, 0);
+    parallelism =
+        args.getOptional("parallelism", int.class, Runtime.getRuntime().availableProcessors());
+    if (parallelism <= 0) throw new IllegalArgumentException("invalid parallelism: " + parallelism);
+    // Populates the db "<app>_<tag>" instead of dumping, by INSERTs or by COPY/LOAD DATA.
+    bulkLoad = args.getOptional("bulkLoad", boolean.class, false);
+    load = bulkLoad || args.getOptional("load", boolean.class, false);
     dir = parentDir.resolve(dirName);
     failure = dir.resolve("failed_tables_" + tag + ".txt");
     if (!Files.exists(dir)) Files.createDirectories(dir);
@@ -92,20 +101,18 @@ public class GenerateTableData implements Runner {
         final App app = App.of(appName);
         final Schema schema = app.schema("base", true);
 
-        final PopulationConfig config = mkConfigForApp(appName, tag);
-        final List<String> failed = new ArrayList<>();
+        final List<Collection> collections = new ArrayList<>(tableNames.size());
         for (String tableName : tableNames) {
           final Table table = schema.table(tableName);
           if (table == null) {
             if (verbosity >= 1) System.err.println("no such table: " + appName + '.' + tableName);
             continue;
           }
-
-          if (!populateOne(config, app.name(), table.name())) {
-            failed.add(table.name());
-          }
+          collections.add(Collection.ofTable(table));
         }
 
+        final List<String> failed = populateApp(mkConfigForApp(appName, tag), appName, collections);
+
         if (!failed.isEmpty()) {
           if (verbosity >= 1)
             System.err.printf("failed to populate tables for %s: %s\n", appName, failed);
@@ -206,29 +213,32 @@ public class GenerateTableData implements Runner {
 
   private PopulationConfig mkConfigForApp(String appName, String tag) throws IOException {
     final PopulationConfig config = mkConfig(tag);
-    config.setDump(fileDump(appName, tag));
+    if (load) {
+      config.setDbProperties(DbSupport.dbProps(App.of(appName).dbType(), appName + "_" + tag));
+      config.setBulkLoad(bulkLoad);
+    } else {
+      config.setDump(fileDump(appName, tag));
+    }
     config.setProgressCallback(progressBar::step);
+    config.setParallelism(parallelism);
     return config;
   }
 
-  private boolean populateOne(PopulationConfig config, String appName, String tableName) {
-    final SQLPopulator populator = new SQLPopulator();
-    populator.setConfig(config);
-
-    final App app = App.of(appName);
-    final Schema schema = app.schema("base", true);
-    final Table table = schema.table(tableName);
-
-    if (verbosity >= 3) System.out.printf("start %s.%s\n", appName, tableName);
+  private List<String> populateApp(
+      PopulationConfig config, String appName, List<Collection> collections) {
+    if (verbosity >= 3) System.out.printf("start %s: %d tables\n", appName, collections.size());
 
     final long start = System.currentTimeMillis();
-    final boolean success = populator.populate(Collection.ofTable(table));
+    final List<Collection> failed;
+    try (final SQLPopulator populator = new SQLPopulator()) {
+      populator.setConfig(config);
+      failed = populator.populateAll(collections);
+    }
     final long end = System.currentTimeMillis();
 
-    if (success && verbosity >= 3)
-      System.out.printf("done %s.%s in %d ms\n", appName, tableName, end - start);
+    if (verbosity >= 3) System.out.printf("done %s in %d ms\n", appName, end - start);
 
-    return success;
+    return ListSupport.map(failed, Collection::collectionName);
   }
 
   @SuppressWarnings("all")
@@ -13,6 +13,7 @@ import wtune.stmt.App;
 import wtune.common.datasource.db.SQLServerPlanTree;
 import wtune.common.datasource.SQLSyntaxAdaptor;
 import wtune.superopt.optimizer.Optimizer;
+import wtune.superopt.optimizer.OptimizerConfig;
 import wtune.superopt.profiler.Profiler;
 import wtune.superopt.substitution.Substitution;
 import wtune.superopt.substitution.SubstitutionBank;
@@ -235,10 +236,11 @@ public class IssueStudy implements Runner {
     } catch (IOException e) {
       e.printStackTrace();
     }
-    addOptimizerTweaks(TWEAK_ENABLE_EXTENSIONS);
-    addOptimizerTweaks(TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
   }
 
+  private static final OptimizerConfig OPTIMIZER_CONFIG =
+      new OptimizerConfig(TWEAK_ENABLE_EXTENSIONS | TWEAK_SORT_FILTERS_BEFORE_OUTPUT);
+
   private void checkWeTune(Issue issue) {
     if (verbosity >= 1) {
       System.out.println("Checking " + issue.issueFullId() + " on WeTune: ");
@@ -362,7 +364,7 @@ public class IssueStudy implements Runner {
 
   private static Set<PlanContext> getRewrittenPlan(PlanContext plan) {
     if (plan == null) return Collections.emptySet();
-    final Optimizer optimizer = Optimizer.mk(DEFAULT_RULE_SET);
+    final Optimizer optimizer = Optimizer.mk(DEFAULT_RULE_SET, OPTIMIZER_CONFIG);
     optimizer.setTimeout(Integer.MAX_VALUE);
     optimizer.setTracing(true);
     return optimizer.optimize(plan);
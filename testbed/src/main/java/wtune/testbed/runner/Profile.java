@@ -11,9 +11,12 @@ import wtune.stmt.Statement;
 import wtune.stmt.support.OptimizerType;
 import wtune.testbed.population.Generators;
 import wtune.testbed.population.PopulationConfig;
+import wtune.testbed.profile.AdaptiveResult;
+import wtune.testbed.profile.LoadResult;
 import wtune.testbed.profile.Metric;
 import wtune.testbed.profile.ProfileConfig;
 
+import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
@@ -26,6 +29,8 @@ import static java.lang.System.Logger.Level.WARNING;
 import static java.util.Arrays.asList;
 import static wtune.common.datasource.DbSupport.SQLServer;
 import static wtune.testbed.profile.ProfileSupport.compare;
+import static wtune.testbed.profile.ProfileSupport.compareAdaptively;
+import static wtune.testbed.profile.ProfileSupport.compareUnderLoad;
 
 public class Profile implements Runner {
   public static final System.Logger LOG = System.getLogger("profile");
@@ -35,8 +40,14 @@ public class Profile implements Runner {
   private Set<String> stmts;
   private String startStmt;
   private Path out;
+  private Path histOut; // encoded latency histograms, alongside `out`
+  private int warmupCycles, profileCycles;
   private boolean useSqlServer;
   private boolean dryRun;
+  private boolean adaptive;
+  private int clients; // > 0 for load tests
+  private double rate;
+  private long loadWarmup, loadDuration;
 
   // Determine the optimized statement pool
   private String optimizedBy;
@@ -66,17 +77,29 @@ public class Profile implements Runner {
 
     optimizedBy = args.getOptional("opt", "optimizer", String.class, "WeTune");
 
+    warmupCycles = args.getOptional("warmup", int.class, 10);
+    profileCycles = args.getOptional("cycles", int.class, 100);
+    adaptive = args.getOptional("adaptive", boolean.class, false);
+    clients = args.getOptional("clients", int.class, 0);
+    rate = args.getOptional("rate", double.class, 0.0);
+    loadWarmup = args.getOptional("loadWarmup", long.class, 2000L);
+    loadDuration = args.getOptional("loadDuration", long.class, 10000L);
+    if (clients < 0) throw new IllegalArgumentException("invalid clients: " + clients);
+
     final String time = LocalDateTime.now().format(DateTimeFormatter.ofPattern("MMddHHmmss"));
-    final String suffix = optimizedBy + "_" + (useSqlServer ? "ss" : "pg");
+    final String mode = clients > 0 ? "_load" : adaptive ? "_adaptive" : "";
+    final String suffix = optimizedBy + "_" + (useSqlServer ? "ss" : "pg") + mode;
     out = Runner.dataDir()
             .resolve(dir)
             .resolve(optimizedBy)
             .resolve("%s_%s.%s.csv".formatted(tag, suffix, time));
+    histOut = out.resolveSibling("%s_%s.%s.hist".formatted(tag, suffix, time));
 
     if (!Files.exists(out)) {
       Files.createDirectories(out.getParent());
       Files.createFile(out);
     }
+    if (!Files.exists(histOut)) Files.createFile(histOut);
 
     initBlackList();
   }
@@ -120,8 +143,15 @@ public class Profile implements Runner {
     config.setUseSqlServer(useSqlServer);
     config.setDbProperties(getDbProps(original.app()));
     config.setParamSaveFile(getParamSaveFile());
-    config.setWarmupCycles(10);
-    config.setProfileCycles(100);
+    config.setWarmupCycles(warmupCycles);
+    config.setProfileCycles(profileCycles);
+    if (clients > 0) {
+      config.setClients(clients);
+      config.setTargetRate(rate);
+      config.setLoadDuration(loadWarmup, loadDuration);
+      return runLoad(original, rewritten, config);
+    }
+    if (adaptive) return runAdaptive(original, rewritten, config);
 
     LOG.log(System.Logger.Level.INFO, "start profile {0}", original);
 
@@ -157,6 +187,112 @@ public class Profile implements Runner {
     }
   }
 
+  private boolean runLoad(Statement original, Statement rewritten, ProfileConfig config) {
+    LOG.log(System.Logger.Level.INFO, "start load test {0} with {1} clients", original, clients);
+
+    try {
+      final Pair<LoadResult, LoadResult> comp = compareUnderLoad(original, rewritten, config);
+      if (comp == null) {
+        LOG.log(ERROR, "failed to profile {0}", original);
+        return false;
+      }
+
+      final LoadResult result0 = comp.getLeft(), result1 = comp.getRight();
+      logLoadResult(original, result0);
+      logLoadResult(rewritten, result1);
+      IOSupport.appendTo(
+          out,
+          writer -> {
+            printLoadResult(writer, original, tag + "_base", result0);
+            printLoadResult(writer, original, tag + "_opt", result1);
+          });
+      logSnapshots(original, result0.latency(), result1.latency());
+      return true;
+    } catch (Exception e) {
+      LOG.log(ERROR, "failed to profile {0}", original);
+      return false;
+    }
+  }
+
+  private boolean runAdaptive(Statement original, Statement rewritten, ProfileConfig config) {
+    LOG.log(System.Logger.Level.INFO, "start adaptive profile {0}", original);
+
+    try {
+      final AdaptiveResult result = compareAdaptively(original, rewritten, config);
+      if (result == null) {
+        LOG.log(ERROR, "failed to profile {0}", original);
+        return false;
+      }
+
+      LOG.log(
+          System.Logger.Level.INFO,
+          "{0} ratio {1,number,#.###} [{2,number,#.###}, {3,number,#.###}] in {4} pairs, {5}",
+          original,
+          result.ratio(),
+          result.ratioLow(),
+          result.ratioHigh(),
+          result.pairs(),
+          result.stopReason());
+      IOSupport.appendTo(
+          out,
+          writer -> {
+            printAdaptiveResult(writer, original, tag + "_base", result.metric0(), result);
+            printAdaptiveResult(writer, original, tag + "_opt", result.metric1(), result);
+          });
+      logSnapshots(original, result.metric0(), result.metric1());
+      return true;
+    } catch (Exception e) {
+      LOG.log(ERROR, "failed to profile {0}", original);
+      return false;
+    }
+  }
+
+  private static void printAdaptiveResult(
+      PrintWriter writer, Statement stmt, String tag, Metric metric, AdaptiveResult result) {
+    writer.printf(
+        Locale.ROOT,
+        "%s;%d;%s;%d;%d;%d;%d;%.4f;%.4f;%.4f;%s\n",
+        stmt.appName(),
+        stmt.stmtId(),
+        tag,
+        metric.atPercentile(0.5),
+        metric.atPercentile(0.9),
+        metric.atPercentile(0.99),
+        result.pairs(),
+        result.ratio(),
+        result.ratioLow(),
+        result.ratioHigh(),
+        result.stopReason());
+  }
+
+  private static void logLoadResult(Statement stmt, LoadResult result) {
+    final Metric latency = result.latency();
+    LOG.log(
+        System.Logger.Level.INFO,
+        "{0} {1,number,#.#}qps\t{2,number,#}\t{3,number,#}\t{4,number,#}\t{5} failed",
+        stmt,
+        result.throughput(),
+        latency.atPercentile(0.5),
+        latency.atPercentile(0.9),
+        latency.atPercentile(0.99),
+        result.failed());
+  }
+
+  private void printLoadResult(PrintWriter writer, Statement stmt, String tag, LoadResult result) {
+    final Metric latency = result.latency();
+    writer.printf(
+        "%s;%d;%s;%d;%.2f;%d;%d;%d;%d\n",
+        stmt.appName(),
+        stmt.stmtId(),
+        tag,
+        clients,
+        result.throughput(),
+        latency.atPercentile(0.5),
+        latency.atPercentile(0.9),
+        latency.atPercentile(0.99),
+        result.failed());
+  }
+
   private Properties getDbProps(App app) {
     final String dbName = app.name() + "_" + tag;
     if (useSqlServer) return DbSupport.dbProps(SQLServer, dbName);
@@ -184,6 +320,20 @@ public class Profile implements Runner {
               metric1.atPercentile(0.9),
               metric1.atPercentile(0.99));
         });
+    logSnapshots(stmt, metric0, metric1);
+  }
+
+  private void logSnapshots(Statement stmt, Metric metric0, Metric metric1) {
+    IOSupport.appendTo(
+        histOut,
+        writer -> {
+          writer.printf(
+              "%s;%d;%s;%s\n",
+              stmt.appName(), stmt.stmtId(), tag + "_base", metric0.snapshot().encode());
+          writer.printf(
+              "%s;%d;%s;%s\n",
+              stmt.appName(), stmt.stmtId(), tag + "_opt", metric1.snapshot().encode());
+        });
   }
 
   private Function<Statement, String> getParamSaveFile() {
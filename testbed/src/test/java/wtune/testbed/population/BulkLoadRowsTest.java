@@ -0,0 +1,236 @@
+package wtune.testbed.population;
+
+import org.junit.jupiter.api.Test;
+import wtune.testbed.common.Actuator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.*;
+import static wtune.common.datasource.DbSupport.MySQL;
+import static wtune.common.datasource.DbSupport.PostgreSQL;
+
+/**
+ * Checks that the rows bulk-loaded are those inserted: the text rendered by {@link BulkLoadRows},
+ * once unescaped as the loader does, is parsed into the values {@link PreparedStatementActuator}
+ * binds.
+ */
+public class BulkLoadRowsTest {
+  private static final int NUM_FIELDS = 14;
+  private static final int BOOL_FIELD = 3;
+  private static final UUID UUID_VALUE = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+  @Test
+  void testPostgreSQL() throws IOException {
+    final List<List<byte[]>> rows = render(PostgreSQL, new BitSet());
+    assertEquals(2, rows.size());
+    for (List<byte[]> row : rows) assertSameRow(bind(), row, false);
+  }
+
+  @Test
+  void testMySQL() throws IOException {
+    final List<List<byte[]>> rows = render(MySQL, new BitSet());
+    assertEquals(2, rows.size());
+    for (List<byte[]> row : rows) assertSameRow(bind(), row, true);
+  }
+
+  @Test
+  void testMySQLBit() {
+    final BitSet bits = new BitSet();
+    bits.set(BOOL_FIELD);
+    final List<List<byte[]>> rows = render(MySQL, bits);
+    assertArrayEquals(new byte[] {1}, rows.get(0).get(BOOL_FIELD));
+  }
+
+  private static void populate(Actuator actuator) {
+    actuator.appendInt(-42);
+    actuator.appendFraction(0.1);
+    actuator.appendDecimal(new BigDecimal("1E+3"));
+    actuator.appendBool(true);
+    actuator.appendString("a\\b\tc;d\ne\r\\N \u4e2d\u6587");
+    actuator.appendString(null);
+    actuator.appendString("NULL");
+    // Past noon, with fractional seconds.
+    actuator.appendDateTime(LocalDateTime.of(2021, 3, 4, 15, 6, 7, 8_000_000));
+    actuator.appendTime(LocalTime.of(23, 59, 58));
+    actuator.appendDate(LocalDate.of(1999, 12, 31));
+    actuator.appendBytes(new byte[] {0, 1, 9, 10, 13, 92, 15, (byte) 0xff});
+    actuator.appendBlob(new ByteArrayInputStream(new byte[] {(byte) 0x80, 0, 10}), 3);
+    actuator.appendObject(UUID_VALUE, Types.OTHER);
+    actuator.appendArray(new String[] {"x\"y", "p\\q", "m,n", "{}"}, "varchar");
+  }
+
+  private static List<List<byte[]>> render(String dbType, BitSet bits) {
+    final BulkLoadRows rows = new BulkLoadRows(dbType);
+    rows.bind(NUM_FIELDS, bits);
+    for (int i = 0; i < 2; ++i) {
+      rows.beginRow();
+      populate(rows);
+      rows.endRow();
+    }
+    assertEquals(2, rows.numRows());
+    return decode(rows.toByteArray());
+  }
+
+  // Returns the values bound to the INSERT statement, indexed from 1.
+  private static Object[] bind() {
+    final Object[] bound = new Object[NUM_FIELDS + 1];
+    final PreparedStatement stmt =
+        proxy(
+            PreparedStatement.class,
+            (self, method, args) -> {
+              if (method.getName().startsWith("set")) bound[(int) args[0]] = args[1];
+              return null;
+            });
+    final Connection conn =
+        proxy(
+            Connection.class,
+            (self, method, args) ->
+                proxy(Array.class, (self1, method1, args1) -> ((Object[]) args[1]).clone()));
+
+    final PreparedStatementActuator actuator =
+        new PreparedStatementActuator() {
+          @Override
+          protected Connection connection() {
+            return conn;
+          }
+
+          @Override
+          protected PreparedStatement statement() {
+            return stmt;
+          }
+        };
+    actuator.index = 1;
+    populate(actuator);
+    return bound;
+  }
+
+  private static void assertSameRow(Object[] bound, List<byte[]> loaded, boolean mysql)
+      throws IOException {
+    assertEquals(NUM_FIELDS, loaded.size());
+    for (int i = 0; i < NUM_FIELDS; ++i) {
+      final Object value = bound[i + 1];
+      final byte[] field = loaded.get(i);
+      if (value == null) {
+        assertNull(field);
+        continue;
+      }
+
+      assertNotNull(field);
+      final String text = new String(field, UTF_8);
+      if (value instanceof Integer) assertEquals(value, Integer.parseInt(text));
+      else if (value instanceof Double) assertEquals(value, Double.parseDouble(text));
+      else if (value instanceof BigDecimal)
+        assertEquals(0, ((BigDecimal) value).compareTo(new BigDecimal(text)));
+      else if (value instanceof Boolean) assertEquals((Boolean) value ? "1" : "0", text);
+      else if (value instanceof Timestamp) assertEquals(value, Timestamp.valueOf(text));
+      else if (value instanceof Time) assertEquals(value, Time.valueOf(text));
+      else if (value instanceof Date) assertEquals(value, Date.valueOf(text));
+      else if (value instanceof byte[]) assertArrayEquals((byte[]) value, bytesOf(field, mysql));
+      else if (value instanceof InputStream)
+        assertArrayEquals(((InputStream) value).readAllBytes(), bytesOf(field, mysql));
+      else if (value instanceof Array)
+        assertEquals(Arrays.asList(arrayOf(value)), parsePgArray(text));
+      else assertEquals(value.toString(), text); // String, and objects bound as Types.OTHER
+    }
+  }
+
+  private static Object[] arrayOf(Object array) {
+    try {
+      return (Object[]) ((Array) array).getArray();
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private static byte[] bytesOf(byte[] field, boolean mysql) {
+    if (mysql) return field;
+    final String text = new String(field, UTF_8);
+    assertTrue(text.startsWith("\\x"));
+    return HexFormat.of().parseHex(text.substring(2));
+  }
+
+  // Splits the rows and fields as COPY and LOAD DATA do by default. "\N" is NULL.
+  private static List<List<byte[]>> decode(byte[] bytes) {
+    final List<List<byte[]>> rows = new ArrayList<>();
+    List<byte[]> row = new ArrayList<>();
+    ByteArrayOutputStream field = new ByteArrayOutputStream();
+    boolean isNull = false;
+
+    for (int i = 0; i < bytes.length; ++i) {
+      final byte b = bytes[i];
+      if (b == '\\') {
+        final byte next = bytes[++i];
+        switch (next) {
+          case 'N' -> isNull = true;
+          case 't' -> field.write('\t');
+          case 'n' -> field.write('\n');
+          case 'r' -> field.write('\r');
+          case '0' -> field.write(0);
+          default -> field.write(next);
+        }
+      } else if (b == '\t' || b == '\n') {
+        row.add(isNull ? null : field.toByteArray());
+        field = new ByteArrayOutputStream();
+        isNull = false;
+        if (b == '\n') {
+          rows.add(row);
+          row = new ArrayList<>();
+        }
+      } else {
+        field.write(b);
+      }
+    }
+    assertTrue(row.isEmpty() && field.size() == 0);
+    return rows;
+  }
+
+  private static List<String> parsePgArray(String text) {
+    assertTrue(text.startsWith("{") && text.endsWith("}"));
+    final List<String> elements = new ArrayList<>();
+    for (int i = 1; i < text.length() - 1; ++i) {
+      if (text.startsWith("NULL", i)) {
+        elements.add(null);
+        i += 4;
+      } else {
+        assertEquals('"', text.charAt(i));
+        final StringBuilder builder = new StringBuilder();
+        for (++i; text.charAt(i) != '"'; ++i) {
+          if (text.charAt(i) == '\\') ++i;
+          builder.append(text.charAt(i));
+        }
+        elements.add(builder.toString());
+        ++i;
+      }
+      if (i < text.length() - 1) assertEquals(',', text.charAt(i));
+    }
+    return elements;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> cls, InvocationHandler handler) {
+    return (T) Proxy.newProxyInstance(cls.getClassLoader(), new Class<?>[] {cls}, handler);
+  }
+}
@@ -0,0 +1,197 @@
+package wtune.testbed.profile;
+
+import gnu.trove.list.TIntList;
+import org.junit.jupiter.api.Test;
+import wtune.stmt.Statement;
+import wtune.testbed.profile.AdaptiveResult.StopReason;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.function.IntToLongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveComparatorTest {
+  private static final long MS = 1_000_000L;
+
+  // Replays the given latencies of the cycles.
+  private static class FakeProfiler implements Profiler {
+    private final IntToLongFunction latencies;
+    private final Metric metric = Metric.mk();
+    private int numRuns;
+
+    private FakeProfiler(IntToLongFunction latencies) {
+      this.latencies = latencies;
+    }
+
+    @Override
+    public long runCycle(int cycle, boolean record) {
+      ++numRuns;
+      final long latency = latencies.applyAsLong(cycle);
+      if (record) metric.addRecord(latency);
+      return latency;
+    }
+
+    @Override
+    public Metric metric() {
+      return metric;
+    }
+
+    @Override
+    public Statement statement() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TIntList seeds() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ParamsGen paramsGen() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setSeeds(TIntList seeds) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean prepare() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean run() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean runOnce() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public LoadResult runLoad() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void saveParams(ObjectOutputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean readParams(ObjectInputStream stream) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static AdaptiveResult compare(
+      FakeProfiler profiler0, FakeProfiler profiler1, int warmupCycles, int profileCycles) {
+    final ProfileConfig config = new ProfileConfigImpl(null);
+    config.setWarmupCycles(warmupCycles);
+    config.setProfileCycles(profileCycles);
+    return new AdaptiveComparator(profiler0, profiler1, config).run();
+  }
+
+  @Test
+  void testConverged() {
+    // The rewritten one is 1% faster or slower in turn.
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> 100 * MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> (cycle % 2 == 0 ? 99 : 101) * MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 5, 100);
+
+    assertEquals(StopReason.CONVERGED, result.stopReason());
+    assertEquals(10, result.pairs());
+    assertTrue(result.ratioLow() < 1 && 1 < result.ratioHigh());
+    assertTrue(result.ratioHigh() / result.ratioLow() < 1.05 * 1.05);
+    assertEquals(1.0, result.ratio(), 0.001);
+    // The warmup pairs are run, but not recorded.
+    assertEquals(15, profiler0.numRuns);
+    assertEquals(10, result.metric0().numRecords());
+    assertEquals(10, result.metric1().numRecords());
+  }
+
+  @Test
+  void testWinner() {
+    // The rewritten one is 2.4 or 3.6 times as slow in turn, too noisy to converge.
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> 10 * MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> (cycle % 2 == 0 ? 24 : 36) * MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 0, 100);
+
+    assertEquals(StopReason.WINNER, result.stopReason());
+    assertEquals(10, result.pairs());
+    assertTrue(result.ratioLow() > 2);
+    assertEquals(Math.sqrt(2.4 * 3.6), result.ratio(), 0.001);
+  }
+
+  @Test
+  void testMaxCycles() {
+    // Twice as fast or as slow in turn, which is too noisy to converge in 30 pairs.
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> 10 * MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> (cycle % 2 == 0 ? 5 : 20) * MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 2, 30);
+
+    assertEquals(StopReason.MAX_CYCLES, result.stopReason());
+    assertEquals(30, result.pairs());
+    assertEquals(30, result.metric1().numRecords());
+    assertTrue(result.ratioLow() < 1 && 1 < result.ratioHigh());
+  }
+
+  @Test
+  void testPathologicalInWarmup() {
+    // The rewritten one is twice as slow, and hangs in the third pair.
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> cycle == 2 ? 8000 * MS : 2 * MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 5, 100);
+
+    assertEquals(StopReason.PATHOLOGICAL, result.stopReason());
+    assertEquals(3, result.pairs());
+    assertEquals(3, profiler1.numRuns);
+    assertEquals(Math.cbrt(2 * 2 * 8000), result.ratio(), 0.001);
+    assertTrue(0 < result.ratioLow() && result.ratioLow() < result.ratio());
+    assertTrue(result.ratio() < result.ratioHigh());
+    assertTrue(result.ratioHigh() < Double.POSITIVE_INFINITY);
+    // Only the pathological pair is recorded.
+    assertEquals(1, result.metric0().numRecords());
+    assertEquals(1, result.metric1().numRecords());
+    assertEquals(8000 * MS, result.metric1().snapshot().max());
+  }
+
+  @Test
+  void testPathologicalAtOnce() {
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> 6000 * MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> 3000 * MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 5, 100);
+
+    assertEquals(StopReason.PATHOLOGICAL, result.stopReason());
+    assertEquals(1, result.pairs());
+    assertEquals(0.5, result.ratio(), 0.001);
+    assertEquals(0, result.ratioLow());
+    assertEquals(Double.POSITIVE_INFINITY, result.ratioHigh());
+  }
+
+  @Test
+  void testPathologicalInProfile() {
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> cycle == 3 ? 6000 * MS : MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> MS);
+    final AdaptiveResult result = compare(profiler0, profiler1, 2, 100);
+
+    // The warmup pairs are not counted.
+    assertEquals(StopReason.PATHOLOGICAL, result.stopReason());
+    assertEquals(4, result.pairs());
+    assertEquals(4, result.metric0().numRecords());
+  }
+
+  @Test
+  void testFailure() {
+    final FakeProfiler profiler0 = new FakeProfiler(cycle -> MS);
+    final FakeProfiler profiler1 = new FakeProfiler(cycle -> cycle == 1 ? -1 : MS);
+    assertNull(compare(profiler0, profiler1, 0, 100));
+  }
+}